@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.consola;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import ufps.is.poo.intercambio.Csv;
+import ufps.is.poo.intercambio.Exportador;
+import ufps.is.poo.intercambio.ImportadorCsv;
+import ufps.is.poo.intercambio.Json;
+import ufps.is.poo.intercambio.ResultadoImportacion;
+import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.FotoCarro;
+import ufps.is.poo.negocio.Operacion;
+import ufps.is.poo.negocio.Premio;
+import ufps.is.poo.negocio.Propietario;
+import ufps.is.poo.negocio.RangoModelos;
+import ufps.is.poo.persistencia.BitacoraArchivo;
+
+/**
+ * Ejecuta comandos sobre una Competencia sin interfaz grafica, desde un
+ * archivo o desde la entrada estandar, para trabajos nocturnos y pruebas de
+ * rendimiento. Cada linea es un comando en CSV; los que agregan datos son las
+ * mismas filas que lee ImportadorCsv, asi que un archivo exportado en CSV
+ * tambien sirve como script:
+ * <pre>
+ * carro,placa,marca,modelo
+ * premio,placa,año,puesto,evento
+ * propietario,placa,año,nombre,cc,direccion,ciudad,telefono
+ * carros,desde,hasta
+ * premios,placa[,año]
+ * propietarios,placa,año
+ * ganadores,evento,año
+ * premiospropietario,cc
+ * todo
+ * contar
+ * importar,archivo
+ * exportar,archivo[,csv|ndjson[,gzip]]
+ * </pre>
+ * Por cada comando escribe una linea JSON con su numero de linea, si se
+ * cumplio y el resultado o el error. Las consultas responden con arreglos de
+ * carros, premios o propietarios con los mismos campos del NDJSON del
+ * Exportador. Las lineas vacias, las que empiezan con # y las filas de
+ * titulos se ignoran.
+ * @author Emanuel Martinez Pinzon
+ */
+public class Consola {
+    
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+    
+    private final Competencia competencia;
+    private final Writer salida;
+    private final boolean soloErrores;
+    private final StringBuilder respuesta = new StringBuilder(256);
+    private long comandos;
+    private long errores;
+    
+    /**
+     * Crea una consola.
+     * @param competencia Competencia sobre la que se ejecutan los comandos
+     * @param salida Donde se escribe el resultado de cada comando
+     * @param soloErrores true para escribir solo los comandos que fallan
+     */
+    public Consola(Competencia competencia, Writer salida, boolean soloErrores){
+        this.competencia = competencia;
+        this.salida = salida;
+        this.soloErrores = soloErrores;
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * Ejecuta todos los comandos de una entrada, hasta que se termine. La
+     * salida se vacia cuando no hay mas lineas esperando, asi quien envia los
+     * comandos por una tuberia recibe las respuestas sin esperar al final.
+     * @param entrada Lineas de comandos
+     * @throws IOException Si falla la lectura o la escritura
+     */
+    public void ejecutar(BufferedReader entrada) throws IOException{
+        long numero = 0;
+        while(true){
+            if(!entrada.ready())
+                salida.flush();
+            String linea = entrada.readLine();
+            if(linea == null)
+                break;
+            
+            ejecutar(++numero, linea);
+        }
+        salida.flush();
+    }
+    
+    /**
+     * Ejecuta un comando.
+     * @param numero Numero de linea, para la respuesta
+     * @param linea Comando en CSV
+     * @return Retorna false si el comando fallo
+     * @throws IOException Si falla la escritura de la respuesta
+     */
+    public boolean ejecutar(long numero, String linea) throws IOException{
+        if(linea.startsWith("\uFEFF"))
+            linea = linea.substring(1);
+        if(linea.trim().isEmpty() || linea.startsWith("#"))
+            return true;
+        
+        List<String> campos = null;
+        Object resultado = null;
+        String error = null;
+        try{
+            campos = Csv.campos(linea);
+            resultado = resultado(campos);
+            if(resultado == null)
+                return true;
+            if(Boolean.FALSE.equals(resultado))
+                error = "No se aplico el cambio";
+        }catch(Exception ex){
+            error = ex.getMessage() != null ? ex.getMessage() : ex.toString();
+        }
+        
+        comandos++;
+        if(error != null)
+            errores++;
+        if(error == null && soloErrores)
+            return true;
+        
+        respuesta.setLength(0);
+        respuesta.append("{\"linea\":").append(numero);
+        if(campos != null){
+            respuesta.append(",\"comando\":");
+            Json.texto(respuesta, campos.get(0).trim().toLowerCase(Locale.ROOT));
+        }
+        respuesta.append(",\"ok\":").append(error == null);
+        if(error != null){
+            respuesta.append(",\"error\":");
+            Json.texto(respuesta, error);
+        }else{
+            respuesta.append(",\"resultado\":");
+            valor(resultado);
+        }
+        respuesta.append("}\n");
+        salida.append(respuesta);
+        return error == null;
+    }
+    
+    public long getComandos() {
+        return comandos;
+    }
+
+    public long getErrores() {
+        return errores;
+    }
+    
+    /**
+     * Uso: Consola [-q] [--bitacora carpeta] [script|-]. Sin script, o con -,
+     * lee los comandos de la entrada estandar. Con -q solo escribe los
+     * comandos que fallan. Con --bitacora recupera la competencia de esa
+     * carpeta y guarda alli los cambios. Al final escribe un resumen en la
+     * salida de errores y termina con 0 si todo se cumplio, 1 si algun comando
+     * fallo o 2 si no pudo leer, escribir o abrir la bitacora.
+     * @param args Argumentos de la linea de comandos
+     */
+    public static void main(String[] args){
+        System.exit(ejecutar(args, System.in, System.out, System.err));
+    }
+    
+    /**
+     * Hace lo mismo que main con otras entradas y salidas, sin terminar la
+     * aplicacion.
+     * @param args Argumentos de la linea de comandos
+     * @param estandar Entrada que se lee sin script o con -
+     * @param salida Donde se escriben las respuestas
+     * @param errores Donde se escriben el uso, los errores y el resumen
+     * @return Retorna 0 si todo se cumplio, 1 si algun comando fallo o 2 si
+     * los argumentos no son validos o no pudo leer, escribir o abrir la
+     * bitacora
+     */
+    static int ejecutar(String[] args, InputStream estandar, OutputStream salida,
+            PrintStream errores){
+        boolean soloErrores = false;
+        File bitacora = null;
+        String script = null;
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("-q"))
+                soloErrores = true;
+            else if(args[i].equals("--bitacora") && i + 1 < args.length)
+                bitacora = new File(args[++i]);
+            else if(script == null && (!args[i].startsWith("-") || args[i].equals("-")))
+                script = args[i];
+            else{
+                errores.println("Uso: Consola [-q] [--bitacora carpeta] [script|-]");
+                return 2;
+            }
+        }
+        
+        return ejecutar(script, bitacora, soloErrores, estandar, salida, errores);
+    }
+    
+    //-----------------------REQUERIMIENTOS OPERACIONALES----------------------//
+    private static int ejecutar(String script, File carpeta, boolean soloErrores,
+            InputStream estandar, OutputStream destino, PrintStream errores){
+        long inicio = System.nanoTime();
+        Competencia competencia = new Competencia();
+        Writer salida = new BufferedWriter(new OutputStreamWriter(destino,
+                StandardCharsets.UTF_8), TAMAÑO_BUFFER);
+        Consola consola = new Consola(competencia, salida, soloErrores);
+        int estado = 0;
+        BitacoraArchivo bitacora = null;
+        try{
+            if(carpeta != null)
+                bitacora = BitacoraArchivo.abrir(carpeta, competencia);
+            
+            InputStream entrada = script == null || script.equals("-") ? estandar
+                    : new FileInputStream(script);
+            try(BufferedReader lector = new BufferedReader(new InputStreamReader(entrada,
+                    StandardCharsets.UTF_8), TAMAÑO_BUFFER)){
+                consola.ejecutar(lector);
+            }
+        }catch(IOException ex){
+            errores.println("Error: "+ex.getMessage());
+            estado = 2;
+        }finally{
+            if(bitacora != null)
+                try{
+                    bitacora.close();
+                }catch(IOException ex){
+                    errores.println("Error al cerrar la bitacora: "+ex.getMessage());
+                    estado = 2;
+                }
+        }
+        
+        if(estado == 0 && consola.getErrores() > 0)
+            estado = 1;
+        errores.println("{\"comandos\":"+consola.getComandos()+",\"errores\":"+consola.getErrores()
+                +",\"ms\":"+(System.nanoTime() - inicio) / 1000000+"}");
+        return estado;
+    }
+    
+    /**
+     * Ejecuta un comando ya separado en campos.
+     * @return Retorna el resultado, o null si la linea se ignora
+     * @throws Exception Si el comando no es valido o la competencia lo rechaza
+     */
+    private Object resultado(List<String> campos) throws Exception{
+        String comando = campos.get(0).trim().toLowerCase(Locale.ROOT);
+        switch(comando){
+            case "carro":
+            case "premio":
+            case "propietario":
+            case "tipo":
+                Operacion operacion = ImportadorCsv.operacion(campos);
+                return operacion != null ? operacion.aplicar(competencia) : null;
+            case "carros":
+                revisar(campos, 3, 3);
+                return competencia.listarCarrosParaUnRango(RangoModelos.entre(numero(campos, 1),
+                        numero(campos, 2)));
+            case "premios":
+                revisar(campos, 2, 3);
+                List<Premio> premios = competencia.listarPremios(texto(campos, 1));
+                if(campos.size() == 2)
+                    return premios;
+                
+                int anio = numero(campos, 2);
+                ArrayList<Premio> delAño = new ArrayList<>();
+                for(Premio x: premios)
+                    if(x.getAnio() == anio)
+                        delAño.add(x);
+                return delAño;
+            case "propietarios":
+                revisar(campos, 3, 3);
+                return competencia.listarPropietarios(texto(campos, 1), numero(campos, 2));
+            case "ganadores":
+                revisar(campos, 3, 3);
+                return competencia.listarPropietariosParaUnaVictoria(texto(campos, 1), numero(campos, 2));
+            case "premiospropietario":
+                revisar(campos, 2, 2);
+                return competencia.listarPremiosdePropietario(texto(campos, 1));
+            case "todo":
+                revisar(campos, 1, 1);
+                return competencia.listarCarros();
+            case "contar":
+                revisar(campos, 1, 1);
+                return competencia.listarPlacas().size();
+            case "importar":
+                revisar(campos, 2, 2);
+                return new ImportadorCsv(competencia).importar(new File(texto(campos, 1)));
+            case "exportar":
+                revisar(campos, 2, 4);
+                Exportador.Formato formato = campos.size() > 2
+                        ? Exportador.Formato.valueOf(texto(campos, 2).toUpperCase(Locale.ROOT))
+                        : Exportador.Formato.CSV;
+                boolean comprimir = campos.size() > 3 && texto(campos, 3).equalsIgnoreCase("gzip");
+                return new Exportador(competencia, formato, comprimir).exportar(new File(texto(campos, 1)));
+            default:
+                throw new IllegalArgumentException("Comando desconocido: "+campos.get(0));
+        }
+    }
+    
+    private static void revisar(List<String> campos, int minimo, int maximo){
+        if(campos.size() < minimo || campos.size() > maximo)
+            throw new IllegalArgumentException("Cantidad de campos invalida: "+campos.size());
+    }
+    
+    private static String texto(List<String> campos, int posicion){
+        return campos.get(posicion).trim();
+    }
+    
+    private static int numero(List<String> campos, int posicion){
+        String x = texto(campos, posicion);
+        try{
+            return Integer.parseInt(x);
+        }catch(NumberFormatException ex){
+            throw new IllegalArgumentException("Numero invalido: "+x);
+        }
+    }
+    
+    /**
+     * Escribe el resultado de un comando como valor JSON: los carros, premios
+     * y propietarios como objetos con los nombres de campo del NDJSON del
+     * Exportador y las colecciones como arreglos. Los arreglos se recorren
+     * mientras se escriben y la respuesta pasa a la salida cada vez que llena
+     * el buffer, asi todo no queda completo en memoria.
+     */
+    private void valor(Object resultado) throws IOException{
+        if(resultado instanceof Iterable){
+            respuesta.append('[');
+            boolean primero = true;
+            for(Object x: (Iterable<?>) resultado){
+                if(!primero)
+                    respuesta.append(',');
+                valor(x);
+                primero = false;
+                if(respuesta.length() >= TAMAÑO_BUFFER){
+                    salida.append(respuesta);
+                    respuesta.setLength(0);
+                }
+            }
+            respuesta.append(']');
+        }else if(resultado instanceof FotoCarro){
+            FotoCarro c = (FotoCarro) resultado;
+            campo("{\"placa\":", c.getPlaca());
+            campo(",\"marca\":", c.getMarca());
+            respuesta.append(",\"modelo\":").append(c.getModelo()).append(",\"premios\":");
+            valor(c.getPremios());
+            respuesta.append('}');
+        }else if(resultado instanceof Premio){
+            Premio p = (Premio) resultado;
+            respuesta.append("{\"anio\":").append(p.getAnio())
+                    .append(",\"puesto\":").append(p.getPuesto());
+            campo(",\"evento\":", p.getEvento());
+            respuesta.append('}');
+        }else if(resultado instanceof Propietario){
+            Propietario p = (Propietario) resultado;
+            campo("{\"nombre\":", p.getNombre());
+            campo(",\"cc\":", p.getCc());
+            campo(",\"direccion\":", p.getDireccion());
+            campo(",\"ciudad\":", p.getCiudad());
+            campo(",\"telefono\":", p.getTelefono());
+            respuesta.append('}');
+        }else if(resultado instanceof ResultadoImportacion){
+            ResultadoImportacion r = (ResultadoImportacion) resultado;
+            respuesta.append("{\"lineas\":").append(r.getLineas())
+                    .append(",\"carros\":").append(r.getCarros())
+                    .append(",\"premios\":").append(r.getPremios())
+                    .append(",\"propietarios\":").append(r.getPropietarios())
+                    .append(",\"rechazados\":").append(r.getRechazados()).append('}');
+        }else if(resultado instanceof String)
+            Json.texto(respuesta, (String) resultado);
+        else
+            respuesta.append(resultado);
+    }
+    
+    private void campo(String nombre, String valor){
+        respuesta.append(nombre);
+        Json.texto(respuesta, valor);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.intercambio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Separa y arma lineas CSV: campos separados por comas, y entre comillas
+ * dobles cuando tienen comas o comillas, que se escriben dobles. Un campo no
+ * puede tener saltos de linea.
+ * @author Emanuel Martinez Pinzon
+ */
+public class Csv {
+    
+    private Csv(){
+    }
+    
+    /**
+     * Separa los campos de una linea.
+     * @param linea Linea sin el salto de linea
+     * @return Retorna los campos sin las comillas
+     * @throws IllegalArgumentException Si hay comillas sin cerrar
+     */
+    public static List<String> campos(String linea){
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean comillas = false;
+        for(int i = 0; i < linea.length(); i++){
+            char c = linea.charAt(i);
+            if(comillas){
+                if(c != '"')
+                    campo.append(c);
+                else if(i + 1 < linea.length() && linea.charAt(i + 1) == '"'){
+                    campo.append('"');
+                    i++;
+                }else
+                    comillas = false;
+            }else if(c == '"')
+                comillas = true;
+            else if(c == ','){
+                campos.add(campo.toString());
+                campo.setLength(0);
+            }else
+                campo.append(c);
+        }
+        
+        if(comillas)
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        campos.add(campo.toString());
+        return campos;
+    }
+    
+    /**
+     * Escribe un campo, con comillas solo si las necesita.
+     * @param salida Destino
+     * @param campo Campo a escribir, null se escribe vacio
+     * @throws IllegalArgumentException Si el campo tiene saltos de linea, que
+     * campos() no podria volver a leer
+     */
+    public static void campo(StringBuilder salida, String campo){
+        if(campo == null)
+            return;
+        
+        boolean comillas = false;
+        for(int i = 0; i < campo.length(); i++){
+            char c = campo.charAt(i);
+            if(c == '\n' || c == '\r')
+                throw new IllegalArgumentException("Un campo no puede tener saltos de linea: "+campo);
+            comillas |= c == ',' || c == '"';
+        }
+        if(!comillas){
+            salida.append(campo);
+            return;
+        }
+        
+        salida.append('"');
+        for(int i = 0; i < campo.length(); i++){
+            char c = campo.charAt(i);
+            if(c == '"')
+                salida.append('"');
+            salida.append(c);
+        }
+        salida.append('"');
+    }
+}
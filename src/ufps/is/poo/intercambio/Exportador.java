@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.intercambio;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.FotoCarro;
+import ufps.is.poo.negocio.Premio;
+import ufps.is.poo.negocio.Propietario;
+
+/**
+ * Exporta todos los carros, premios y propietarios de una Competencia a CSV o
+ * a NDJSON (un objeto JSON por linea). Cada carro se escribe seguido de sus
+ * premios y de sus propietarios por año. Se recorre con listarCarros() de la
+ * competencia, que copia un carro a la vez con el cerrojo de su franja, y las
+ * filas se escriben a medida que se leen, asi la memoria usada no depende de
+ * la cantidad de datos. Si otros hilos siguen escribiendo cada carro sale
+ * como estaba cuando se leyo; si la competencia ya publica fotos se recorre
+ * la ultima y el archivo muestra un solo momento.
+ * 
+ * El CSV tiene las mismas filas que lee ImportadorCsv, asi que un archivo
+ * exportado se puede volver a importar.
+ * @author Emanuel Martinez Pinzon
+ */
+public class Exportador {
+    
+    public enum Formato {
+        CSV,
+        NDJSON
+    }
+    
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+    
+    private final Competencia competencia;
+    private final Formato formato;
+    private final boolean comprimir;
+    
+    /**
+     * Crea un exportador.
+     * @param competencia Competencia a exportar, puede cambiar mientras se
+     * exporta
+     * @param formato Formato de las filas
+     * @param comprimir true para escribir el archivo comprimido con gzip
+     */
+    public Exportador(Competencia competencia, Formato formato, boolean comprimir){
+        this.competencia = competencia;
+        this.formato = formato;
+        this.comprimir = comprimir;
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * Exporta a un archivo. Se escribe en un temporal que reemplaza al archivo
+     * solo cuando esta completo, asi quien lo lee nunca ve un archivo a medias.
+     * @param archivo Archivo destino
+     * @return Retorna la cantidad de filas escritas
+     * @throws IOException Si no se puede escribir
+     * @throws IllegalArgumentException Si en CSV un dato tiene saltos de linea
+     */
+    public long exportar(File archivo) throws IOException{
+        File temporal = new File(archivo.getPath()+".tmp");
+        long filas;
+        final FileChannel canal = FileChannel.open(temporal.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        //Al cerrar, lo escrito se sincroniza con el disco antes de cerrar el canal
+        OutputStream salida = new FilterOutputStream(Channels.newOutputStream(canal)){
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try{
+                    flush();
+                    canal.force(true);
+                }finally{
+                    super.close();
+                }
+            }
+        };
+        if(comprimir)
+            try{
+                salida = new GZIPOutputStream(salida, TAMAÑO_BUFFER);
+            }catch(IOException ex){
+                salida.close();
+                temporal.delete();
+                throw ex;
+            }
+        try(Writer escritor = new BufferedWriter(new OutputStreamWriter(salida,
+                StandardCharsets.UTF_8), TAMAÑO_BUFFER)){
+            filas = escribir(escritor);
+        }catch(IOException | RuntimeException ex){
+            temporal.delete();
+            throw ex;
+        }
+        
+        Files.move(temporal.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return filas;
+    }
+    
+    /**
+     * Escribe todas las filas en la salida que recibe, sin comprimir.
+     * @param salida Destino de las filas
+     * @return Retorna la cantidad de filas escritas
+     * @throws IOException Si la salida falla al escribir
+     * @throws IllegalArgumentException Si en CSV un dato tiene saltos de linea
+     */
+    public long escribir(Appendable salida) throws IOException{
+        StringBuilder fila = new StringBuilder(256);
+        long filas = 0;
+        for(FotoCarro c: competencia.listarCarros()){
+            inicio(fila, "carro", c.getPlaca());
+            campo(fila, "marca", c.getMarca());
+            campo(fila, "modelo", c.getModelo());
+            filas += fin(fila, salida);
+            
+            for(Premio x: c.getPremios()){
+                inicio(fila, "premio", c.getPlaca());
+                campo(fila, "anio", x.getAnio());
+                campo(fila, "puesto", x.getPuesto());
+                campo(fila, "evento", x.getEvento());
+                filas += fin(fila, salida);
+            }
+            
+            for(Integer año: c.getAñosPropietarios())
+                for(Propietario x: c.getPropietarios(año)){
+                    inicio(fila, "propietario", c.getPlaca());
+                    campo(fila, "anio", año);
+                    campo(fila, "nombre", x.getNombre());
+                    campo(fila, "cc", x.getCc());
+                    campo(fila, "direccion", x.getDireccion());
+                    campo(fila, "ciudad", x.getCiudad());
+                    campo(fila, "telefono", x.getTelefono());
+                    filas += fin(fila, salida);
+                }
+        }
+        
+        return filas;
+    }
+    
+    //-------------------------REQUERIMIENTOS OPERACIONALES---------------------//
+    private void inicio(StringBuilder fila, String tipo, String placa){
+        fila.setLength(0);
+        if(formato == Formato.CSV)
+            fila.append(tipo);
+        else
+            fila.append("{\"tipo\":\"").append(tipo).append('"');
+        campo(fila, "placa", placa);
+    }
+    
+    private void campo(StringBuilder fila, String nombre, String valor){
+        if(formato == Formato.CSV){
+            fila.append(',');
+            Csv.campo(fila, valor);
+            return;
+        }
+        
+        fila.append(",\"").append(nombre).append("\":");
+        Json.texto(fila, valor);
+    }
+    
+    private void campo(StringBuilder fila, String nombre, int valor){
+        if(formato == Formato.CSV)
+            fila.append(',').append(valor);
+        else
+            fila.append(",\"").append(nombre).append("\":").append(valor);
+    }
+    
+    private int fin(StringBuilder fila, Appendable salida) throws IOException{
+        if(formato == Formato.NDJSON)
+            fila.append('}');
+        salida.append(fila).append('\n');
+        return 1;
+    }
+}
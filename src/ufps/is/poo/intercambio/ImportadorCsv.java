@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.intercambio;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.Operacion;
+import ufps.is.poo.negocio.ResultadoLote;
+
+/**
+ * Importa carros, premios y propietarios desde un archivo CSV grande. Cada
+ * fila empieza con su tipo:
+ * <pre>
+ * carro,placa,marca,modelo
+ * premio,placa,año,puesto,evento
+ * propietario,placa,año,nombre,cc,direccion,ciudad,telefono
+ * </pre>
+ * Las lineas pueden terminar en \n, \r\n o \r. Las lineas vacias, las que
+ * empiezan con # y una fila de titulos que empiece con "tipo" se ignoran.
+ * 
+ * El archivo se lee por bloques, varios hilos separan los bloques en
+ * operaciones y los bloques se aplican en orden, cada uno con
+ * Competencia.aplicarLote; asi se cumplen las mismas reglas que en los
+ * formularios (placa repetida, "Doble premio", "Doble propietario") y cada
+ * cambio queda en la bitacora. Las filas rechazadas se escriben en un
+ * archivo con su linea y el motivo.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ImportadorCsv {
+    
+    private static final int TAMAÑO_BLOQUE = 1 << 20;
+    private static final Executor DIRECTO = new Executor(){
+        @Override
+        public void execute(Runnable r) {
+            r.run();
+        }
+    };
+    
+    private final Competencia competencia;
+    private final Executor aplicador;
+    private final int hilos;
+    
+    /**
+     * Crea un importador que aplica los cambios en el hilo que llama importar().
+     * @param competencia Competencia donde se importa
+     */
+    public ImportadorCsv(Competencia competencia){
+        this(competencia, DIRECTO, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Crea un importador.
+     * @param competencia Competencia donde se importa
+     * @param aplicador Donde se aplica cada bloque a la competencia, por ejemplo
+     * el hilo de la interfaz. Debe ejecutar las tareas en orden.
+     * @param hilos Cantidad de hilos que separan los bloques
+     */
+    public ImportadorCsv(Competencia competencia, Executor aplicador, int hilos){
+        if(hilos < 1)
+            throw new IllegalArgumentException("Se necesita al menos un hilo");
+        
+        this.competencia = competencia;
+        this.aplicador = aplicador;
+        this.hilos = hilos;
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * Importa un archivo, escribiendo las filas rechazadas en el archivo
+     * archivo.rechazos.csv junto a el.
+     * @param archivo Archivo CSV en UTF-8
+     * @return Retorna el resumen de la importacion
+     * @throws IOException Si no se puede leer el archivo o escribir los rechazos
+     * @throws InterruptedException Si el hilo es interrumpido
+     */
+    public ResultadoImportacion importar(File archivo) throws IOException, InterruptedException{
+        return importar(archivo, new File(archivo.getPath()+".rechazos.csv"));
+    }
+    
+    /**
+     * Importa un archivo.
+     * @param archivo Archivo CSV en UTF-8
+     * @param rechazos Archivo donde se escriben las filas rechazadas. Solo se
+     * crea si hay rechazos; si ya existe se reemplaza.
+     * @return Retorna el resumen de la importacion
+     * @throws IOException Si no se puede leer el archivo o escribir los rechazos
+     * @throws InterruptedException Si el hilo es interrumpido
+     */
+    public ResultadoImportacion importar(File archivo, File rechazos) throws IOException,
+            InterruptedException{
+        if(rechazos.exists() && !rechazos.delete())
+            throw new IOException("No se pudo reemplazar "+rechazos);
+        
+        ExecutorService separadores = Executors.newFixedThreadPool(hilos, new ThreadFactory(){
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread hilo = new Thread(r, "importar csv");
+                hilo.setDaemon(true);
+                return hilo;
+            }
+        });
+        Conteo conteo = new Conteo(rechazos);
+        try(FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)){
+            ArrayDeque<Future<Bloque>> enCurso = new ArrayDeque<>();
+            ByteBuffer buffer = ByteBuffer.allocate(TAMAÑO_BLOQUE);
+            boolean fin = false;
+            while(!fin){
+                fin = canal.read(buffer) < 0;
+                if(!fin && buffer.hasRemaining())
+                    continue;
+                
+                byte[] bloque = cortar(buffer, fin);
+                if(bloque == null){
+                    //Una linea mas larga que el buffer, se agranda
+                    ByteBuffer mayor = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    mayor.put(buffer);
+                    buffer = mayor;
+                    continue;
+                }
+                
+                enCurso.add(separadores.submit(new Separador(bloque)));
+                if(enCurso.size() > hilos * 2)
+                    aplicar(enCurso.poll(), conteo);
+            }
+            while(!enCurso.isEmpty())
+                aplicar(enCurso.poll(), conteo);
+        }finally{
+            separadores.shutdownNow();
+            conteo.cerrar();
+        }
+        
+        return conteo.resultado();
+    }
+    
+    //-------------------------REQUERIMIENTOS OPERACIONALES---------------------//
+    /**
+     * Saca del buffer las lineas completas y deja el resto al inicio. Un \r
+     * solo tambien termina una linea, pero si es el ultimo byte leido se deja
+     * para el siguiente bloque, porque el \n que lo sigue aun no se leyo.
+     * @return Retorna los bytes hasta el ultimo salto de linea, todo si es el
+     * final del archivo, o null si no hay ninguna linea completa
+     */
+    private static byte[] cortar(ByteBuffer buffer, boolean fin){
+        int corte = buffer.position();
+        if(!fin){
+            if(corte > 0 && buffer.get(corte - 1) == '\r')
+                corte--;
+            while(corte > 0 && buffer.get(corte - 1) != '\n' && buffer.get(corte - 1) != '\r')
+                corte--;
+            if(corte == 0)
+                return null;
+        }
+        
+        byte[] bloque = new byte[corte];
+        buffer.flip();
+        buffer.get(bloque);
+        buffer.compact();
+        return bloque;
+    }
+    
+    /**
+     * Espera a que un bloque este separado y lo aplica con el aplicador.
+     */
+    private void aplicar(Future<Bloque> pendiente, final Conteo conteo) throws IOException,
+            InterruptedException{
+        final Bloque bloque;
+        try{
+            bloque = pendiente.get();
+        }catch(ExecutionException ex){
+            throw new IOException("No se pudo leer el archivo", ex.getCause());
+        }
+        
+        FutureTask<Void> tarea = new FutureTask<>(new Runnable(){
+            @Override
+            public void run() {
+                List<Fila> validas = new ArrayList<>(bloque.filas.size());
+                List<Operacion> operaciones = new ArrayList<>(bloque.filas.size());
+                for(Fila x: bloque.filas)
+                    if(x.motivo == null){
+                        validas.add(x);
+                        operaciones.add(x.operacion);
+                    }
+                
+                ResultadoLote resultado = competencia.aplicarLote(operaciones);
+                for(int i = 0; i < validas.size(); i++)
+                    validas.get(i).motivo = resultado.getMotivo(i);
+            }
+        }, null);
+        aplicador.execute(tarea);
+        try{
+            tarea.get();
+        }catch(ExecutionException ex){
+            throw new IOException("No se pudo aplicar el archivo", ex.getCause());
+        }
+        
+        conteo.sumar(bloque);
+    }
+    
+    /**
+     * Convierte una fila en la operacion que la guarda. La usa tambien la
+     * consola, que acepta las mismas filas.
+     * @param campos Campos de la fila, separados con Csv.campos()
+     * @return Retorna la operacion, o null si la linea se ignora
+     * @throws IllegalArgumentException Si la fila no es valida
+     */
+    public static Operacion operacion(List<String> campos){
+        String tipo = campos.get(0).trim().toLowerCase(Locale.ROOT);
+        switch(tipo){
+            case "carro":
+                revisar(campos, 4, 4);
+                return new Operacion(Operacion.Tipo.AGREGAR_CARRO,
+                        textos(campos, 1, 2), numeros(campos, 3));
+            case "premio":
+                revisar(campos, 5, 5);
+                return new Operacion(Operacion.Tipo.REGISTRAR_PREMIO,
+                        textos(campos, 1, 4), numeros(campos, 2, 3));
+            case "propietario":
+                //Direccion, ciudad y telefono pueden estar vacios
+                revisar(campos, 8, 5);
+                return new Operacion(Operacion.Tipo.AGREGAR_PROPIETARIO,
+                        textos(campos, 1, 3, 4, 5, 6, 7), numeros(campos, 2));
+            case "tipo":
+                return null;
+            default:
+                throw new IllegalArgumentException("Tipo de fila desconocido: "+campos.get(0));
+        }
+    }
+    
+    /**
+     * Revisa la cantidad de campos y que los primeros no esten vacios.
+     * @param obligatorios Cantidad de campos, desde el primero, que no pueden
+     * estar vacios
+     */
+    private static void revisar(List<String> campos, int cantidad, int obligatorios){
+        if(campos.size() != cantidad)
+            throw new IllegalArgumentException("Se esperaban "+cantidad+" campos y hay "+campos.size());
+        for(int i = 0; i < obligatorios; i++)
+            if(campos.get(i).trim().isEmpty())
+                throw new IllegalArgumentException("Hay campos vacios");
+    }
+    
+    private static String[] textos(List<String> campos, int... posiciones){
+        String[] textos = new String[posiciones.length];
+        for(int i = 0; i < posiciones.length; i++)
+            textos[i] = campos.get(posiciones[i]).trim();
+        return textos;
+    }
+    
+    private static int[] numeros(List<String> campos, int... posiciones){
+        int[] numeros = new int[posiciones.length];
+        for(int i = 0; i < posiciones.length; i++){
+            String x = campos.get(posiciones[i]).trim();
+            try{
+                numeros[i] = Integer.parseInt(x);
+            }catch(NumberFormatException ex){
+                throw new IllegalArgumentException("Numero invalido: "+x);
+            }
+        }
+        return numeros;
+    }
+    
+    /**
+     * Fila separada de un bloque, con su operacion o el motivo del rechazo.
+     */
+    private static class Fila {
+        final int linea;
+        final String texto;
+        final Operacion operacion;
+        String motivo;
+        
+        Fila(int linea, String texto, Operacion operacion, String motivo){
+            this.linea = linea;
+            this.texto = texto;
+            this.operacion = operacion;
+            this.motivo = motivo;
+        }
+    }
+    
+    /**
+     * Filas de un bloque y cuantas lineas tenia, para numerar los rechazos.
+     */
+    private static class Bloque {
+        final List<Fila> filas = new ArrayList<>();
+        int lineas;
+    }
+    
+    /**
+     * Tarea que separa un bloque en filas en uno de los hilos.
+     */
+    private static class Separador implements Callable<Bloque> {
+        
+        private final byte[] datos;
+        
+        Separador(byte[] datos){
+            this.datos = datos;
+        }
+
+        @Override
+        public Bloque call() {
+            Bloque bloque = new Bloque();
+            String texto = new String(datos, StandardCharsets.UTF_8);
+            int inicio = 0;
+            while(inicio < texto.length()){
+                //Las lineas terminan en \n, \r\n o \r solo, como en Excel para Mac
+                int fin = inicio;
+                while(fin < texto.length() && texto.charAt(fin) != '\n' && texto.charAt(fin) != '\r')
+                    fin++;
+                String linea = texto.substring(inicio, fin);
+                inicio = fin + 1;
+                if(fin + 1 < texto.length() && texto.charAt(fin) == '\r' && texto.charAt(fin + 1) == '\n')
+                    inicio++;
+                
+                int numero = bloque.lineas++;
+                if(linea.startsWith("\uFEFF"))
+                    linea = linea.substring(1);
+                if(linea.trim().isEmpty() || linea.startsWith("#"))
+                    continue;
+                
+                try{
+                    Operacion operacion = operacion(Csv.campos(linea));
+                    if(operacion != null)
+                        bloque.filas.add(new Fila(numero, linea, operacion, null));
+                }catch(IllegalArgumentException ex){
+                    bloque.filas.add(new Fila(numero, linea, null, ex.getMessage()));
+                }
+            }
+            return bloque;
+        }
+    }
+    
+    /**
+     * Cuenta los resultados de los bloques en orden y escribe los rechazos.
+     */
+    private static class Conteo {
+        
+        private final File archivo;
+        private Writer rechazos;
+        private long lineas, carros, premios, propietarios, rechazados;
+        
+        Conteo(File archivo){
+            this.archivo = archivo;
+        }
+        
+        void sumar(Bloque bloque) throws IOException{
+            for(Fila x: bloque.filas){
+                if(x.motivo != null){
+                    rechazar(lineas + x.linea + 1, x);
+                    continue;
+                }
+                switch(x.operacion.getTipo()){
+                    case AGREGAR_CARRO:
+                        carros++;
+                        break;
+                    case REGISTRAR_PREMIO:
+                        premios++;
+                        break;
+                    default:
+                        propietarios++;
+                }
+            }
+            lineas += bloque.lineas;
+        }
+        
+        private void rechazar(long linea, Fila fila) throws IOException{
+            if(rechazos == null){
+                rechazos = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(
+                        FileChannel.open(archivo.toPath(), StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)),
+                        StandardCharsets.UTF_8), 1 << 16);
+                rechazos.write("linea,motivo,fila\n");
+            }
+            
+            StringBuilder x = new StringBuilder();
+            x.append(linea).append(',');
+            Csv.campo(x, sinSaltos(fila.motivo));
+            x.append(',');
+            Csv.campo(x, sinSaltos(fila.texto));
+            rechazos.write(x.append('\n').toString());
+            rechazados++;
+        }
+        
+        /**
+         * Escribe los saltos de linea como \r y \n, asi un rechazo siempre se
+         * puede escribir en el CSV de rechazos.
+         */
+        private static String sinSaltos(String texto){
+            if(texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0)
+                return texto;
+            
+            return texto.replace("\r", "\\r").replace("\n", "\\n");
+        }
+        
+        void cerrar() throws IOException{
+            if(rechazos != null)
+                rechazos.close();
+        }
+        
+        ResultadoImportacion resultado(){
+            return new ResultadoImportacion(lineas, carros, premios, propietarios, rechazados,
+                    rechazos == null ? null : archivo);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.intercambio;
+
+/**
+ * Escribe textos como cadenas JSON, para el NDJSON del Exportador y las
+ * respuestas de la consola. Las comillas, la barra invertida y los caracteres
+ * de control se escapan, asi una cadena nunca tiene un salto de linea.
+ * @author Emanuel Martinez Pinzon
+ */
+public class Json {
+    
+    private static final char[] HEXADECIMAL = "0123456789abcdef".toCharArray();
+    
+    private Json(){
+    }
+    
+    /**
+     * Escribe un texto entre comillas, con los caracteres escapados.
+     * @param salida Destino
+     * @param texto Texto a escribir, null se escribe como null
+     */
+    public static void texto(StringBuilder salida, String texto){
+        if(texto == null){
+            salida.append("null");
+            return;
+        }
+        
+        salida.append('"');
+        for(int i = 0; i < texto.length(); i++){
+            char c = texto.charAt(i);
+            switch(c){
+                case '"':
+                    salida.append("\\\"");
+                    break;
+                case '\\':
+                    salida.append("\\\\");
+                    break;
+                case '\n':
+                    salida.append("\\n");
+                    break;
+                case '\r':
+                    salida.append("\\r");
+                    break;
+                case '\t':
+                    salida.append("\\t");
+                    break;
+                default:
+                    if(c < 0x20)
+                        salida.append("\\u00").append(HEXADECIMAL[c >> 4]).append(HEXADECIMAL[c & 0xf]);
+                    else
+                        salida.append(c);
+            }
+        }
+        salida.append('"');
+    }
+}
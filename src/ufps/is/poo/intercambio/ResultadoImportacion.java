@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.intercambio;
+
+import java.io.File;
+
+/**
+ * Resumen de una importacion: cuantas filas de cada tipo se guardaron y
+ * cuantas se rechazaron.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ResultadoImportacion {
+    
+    private final long lineas;
+    private final long carros;
+    private final long premios;
+    private final long propietarios;
+    private final long rechazados;
+    private final File rechazos;
+    
+    ResultadoImportacion(long lineas, long carros, long premios, long propietarios,
+            long rechazados, File rechazos){
+        this.lineas = lineas;
+        this.carros = carros;
+        this.premios = premios;
+        this.propietarios = propietarios;
+        this.rechazados = rechazados;
+        this.rechazos = rechazos;
+    }
+
+    public long getLineas() {
+        return lineas;
+    }
+
+    public long getCarros() {
+        return carros;
+    }
+
+    public long getPremios() {
+        return premios;
+    }
+
+    public long getPropietarios() {
+        return propietarios;
+    }
+
+    public long getRechazados() {
+        return rechazados;
+    }
+
+    /**
+     * @return Retorna el archivo con las filas rechazadas, o null si no hubo
+     */
+    public File getRechazos() {
+        return rechazos;
+    }
+    
+    @Override
+    public String toString(){
+        String resumen = "Se importaron "+carros+" carros, "+premios+" premios y "
+                +propietarios+" propietarios.";
+        if(rechazados > 0)
+            resumen += "\nSe rechazaron "+rechazados+" filas, ver "+rechazos;
+        
+        return resumen;
+    }
+}
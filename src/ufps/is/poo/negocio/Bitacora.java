@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.List;
+
+/**
+ * Destino donde la Competencia guarda cada cambio que hace, para poder
+ * repetirlos despues y recuperar los datos.
+ * @author Emanuel Martinez Pinzon
+ */
+public interface Bitacora {
+    
+    /**
+     * Guarda una operacion que ya se aplico. Se llama en el mismo hilo que hizo
+     * el cambio, asi que no deberia esperar a que llegue al disco.
+     * @param operacion Operacion aplicada
+     */
+    void registrar(Operacion operacion);
+    
+    /**
+     * Guarda las operaciones de una transaccion confirmada. Al recuperar los
+     * datos se deben repetir todas o ninguna.
+     * @param operaciones Operaciones aplicadas, en orden
+     */
+    void registrarGrupo(List<Operacion> operaciones);
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+
+/**
+ * Carga de datos que ya pasaron las reglas de la competencia, como los de una
+ * Instantanea, en una Competencia vacia. Cada carro se arma directo en los
+ * indices: no se revisan premios ni puestos repetidos, no se toma un cerrojo
+ * por cambio y nada se anota en la bitacora ni en una transaccion. Solo se
+ * rechaza una placa repetida y un propietario repetido en un año, que saldrian
+ * de un archivo mal escrito.
+ * 
+ * Se usa con try en un solo hilo:
+ * <pre>
+ * try(Carga carga = competencia.iniciarCarga(carros)){
+ *     carga.carro("ABC123", "Mazda", 2012);
+ *     carga.premio(2014, 1, "Rally");
+ *     carga.propietario(2013, "Ana", "1090", "Calle 1", "Cucuta", "5551234");
+ * }
+ * </pre>
+ * Mientras esta abierta la competencia tiene todas las franjas bloqueadas y
+ * los eventos se guardan como en un lote.
+ * @author Emanuel Martinez Pinzon
+ */
+public class Carga implements AutoCloseable{
+    
+    private final Competencia competencia;
+    private Carro carro;
+    private ArrayList<Premio> premios;
+    private boolean abierta;
+    
+    Carga(Competencia competencia){
+        this.competencia = competencia;
+        this.abierta = true;
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * Agrega un carro. Los premios y propietarios que siguen son suyos.
+     * @param placa Placa del carro
+     * @param marca Marca del carro
+     * @param modelo Modelo del carro
+     * @return Retorna false si la placa esta vacia o ya esta registrada
+     */
+    public boolean carro(String placa, String marca, int modelo){
+        revisar();
+        ArrayList<Premio> victorias = new ArrayList<>();
+        Carro c = competencia.cargarCarro(placa, marca, modelo, victorias);
+        if(c == null)
+            return false;
+        
+        carro = c;
+        premios = victorias;
+        return true;
+    }
+    
+    /**
+     * Agrega un premio al ultimo carro.
+     * @param anio Año del premio
+     * @param puesto Puesto en el evento
+     * @param evento Evento del premio
+     * @throws IllegalStateException Si todavia no hay un carro
+     */
+    public void premio(int anio, int puesto, String evento){
+        revisarCarro();
+        competencia.cargarPremio(carro, premios, new Premio(anio, puesto, evento));
+    }
+    
+    /**
+     * Agrega un propietario al ultimo carro.
+     * @param año Año de compra
+     * @param nombre Nombre del propietario
+     * @param cc NIT del propietario
+     * @param direccion Direccion del propietario
+     * @param ciudad Ciudad del propietario
+     * @param telefono Telefono del propietario
+     * @return Retorna false si ese NIT ya esta en ese año
+     * @throws IllegalStateException Si todavia no hay un carro
+     */
+    public boolean propietario(int año, String nombre, String cc, String direccion,
+            String ciudad, String telefono){
+        revisarCarro();
+        return competencia.cargarPropietario(carro, año,
+                new Propietario(nombre, cc, direccion, ciudad, telefono));
+    }
+    
+    /**
+     * Termina la carga: entrega los eventos y libera las franjas. No hace
+     * nada si ya termino.
+     */
+    @Override
+    public void close(){
+        if(!abierta)
+            return;
+        
+        abierta = false;
+        competencia.terminarCarga();
+    }
+    
+    //-----------------------REQUERIMIENTOS OPERACIONALES----------------------//
+    public boolean estaAbierta(){
+        return abierta;
+    }
+    
+    private void revisar(){
+        if(!abierta)
+            throw new IllegalStateException("La carga ya termino");
+    }
+    
+    private void revisarCarro(){
+        revisar();
+        if(carro == null)
+            throw new IllegalStateException("Primero se debe agregar un carro");
+    }
+}
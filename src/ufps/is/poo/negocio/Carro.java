@@ -16,10 +16,13 @@
  */
 package ufps.is.poo.negocio;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -34,7 +37,11 @@ public class Carro{
     private String placa;
     private String marca;
     private int modelo;
-    private HashMap<Integer, ArrayList<Propietario>> propietarios;
+    private HashMap<Integer, LinkedHashMap<String, Propietario>> propietarios;
+    private IndicePropietarios indice;
+    private long registro;
+    //Copia de solo lectura para las consultas sin cerrojo, null si cambio
+    private volatile EstadoCarro estado;
     
     public Carro(String placa) {
         this.placa = placa;
@@ -50,7 +57,9 @@ public class Carro{
     //--------------------REQUERIMIENTOS FUNCIONALES---------------------------//
     /**
      * Añade un propietario al HashMap organizandolos por año, cómo llave y cada
-     * propietario como un objeto de un arraylist en value..
+     * año guarda sus propietarios en un LinkedHashMap con el NIT normalizado
+     * como llave, asi se conserva el orden de registro y las busquedas por NIT
+     * no recorren la lista.
      * @param año Año en que el propietario fue dueño del carro
      * @param nombre Nombre del propietario
      * @param cc NIT del propietario - Con esto se comparan todos los propietarios.
@@ -62,19 +71,47 @@ public class Carro{
      */
     protected boolean agregarPropietario(int año, String nombre, String cc,
             String direccion, String ciudad, String telefono) throws Exception{
-        if(!propietarios.containsKey(año))
-            propietarios.put(año, new ArrayList<Propietario>());
+        estado = null;
+        LinkedHashMap<String, Propietario> dueños = propietarios.get(año);
+        if(dueños == null){
+            dueños = new LinkedHashMap<>();
+            propietarios.put(año, dueños);
+        }
         
         if(validarExistenciaPropietario(año, cc))
             throw new Exception("Doble propietario");
         
-        ArrayList<Propietario> dueños = propietarios.get(año);
-        if(dueños!=null){
-            dueños.add(new Propietario(nombre, cc, direccion, ciudad, telefono));
-            return true;
+        dueños.put(Competencia.normalizar(cc), new Propietario(nombre, cc, direccion, ciudad, telefono));
+        if(indice != null)
+            indice.registrar(cc, this, año);
+        return true;
+    }
+    
+    /**
+     * Añade un propietario de una Carga, sin revisar antes si existe: si el
+     * NIT ya estaba en ese año se deja el que estaba.
+     * @param año Año en que el propietario fue dueño del carro
+     * @param propietario Propietario a añadir
+     * @return Retorna false si el NIT ya estaba en ese año
+     */
+    boolean cargarPropietario(int año, Propietario propietario){
+        estado = null;
+        LinkedHashMap<String, Propietario> dueños = propietarios.get(año);
+        if(dueños == null){
+            dueños = new LinkedHashMap<>();
+            propietarios.put(año, dueños);
         }
         
-        return false;
+        String llave = Competencia.normalizar(propietario.getCc());
+        Propietario anterior = dueños.put(llave, propietario);
+        if(anterior != null){
+            dueños.put(llave, anterior);
+            return false;
+        }
+        
+        if(indice != null)
+            indice.registrar(propietario.getCc(), this, año);
+        return true;
     }
     
     /**
@@ -84,13 +121,16 @@ public class Carro{
      * @return Retorna true dado el caso elimine el propietario
      */
     protected boolean borrarPropietario(int año, String cc){
-        ArrayList<Propietario> prop = propietarios.get(año);
-        if(prop != null)
-            for(Propietario x: prop)
-                if(x.getCc().equalsIgnoreCase(cc)){
-                    prop.remove(x);
-                    return true;
-                }
+        estado = null;
+        LinkedHashMap<String, Propietario> prop = propietarios.get(año);
+        if(prop != null){
+            Propietario x = prop.remove(Competencia.normalizar(cc));
+            if(x != null){
+                if(indice != null)
+                    indice.liberar(x.getCc(), this, año);
+                return true;
+            }
+        }
         
         return false;
     }    
@@ -101,27 +141,37 @@ public class Carro{
      * @return Retorna true si consigue eliminar todos los propietarios de un año
      */
     protected boolean borrarTodosPropietarios(int año){
-        ArrayList<Propietario> prop = propietarios.get(año);
-        if(prop != null)
-            for(Propietario x: prop){
-                prop.removeAll(prop);
-                return true;
-            }
+        estado = null;
+        LinkedHashMap<String, Propietario> prop = propietarios.get(año);
+        if(prop == null || prop.isEmpty())
+            return false;
         
-        return false;
+        if(indice != null)
+            for(Propietario x: prop.values())
+                indice.liberar(x.getCc(), this, año);
+        prop.clear();
+        return true;
     }
     
     /**
      * Elimina todos los propietarios de un carro.
-     * @return Retorna true porque siempre limpia el ArrayList
+     * @return Retorna true porque siempre limpia el HashMap
      */
     protected boolean borrarTodosPropietarios(){
-        propietarios.clear();        
+        estado = null;
+        IndicePropietarios actual = indice;
+        setIndice(null);
+        //Se vacia cada año en su lugar, asi las vistas de obtenerPropietarios
+        //no quedan con los propietarios borrados
+        for(LinkedHashMap<String, Propietario> prop: propietarios.values())
+            prop.clear();
+        indice = actual;
         return true;
     }
     
     /**
-     * Modifica la informacion de un propietario
+     * Modifica la informacion de un propietario. Si cambia el NIT el propietario
+     * conserva su posicion en el año.
      * @param año Año de compra
      * @param propietario NIT del propietario
      * @param nuevoNombre Nuevo nombre
@@ -129,23 +179,44 @@ public class Carro{
      * @param nuevaDireccion Nueva direccion
      * @param nuevaCiudad Nueva ciudad
      * @param nuevoTelefono Nuevo telefono
-     * @return Retorna true cuando guarda la informacion
+     * @return Retorna true cuando guarda la informacion, false si no existe el
+     * propietario o si el nuevo NIT ya esta registrado en ese año.
      */
     protected boolean modificarPropietario(int año, String propietario, String nuevoNombre,
             String nuevoCC, String nuevaDireccion, String nuevaCiudad, String nuevoTelefono){
-        ArrayList<Propietario> prop = propietarios.get(año);
-        if(prop != null)
-            for(Propietario x: prop)
-                if(x.getCc().equalsIgnoreCase(propietario)){
-                    x.setNombre(nuevoNombre);
-                    x.setCc(nuevoCC);
-                    x.setDireccion(nuevaDireccion);
-                    x.setCiudad(nuevaCiudad);
-                    x.setTelefono(nuevoTelefono);
-                    return true;
-                }
+        estado = null;
+        LinkedHashMap<String, Propietario> prop = propietarios.get(año);
+        if(prop == null)
+            return false;
         
-        return false;
+        String llave = Competencia.normalizar(propietario);
+        String nuevaLlave = Competencia.normalizar(nuevoCC);
+        Propietario x = prop.get(llave);
+        if(x == null)
+            return false;
+        
+        if(!llave.equals(nuevaLlave)){
+            if(prop.containsKey(nuevaLlave))
+                return false;
+            
+            //Se vuelve a llenar el año para cambiar la llave sin mover al
+            //propietario al final del orden de registro.
+            ArrayList<String> llaves = new ArrayList<>(prop.keySet());
+            ArrayList<Propietario> valores = new ArrayList<>(prop.values());
+            llaves.set(llaves.indexOf(llave), nuevaLlave);
+            llenar(prop, llaves, valores);
+        }
+        
+        if(indice != null){
+            indice.liberar(x.getCc(), this, año);
+            indice.registrar(nuevoCC, this, año);
+        }
+        x.setNombre(nuevoNombre);
+        x.setCc(nuevoCC);
+        x.setDireccion(nuevaDireccion);
+        x.setCiudad(nuevaCiudad);
+        x.setTelefono(nuevoTelefono);
+        return true;
     }
     
     //----------------------REQUERIMIENTOS OPERACIONALES-----------------------//
@@ -156,14 +227,9 @@ public class Carro{
      * @param cc NIT para comparar el propietario
      * @return Retorna true si existe el propietario.
      */
-    private boolean validarExistenciaPropietario(int año, String cc){
-        ArrayList<Propietario> propietario = propietarios.get(año);
-        
-        for(Propietario x: propietario)
-            if(x.getCc().equalsIgnoreCase(cc))
-                return true;
-        
-        return false;
+    protected boolean validarExistenciaPropietario(int año, String cc){
+        LinkedHashMap<String, Propietario> propietario = propietarios.get(año);
+        return propietario != null && propietario.containsKey(Competencia.normalizar(cc));
     }
     
     /**
@@ -172,15 +238,26 @@ public class Carro{
      * @return Retorna un String con la informacion de los propietarios.
      */
     protected String imprimirPropietariosParaUnAño(int año){
-        String propietario = "";
-               
-        if(propietarios.containsKey(año)){
-            ArrayList<Propietario> prop = propietarios.get(año);
-            for(Propietario x: prop)
-                propietario += "\n"+x.toString();
+        StringBuilder propietario = new StringBuilder();
+        try{
+            escribirPropietariosParaUnAño(propietario, año);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
         }
             
-        return propietario;
+        return propietario.toString();
+    }
+    
+    /**
+     * Escribe todos los propietarios de un año en la salida que recibe, sin
+     * armar la cadena completa en memoria.
+     * @param salida Destino del reporte: un Writer, un StringBuilder, etc.
+     * @param año Año para imprimir los propietarios.
+     * @throws IOException Si la salida falla al escribir
+     */
+    protected void escribirPropietariosParaUnAño(Appendable salida, int año) throws IOException{
+        for(Propietario x: obtenerPropietarios(año))
+            salida.append('\n').append(x.toString());
     }
     
     /**
@@ -191,49 +268,64 @@ public class Carro{
      * @return Retorna la informacion que reune.
      */
     protected String imprimirInfoBasicPropietariosParaUnAño(int año){
-        String propietario = "";
-        
-        ArrayList<Propietario> prop = propietarios.get(año);
-        if(prop!=null)
-            for(Propietario x: prop)
-                propietario += "\n"+x.infoBasic();
+        StringBuilder propietario = new StringBuilder();
+        try{
+            escribirInfoBasicPropietariosParaUnAño(propietario, año);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
+        }
         
-        return propietario;
+        return propietario.toString();
     }
     
     /**
-     * Busca en los propietarios a ver si existe un propietario con la cedula
-     * @param cc NIT para comprobar un propietario.
-     * @return Retorna true si existe el propietario
+     * Escribe la informacion basica de los propietarios de un año en la salida
+     * que recibe.
+     * @param salida Destino del reporte
+     * @param año Año para imprimir los propietarios.
+     * @throws IOException Si la salida falla al escribir
      */
-    protected boolean comprobarPropietario(String cc){
-        Collection<ArrayList<Propietario>> prop = propietarios.values();
-        Iterator<ArrayList<Propietario>> it = prop.iterator();
-        
-        ArrayList<Propietario> p = it.next();
-        for(Propietario x: p)
-            if(x.getCc().equalsIgnoreCase(cc))
-                return true;
+    protected void escribirInfoBasicPropietariosParaUnAño(Appendable salida, int año) throws IOException{
+        for(Propietario x: obtenerPropietarios(año))
+            salida.append('\n').append(x.infoBasic());
+    }
+    
+    /**
+     * Obtiene los propietarios de un año sin copiar ni concatenar su informacion.
+     * @param año Año de compra
+     * @return Retorna una vista de solo lectura en orden de registro, que sigue
+     * los cambios del año. Si el año nunca tuvo propietarios es una lista vacia
+     * que no cambia
+     */
+    protected Collection<Propietario> obtenerPropietarios(int año){
+        LinkedHashMap<String, Propietario> prop = propietarios.get(año);
+        if(prop == null)
+            return Collections.<Propietario>emptyList();
         
-        return false;
+        return Collections.unmodifiableCollection(prop.values());
     }
     
     /**
-     * Obtiene un año en que el propietario fue dueño del vehiculo.
-     * @param cc NIT para obtener el año en que un propietario fue dueño del carro.
-     * @return Retorna el año.
+     * Obtiene los años en que el carro tiene propietarios registrados.
+     * @return Retorna una vista de solo lectura, sin orden, que puede incluir
+     * años a los que se les borraron todos los propietarios
      */
-    protected int obtenerAño(String cc){
-        Iterator it = propietarios.entrySet().iterator();
-        while(it.hasNext()){
-            Map.Entry e = (Map.Entry) it.next();
-            ArrayList<Propietario> p = (ArrayList<Propietario>) e.getValue();
-            for(Propietario x: p)
-                if(x.getCc().equalsIgnoreCase(cc))
-                    return (Integer) e.getKey();
-        }
+    protected Collection<Integer> obtenerAñosPropietarios(){
+        return Collections.unmodifiableCollection(propietarios.keySet());
+    }
+    
+    /**
+     * Busca un propietario de un año por su NIT.
+     * @param año Año de compra
+     * @param cc NIT del propietario
+     * @return Retorna el propietario o null si no existe
+     */
+    protected Propietario obtenerPropietario(int año, String cc){
+        LinkedHashMap<String, Propietario> prop = propietarios.get(año);
+        if(prop != null)
+            return prop.get(Competencia.normalizar(cc));
         
-        return 0;
+        return null;
     }
     
     /**
@@ -242,13 +334,11 @@ public class Carro{
      * @return Retorna un String con los NIT de los propietarios en un año
      */
     protected String concatenarPropietarios(int año){
-        String propietario = "";
-        ArrayList<Propietario> prop = propietarios.get(año);
-        if(prop != null)
-            for(Propietario p: prop)
-                propietario += p.getCc()+"~";
+        StringBuilder propietario = new StringBuilder();
+        for(Propietario p: obtenerPropietarios(año))
+            propietario.append(p.getCc()).append('~');
         
-        return propietario;
+        return propietario.toString();
     }
     
     /**
@@ -258,42 +348,156 @@ public class Carro{
      * @return Retorna la informacion basica del propieatrio
      */
     protected String obtenerInfoPropietario(int año, String propietario){
-        ArrayList<Propietario> prop = propietarios.get(año);
-        if(prop != null)
-            for(Propietario x: prop)
-                if(x.getCc().equalsIgnoreCase(propietario))
-                    return x.getNombre()+"~"+x.getCc()+"~"+x.getDireccion()+"~"
-                            +x.getCiudad()+"~"+x.getTelefono();
+        Propietario x = obtenerPropietario(año, propietario);
+        if(x != null)
+            return x.getNombre()+"~"+x.getCc()+"~"+x.getDireccion()+"~"
+                    +x.getCiudad()+"~"+x.getTelefono();
                 
         return null;
     }
 
+    /**
+     * Busca en que posicion del orden de registro esta un propietario.
+     * @param año Año de compra
+     * @param cc NIT del propietario
+     * @return Retorna la posicion o -1 si no existe
+     */
+    protected int posicionPropietario(int año, String cc){
+        LinkedHashMap<String, Propietario> prop = propietarios.get(año);
+        if(prop == null)
+            return -1;
+
+        String llave = Competencia.normalizar(cc);
+        int posicion = 0;
+        for(String x: prop.keySet()){
+            if(x.equals(llave))
+                return posicion;
+            posicion++;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Vuelve a poner un propietario que se habia borrado, en la posicion que
+     * tenia. Lo usa la competencia para deshacer una transaccion.
+     * @param año Año de compra
+     * @param posicion Posicion en el orden de registro, o la cantidad de
+     * propietarios del año para ponerlo al final
+     * @param propietario Propietario borrado
+     */
+    protected void reponerPropietario(int año, int posicion, Propietario propietario){
+        estado = null;
+        LinkedHashMap<String, Propietario> prop = propietarios.get(año);
+        if(prop == null){
+            prop = new LinkedHashMap<>();
+            propietarios.put(año, prop);
+        }
+
+        String llave = Competencia.normalizar(propietario.getCc());
+        if(posicion >= prop.size())
+            prop.put(llave, propietario);
+        else{
+            //Igual que en modificarPropietario, se vuelve a llenar el año para
+            //no dejar al propietario al final.
+            ArrayList<String> llaves = new ArrayList<>(prop.keySet());
+            ArrayList<Propietario> valores = new ArrayList<>(prop.values());
+            llaves.add(posicion, llave);
+            valores.add(posicion, propietario);
+            llenar(prop, llaves, valores);
+        }
+        if(indice != null)
+            indice.registrar(propietario.getCc(), this, año);
+    }
+
+    /**
+     * Vacia el mapa de un año y lo llena en el orden de las listas. Se usa el
+     * mismo mapa, asi las vistas de obtenerPropietarios siguen al dia.
+     */
+    private static void llenar(LinkedHashMap<String, Propietario> prop, List<String> llaves,
+            List<Propietario> valores){
+        prop.clear();
+        for(int i = 0; i < llaves.size(); i++)
+            prop.put(llaves.get(i), valores.get(i));
+    }
+
     //-------------------------GETTER'S Y SETTER'S----------------------------//
+    /**
+     * Cambia el indice de propietarios al que reporta el carro. Los propietarios
+     * ya registrados se quitan del indice anterior y se agregan al nuevo, con
+     * null el carro queda por fuera de cualquier indice.
+     * @param indice Indice de la competencia o null
+     */
+    protected void setIndice(IndicePropietarios indice){
+        for(Map.Entry<Integer, LinkedHashMap<String, Propietario>> e: propietarios.entrySet())
+            for(Propietario x: e.getValue().values()){
+                if(this.indice != null)
+                    this.indice.liberar(x.getCc(), this, e.getKey());
+                if(indice != null)
+                    indice.registrar(x.getCc(), this, e.getKey());
+            }
+        
+        this.indice = indice;
+    }
+    
+    /**
+     * @return Retorna el numero con el que la competencia registro el carro,
+     * sirve para recorrer los carros en orden de registro.
+     */
+    protected long getRegistro() {
+        return registro;
+    }
+
+    protected void setRegistro(long registro) {
+        this.registro = registro;
+    }
+    
+    /**
+     * @return Retorna la copia de solo lectura del carro que guardo la
+     * competencia, o null si el carro cambio despues de guardarla
+     */
+    EstadoCarro getEstado() {
+        return estado;
+    }
+    
+    /**
+     * Guarda una copia de solo lectura del carro para las consultas sin
+     * cerrojo. Los cambios del carro la borran; los de sus premios, que
+     * guarda la competencia, los borra ella.
+     * @param estado Copia del carro como esta ahora, o null para borrarla
+     */
+    void setEstado(EstadoCarro estado) {
+        this.estado = estado;
+    }
+    
     protected int cantidadPropietarios(){
         return propietarios.size();
     }
     
-    protected String getPlaca() {
+    public String getPlaca() {
         return placa;
     }
 
     protected void setPlaca(String placa) {
+        estado = null;
         this.placa = placa;
     }
 
-    protected String getMarca() {
+    public String getMarca() {
         return marca;
     }
 
     protected void setMarca(String marca) {
+        estado = null;
         this.marca = marca;
     }
 
-    protected int getModelo() {
+    public int getModelo() {
         return modelo;
     }
 
     protected void setModelo(int modelo) {
+        estado = null;
         this.modelo = modelo;
     }
     
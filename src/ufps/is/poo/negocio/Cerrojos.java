@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Cerrojos de una Competencia concurrente. Los carros se reparten en franjas
+ * segun el hash de la placa y cada franja tiene su propio cerrojo, asi los
+ * cambios a carros de franjas distintas no se esperan entre si. Aparte hay un
+ * cerrojo global para los puestos de los premios, que es lo unico que se
+ * revisa entre carros distintos.
+ * 
+ * Para no bloquearse entre hilos los cerrojos se toman siempre en este orden:
+ * franjas de menor a mayor y despues el de premios. Sin franjas todos los
+ * cerrojos son vacios y la competencia funciona como antes, en un solo hilo.
+ * 
+ * Cada franja lleva ademas un sello que sube al tomar y al soltar su cerrojo
+ * de escritura: es impar mientras alguien escribe. Un lector que lee sin
+ * cerrojo toma el sello antes y lo valida despues; si no cambio, nadie
+ * escribio en la franja mientras tanto.
+ * @author Emanuel Martinez Pinzon
+ */
+class Cerrojos{
+    
+    private final ReentrantReadWriteLock[] franjas;
+    private final Lock[] escrituras;
+    private final AtomicLongArray sellos;
+    private final ReentrantReadWriteLock premios;
+    private final Lock escrituraTotal;
+    private final Lock lecturaTotal;
+    
+    /**
+     * @param franjas Cantidad de franjas, 0 para una competencia de un solo hilo
+     */
+    Cerrojos(int franjas){
+        if(franjas < 0)
+            throw new IllegalArgumentException("Cantidad de franjas invalida: "+franjas);
+        
+        this.franjas = new ReentrantReadWriteLock[franjas];
+        this.escrituras = new Lock[franjas];
+        this.sellos = new AtomicLongArray(franjas);
+        for(int i = 0; i < franjas; i++){
+            this.franjas[i] = new ReentrantReadWriteLock();
+            this.escrituras[i] = new Escritura(i);
+        }
+        this.premios = franjas > 0 ? new ReentrantReadWriteLock() : null;
+        
+        Lock[] escrituras = new Lock[franjas + 1];
+        Lock[] lecturas = new Lock[franjas + 1];
+        for(int i = 0; i < franjas; i++){
+            escrituras[i] = this.escrituras[i];
+            lecturas[i] = this.franjas[i].readLock();
+        }
+        escrituras[franjas] = escrituraPremios();
+        lecturas[franjas] = lecturaPremios();
+        this.escrituraTotal = franjas > 0 ? new Varios(escrituras) : VACIO;
+        this.lecturaTotal = franjas > 0 ? new Varios(lecturas) : VACIO;
+    }
+    
+    boolean esConcurrente(){
+        return franjas.length > 0;
+    }
+    
+    Lock escritura(String placa){
+        return franjas.length > 0 ? escrituras[franja(placa)] : VACIO;
+    }
+    
+    Lock lectura(String placa){
+        return franjas.length > 0 ? franjas[franja(placa)].readLock() : VACIO;
+    }
+    
+    /**
+     * Cerrojo de escritura de dos placas, para cambiar la placa de un carro.
+     * Si caen en la misma franja es uno solo.
+     */
+    Lock escritura(String placa, String otra){
+        if(franjas.length == 0)
+            return VACIO;
+        
+        int a = franja(placa), b = franja(otra);
+        if(a == b)
+            return escrituras[a];
+        
+        return new Varios(escrituras[Math.min(a, b)], escrituras[Math.max(a, b)]);
+    }
+    
+    /**
+     * Cerrojo de escritura de todas las franjas y de los premios, para los
+     * cambios que tocan todos los carros.
+     */
+    Lock escrituraTotal(){
+        return escrituraTotal;
+    }
+    
+    Lock lecturaTotal(){
+        return lecturaTotal;
+    }
+    
+    Lock escrituraPremios(){
+        return premios != null ? premios.writeLock() : VACIO;
+    }
+    
+    Lock lecturaPremios(){
+        return premios != null ? premios.readLock() : VACIO;
+    }
+    
+    /**
+     * Franja de una placa ya normalizada, para tomar y validar su sello sin
+     * volver a calcularla.
+     * @param llave Placa normalizada, no null
+     * @return Retorna el numero de la franja
+     */
+    int franjaDe(String llave){
+        //Se mezclan los bits altos para que placas parecidas no caigan juntas
+        int hash = llave.hashCode();
+        hash ^= (hash >>> 16);
+        return (hash & 0x7fffffff) % franjas.length;
+    }
+    
+    /**
+     * Toma el sello de una franja para leer sin cerrojo.
+     * @return Retorna el sello, que se debe pasar a validar despues de leer
+     */
+    long sello(int franja){
+        return sellos.get(franja);
+    }
+    
+    /**
+     * Revisa que nadie escribio en una franja desde que se tomo el sello. Lo
+     * que se leyo entre sello y validar solo sirve si da true.
+     * @param franja Franja con la que se tomo el sello
+     * @param sello Sello que retorno sello(franja)
+     * @return Retorna true si no habia escritor al tomar el sello y la franja
+     * no cambio desde entonces
+     */
+    boolean validar(int franja, long sello){
+        return (sello & 1) == 0 && sellos.get(franja) == sello;
+    }
+    
+    private int franja(String placa){
+        String llave = Competencia.normalizar(placa);
+        return llave != null ? franjaDe(llave) : 0;
+    }
+    
+    /**
+     * Cerrojo que no bloquea nada, para la competencia de un solo hilo.
+     */
+    static final Lock VACIO = new Lock(){
+        @Override
+        public void lock() {
+        }
+
+        @Override
+        public void lockInterruptibly() {
+        }
+
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    };
+    
+    /**
+     * Cerrojo de escritura de una franja que sube el sello al tomarlo y al
+     * soltarlo. Como es reentrante, solo lo sube la primera vez que se toma y
+     * la ultima que se suelta.
+     */
+    private class Escritura implements Lock{
+        private final int franja;
+        
+        Escritura(int franja){
+            this.franja = franja;
+        }
+        
+        @Override
+        public void lock() {
+            franjas[franja].writeLock().lock();
+            abrir();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            franjas[franja].writeLock().lockInterruptibly();
+            abrir();
+        }
+
+        @Override
+        public boolean tryLock() {
+            if(!franjas[franja].writeLock().tryLock())
+                return false;
+            
+            abrir();
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            if(!franjas[franja].writeLock().tryLock(time, unit))
+                return false;
+            
+            abrir();
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            if(franjas[franja].getWriteHoldCount() == 1)
+                sellos.incrementAndGet(franja);
+            franjas[franja].writeLock().unlock();
+        }
+        
+        private void abrir(){
+            if(franjas[franja].getWriteHoldCount() == 1)
+                sellos.incrementAndGet(franja);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * Varios cerrojos que se toman en orden y se sueltan al reves.
+     */
+    private static class Varios implements Lock{
+        private final Lock[] cerrojos;
+        
+        Varios(Lock... cerrojos){
+            this.cerrojos = cerrojos;
+        }
+        
+        @Override
+        public void lock() {
+            for(Lock x: cerrojos)
+                x.lock();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            int i = 0;
+            try{
+                for(; i < cerrojos.length; i++)
+                    cerrojos[i].lockInterruptibly();
+            }catch(InterruptedException ex){
+                soltar(i);
+                throw ex;
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            for(int i = 0; i < cerrojos.length; i++)
+                if(!cerrojos[i].tryLock()){
+                    soltar(i);
+                    return false;
+                }
+            return true;
+        }
+
+        /**
+         * Toma los cerrojos en orden con un solo plazo para todos: cada uno
+         * espera lo que le queda al plazo. Si uno no se logra se sueltan los
+         * que ya se tomaron.
+         */
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long limite = System.nanoTime() + unit.toNanos(time);
+            int i = 0;
+            try{
+                for(; i < cerrojos.length; i++)
+                    if(!cerrojos[i].tryLock(limite - System.nanoTime(), TimeUnit.NANOSECONDS)){
+                        soltar(i);
+                        return false;
+                    }
+            }catch(InterruptedException ex){
+                soltar(i);
+                throw ex;
+            }
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            soltar(cerrojos.length);
+        }
+        
+        /**
+         * Suelta los primeros cerrojos, del ultimo al primero.
+         * @param cantidad Cantidad de cerrojos tomados
+         */
+        private void soltar(int cantidad){
+            while(--cantidad >= 0)
+                cerrojos[cantidad].unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -16,25 +16,120 @@
  */
 package ufps.is.poo.negocio;
 
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Esta es la clase contenedora del proyecto, tiene todos los metodos principales
  * que interactuan con la GUI. Y algunos metodos de apoyo para los requerimientos
  * funcionales.
+ * 
+ * Con new Competencia() se usa desde un solo hilo, como la consola. Con
+ * Competencia.concurrente() varios hilos pueden cambiarla y consultarla al
+ * mismo tiempo: cada metodo bloquea solo la franja de la placa que toca, asi
+ * los cambios a carros distintos no se esperan, y solo los puestos de los
+ * premios se revisan con un cerrojo comun. Los oyentes se llaman con el carro
+ * bloqueado, asi que en ese modo no deben consultar la competencia en el
+ * mismo hilo; lo normal es pasar el aviso a otro hilo como hace OyenteSwing.
+ * Las consultas que arman texto (imprimir, escribir, concatenar y obtenerInfo)
+ * no toman cerrojos: leen una copia de solo lectura de cada carro y validan
+ * con el sello de su franja que nadie escribio mientras tanto. Si alguien
+ * escribio, o el carro cambio desde la ultima copia, leen con el cerrojo.
+ * Los carros que se agregan al mismo tiempo desde hilos distintos no tienen un
+ * orden definido y al recuperarlos de la bitacora pueden quedar en otro.
+ * 
+ * Los reportes largos pueden leer de una Foto: desde la primera llamada a
+ * foto() cada cambio publica una version inmutable nueva, asi quien recorre
+ * una foto ve un solo momento de la competencia sin bloquear a nadie. Con un
+ * Escritor todos los cambios los aplica un solo hilo, por lotes.
  * @author Emanuel Martinez Pinzon
  * @version 1.4 24/07/15
  */
 public class Competencia{
     
-    private HashMap<Carro, ArrayList<Premio>> copas;
+    /**
+     * Franjas de una competencia concurrente, si no se indican otras
+     */
+    public static final int FRANJAS = 64;
+    
+    //Son volatile porque borrarTodo en una transaccion las cambia por otras
+    private volatile ConcurrentHashMap<Carro, ArrayList<Premio>> copas;
+    private volatile ConcurrentHashMap<String, Carro> indicePlacas;
+    private volatile IndicePremios indicePremios;
+    private volatile IndicePropietarios indicePropietarios;
+    private volatile IndiceModelos indiceModelos;
+    private volatile ConcurrentSkipListMap<Long, Carro> registros;
+    private final AtomicLong ultimoRegistro;
+    private final Cerrojos cerrojos;
+    private CopyOnWriteArrayList<OyenteCompetencia> oyentes;
+    private LoteEventos pendientes;
+    private int lotesAbiertos;
+    private Bitacora bitacora;
+    private Transaccion transaccion;
+    private final AtomicReference<Foto> fotos;
+    //Version que arma una transaccion o un lote para publicarla de una vez
+    private Foto fotoEnCurso;
     
     public Competencia(){
-        this.copas = new HashMap<>();
+        this(new Cerrojos(0));
+    }
+    
+    private Competencia(Cerrojos cerrojos){
+        this.copas = new ConcurrentHashMap<>();
+        this.indicePlacas = new ConcurrentHashMap<>();
+        this.indicePremios = new IndicePremios();
+        this.indicePropietarios = new IndicePropietarios();
+        this.indiceModelos = new IndiceModelos();
+        this.registros = new ConcurrentSkipListMap<>();
+        this.ultimoRegistro = new AtomicLong();
+        this.cerrojos = cerrojos;
+        this.oyentes = new CopyOnWriteArrayList<>();
+        this.pendientes = new LoteEventos();
+        this.fotos = new AtomicReference<>();
+    }
+    
+    /**
+     * Crea una competencia que pueden usar varios hilos al mismo tiempo.
+     * @return Retorna la competencia con FRANJAS franjas de placas
+     */
+    public static Competencia concurrente(){
+        return concurrente(FRANJAS);
+    }
+    
+    /**
+     * Crea una competencia que pueden usar varios hilos al mismo tiempo.
+     * @param franjas Cantidad de franjas en que se reparten las placas, con
+     * mas franjas hay menos esperas entre hilos
+     * @return Retorna la competencia
+     */
+    public static Competencia concurrente(int franjas){
+        if(franjas <= 0)
+            throw new IllegalArgumentException("Cantidad de franjas invalida: "+franjas);
+        
+        return new Competencia(new Cerrojos(franjas));
+    }
+    
+    /**
+     * @return Retorna true si la competencia se creo con concurrente()
+     */
+    public boolean esConcurrente(){
+        return cerrojos.esConcurrente();
     }
     
     //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
@@ -43,16 +138,41 @@ public class Competencia{
      * @param placa Placa del carro
      * @param marca Marca del carro
      * @param modelo Modelo del carro
-     * @return retorna true dado el caso añada el carro
+     * @return retorna true dado el caso añada el carro, false si la placa esta
+     * vacia o ya esta registrada
      */
     public boolean agregarCarro(String placa, String marca, int modelo){
-        Carro c = new Carro(placa, marca, modelo);
-        if(!copas.containsKey(c)){
+        //Misma regla que modificarCarro y aplicarLote
+        if(placa == null || placa.trim().isEmpty())
+            return false;
+        
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            String llave = normalizar(placa);
+            if(indicePlacas.containsKey(llave))
+                return false;
+        
+            final Carro c = new Carro(placa, marca, modelo);
+            c.setIndice(indicePropietarios);
+            c.setRegistro(ultimoRegistro.incrementAndGet());
+            registros.put(c.getRegistro(), c);
             copas.put(c, new ArrayList<Premio>());
+            indicePlacas.put(llave, c);
+            indiceModelos.registrar(c);
+        
+            anotar(Operacion.agregarCarro(placa, marca, modelo), new Transaccion.Cambio(){
+                @Override
+                public void revertir() {
+                    quitarCarro(c);
+                    ultimoRegistro.compareAndSet(c.getRegistro(), c.getRegistro() - 1);
+                }
+            });
+            publicar(EventoCompetencia.carroAgregado(c.getPlaca()));
             return true;
+        }finally{
+            cerrojo.unlock();
         }
-        
-        return false;
     }
     
     /**
@@ -66,53 +186,87 @@ public class Competencia{
      */
     public boolean registrarPremioACarro(String placa, int anio, int puesto, 
             String evento) throws Exception{
-        Carro c = new Carro(placa);
-        ArrayList<Premio> victorias = copas.get(c);
-        if(victorias!=null){
-            for(Premio x: victorias)
-                if(x.getAnio()==anio && x.getEvento().equalsIgnoreCase(evento))
-                    throw new Exception("Doble premio");
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            Carro c = buscarCarro(placa);
+            if(c != null){
+                ArrayList<Premio> victorias = copas.get(c);
+                for(Premio x: victorias)
+                    if(x.getAnio()==anio && x.getEvento().equalsIgnoreCase(evento))
+                        throw new Exception("Doble premio");
              
-            Collection<ArrayList<Premio>> prem = copas.values();
-            Iterator <ArrayList<Premio>> it = prem.iterator();
-            while(it.hasNext()){
-                ArrayList<Premio> p = it.next();
-                for(Premio x: p)
-                    if(x.getAnio()==anio && x.getPuesto()==puesto &&
-                            x.getEvento().equalsIgnoreCase(evento))
+                //El puesto se revisa y se aparta con el cerrojo de premios, es lo
+                //unico que comparten carros de franjas distintas
+                Lock premios = cerrojos.escrituraPremios();
+                premios.lock();
+                try{
+                    if(indicePremios.ocupado(evento, anio, puesto))
                         throw new Exception("Doble premio");
+                    
+                    guardarPremio(c, victorias, placa, anio, puesto, evento);
+                }finally{
+                    premios.unlock();
+                }
+                return true;
             }
-            
-            victorias.add(new Premio(anio, puesto, evento));
-            return true;
-        }
         
-        return false;
+            return false;
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
      * Concatena y muestra los carros registrados en un rango de fechas
-     * @param rango Rango de años para mostrar carros
+     * @param rango Rango de años para mostrar carros, con el formato que
+     * recibe RangoModelos.parse(), por ejemplo "2014-2012" o "2005-Menor"
      * @return retorna los carros encontradas en un rango.
      */
     public String imprimirCarrosParaUnRango(String rango){
-        String carros = "";
-        String range[] = rango.split("-");
-        
-        Iterator<Carro> iterator = copas.keySet().iterator();
-        while(iterator.hasNext()){
-            Carro c = iterator.next();
-            try{
-                if(c.getModelo()<=Integer.parseInt(range[0]) &&
-                        c.getModelo()>=Integer.parseInt(range[1]))
-                    carros += "\n"+c.toString();
-            }catch(NumberFormatException nfe){
-                if(c.getModelo()<=Integer.parseInt(range[0]))
-                    carros += "\n"+c.toString();
-            }
+        return imprimirCarrosParaUnRango(RangoModelos.parse(rango));
+    }
+    
+    /**
+     * Concatena y muestra los carros con modelo dentro de un rango, del modelo
+     * mas nuevo al mas viejo. Solo visita los carros que estan en el rango.
+     * @param rango Rango de modelos, ambos extremos incluidos
+     * @return retorna los carros encontrados en el rango.
+     */
+    public String imprimirCarrosParaUnRango(RangoModelos rango){
+        StringBuilder carros = new StringBuilder();
+        try{
+            escribirCarrosParaUnRango(carros, rango);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
         }
         
-        return carros;
+        return carros.toString();
+    }
+    
+    /**
+     * Escribe los carros con modelo dentro de un rango en la salida que recibe,
+     * sin armar el reporte completo en memoria.
+     * @param salida Destino del reporte: un Writer, un StringBuilder, etc.
+     * @param rango Rango de modelos, ambos extremos incluidos
+     * @throws IOException Si la salida falla al escribir
+     */
+    public void escribirCarrosParaUnRango(Appendable salida, RangoModelos rango) throws IOException{
+        for(IndiceModelos.Modelo modelo: indiceModelos.carros(rango))
+            for(Carro c: modelo.getCarros()){
+                Object carro = esConcurrente() ? leerEstado(c) : c;
+                if(carro != null)
+                    salida.append('\n').append(carro.toString());
+            }
+    }
+    
+    /**
+     * Cuenta los carros con modelo dentro de un rango.
+     * @param rango Rango de modelos, ambos extremos incluidos
+     * @return Retorna la cantidad de carros en el rango
+     */
+    public int contarCarrosParaUnRango(RangoModelos rango){
+        return indiceModelos.contar(rango);
     }
     
     /**
@@ -121,19 +275,25 @@ public class Competencia{
      * @return retorna los premios del carro.
      */
     public String imprimirPremiosCarro(String placa){
-        String premios = "";
-        
-        Iterator<Carro> iterator = copas.keySet().iterator();
-        while(iterator.hasNext()){
-            Carro c = iterator.next();
-            if(c.getPlaca().equalsIgnoreCase(placa)){
-                ArrayList<Premio> prem = copas.get(c);
-                for(Premio x: prem)
-                    premios += "\n"+x.toString();
-            }
+        StringBuilder premios = new StringBuilder();
+        try{
+            escribirPremiosCarro(premios, placa);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
         }
         
-        return premios;
+        return premios.toString();
+    }
+    
+    /**
+     * Escribe los premios de un carro en la salida que recibe.
+     * @param salida Destino del reporte
+     * @param placa Placa del carro
+     * @throws IOException Si la salida falla al escribir
+     */
+    public void escribirPremiosCarro(Appendable salida, String placa) throws IOException{
+        for(Premio x: leerPremios(placa))
+            salida.append('\n').append(x.toString());
     }
     
     
@@ -145,20 +305,27 @@ public class Competencia{
      * @return Retorna un String igual al de su metodo hermano,.
      */
     public String imprimirPremiosCarro(String placa, int anio){
-        String premios = "";
-        
-        Iterator<Carro> iterator = copas.keySet().iterator();
-        while(iterator.hasNext()){
-            Carro c = iterator.next();
-            if(c.getPlaca().equalsIgnoreCase(placa)){
-                ArrayList<Premio> prem = copas.get(c);
-                for(Premio x: prem)
-                    if(x.getAnio()==anio)
-                        premios += "\n"+x.toString();
-            }
+        StringBuilder premios = new StringBuilder();
+        try{
+            escribirPremiosCarro(premios, placa, anio);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
         }
         
-        return premios;
+        return premios.toString();
+    }
+    
+    /**
+     * Escribe los premios de un carro en un año en la salida que recibe.
+     * @param salida Destino del reporte
+     * @param placa Placa del carro
+     * @param anio Año que debe buscar.
+     * @throws IOException Si la salida falla al escribir
+     */
+    public void escribirPremiosCarro(Appendable salida, String placa, int anio) throws IOException{
+        for(Premio x: leerPremios(placa))
+            if(x.getAnio()==anio)
+                salida.append('\n').append(x.toString());
     }
     
     /**
@@ -175,13 +342,14 @@ public class Competencia{
      */
     public boolean agregarPropietario(String placa, int año, String nombre, String cc,
             String direccion, String ciudad, String telefono) throws Exception{
-        Carro car = new Carro(placa);
-        
-        for(Carro x: copas.keySet())
-            if(x.equals(car))
-                return x.agregarPropietario(año, nombre, cc, direccion, ciudad, telefono);
-         
-        return false;
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            Carro x = buscarCarro(placa);
+            return x != null && guardarPropietario(x, placa, año, nombre, cc, direccion, ciudad, telefono);
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
@@ -191,13 +359,33 @@ public class Competencia{
      * @return Retorna un String con los propietarios
      */
     public String imprimirPropietarios(String placa, int año){
-        Carro car = new Carro(placa);
+        StringBuilder propietarios = new StringBuilder();
+        try{
+            escribirPropietarios(propietarios, placa, año);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
+        }
         
-        for(Carro x: copas.keySet())
-            if(x.equals(car))
-                return x.imprimirPropietariosParaUnAño(año);
+        return propietarios.toString();
+    }
+    
+    /**
+     * Escribe los propietarios registrados en una placa y un año en la salida
+     * que recibe.
+     * @param salida Destino del reporte
+     * @param placa Placa del carro
+     * @param año Año para buscar
+     * @throws IOException Si la salida falla al escribir
+     */
+    public void escribirPropietarios(Appendable salida, String placa, int año) throws IOException{
+        Collection<Propietario> propietarios = leerPropietarios(placa, año);
+        if(propietarios == null){
+            salida.append("No hay propietarios registrados de este vehiculo en ese año");
+            return;
+        }
         
-        return "No hay propietarios registrados de este vehiculo en ese año";
+        for(Propietario x: propietarios)
+            salida.append('\n').append(x.toString());
     }
     
     /**
@@ -207,9 +395,31 @@ public class Competencia{
      * @return Retorna true si se ha eliminado bien el carro.
      */
     public boolean borrarCarro(String placa){
-        Carro c = new Carro(placa);
-        copas.remove(c);
-        return true;
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            final Carro c = buscarCarro(placa);
+            if(c != null){
+                final ArrayList<Premio> premios = copas.get(c);
+                Lock cerrojoPremios = cerrojos.escrituraPremios();
+                cerrojoPremios.lock();
+                try{
+                    quitarCarro(c);
+                    anotar(Operacion.borrarCarro(placa), new Transaccion.Cambio(){
+                        @Override
+                        public void revertir() {
+                            reponerCarro(c, premios);
+                        }
+                    });
+                }finally{
+                    cerrojoPremios.unlock();
+                }
+                publicar(EventoCompetencia.carroBorrado(c.getPlaca()));
+            }
+            return true;
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
@@ -219,28 +429,87 @@ public class Competencia{
      * @return Retorna true si ha eliminado bien.
      */
     public boolean borrarPremio(String placa, String premio){
-        String[] prem = premio.split("-");
-        Carro c = new Carro(placa);
-        ArrayList<Premio> premios = copas.get(c);
-        for(Premio x: premios)
-            if(x.getEvento().equalsIgnoreCase(prem[0])){
-                premios.remove(x);
-                return true;
-            }
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            String[] prem = premio.split("-");
+            ArrayList<Premio> premios = obtenerPremios(placa);
+            if(premios != null)
+                for(Premio x: premios)
+                    if(x.getEvento().equalsIgnoreCase(prem[0])){
+                        quitarPremio(placa, premios, x);
+                        return true;
+                    }
         
-        return false;
+            return false;
+        }finally{
+            cerrojo.unlock();
+        }
     } 
     
+    /**
+     * Borra el premio de un carro en un evento y un año.
+     * @param placa Placa del carro
+     * @param evento Evento del premio
+     * @param anio Año del premio
+     * @return Retorna true si ha eliminado bien.
+     */
+    public boolean borrarPremio(String placa, String evento, int anio){
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            ArrayList<Premio> premios = obtenerPremios(placa);
+            if(premios != null)
+                for(Premio x: premios)
+                    if(x.getAnio() == anio && x.getEvento().equalsIgnoreCase(evento)){
+                        quitarPremio(placa, premios, x);
+                        return true;
+                    }
+        
+            return false;
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
     /**
      * Borra todos los premios de un carro
      * @param placa placa del carro a borrar todos los premios
      * @return retorna true si elimina bien todo
      */
     public boolean borrarTodosPremios(String placa){
-        Carro c = new Carro(placa);
-        ArrayList<Premio> prem = copas.get(c);
-        prem.clear();
-        return true;
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            final Carro c = buscarCarro(placa);
+            if(c == null)
+                return false;
+        
+            final ArrayList<Premio> prem = copas.get(c);
+            final ArrayList<Premio> borrados = deshacible() ? new ArrayList<>(prem) : null;
+            Lock premios = cerrojos.escrituraPremios();
+            premios.lock();
+            try{
+                indicePremios.liberar(prem);
+                prem.clear();
+                c.setEstado(null);
+                anotar(Operacion.borrarTodosPremios(placa), new Transaccion.Cambio(){
+                    @Override
+                    public void revertir() {
+                        prem.addAll(borrados);
+                        c.setEstado(null);
+                        for(Premio x: borrados)
+                            indicePremios.registrar(x, c);
+                    }
+                });
+            }finally{
+                premios.unlock();
+            }
+            publicar(EventoCompetencia.premiosCambiados(c.getPlaca()));
+            return true;
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
@@ -250,13 +519,31 @@ public class Competencia{
      * @param cc NIT del propietario
      * @return Retorna true si elimina correctamente.
      */
-    public boolean borrarPropietario(String placa, int año, String cc){
-        Carro c = new Carro(placa);
-        for(Carro x: copas.keySet())
-            if(x.equals(c))
-                return x.borrarPropietario(año, cc);
+    public boolean borrarPropietario(String placa, final int año, String cc){
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            final Carro x = buscarCarro(placa);
+            if(x == null)
+                return false;
+        
+            final Propietario borrado = deshacible() ? x.obtenerPropietario(año, cc) : null;
+            final int posicion = borrado != null ? x.posicionPropietario(año, cc) : -1;
+            if(x.borrarPropietario(año, cc)){
+                anotar(Operacion.borrarPropietario(placa, año, cc), new Transaccion.Cambio(){
+                    @Override
+                    public void revertir() {
+                        x.reponerPropietario(año, posicion, borrado);
+                    }
+                });
+                publicar(EventoCompetencia.propietariosCambiados(x.getPlaca(), año));
+                return true;
+            }
         
-        return false;
+            return false;
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
@@ -265,13 +552,32 @@ public class Competencia{
      * @param año Año en el que borra todos los propietarios.
      * @return Retorna el valor del metodo.
      */
-    public boolean borrarTodosPropietario(String placa, int año){
-        Carro c = new Carro(placa);
-        for(Carro x: copas.keySet())
-            if(x.equals(c))
-                return x.borrarTodosPropietarios(año);
+    public boolean borrarTodosPropietario(String placa, final int año){
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            final Carro x = buscarCarro(placa);
+            if(x == null)
+                return false;
+        
+            final ArrayList<Propietario> borrados = deshacible()
+                    ? new ArrayList<>(x.obtenerPropietarios(año)) : null;
+            if(x.borrarTodosPropietarios(año)){
+                anotar(Operacion.borrarTodosPropietario(placa, año), new Transaccion.Cambio(){
+                    @Override
+                    public void revertir() {
+                        for(int i = 0; i < borrados.size(); i++)
+                            x.reponerPropietario(año, i, borrados.get(i));
+                    }
+                });
+                publicar(EventoCompetencia.propietariosCambiados(x.getPlaca(), año));
+                return true;
+            }
             
-        return false;
+            return false;
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
@@ -281,12 +587,35 @@ public class Competencia{
      * de la clase carro.
      */
     public boolean borrarTodosPropietario(String placa){
-        Carro c = new Carro(placa);
-        for(Carro x: copas.keySet())
-            if(x.equals(c))
-                return x.borrarTodosPropietarios();
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            final Carro x = buscarCarro(placa);
+            if(x == null)
+                return false;
+        
+            final HashMap<Integer, ArrayList<Propietario>> borrados = new HashMap<>();
+            if(deshacible())
+                for(Integer año: x.obtenerAñosPropietarios())
+                    borrados.put(año, new ArrayList<>(x.obtenerPropietarios(año)));
+            if(x.borrarTodosPropietarios()){
+                anotar(Operacion.borrarTodosPropietario(placa), new Transaccion.Cambio(){
+                    @Override
+                    public void revertir() {
+                        for(Map.Entry<Integer, ArrayList<Propietario>> e: borrados.entrySet())
+                            for(int i = 0; i < e.getValue().size(); i++)
+                                x.reponerPropietario(e.getKey(), i, e.getValue().get(i));
+                    }
+                });
+                publicar(EventoCompetencia.propietariosCambiados(x.getPlaca(),
+                        EventoCompetencia.TODOS_LOS_AÑOS));
+                return true;
+            }
         
-        return false;
+            return false;
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
@@ -294,8 +623,52 @@ public class Competencia{
      * @return Retorna true, siempre va a limpiar todos los registros.
      */
     public boolean borrarTodo(){
-        copas.clear();
-        return true;
+        Lock cerrojo = cerrojos.escrituraTotal();
+        cerrojo.lock();
+        try{
+            if(!deshacible()){
+                copas.clear();
+                indicePlacas.clear();
+                indicePremios.limpiar();
+                indicePropietarios.limpiar();
+                indiceModelos.limpiar();
+                registros.clear();
+            }else{
+                //Si se puede deshacer se cambian las estructuras por unas vacias,
+                //asi deshacer es volver a poner las anteriores sin copiar nada.
+                final ConcurrentHashMap<Carro, ArrayList<Premio>> copasAnterior = copas;
+                final ConcurrentHashMap<String, Carro> placasAnterior = indicePlacas;
+                final IndicePremios premiosAnterior = indicePremios;
+                final IndicePropietarios propietariosAnterior = indicePropietarios;
+                final IndiceModelos modelosAnterior = indiceModelos;
+                final ConcurrentSkipListMap<Long, Carro> registrosAnterior = registros;
+                copas = new ConcurrentHashMap<>();
+                indicePlacas = new ConcurrentHashMap<>();
+                indicePremios = new IndicePremios();
+                indicePropietarios = new IndicePropietarios();
+                indiceModelos = new IndiceModelos();
+                registros = new ConcurrentSkipListMap<>();
+                anotar(Operacion.borrarTodo(), new Transaccion.Cambio(){
+                    @Override
+                    public void revertir() {
+                        copas = copasAnterior;
+                        indicePlacas = placasAnterior;
+                        indicePremios = premiosAnterior;
+                        indicePropietarios = propietariosAnterior;
+                        indiceModelos = modelosAnterior;
+                        registros = registrosAnterior;
+                    }
+                });
+                publicar(EventoCompetencia.todoBorrado());
+                return true;
+            }
+        
+            anotar(Operacion.borrarTodo(), null);
+            publicar(EventoCompetencia.todoBorrado());
+            return true;
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
@@ -304,20 +677,42 @@ public class Competencia{
      * @param placa Nueva placa
      * @param marca Nueva marca
      * @param modelo Nuevo modelo
-     * @return Retorna true al guardar la nueva informacion del carro.
+     * @return Retorna true al guardar la nueva informacion del carro, false si
+     * el carro no existe, si la nueva placa esta vacia o si ya pertenece a
+     * otro carro.
      */
     public boolean modificarCarro(String ID, String placa, String marca, int modelo){
-        Carro c = new Carro(ID);
+        //Se revisa antes de sacar el carro de los indices
+        if(placa == null || placa.trim().isEmpty())
+            return false;
         
-        for(Carro x: copas.keySet())
-            if(x.equals(c)){
-                x.setPlaca(placa);
-                x.setMarca(marca);
-                x.setModelo(modelo);
-                return true;
-            }
+        Lock cerrojo = cerrojos.escritura(ID, placa);
+        cerrojo.lock();
+        try{
+            final Carro x = buscarCarro(ID);
+            if(x == null)
+                return false;
+        
+            Carro otro = buscarCarro(placa);
+            if(otro != null && otro != x)
+                return false;
         
-        return false;
+            final String anterior = x.getPlaca();
+            final String marcaAnterior = x.getMarca();
+            final int modeloAnterior = x.getModelo();
+            cambiarCarro(x, placa, marca, modelo);
+        
+            anotar(Operacion.modificarCarro(ID, placa, marca, modelo), new Transaccion.Cambio(){
+                @Override
+                public void revertir() {
+                    cambiarCarro(x, anterior, marcaAnterior, modeloAnterior);
+                }
+            });
+            publicar(EventoCompetencia.carroModificado(anterior, x.getPlaca()));
+            return true;
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
@@ -328,22 +723,56 @@ public class Competencia{
      * @param nuevoAño Nuevo año a ingresar
      * @param nuevoPuesto Nuevo puesto a ingresar
      * @param nuevoEvento Nuevo evento a ingresar
-     * @return Retorna true cuando guarda la informacion de los premios
+     * @return Retorna true cuando guarda la informacion de los premios, false
+     * si no encuentra el premio, si el nuevo puesto ya lo tiene otro premio o
+     * si el carro ya tiene otro premio del nuevo evento en el nuevo año.
      */
-    public boolean modificarPremio(String placa, String evento, int año,
+    public boolean modificarPremio(String placa, String evento, final int año,
             int nuevoAño, int nuevoPuesto, String nuevoEvento){
-        Carro c = new Carro(placa);
-        ArrayList<Premio> premios = copas.get(c);
-        if(premios != null)
-            for(Premio x: premios)
-                if(x.getEvento().equalsIgnoreCase(evento) && x.getAnio() == año){
-                    x.setAnio(nuevoAño);
-                    x.setPuesto(nuevoPuesto);
-                    x.setEvento(nuevoEvento);
-                    return true;
-                }
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            final Carro c = buscarCarro(placa);
+            if(c == null)
+                return false;
+        
+            Lock premios = cerrojos.escrituraPremios();
+            premios.lock();
+            try{
+                for(final Premio x: copas.get(c))
+                    if(x.getEvento().equalsIgnoreCase(evento) && x.getAnio() == año){
+                        boolean mismoPuesto = x.getAnio() == nuevoAño && x.getPuesto() == nuevoPuesto
+                                && x.getEvento().equalsIgnoreCase(nuevoEvento);
+                        if(!mismoPuesto && indicePremios.ocupado(nuevoEvento, nuevoAño, nuevoPuesto))
+                            return false;
+                        
+                        //El carro tampoco puede quedar con dos premios del mismo
+                        //evento en un año, igual que en registrarPremioACarro
+                        for(Premio y: copas.get(c))
+                            if(y != x && y.getAnio() == nuevoAño && y.getEvento().equalsIgnoreCase(nuevoEvento))
+                                return false;
+
+                        final int puestoAnterior = x.getPuesto();
+                        final String eventoAnterior = x.getEvento();
+                        cambiarPremio(c, x, nuevoAño, nuevoPuesto, nuevoEvento);
+                        anotar(Operacion.modificarPremio(placa, evento, año, nuevoAño, nuevoPuesto,
+                                nuevoEvento), new Transaccion.Cambio(){
+                            @Override
+                            public void revertir() {
+                                cambiarPremio(c, x, año, puestoAnterior, eventoAnterior);
+                            }
+                        });
+                        publicar(EventoCompetencia.premiosCambiados(c.getPlaca()));
+                        return true;
+                    }
                 
-        return false;
+                return false;
+            }finally{
+                premios.unlock();
+            }
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     /**
@@ -358,62 +787,204 @@ public class Competencia{
      * @param nuevoTelefono nuevo Telefono a guardar
      * @return Retorna true cuando se guarda la informacion
      */
-    public boolean modificarPropietario(String placa, int año, String propietario,
-            String nuevoNombre, String nuevaCC, String nuevaDireccion, String nuevaCiudad, String nuevoTelefono){
-        Carro c = new Carro(placa);
-        for(Carro x: copas.keySet())
-            if(x.equals(c))
-                return x.modificarPropietario(año, propietario, nuevoNombre, nuevaCC,
-                        nuevaDireccion, nuevaCiudad, nuevoTelefono);
+    public boolean modificarPropietario(String placa, final int año, String propietario,
+            String nuevoNombre, final String nuevaCC, String nuevaDireccion, String nuevaCiudad, String nuevoTelefono){
+        Lock cerrojo = cerrojos.escritura(placa);
+        cerrojo.lock();
+        try{
+            final Carro x = buscarCarro(placa);
+            if(x == null)
+                return false;
+        
+            final Propietario p = x.obtenerPropietario(año, propietario);
+            if(p == null)
+                return false;
+        
+            final String nombre = p.getNombre(), cc = p.getCc(), direccion = p.getDireccion(),
+                    ciudad = p.getCiudad(), telefono = p.getTelefono();
+            if(x.modificarPropietario(año, propietario, nuevoNombre, nuevaCC,
+                            nuevaDireccion, nuevaCiudad, nuevoTelefono)){
+                anotar(Operacion.modificarPropietario(placa, año, propietario, nuevoNombre, nuevaCC,
+                        nuevaDireccion, nuevaCiudad, nuevoTelefono), new Transaccion.Cambio(){
+                    @Override
+                    public void revertir() {
+                        x.modificarPropietario(año, nuevaCC, nombre, cc, direccion, ciudad, telefono);
+                    }
+                });
+                publicar(EventoCompetencia.propietariosCambiados(x.getPlaca(), año));
+                return true;
+            }
+        
+            return false;
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
+    //-----------------------------CAMBIOS EN LOTE-----------------------------//
+    /**
+     * Agrega muchos carros, premios y propietarios de una vez. Primero revisa
+     * todo el lote con las mismas reglas de agregarCarro, registrarPremioACarro
+     * y agregarPropietario, incluyendo los repetidos dentro del mismo lote, y
+     * luego guarda los validos en una sola pasada, con un solo aviso a los
+     * oyentes. El resultado es el mismo que llamar los metodos uno por uno en
+     * el orden del lote, salvo que una placa vacia siempre se rechaza.
+     * @param operaciones Operaciones AGREGAR_CARRO, REGISTRAR_PREMIO o
+     * AGREGAR_PROPIETARIO
+     * @return Retorna el estado de cada operacion, en el mismo orden
+     */
+    public ResultadoLote aplicarLote(List<Operacion> operaciones){
+        Lock cerrojo = cerrojos.escrituraTotal();
+        cerrojo.lock();
+        try{
+            String[] motivos = new String[operaciones.size()];
+            Carro[] carros = new Carro[operaciones.size()];
+            HashSet<String> placasNuevas = new HashSet<>();
+            HashSet<String> premiosCarro = new HashSet<>();
+            HashSet<String> puestos = new HashSet<>();
+            HashSet<String> dueños = new HashSet<>();
+        
+            //Primera pasada: se revisa todo contra la competencia y contra lo que va del lote
+            for(int i = 0; i < motivos.length; i++){
+                Operacion x = operaciones.get(i);
+                Operacion.Tipo tipo = x.getTipo();
+                if(tipo != Operacion.Tipo.AGREGAR_CARRO && tipo != Operacion.Tipo.REGISTRAR_PREMIO
+                        && tipo != Operacion.Tipo.AGREGAR_PROPIETARIO){
+                    motivos[i] = "Operacion no permitida en un lote: "+tipo;
+                    continue;
+                }
+                String llave = normalizar(x.getTexto(0));
+                if(llave == null || llave.isEmpty()){
+                    motivos[i] = "Placa vacia";
+                    continue;
+                }
+                Carro c = buscarCarro(x.getTexto(0));
+                switch(tipo){
+                    case AGREGAR_CARRO:
+                        if(c != null || !placasNuevas.add(llave))
+                            motivos[i] = "Placa repetida";
+                        break;
+                    case REGISTRAR_PREMIO:
+                        if(c == null && !placasNuevas.contains(llave))
+                            motivos[i] = "No existe un carro con esa placa";
+                        else if(!premioLibre(c, llave, x.getTexto(1), x.getNumero(0), x.getNumero(1),
+                                premiosCarro, puestos))
+                            motivos[i] = "Doble premio";
+                        break;
+                    default:
+                        if(c == null && !placasNuevas.contains(llave))
+                            motivos[i] = "No existe un carro con esa placa";
+                        else if((c != null && c.validarExistenciaPropietario(x.getNumero(0), x.getTexto(2)))
+                                || !dueños.add(llave+'\0'+x.getNumero(0)+'\0'+normalizar(x.getTexto(2))))
+                            motivos[i] = "Doble propietario";
+                }
+                carros[i] = c;
+            }
+        
+            //Segunda pasada: se guarda lo valido sin volver a revisar. Con el
+            //cerrojo total nada cambia entre pasadas, un rechazo aqui es un error
+            boolean fotoPropia = abrirFoto();
+            iniciarLote();
+            try{
+                for(int i = 0; i < motivos.length; i++){
+                    if(motivos[i] != null)
+                        continue;
+                
+                    Operacion x = operaciones.get(i);
+                    Carro c = carros[i] != null ? carros[i] : buscarCarro(x.getTexto(0));
+                    switch(x.getTipo()){
+                        case AGREGAR_CARRO:
+                            if(!agregarCarro(x.getTexto(0), x.getTexto(1), x.getNumero(0)))
+                                throw new IllegalStateException("El lote cambio durante la validacion");
+                            break;
+                        case REGISTRAR_PREMIO:
+                            guardarPremio(c, copas.get(c), x.getTexto(0), x.getNumero(0),
+                                    x.getNumero(1), x.getTexto(1));
+                            break;
+                        default:
+                            boolean guardado;
+                            try{
+                                guardado = guardarPropietario(c, x.getTexto(0), x.getNumero(0), x.getTexto(1),
+                                        x.getTexto(2), x.getTexto(3), x.getTexto(4), x.getTexto(5));
+                            }catch(Exception ex){
+                                throw new IllegalStateException("El lote cambio durante la validacion", ex);
+                            }
+                            if(!guardado)
+                                throw new IllegalStateException("El lote cambio durante la validacion");
+                    }
+                }
+            }finally{
+                if(fotoPropia)
+                    cerrarFoto(true);
+                terminarLote();
+            }
         
-        return false;
+            return new ResultadoLote(motivos);
+        }finally{
+            cerrojo.unlock();
+        }
     }
     
     //------------------------REQUERIMIENTOS DEL EXAMEN------------------------//
     /**
      * Busca cuales fueron los propietarios de un carro o varios carros para un
-     * evento.
+     * evento. Solo visita los carros que ocuparon algun puesto, en orden de
+     * puesto, y cada propietario aparece una sola vez.
      * @param evento Evento en que participo y gano
      * @param año Año en que participo y gano
      * @return Retorna la información de los propietarios.
      */
     public String propietarioParaUnaVictoria(String evento, int año){
-        Collection<ArrayList<Premio>> premio = copas.values();
-        String ganadores = "";
-        
-        Iterator<ArrayList<Premio>> it = premio.iterator();
-            ArrayList<Premio> p = it.next();
-            for(Premio x: p)
-               if(x.getEvento().equalsIgnoreCase(evento))
-                   for(Carro y: copas.keySet())
-                       ganadores += y.imprimirInfoBasicPropietariosParaUnAño(año);
+        StringBuilder ganadores = new StringBuilder();
+        try{
+            escribirPropietarioParaUnaVictoria(ganadores, evento, año);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
+        }
             
-        return ganadores;
+        return ganadores.toString();
+    }
+    
+    /**
+     * Escribe los propietarios ganadores de un evento en la salida que recibe.
+     * @param salida Destino del reporte
+     * @param evento Evento en que participo y gano
+     * @param año Año en que participo y gano
+     * @throws IOException Si la salida falla al escribir
+     */
+    public void escribirPropietarioParaUnaVictoria(Appendable salida, String evento,
+            int año) throws IOException{
+        for(Propietario x: listarPropietariosParaUnaVictoria(evento, año))
+            salida.append('\n').append(x.infoBasic());
     }
     
     /**
      * Este metodo imprime los premios de un propietario con todos los carros 
-     * que haya tenido.
+     * que haya tenido, en cada año en que fue dueño. Solo visita los carros
+     * que el indice de propietarios tiene para ese NIT.
      * @param cc NIT para buscar los premios del propietario
      * @return Retorna un string con formato para mostrar la informacion
      */
     public String premiosdePropietario(String cc){
-        String mensaje = "";
-        
-        Iterator it = copas.entrySet().iterator();
-        while(it.hasNext()){
-            Map.Entry e = (Map.Entry) it.next();
-            Carro c = (Carro) e.getKey();
-            try{
-                if(c.comprobarPropietario(cc))
-                    mensaje += this.imprimirPremiosCarro(c.getPlaca(), 
-                            this.obtenerAñoPropietario(cc, c.getPlaca()));
-            }catch(java.util.NoSuchElementException ex){
-                return mensaje;
-            }
+        StringBuilder mensaje = new StringBuilder();
+        try{
+            escribirPremiosdePropietario(mensaje, cc);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
         }
         
-        return mensaje;
+        return mensaje.toString();
+    }
+    
+    /**
+     * Escribe los premios de un propietario en la salida que recibe.
+     * @param salida Destino del reporte
+     * @param cc NIT para buscar los premios del propietario
+     * @throws IOException Si la salida falla al escribir
+     */
+    public void escribirPremiosdePropietario(Appendable salida, String cc) throws IOException{
+        for(Premio x: listarPremiosdePropietario(cc))
+            salida.append('\n').append(x.toString());
     }
     
     /**
@@ -421,52 +992,105 @@ public class Competencia{
      * @return muestra los toString de las llaves y de los objetos del HashMap
      */
     public String recorrerPremios(){
-        String mensaje = "";
+        StringBuilder mensaje = new StringBuilder();
+        try{
+            escribirPremios(mensaje);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
+        }
         
-        Iterator it = copas.entrySet().iterator();
-        while(it.hasNext()){
-            Map.Entry e = (Map.Entry)it.next();
-            mensaje += e.getKey()+"\n"+e.getValue()+"\n\n";
+        return mensaje.toString();
+    }
+    
+    /**
+     * Escribe todos los carros con sus premios en la salida que recibe, en el
+     * orden en que se registraron. Con un Writer el reporte va directo a un
+     * archivo o socket sin quedar completo en memoria. Si ya se pidio una
+     * foto() el reporte sale de la ultima, completo en un mismo momento.
+     * @param salida Destino del reporte
+     * @throws IOException Si la salida falla al escribir
+     */
+    public void escribirPremios(Appendable salida) throws IOException{
+        Foto foto = fotos.get();
+        if(foto != null){
+            foto.escribirPremios(salida);
+            return;
         }
         
-        return mensaje;
+        for(Carro c: registros.values()){
+            Lock cerrojo = leerCarro(c);
+            if(cerrojo != null)
+                try{
+                    escribirCarro(salida, c, copas.get(c));
+                }finally{
+                    cerrojo.unlock();
+                }
+        }
     }
     
-    //-----------------------REQUERIMIENTOS OPERACIONALES----------------------//
     /**
-     * Concatena las placas de todos los carros registrados.
-     * @return Retorna un String placa~placa~placa con los carros registrados
+     * Obtiene una pagina del recorrido de todos los carros con sus premios.
+     * @param cursor Cursor que devolvio la pagina anterior, null para la primera
+     * @param tamaño Cantidad maxima de carros de la pagina
+     * @return Retorna la pagina con su contenido y el cursor de la siguiente
      */
-    public String concatenarplacas(){
-        String placas = "";
+    public PaginaPremios paginaDePremios(String cursor, int tamaño){
+        StringBuilder contenido = new StringBuilder();
+        try{
+            String siguiente = escribirPaginaDePremios(contenido, cursor, tamaño);
+            return new PaginaPremios(contenido.toString(), siguiente);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Escribe una pagina del recorrido de todos los carros con sus premios. El
+     * cursor guarda el numero de registro del ultimo carro de la pagina, asi
+     * los carros que se registren o borren mientras tanto no corren las
+     * paginas siguientes: los nuevos aparecen al final.
+     * @param salida Destino de la pagina
+     * @param cursor Cursor que devolvio la pagina anterior, null para la primera
+     * @param tamaño Cantidad maxima de carros de la pagina
+     * @return Retorna el cursor de la siguiente pagina o null si es la ultima
+     * @throws IOException Si la salida falla al escribir
+     */
+    public String escribirPaginaDePremios(Appendable salida, String cursor, int tamaño) throws IOException{
+        if(tamaño <= 0)
+            throw new IllegalArgumentException("El tamaño de la pagina debe ser positivo");
         
-        Iterator<Carro> iterator = copas.keySet().iterator();
-        while(iterator.hasNext()){
-            Carro c = iterator.next();
-            placas += c.getPlaca()+"~";
+        int escritos = 0;
+        long ultimo = 0;
+        for(Carro c: registros.tailMap(leerCursor(cursor), false).values()){
+            if(escritos == tamaño)
+                return Long.toString(ultimo, Character.MAX_RADIX);
+            
+            Lock cerrojo = leerCarro(c);
+            if(cerrojo == null)
+                continue;
+            try{
+                escribirCarro(salida, c, copas.get(c));
+            }finally{
+                cerrojo.unlock();
+            }
+            ultimo = c.getRegistro();
+            escritos++;
         }
         
-        return placas;
+        return null;
     }
     
+    //-----------------------REQUERIMIENTOS OPERACIONALES----------------------//
     /**
-     * Busca en los propietarios del vehiculo y retorna el año en el que este fue
-     * dueño del vehiculo.
-     * @param cc NIT para buscar el año del propietario
-     * @param placa Placa para buscar el propietario en el carro
-     * @return retorna un entero con el año en el que fue dueño un propietario 
-     * del vehiculo.
+     * Concatena las placas de todos los carros registrados.
+     * @return Retorna un String placa~placa~placa con los carros registrados
      */
-    private int obtenerAñoPropietario(String cc, String placa){
-        Iterator it = copas.entrySet().iterator();
-        while(it.hasNext()){
-            Map.Entry e = (Map.Entry) it.next();
-            Carro c = (Carro) e.getKey();
-            if(c.getPlaca().equalsIgnoreCase(placa))
-                return c.obtenerAño(cc);
-        }
+    public String concatenarplacas(){
+        StringBuilder placas = new StringBuilder();
+        for(String x: listarPlacas())
+            placas.append(x).append('~');
         
-        return 0;
+        return placas.toString();
     }
     
     /**
@@ -475,14 +1099,11 @@ public class Competencia{
      * @return Retorna una cadena con formato: evento-anio~evento-anio...
      */
     public String concatenarPremios(String placa){
-        String premios = "";
-        Carro c = new Carro(placa);
-        ArrayList<Premio> prem = copas.get(c);
-        if(prem != null)
-            for(Premio x: prem)
-                premios += x.getEvento()+"-"+x.getAnio()+"~";
+        StringBuilder premios = new StringBuilder();
+        for(Premio x: leerPremios(placa))
+            premios.append(x.getEvento()).append('-').append(x.getAnio()).append('~');
                 
-        return premios;
+        return premios.toString();
     }
     
     /**
@@ -492,13 +1113,15 @@ public class Competencia{
      * @return Retorna el String con los NIT de los propietarios
      */
     public String concatenarPropietarios(String placa, int año){
-        Carro car = new Carro(placa);
+        Collection<Propietario> propietarios = leerPropietarios(placa, año);
+        if(propietarios == null)
+            return "";
         
-        for(Carro x: copas.keySet())
-            if(x.equals(car))
-                return x.concatenarPropietarios(año);
-            
-        return "";
+        StringBuilder nits = new StringBuilder();
+        for(Propietario x: propietarios)
+            nits.append(x.getCc()).append('~');
+        
+        return nits.toString();
     }
     
     /**
@@ -507,11 +1130,14 @@ public class Competencia{
      * @return Retorna la informacion de un carro
      */
     public String obtenerInfoCarro(String placa){
-        Carro c = new Carro(placa);
+        if(esConcurrente()){
+            EstadoCarro x = leerEstado(placa);
+            return x != null ? x.getPlaca()+"~"+x.getMarca() : null;
+        }
         
-        for(Carro x: copas.keySet())
-            if(x.equals(c))
-                return x.getPlaca()+"~"+x.getMarca();
+        Carro x = buscarCarro(placa);
+        if(x != null)
+            return x.getPlaca()+"~"+x.getMarca();
         
         return null;
     }
@@ -523,13 +1149,9 @@ public class Competencia{
      * @return Retorna la informacion del premio
      */
     public String obtenerInfoPremios(String placa, String premio){
-        Carro c = new Carro(placa);
-        ArrayList<Premio> premios = copas.get(c);
-        if(premios != null) 
-            for(Premio x: premios)
-                if(x.getEvento().equalsIgnoreCase(premio))
-                    return x.getPuesto()+"~"+x.getEvento();
-            
+        for(Premio x: leerPremios(placa))
+            if(x.getEvento().equalsIgnoreCase(premio))
+                return x.getPuesto()+"~"+x.getEvento();
         
         return null;
     }
@@ -542,12 +1164,1101 @@ public class Competencia{
      * @return Retorna la informacion del propietario
      */
     public String obtenerInfoPropietario(String placa, int año, String propietario){
-        Carro c = new Carro(placa);
+        if(!esConcurrente()){
+            Carro x = buscarCarro(placa);
+            return x != null ? x.obtenerInfoPropietario(año, propietario) : null;
+        }
         
-        for(Carro x: copas.keySet())
-            if(x.equals(c))
-                return x.obtenerInfoPropietario(año, propietario);
+        EstadoCarro estado = leerEstado(placa);
+        Propietario x = estado != null ? estado.getPropietario(año, propietario) : null;
+        if(x != null)
+            return x.getNombre()+"~"+x.getCc()+"~"+x.getDireccion()+"~"
+                    +x.getCiudad()+"~"+x.getTelefono();
         
         return null;
     }
+    
+    //---------------------------------OYENTES---------------------------------//
+    /**
+     * Registra un oyente que sera avisado de cada cambio en los carros, premios
+     * y propietarios
+     * @param oyente Oyente a registrar
+     */
+    public void agregarOyente(OyenteCompetencia oyente){
+        oyentes.add(oyente);
+    }
+    
+    /**
+     * Quita un oyente registrado con agregarOyente
+     * @param oyente Oyente a quitar
+     */
+    public void quitarOyente(OyenteCompetencia oyente){
+        oyentes.remove(oyente);
+    }
+    
+    /**
+     * Abre un lote de cambios. Hasta cerrarlo con terminarLote los eventos se
+     * guardan y combinan, y los oyentes los reciben juntos al final. Los lotes
+     * se pueden anidar, se entregan al cerrar el de afuera.
+     */
+    public void iniciarLote(){
+        synchronized(pendientes){
+            lotesAbiertos++;
+        }
+    }
+    
+    /**
+     * Cierra un lote abierto con iniciarLote. Se debe llamar en un finally
+     * para que los eventos no se queden guardados si un cambio falla.
+     */
+    public void terminarLote(){
+        List<EventoCompetencia> eventos = null;
+        synchronized(pendientes){
+            if(lotesAbiertos == 0)
+                throw new IllegalStateException("No hay un lote abierto");
+            
+            if(--lotesAbiertos == 0 && !pendientes.estaVacio())
+                eventos = pendientes.tomar();
+        }
+        if(eventos != null)
+            entregar(eventos);
+    }
+    
+    //------------------------------TRANSACCIONES------------------------------//
+    /**
+     * Abre una transaccion: los cambios que se hagan hasta confirmarla se
+     * aplican todos o ninguno. Mientras tanto la bitacora no recibe nada y los
+     * eventos se guardan como en un lote. En una competencia concurrente la
+     * transaccion bloquea todas las franjas hasta que termina, asi los demas
+     * hilos no ven ni mezclan cambios a medias.
+     * @return Retorna la transaccion, se debe cerrar con confirmar, deshacer
+     * o close en el mismo hilo
+     * @throws IllegalStateException Si ya hay una transaccion o un lote abierto
+     */
+    public Transaccion iniciarTransaccion(){
+        Lock cerrojo = cerrojos.escrituraTotal();
+        cerrojo.lock();
+        synchronized(pendientes){
+            if(transaccion != null || lotesAbiertos > 0){
+                cerrojo.unlock();
+                throw new IllegalStateException(transaccion != null
+                        ? "Ya hay una transaccion abierta"
+                        : "No se puede iniciar una transaccion dentro de un lote");
+            }
+            
+            transaccion = new Transaccion(this);
+            lotesAbiertos++;
+            abrirFoto();
+            return transaccion;
+        }
+    }
+    
+    /**
+     * @return Retorna la transaccion abierta o null si no hay
+     */
+    public Transaccion getTransaccion(){
+        return transaccion;
+    }
+    
+    /**
+     * Deja los cambios de una transaccion: los guarda juntos en la bitacora y
+     * entrega los eventos. Si la bitacora falla la transaccion se deshace.
+     */
+    void confirmar(Transaccion t){
+        revisarTransaccion(t);
+        transaccion = null;
+        List<Operacion> operaciones = t.getOperaciones();
+        if(bitacora != null && !operaciones.isEmpty()){
+            try{
+                if(operaciones.size() == 1)
+                    bitacora.registrar(operaciones.get(0));
+                else
+                    bitacora.registrarGrupo(operaciones);
+            }catch(RuntimeException | Error ex){
+                deshacer(t);
+                throw ex;
+            }
+        }
+        t.marcarConfirmada();
+        cerrarFoto(true);
+        try{
+            terminarLote();
+        }finally{
+            cerrojos.escrituraTotal().unlock();
+        }
+    }
+    
+    /**
+     * Deshace los cambios de una transaccion. Los datos quedan como estaban,
+     * asi que los eventos guardados se descartan.
+     */
+    void revertir(Transaccion t){
+        revisarTransaccion(t);
+        transaccion = null;
+        deshacer(t);
+    }
+    
+    private void revisarTransaccion(Transaccion t){
+        if(t != transaccion)
+            throw new IllegalStateException("La transaccion no es la abierta en esta competencia");
+        if(lotesAbiertos != 1)
+            throw new IllegalStateException("Hay un lote abierto dentro de la transaccion");
+    }
+    
+    private void deshacer(Transaccion t){
+        try{
+            t.revertirCambios();
+        }finally{
+            cerrarFoto(false);
+            synchronized(pendientes){
+                pendientes.tomar();
+                lotesAbiertos--;
+            }
+            cerrojos.escrituraTotal().unlock();
+        }
+    }
+    
+    //---------------------------------CARGAS----------------------------------//
+    /**
+     * Abre una carga de datos ya revisados en esta competencia vacia, por
+     * ejemplo desde una instantanea. Los indices se arman directo, sin las
+     * revisiones ni las anotaciones de cada metodo, y los de placas y premios
+     * se crean con espacio para todos los carros.
+     * @param carros Cantidad de carros que se van a cargar, para reservar
+     * espacio
+     * @return Retorna la carga, se debe cerrar con close en el mismo hilo
+     * @throws IllegalStateException Si la competencia tiene carros, una
+     * bitacora o una transaccion abierta
+     */
+    public Carga iniciarCarga(int carros){
+        Lock cerrojo = cerrojos.escrituraTotal();
+        cerrojo.lock();
+        try{
+            if(transaccion != null || bitacora != null || !indicePlacas.isEmpty())
+                throw new IllegalStateException(transaccion != null
+                        ? "No se puede cargar dentro de una transaccion"
+                        : bitacora != null ? "No se puede cargar con una bitacora asignada"
+                        : "Solo se puede cargar en una competencia vacia");
+        
+            copas = new ConcurrentHashMap<>(Math.max(carros, 16));
+            indicePlacas = new ConcurrentHashMap<>(Math.max(carros, 16));
+            iniciarLote();
+            return new Carga(this);
+        }catch(RuntimeException ex){
+            cerrojo.unlock();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Agrega un carro de una carga, con la lista donde van sus premios.
+     * @return Retorna el carro o null si la placa esta vacia o repetida
+     */
+    Carro cargarCarro(String placa, String marca, int modelo, ArrayList<Premio> premios){
+        String llave = normalizar(placa);
+        if(llave == null || llave.isEmpty() || indicePlacas.containsKey(llave))
+            return null;
+        
+        Carro c = new Carro(placa, marca, modelo);
+        c.setIndice(indicePropietarios);
+        c.setRegistro(ultimoRegistro.incrementAndGet());
+        registros.put(c.getRegistro(), c);
+        copas.put(c, premios);
+        indicePlacas.put(llave, c);
+        indiceModelos.registrar(c);
+        publicar(EventoCompetencia.carroAgregado(c.getPlaca()));
+        return c;
+    }
+    
+    /**
+     * Agrega un premio de una carga al ultimo carro, sin revisar el puesto.
+     */
+    void cargarPremio(Carro c, ArrayList<Premio> premios, Premio premio){
+        premios.add(premio);
+        indicePremios.registrar(premio, c);
+        c.setEstado(null);
+        publicar(EventoCompetencia.premiosCambiados(c.getPlaca()));
+    }
+    
+    /**
+     * Agrega un propietario de una carga al ultimo carro.
+     * @return Retorna false si el NIT ya esta en ese año
+     */
+    boolean cargarPropietario(Carro c, int año, Propietario propietario){
+        if(!c.cargarPropietario(año, propietario))
+            return false;
+        
+        publicar(EventoCompetencia.propietariosCambiados(c.getPlaca(), año));
+        return true;
+    }
+    
+    /**
+     * Cierra una carga: si ya se publican fotos publica una con lo cargado,
+     * entrega los eventos y libera las franjas.
+     */
+    void terminarCarga(){
+        try{
+            if(fotos.get() != null)
+                fotos.set(copiarFoto());
+            terminarLote();
+        }finally{
+            cerrojos.escrituraTotal().unlock();
+        }
+    }
+    
+    //---------------------------------FOTOS----------------------------------//
+    /**
+     * Obtiene el estado actual de la competencia como una Foto que no cambia.
+     * La primera llamada copia todos los carros; desde ahi cada cambio
+     * publica una foto nueva que comparte con la anterior lo que no toco, asi
+     * que pedir otra foto no cuesta nada. Los cambios de una transaccion o de
+     * aplicarLote salen juntos en una sola foto.
+     * @return Retorna la ultima foto publicada
+     * @throws IllegalStateException Si es la primera llamada y se hace dentro
+     * de una transaccion
+     */
+    public Foto foto(){
+        Foto actual = fotos.get();
+        if(actual != null)
+            return actual;
+        
+        Lock cerrojo = cerrojos.lecturaTotal();
+        cerrojo.lock();
+        try{
+            fotos.compareAndSet(null, copiarFoto());
+            return fotos.get();
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
+    /**
+     * Obtiene el estado actual como una Foto sin empezar a publicar fotos en
+     * cada cambio. Si ya se llamo foto() devuelve la ultima publicada; si no,
+     * copia todos los carros solo para esta llamada. Sirve para tareas de una
+     * vez, como exportar.
+     * @return Retorna una foto del estado actual
+     * @throws IllegalStateException Si hay que copiar los carros y se hace
+     * dentro de una transaccion
+     */
+    public Foto tomarFoto(){
+        Foto actual = fotos.get();
+        if(actual != null)
+            return actual;
+        
+        Lock cerrojo = cerrojos.lecturaTotal();
+        cerrojo.lock();
+        try{
+            actual = fotos.get();
+            return actual != null ? actual : copiarFoto();
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
+    /**
+     * Copia todos los carros en una foto nueva. Se llama con el cerrojo total
+     * de lectura.
+     */
+    private Foto copiarFoto(){
+        if(transaccion != null)
+            throw new IllegalStateException("La primera foto no se puede tomar dentro de una transaccion");
+        
+        Foto foto = Foto.VACIA;
+        for(Carro c: registros.values())
+            foto = foto.con(FotoCarro.de(c, copas.get(c)));
+        return foto;
+    }
+    
+    /**
+     * Empieza a juntar los cambios en fotoEnCurso para publicarlos de una vez.
+     * @return Retorna true si esta llamada la empezo
+     */
+    private boolean abrirFoto(){
+        if(fotoEnCurso != null || fotos.get() == null)
+            return false;
+        
+        fotoEnCurso = fotos.get();
+        return true;
+    }
+    
+    /**
+     * Termina fotoEnCurso, publicandola o descartandola.
+     */
+    private void cerrarFoto(boolean publicar){
+        if(publicar && fotoEnCurso != null)
+            fotos.set(fotoEnCurso);
+        fotoEnCurso = null;
+    }
+    
+    /**
+     * Lleva un cambio aplicado a la foto. Se llama con la franja del carro
+     * bloqueada, asi los cambios a un mismo carro llegan en orden; los de
+     * otras franjas pueden publicarse al mismo tiempo y por eso se reintenta
+     * sobre la ultima foto.
+     */
+    private void fotografiar(Operacion operacion){
+        if(fotoEnCurso != null){
+            fotoEnCurso = cambiarFoto(fotoEnCurso, operacion);
+            return;
+        }
+        
+        while(true){
+            Foto actual = fotos.get();
+            if(actual == null || fotos.compareAndSet(actual, cambiarFoto(actual, operacion)))
+                return;
+        }
+    }
+    
+    /**
+     * Copia en una foto el carro que toco un cambio, solo la parte que cambio.
+     */
+    private Foto cambiarFoto(Foto foto, Operacion operacion){
+        switch(operacion.getTipo()){
+            case BORRAR_TODO:
+                return Foto.VACIA;
+            case BORRAR_CARRO:
+                FotoCarro borrado = foto.carro(operacion.getTexto(0));
+                return borrado != null ? foto.sin(borrado) : foto;
+        }
+        
+        //Al modificar un carro la placa nueva es el segundo texto
+        boolean renombrado = operacion.getTipo() == Operacion.Tipo.MODIFICAR_CARRO;
+        Carro c = buscarCarro(operacion.getTexto(renombrado ? 1 : 0));
+        FotoCarro anterior = foto.carro(c.getRegistro());
+        if(anterior == null)
+            return foto.con(FotoCarro.de(c, copas.get(c)));
+        
+        //Los premios se cambian uno por uno con los datos de la operacion, asi
+        //el FotoCarro nuevo comparte los demas con el anterior
+        switch(operacion.getTipo()){
+            case MODIFICAR_CARRO:
+                return foto.con(anterior.conDatos(c.getPlaca(), c.getMarca(), c.getModelo()));
+            case REGISTRAR_PREMIO:
+                return foto.con(anterior.conPremio(new Premio(operacion.getNumero(0),
+                        operacion.getNumero(1), operacion.getTexto(1))));
+            case BORRAR_PREMIO:
+                return foto.con(anterior.conPremio(operacion.getTexto(1), operacion.getNumero(0), null));
+            case MODIFICAR_PREMIO:
+                return foto.con(anterior.conPremio(operacion.getTexto(1), operacion.getNumero(0),
+                        new Premio(operacion.getNumero(1), operacion.getNumero(2), operacion.getTexto(2))));
+            case BORRAR_TODOS_PREMIOS:
+                return foto.con(anterior.sinPremios());
+            case BORRAR_PROPIETARIOS:
+                return foto.con(anterior.sinPropietarios());
+            default:
+                int año = operacion.getNumero(0);
+                return foto.con(anterior.conPropietarios(año, c.obtenerPropietarios(año)));
+        }
+    }
+    
+    //--------------------------------BITACORA--------------------------------//
+    /**
+     * Asigna la bitacora donde se guarda cada cambio hecho con los metodos
+     * de esta clase. Solo se guardan los cambios que se aplicaron.
+     * @param bitacora Bitacora a usar, null para no guardar los cambios
+     */
+    public void setBitacora(Bitacora bitacora){
+        this.bitacora = bitacora;
+    }
+    
+    public Bitacora getBitacora(){
+        return bitacora;
+    }
+    
+    //-------------------------VISTAS DE SOLO LECTURA--------------------------//
+    /**
+     * Obtiene las placas de todos los carros en orden de registro. Es una vista
+     * sobre los carros registrados, no copia ni concatena nada y refleja los
+     * cambios.
+     * @return Retorna una coleccion de solo lectura con las placas
+     */
+    public Collection<String> listarPlacas(){
+        return new AbstractCollection<String>(){
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<Carro> it = registros.values().iterator();
+                return new Iterator<String>(){
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return it.next().getPlaca();
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return indicePlacas.size();
+            }
+        };
+    }
+    
+    /**
+     * Recorre todos los carros en orden de registro con sus premios y
+     * propietarios, copiando uno a la vez con el cerrojo de lectura de su
+     * franja, asi la memoria no depende de la cantidad de carros. Cada carro
+     * sale como estaba cuando se copio; los que se borran antes de llegar a
+     * ellos no salen. Si ya se pidio una foto() se recorre la ultima, completa
+     * en un mismo momento.
+     * @return Retorna los carros, se copian a medida que se recorren
+     */
+    public Iterable<FotoCarro> listarCarros(){
+        Foto foto = fotos.get();
+        if(foto != null)
+            return foto.carros();
+        
+        return copiar(registros.values());
+    }
+    
+    /**
+     * Obtiene un carro registrado.
+     * @param placa Placa del carro
+     * @return Retorna el carro o null si no existe
+     */
+    public Carro obtenerCarro(String placa){
+        return buscarCarro(placa);
+    }
+    
+    /**
+     * Obtiene los premios de un carro sin concatenarlos.
+     * @param placa Placa del carro
+     * @return Retorna una lista de solo lectura, vacia si el carro no existe.
+     * En una competencia concurrente es una copia
+     */
+    public List<Premio> listarPremios(String placa){
+        Lock cerrojo = cerrojos.lectura(placa);
+        cerrojo.lock();
+        try{
+            ArrayList<Premio> premios = obtenerPremios(placa);
+            if(premios == null)
+                return Collections.<Premio>emptyList();
+            
+            //En modo concurrente otro hilo puede cambiar la lista mientras se lee
+            if(esConcurrente())
+                return Collections.unmodifiableList(new ArrayList<>(premios));
+            return Collections.unmodifiableList(premios);
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
+    /**
+     * Obtiene el primer premio de un carro en un evento.
+     * @param placa Placa del carro
+     * @param evento Evento del premio
+     * @return Retorna el premio o null si no existe
+     */
+    public Premio obtenerPremio(String placa, String evento){
+        for(Premio x: listarPremios(placa))
+            if(x.getEvento().equalsIgnoreCase(evento))
+                return x;
+        
+        return null;
+    }
+    
+    /**
+     * Obtiene los propietarios de un carro en un año sin concatenarlos.
+     * @param placa Placa del carro
+     * @param año Año de compra
+     * @return Retorna una coleccion de solo lectura, vacia si no hay propietarios.
+     * En una competencia concurrente es una copia
+     */
+    public Collection<Propietario> listarPropietarios(String placa, int año){
+        Lock cerrojo = cerrojos.lectura(placa);
+        cerrojo.lock();
+        try{
+            Carro x = buscarCarro(placa);
+            if(x == null)
+                return Collections.<Propietario>emptyList();
+            
+            if(esConcurrente())
+                return Collections.unmodifiableList(new ArrayList<>(x.obtenerPropietarios(año)));
+            return x.obtenerPropietarios(año);
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
+    /**
+     * Obtiene los años en que un carro tiene propietarios, para recorrerlos
+     * con listarPropietarios.
+     * @param placa Placa del carro
+     * @return Retorna una coleccion de solo lectura sin orden, vacia si el carro
+     * no existe. Puede incluir años sin propietarios. En una competencia
+     * concurrente es una copia.
+     */
+    public Collection<Integer> listarAñosPropietarios(String placa){
+        Lock cerrojo = cerrojos.lectura(placa);
+        cerrojo.lock();
+        try{
+            Carro x = buscarCarro(placa);
+            if(x == null)
+                return Collections.<Integer>emptyList();
+            
+            if(esConcurrente())
+                return Collections.unmodifiableList(new ArrayList<>(x.obtenerAñosPropietarios()));
+            return x.obtenerAñosPropietarios();
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
+    /**
+     * Obtiene un propietario de un carro en un año.
+     * @param placa Placa del carro
+     * @param año Año de compra
+     * @param cc NIT del propietario
+     * @return Retorna el propietario o null si no existe
+     */
+    public Propietario obtenerPropietario(String placa, int año, String cc){
+        Lock cerrojo = cerrojos.lectura(placa);
+        cerrojo.lock();
+        try{
+            Carro x = buscarCarro(placa);
+            if(x == null)
+                return null;
+        
+            return x.obtenerPropietario(año, cc);
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
+    /**
+     * Recorre los carros con modelo dentro de un rango, en el orden de
+     * imprimirCarrosParaUnRango, copiando cada uno con sus premios y
+     * propietarios a medida que se llega a el como en listarCarros. Solo
+     * visita los carros que estan en el rango.
+     * @param rango Rango de modelos, ambos extremos incluidos
+     * @return Retorna los carros, se copian a medida que se recorren
+     */
+    public Iterable<FotoCarro> listarCarrosParaUnRango(RangoModelos rango){
+        ArrayList<Carro> carros = new ArrayList<>();
+        for(IndiceModelos.Modelo modelo: indiceModelos.carros(rango))
+            carros.addAll(modelo.getCarros());
+        return copiar(carros);
+    }
+    
+    /**
+     * Obtiene los propietarios ganadores de un evento sin concatenarlos, en
+     * orden de puesto y cada uno una sola vez.
+     * @param evento Evento en que participo y gano
+     * @param año Año en que participo y gano
+     * @return Retorna una lista nueva, vacia si nadie gano
+     */
+    public List<Propietario> listarPropietariosParaUnaVictoria(String evento, int año){
+        HashSet<String> vistos = new HashSet<>();
+        ArrayList<Propietario> resultado = new ArrayList<>();
+        ArrayList<Carro> ganadores;
+        Lock premios = cerrojos.lecturaPremios();
+        premios.lock();
+        try{
+            ganadores = new ArrayList<>(indicePremios.ganadores(evento, año).values());
+        }finally{
+            premios.unlock();
+        }
+        
+        for(Carro y: ganadores){
+            Collection<Propietario> propietarios;
+            if(esConcurrente()){
+                EstadoCarro estado = leerEstado(y);
+                if(estado == null)
+                    continue;
+                propietarios = estado.getPropietarios(año);
+            }else
+                propietarios = y.obtenerPropietarios(año);
+            
+            for(Propietario x: propietarios)
+                if(vistos.add(normalizar(x.getCc())))
+                    resultado.add(x);
+        }
+        
+        return resultado;
+    }
+    
+    /**
+     * Obtiene los premios de un propietario sin concatenarlos: los de cada
+     * carro que tuvo, ganados en un año en que era su dueño.
+     * @param cc NIT del propietario
+     * @return Retorna una lista nueva, vacia si no tiene premios
+     */
+    public List<Premio> listarPremiosdePropietario(String cc){
+        ArrayList<Premio> resultado = new ArrayList<>();
+        for(IndicePropietarios.Tenencia t: indicePropietarios.tenencias(cc)){
+            Collection<Premio> premios;
+            if(esConcurrente()){
+                EstadoCarro estado = leerEstado(t.getCarro());
+                if(estado == null)
+                    continue;
+                premios = estado.getPremios();
+            }else
+                premios = copas.get(t.getCarro());
+            
+            for(Premio x: premios)
+                if(x.getAnio() == t.getAño())
+                    resultado.add(x);
+        }
+        
+        return resultado;
+    }
+    
+    /**
+     * Escribe un carro y sus premios con el formato de recorrerPremios().
+     * @param salida Destino del reporte
+     * @param carro Carro a escribir
+     * @param premios Premios del carro
+     * @throws IOException Si la salida falla al escribir
+     */
+    static void escribirCarro(Appendable salida, Object carro, Collection<Premio> premios) throws IOException{
+        salida.append(carro.toString()).append('\n').append('[');
+        boolean primero = true;
+        for(Premio x: premios){
+            if(!primero)
+                salida.append(", ");
+            salida.append(x.toString());
+            primero = false;
+        }
+        salida.append("]\n\n");
+    }
+    
+    /**
+     * Lee el numero de registro que guarda un cursor de paginas.
+     * @param cursor Cursor de una pagina o null
+     * @return Retorna el numero de registro, 0 para la primera pagina
+     */
+    private long leerCursor(String cursor){
+        if(cursor == null)
+            return 0;
+        
+        try{
+            return Long.parseLong(cursor, Character.MAX_RADIX);
+        }catch(NumberFormatException ex){
+            throw new IllegalArgumentException("Cursor invalido: "+cursor);
+        }
+    }
+    
+    /**
+     * Avisa un cambio a los oyentes, o lo guarda si hay un lote abierto.
+     * @param evento Cambio hecho
+     */
+    private void publicar(EventoCompetencia evento){
+        //Sin oyentes no se guarda nada, asi una carga grande no llena el lote.
+        //Un oyente que llega despues lee el estado actual al registrarse.
+        if(oyentes.isEmpty())
+            return;
+        
+        synchronized(pendientes){
+            if(lotesAbiertos > 0){
+                pendientes.agregar(evento);
+                return;
+            }
+        }
+        entregar(Collections.singletonList(evento));
+    }
+    
+    private void entregar(List<EventoCompetencia> eventos){
+        for(OyenteCompetencia x: oyentes)
+            x.cambios(eventos);
+    }
+    
+    /**
+     * Guarda un cambio aplicado en la bitacora, si hay una asignada, y en la
+     * foto si se esta llevando. Si hay una transaccion abierta se guarda en
+     * ella hasta que se confirme. Si la bitacora falla el cambio se deshace,
+     * asi la memoria no queda con algo que no se va a recuperar.
+     * @param operacion Cambio aplicado
+     * @param cambio Nota para deshacer el cambio si la transaccion o la
+     * bitacora fallan
+     * @throws RuntimeException La que lance la bitacora, ya deshecho el cambio
+     */
+    private void anotar(Operacion operacion, Transaccion.Cambio cambio){
+        if(transaccion != null)
+            transaccion.anotar(operacion, cambio);
+        else if(bitacora != null){
+            try{
+                bitacora.registrar(operacion);
+            }catch(RuntimeException ex){
+                cambio.revertir();
+                throw ex;
+            }
+        }
+        fotografiar(operacion);
+    }
+    
+    /**
+     * Indica si los cambios se pueden tener que deshacer, porque hay una
+     * transaccion abierta o una bitacora que puede fallar. Si no, no hace
+     * falta copiar lo que se borra.
+     */
+    private boolean deshacible(){
+        return transaccion != null || bitacora != null;
+    }
+    
+    /**
+     * Saca un carro de todos los indices, sin anotarlo ni avisarlo.
+     */
+    private void quitarCarro(Carro c){
+        indicePlacas.remove(normalizar(c.getPlaca()));
+        indicePremios.liberar(copas.remove(c));
+        indiceModelos.liberar(c);
+        registros.remove(c.getRegistro());
+        c.setIndice(null);
+    }
+    
+    /**
+     * Vuelve a poner un carro que se saco con quitarCarro, con su mismo numero
+     * de registro y sus premios.
+     */
+    private void reponerCarro(Carro c, ArrayList<Premio> premios){
+        indicePlacas.put(normalizar(c.getPlaca()), c);
+        copas.put(c, premios);
+        registros.put(c.getRegistro(), c);
+        indiceModelos.registrar(c);
+        for(Premio x: premios)
+            indicePremios.registrar(x, c);
+        c.setIndice(indicePropietarios);
+    }
+    
+    /**
+     * Cambia los datos de un carro. La placa es parte del hash del carro, asi
+     * que se saca de los indices antes de cambiarla y se vuelve a guardar con
+     * la llave nueva.
+     */
+    private void cambiarCarro(Carro x, String placa, String marca, int modelo){
+        ArrayList<Premio> premios = copas.remove(x);
+        indicePlacas.remove(normalizar(x.getPlaca()));
+        indiceModelos.liberar(x);
+        x.setPlaca(placa);
+        x.setMarca(marca);
+        x.setModelo(modelo);
+        copas.put(x, premios);
+        indicePlacas.put(normalizar(placa), x);
+        indiceModelos.registrar(x);
+    }
+    
+    /**
+     * Cambia los datos de un premio moviendolo de puesto en el indice.
+     */
+    private void cambiarPremio(Carro c, Premio x, int anio, int puesto, String evento){
+        indicePremios.liberar(x);
+        x.setAnio(anio);
+        x.setPuesto(puesto);
+        x.setEvento(evento);
+        indicePremios.registrar(x, c);
+        c.setEstado(null);
+    }
+    
+    /**
+     * Borra un premio ya encontrado, lo anota y lo avisa.
+     */
+    private void quitarPremio(String placa, final ArrayList<Premio> premios, final Premio x){
+        final Carro c = buscarCarro(placa);
+        final int posicion = premios.indexOf(x);
+        Lock cerrojo = cerrojos.escrituraPremios();
+        cerrojo.lock();
+        try{
+            premios.remove(posicion);
+            indicePremios.liberar(x);
+            c.setEstado(null);
+            anotar(Operacion.borrarPremio(placa, x.getEvento(), x.getAnio()), new Transaccion.Cambio(){
+                @Override
+                public void revertir() {
+                    premios.add(posicion, x);
+                    indicePremios.registrar(x, c);
+                    c.setEstado(null);
+                }
+            });
+        }finally{
+            cerrojo.unlock();
+        }
+        publicar(EventoCompetencia.premiosCambiados(c.getPlaca()));
+    }
+    
+    /**
+     * Revisa las reglas de registrarPremioACarro para un premio de un lote: que
+     * el carro no tenga ese evento en ese año y que nadie tenga ese puesto,
+     * en la competencia ni antes en el lote. Si esta libre lo aparta en el lote.
+     * @param c Carro registrado, o null si se agrega en el mismo lote
+     */
+    private boolean premioLibre(Carro c, String llave, String evento, int anio, int puesto,
+            HashSet<String> premiosCarro, HashSet<String> puestos){
+        if(c != null)
+            for(Premio x: copas.get(c))
+                if(x.getAnio() == anio && x.getEvento().equalsIgnoreCase(evento))
+                    return false;
+        if(indicePremios.ocupado(evento, anio, puesto))
+            return false;
+        
+        String mismoEvento = llave+'\0'+normalizar(evento)+'\0'+anio;
+        String mismoPuesto = normalizar(evento)+'\0'+anio+'\0'+puesto;
+        if(premiosCarro.contains(mismoEvento) || puestos.contains(mismoPuesto))
+            return false;
+        
+        premiosCarro.add(mismoEvento);
+        puestos.add(mismoPuesto);
+        return true;
+    }
+    
+    /**
+     * Guarda un premio ya revisado, lo anota y lo avisa.
+     */
+    private void guardarPremio(final Carro c, final ArrayList<Premio> victorias, String placa,
+            int anio, int puesto, String evento){
+        final Premio p = new Premio(anio, puesto, evento);
+        victorias.add(p);
+        indicePremios.registrar(p, c);
+        c.setEstado(null);
+        anotar(Operacion.registrarPremio(placa, anio, puesto, evento), new Transaccion.Cambio(){
+            @Override
+            public void revertir() {
+                victorias.remove(p);
+                indicePremios.liberar(p);
+                c.setEstado(null);
+            }
+        });
+        publicar(EventoCompetencia.premiosCambiados(c.getPlaca()));
+    }
+    
+    /**
+     * Guarda un propietario en un carro, lo anota y lo avisa.
+     * @throws Exception Si el propietario ya esta en ese año
+     */
+    private boolean guardarPropietario(final Carro x, String placa, final int año, String nombre,
+            final String cc, String direccion, String ciudad, String telefono) throws Exception{
+        if(!x.agregarPropietario(año, nombre, cc, direccion, ciudad, telefono))
+            return false;
+        
+        anotar(Operacion.agregarPropietario(placa, año, nombre, cc, direccion, ciudad, telefono),
+                new Transaccion.Cambio(){
+            @Override
+            public void revertir() {
+                x.borrarPropietario(año, cc);
+            }
+        });
+        publicar(EventoCompetencia.propietariosCambiados(x.getPlaca(), año));
+        return true;
+    }
+    
+    /**
+     * Toma el cerrojo de lectura de la franja de un carro encontrado en algun
+     * indice. La placa puede cambiar mientras se espera, asi que despues de
+     * tomarlo se revisa que siga siendo la misma y que el carro no se borro.
+     * @param c Carro a leer
+     * @return Retorna el cerrojo tomado, o null si el carro ya no esta
+     */
+    private Lock leerCarro(Carro c){
+        if(!esConcurrente())
+            return Cerrojos.VACIO;
+        
+        while(true){
+            String placa = c.getPlaca();
+            Lock cerrojo = cerrojos.lectura(placa);
+            cerrojo.lock();
+            if(placa == c.getPlaca() && buscarCarro(placa) == c)
+                return cerrojo;
+            
+            cerrojo.unlock();
+            if(placa == c.getPlaca())
+                return null;
+        }
+    }
+    
+    /**
+     * Recorre unos carros copiando cada uno con el cerrojo de lectura de su
+     * franja cuando se llega a el. Los que ya se borraron no salen.
+     */
+    private Iterable<FotoCarro> copiar(final Iterable<Carro> carros){
+        return new Iterable<FotoCarro>(){
+            @Override
+            public Iterator<FotoCarro> iterator() {
+                final Iterator<Carro> it = carros.iterator();
+                return new Iterator<FotoCarro>(){
+                    private FotoCarro siguiente;
+
+                    @Override
+                    public boolean hasNext() {
+                        while(siguiente == null && it.hasNext()){
+                            Carro c = it.next();
+                            Lock cerrojo = leerCarro(c);
+                            if(cerrojo == null)
+                                continue;
+                            try{
+                                //Sin franjas un carro borrado puede seguir en el recorrido
+                                ArrayList<Premio> premios = copas.get(c);
+                                if(premios != null)
+                                    siguiente = FotoCarro.de(c, premios);
+                            }finally{
+                                cerrojo.unlock();
+                            }
+                        }
+                        return siguiente != null;
+                    }
+
+                    @Override
+                    public FotoCarro next() {
+                        if(!hasNext())
+                            throw new NoSuchElementException();
+
+                        FotoCarro c = siguiente;
+                        siguiente = null;
+                        return c;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+    
+    /**
+     * Lee el estado de un carro en una competencia concurrente sin tomar
+     * cerrojos: toma el sello de la franja, busca el carro y su copia de solo
+     * lectura y valida el sello. Si un escritor paso por la franja o el carro
+     * no tiene copia, la arma con el cerrojo de lectura y la deja guardada.
+     * @param placa Placa del carro
+     * @return Retorna el estado del carro o null si no esta registrado
+     */
+    private EstadoCarro leerEstado(String placa){
+        String llave = normalizar(placa);
+        if(llave == null)
+            return null;
+        
+        int franja = cerrojos.franjaDe(llave);
+        long sello = cerrojos.sello(franja);
+        Carro c = indicePlacas.get(llave);
+        EstadoCarro estado = c != null ? c.getEstado() : null;
+        if((c == null || estado != null) && cerrojos.validar(franja, sello))
+            return estado;
+        
+        Lock cerrojo = cerrojos.lectura(placa);
+        cerrojo.lock();
+        try{
+            c = buscarCarro(placa);
+            return c != null ? guardarEstado(c) : null;
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
+    /**
+     * Igual que leerEstado(String) para un carro encontrado en algun indice.
+     * Ademas del sello se revisa que la placa de la copia siga llevando a ese
+     * carro, asi no se usa un carro borrado o al que le cambiaron la placa.
+     * @param c Carro a leer
+     * @return Retorna el estado del carro o null si ya no esta
+     */
+    private EstadoCarro leerEstado(Carro c){
+        EstadoCarro estado = c.getEstado();
+        if(estado != null){
+            String llave = normalizar(estado.getPlaca());
+            int franja = cerrojos.franjaDe(llave);
+            long sello = cerrojos.sello(franja);
+            if(c.getEstado() == estado && indicePlacas.get(llave) == c
+                    && cerrojos.validar(franja, sello))
+                return estado;
+        }
+        
+        Lock cerrojo = leerCarro(c);
+        if(cerrojo == null)
+            return null;
+        try{
+            return guardarEstado(c);
+        }finally{
+            cerrojo.unlock();
+        }
+    }
+    
+    /**
+     * Arma la copia de solo lectura de un carro si no la tiene. Se llama con
+     * el cerrojo de lectura de su franja, asi ningun escritor la borra entre
+     * armarla y guardarla.
+     */
+    private EstadoCarro guardarEstado(Carro c){
+        EstadoCarro estado = c.getEstado();
+        if(estado == null){
+            estado = EstadoCarro.de(c, copas.get(c));
+            c.setEstado(estado);
+        }
+        return estado;
+    }
+    
+    /**
+     * Premios de un carro para las consultas. En una competencia concurrente
+     * salen de su estado, leido sin cerrojo.
+     * @return Retorna los premios, vacia si el carro no existe
+     */
+    private Collection<Premio> leerPremios(String placa){
+        if(!esConcurrente()){
+            ArrayList<Premio> premios = obtenerPremios(placa);
+            return premios != null ? premios : Collections.<Premio>emptyList();
+        }
+        
+        EstadoCarro estado = leerEstado(placa);
+        return estado != null ? estado.getPremios() : Collections.<Premio>emptyList();
+    }
+    
+    /**
+     * Propietarios de un carro en un año para las consultas, como leerPremios.
+     * @return Retorna los propietarios o null si el carro no existe
+     */
+    private Collection<Propietario> leerPropietarios(String placa, int año){
+        if(!esConcurrente()){
+            Carro x = buscarCarro(placa);
+            return x != null ? x.obtenerPropietarios(año) : null;
+        }
+        
+        EstadoCarro estado = leerEstado(placa);
+        return estado != null ? estado.getPropietarios(año) : null;
+    }
+    
+    /**
+     * Busca un carro en el indice de placas sin recorrer todos los carros.
+     * @param placa Placa del carro, no importan mayusculas o minusculas
+     * @return Retorna el carro o null si no esta registrado
+     */
+    private Carro buscarCarro(String placa){
+        if(placa == null)
+            return null;
+        
+        return indicePlacas.get(normalizar(placa));
+    }
+    
+    /**
+     * Obtiene la lista de premios de un carro a partir de su placa.
+     * @param placa Placa del carro
+     * @return Retorna la lista de premios o null si el carro no existe
+     */
+    private ArrayList<Premio> obtenerPremios(String placa){
+        Carro c = buscarCarro(placa);
+        if(c != null)
+            return copas.get(c);
+        
+        return null;
+    }
+    
+    /**
+     * Lleva un texto a la forma con la que se guarda en los indices, asi las
+     * busquedas no dependen de mayusculas o minusculas.
+     * @param texto Placa, evento o NIT a normalizar
+     * @return Retorna el texto normalizado
+     */
+    static String normalizar(String texto){
+        if(texto == null)
+            return null;
+        
+        return texto.trim().toUpperCase(Locale.ROOT);
+    }
 }
@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hilo unico que aplica todos los cambios de una Competencia. Los demas hilos
+ * no la cambian directamente: envian operaciones a un anillo de tamaño fijo,
+ * que se crea una sola vez, y reciben un Future con lo que retorno el metodo
+ * de la competencia. Enviar no usa cerrojos, solo reserva una casilla del
+ * anillo con compareAndSet, y si el anillo esta lleno espera a que el
+ * escritor libere casillas.
+ * 
+ * El escritor toma todas las operaciones que encuentra, hasta LOTE_MAXIMO, y
+ * las aplica en una Transaccion: la bitacora las guarda en un solo registro,
+ * los oyentes las reciben juntas y se publica una sola Foto. Los futuros se
+ * completan al confirmar; si la bitacora falla el lote se deshace y todos sus
+ * futuros fallan con esa excepcion. Una operacion que lanza una excepcion,
+ * como un premio doble, solo hace fallar su futuro. Si lo que falla es un
+ * oyente, los cambios ya quedaron guardados: los futuros se completan bien y
+ * la excepcion se entrega al UncaughtExceptionHandler del hilo escritor.
+ * 
+ * Un Error deshace el lote, hace fallar sus futuros y cierra el escritor: las
+ * operaciones que ya se enviaron fallan con el mismo Error y al final el hilo
+ * termina lanzandolo.
+ * 
+ * Como solo un hilo escribe, la competencia puede ser una new Competencia()
+ * sin franjas. Los demas hilos leen con competencia.foto(), que el escritor
+ * activa al iniciar:
+ * <pre>
+ * try(Escritor escritor = Escritor.iniciar(competencia, 4096)){
+ *     Future&lt;Boolean&gt; agregado = escritor.agregarCarro("ABC123", "Mazda", 2012);
+ *     escritor.registrarPremioACarro("ABC123", 2014, 1, "Rally");
+ *     agregado.get();
+ * }
+ * </pre>
+ * @author Emanuel Martinez Pinzon
+ */
+public class Escritor implements AutoCloseable{
+    
+    /**
+     * Casillas del anillo, si no se indican otras
+     */
+    public static final int CAPACIDAD = 1024;
+    
+    /**
+     * Maximo de operaciones que se aplican en una misma transaccion
+     */
+    public static final int LOTE_MAXIMO = 1024;
+    
+    //Bit de siguiente que indica que ya no se reciben operaciones
+    private static final long CERRADO = 1L << 62;
+    private static final int GIROS = 64;
+    
+    private final Competencia competencia;
+    private final Comando[] anillo;
+    //Numero de la operacion que ocupa cada casilla, o -1 si no se ha usado
+    private final AtomicLongArray publicadas;
+    private final int mascara;
+    private final AtomicLong siguiente;
+    private final Thread hilo;
+    //Solo los cambia el hilo escritor
+    private final Comando[] lote;
+    private Error detenido;
+    private volatile long consumidas;
+    private volatile boolean dormido;
+    
+    private Escritor(Competencia competencia, int capacidad){
+        int casillas = Integer.highestOneBit(capacidad);
+        if(casillas < capacidad)
+            casillas <<= 1;
+        
+        this.competencia = competencia;
+        this.anillo = new Comando[casillas];
+        this.publicadas = new AtomicLongArray(casillas);
+        for(int i = 0; i < casillas; i++)
+            publicadas.set(i, -1);
+        this.mascara = casillas - 1;
+        this.siguiente = new AtomicLong();
+        this.lote = new Comando[Math.min(casillas, LOTE_MAXIMO)];
+        this.hilo = new Thread(new Runnable(){
+            @Override
+            public void run() {
+                aplicarComandos();
+            }
+        }, "escritor competencia");
+        this.hilo.setDaemon(true);
+    }
+    
+    /**
+     * Inicia un escritor con CAPACIDAD casillas.
+     * @param competencia Competencia que solo cambiara el escritor
+     * @return Retorna el escritor ya iniciado
+     */
+    public static Escritor iniciar(Competencia competencia){
+        return iniciar(competencia, CAPACIDAD);
+    }
+    
+    /**
+     * Inicia un escritor.
+     * @param competencia Competencia que solo cambiara el escritor
+     * @param capacidad Casillas del anillo, se sube a la siguiente potencia de
+     * dos. Con mas casillas los hilos que envian esperan menos si el escritor
+     * se atrasa
+     * @return Retorna el escritor ya iniciado
+     */
+    public static Escritor iniciar(Competencia competencia, int capacidad){
+        if(capacidad <= 0 || capacidad > 1 << 30)
+            throw new IllegalArgumentException("Capacidad invalida: "+capacidad);
+        
+        //La foto se activa antes de que escriba el otro hilo, asi leerla es seguro
+        competencia.foto();
+        Escritor escritor = new Escritor(competencia, capacidad);
+        escritor.hilo.start();
+        return escritor;
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * Envia una operacion al escritor.
+     * @param operacion Operacion a aplicar en la competencia
+     * @return Retorna el futuro con lo que retorne Operacion.aplicar(); si lanza
+     * una excepcion, get() la lanza dentro de una ExecutionException
+     * @throws IllegalStateException Si el escritor esta cerrado
+     */
+    public Future<Boolean> enviar(Operacion operacion){
+        if(operacion == null)
+            throw new IllegalArgumentException("Operacion nula");
+        
+        Comando comando = new Comando(operacion);
+        long n = reservar();
+        for(int giros = 0; n - anillo.length >= consumidas; giros++)
+            esperar(giros);
+        
+        int i = (int) n & mascara;
+        anillo[i] = comando;
+        publicadas.set(i, n);
+        if(dormido)
+            LockSupport.unpark(hilo);
+        return comando;
+    }
+    
+    /**
+     * Envia Competencia.agregarCarro() al escritor.
+     * @return Retorna el futuro con el resultado
+     */
+    public Future<Boolean> agregarCarro(String placa, String marca, int modelo){
+        return enviar(Operacion.agregarCarro(placa, marca, modelo));
+    }
+    
+    /**
+     * Envia Competencia.registrarPremioACarro() al escritor.
+     * @return Retorna el futuro con el resultado o con la excepcion del premio doble
+     */
+    public Future<Boolean> registrarPremioACarro(String placa, int anio, int puesto, String evento){
+        return enviar(Operacion.registrarPremio(placa, anio, puesto, evento));
+    }
+    
+    /**
+     * Envia Competencia.agregarPropietario() al escritor.
+     * @return Retorna el futuro con el resultado o con la excepcion del propietario doble
+     */
+    public Future<Boolean> agregarPropietario(String placa, int año, String nombre, String cc,
+            String direccion, String ciudad, String telefono){
+        return enviar(Operacion.agregarPropietario(placa, año, nombre, cc, direccion, ciudad, telefono));
+    }
+    
+    /**
+     * Deja de recibir operaciones y espera a que el escritor aplique todas las
+     * que ya se enviaron.
+     */
+    @Override
+    public void close(){
+        cerrarAnillo();
+        LockSupport.unpark(hilo);
+        if(Thread.currentThread() == hilo)
+            return;
+        
+        boolean interrumpido = false;
+        while(hilo.isAlive())
+            try{
+                hilo.join();
+            }catch(InterruptedException ex){
+                interrumpido = true;
+            }
+        if(interrumpido)
+            Thread.currentThread().interrupt();
+    }
+    
+    public Competencia getCompetencia(){
+        return competencia;
+    }
+    
+    //-----------------------REQUERIMIENTOS OPERACIONALES----------------------//
+    /**
+     * Reserva el numero de la siguiente operacion, si no esta cerrado.
+     */
+    private long reservar(){
+        while(true){
+            long n = siguiente.get();
+            if((n & CERRADO) != 0)
+                throw new IllegalStateException("El escritor esta cerrado");
+            if(siguiente.compareAndSet(n, n + 1))
+                return n;
+        }
+    }
+    
+    /**
+     * Marca el anillo como cerrado, asi no se reservan mas casillas.
+     */
+    private void cerrarAnillo(){
+        while(true){
+            long n = siguiente.get();
+            if((n & CERRADO) != 0 || siguiente.compareAndSet(n, n | CERRADO))
+                return;
+        }
+    }
+    
+    /**
+     * Espera corta mientras el anillo esta lleno o vacio: primero gira, luego
+     * cede el procesador y al final duerme un poco.
+     */
+    private static void esperar(int giros){
+        if(giros < GIROS)
+            return;
+        if(giros < 2 * GIROS)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(1000);
+    }
+    
+    /**
+     * Ciclo del hilo escritor: toma las operaciones publicadas en orden y las
+     * aplica por lotes hasta que se cierre y no quede ninguna. Despues de un
+     * Error sigue tomandolas, para que nadie se quede esperando, pero las hace
+     * fallar con ese Error.
+     */
+    private void aplicarComandos(){
+        long proxima = 0;
+        int giros = 0;
+        while(true){
+            int n = 0;
+            while(n < lote.length){
+                int i = (int) (proxima + n) & mascara;
+                if(publicadas.get(i) != proxima + n)
+                    break;
+                lote[n++] = anillo[i];
+                anillo[i] = null;
+            }
+            
+            if(n > 0){
+                proxima += n;
+                consumidas = proxima;
+                if(detenido == null)
+                    aplicar(n);
+                else
+                    completar(n, detenido);
+                Arrays.fill(lote, 0, n, null);
+                giros = 0;
+            }else if(siguiente.get() == (proxima | CERRADO)){
+                if(detenido != null)
+                    throw detenido;
+                return;
+            }
+            else if(giros++ < 2 * GIROS)
+                esperar(giros);
+            else{
+                //Se revisa otra vez despues de avisar que duerme, asi no se
+                //pierde una operacion publicada justo antes
+                dormido = true;
+                if(publicadas.get((int) proxima & mascara) != proxima && (siguiente.get() & CERRADO) == 0)
+                    LockSupport.park(this);
+                dormido = false;
+            }
+        }
+    }
+    
+    /**
+     * Aplica las primeras n operaciones de lote en una transaccion. Los
+     * futuros se completan siempre, pase lo que pase.
+     */
+    private void aplicar(int n){
+        Transaccion t = null;
+        Throwable fallo = null;
+        try{
+            t = competencia.iniciarTransaccion();
+            for(int i = 0; i < n; i++)
+                lote[i].ejecutar(competencia);
+            t.confirmar();
+        }catch(Throwable ex){
+            //Si no se confirmo, la bitacora o una operacion fallaron
+            fallo = ex;
+        }finally{
+            try{
+                if(t != null)
+                    t.close();
+            }catch(Throwable ex){
+                if(fallo == null)
+                    fallo = ex;
+            }finally{
+                if(t != null && t.estaConfirmada()){
+                    //Los cambios quedaron guardados, lo que fallo fue un oyente
+                    completar(n, null);
+                    if(fallo != null && !(fallo instanceof Error))
+                        reportar(fallo);
+                }else
+                    completar(n, fallo);
+                
+                if(fallo instanceof Error){
+                    detenido = (Error) fallo;
+                    cerrarAnillo();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Entrega una excepcion que no es de ningun futuro al manejador del hilo.
+     */
+    private static void reportar(Throwable fallo){
+        Thread hilo = Thread.currentThread();
+        hilo.getUncaughtExceptionHandler().uncaughtException(hilo, fallo);
+    }
+    
+    /**
+     * Completa los futuros del lote, con la excepcion si no es null.
+     */
+    private void completar(int n, Throwable fallo){
+        for(int i = 0; i < n; i++)
+            lote[i].completar(fallo);
+    }
+    
+    /**
+     * Operacion enviada y su resultado. Es el Future que recibe quien la envia.
+     */
+    private static final class Comando implements Future<Boolean>{
+        private final Operacion operacion;
+        //Los escribe el hilo escritor antes de completar()
+        private boolean resultado;
+        private Throwable error;
+        private boolean listo;
+        
+        Comando(Operacion operacion){
+            this.operacion = operacion;
+        }
+        
+        void ejecutar(Competencia competencia){
+            try{
+                resultado = operacion.aplicar(competencia);
+            }catch(Exception ex){
+                //Los metodos revisan antes de cambiar, asi que fallan sin dejar nada a medias
+                error = ex;
+            }
+        }
+        
+        synchronized void completar(Throwable fallo){
+            if(fallo != null)
+                error = fallo;
+            listo = true;
+            notifyAll();
+        }
+        
+        @Override
+        public boolean cancel(boolean interrumpir) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return listo;
+        }
+
+        @Override
+        public synchronized Boolean get() throws InterruptedException, ExecutionException {
+            while(!listo)
+                wait();
+            return valor();
+        }
+
+        @Override
+        public synchronized Boolean get(long tiempo, TimeUnit unidad) throws InterruptedException,
+                ExecutionException, TimeoutException {
+            long limite = System.nanoTime() + unidad.toNanos(tiempo);
+            while(!listo){
+                long faltan = limite - System.nanoTime();
+                if(faltan <= 0)
+                    throw new TimeoutException();
+                TimeUnit.NANOSECONDS.timedWait(this, faltan);
+            }
+            return valor();
+        }
+        
+        private Boolean valor() throws ExecutionException{
+            if(error != null)
+                throw new ExecutionException(error);
+            return resultado;
+        }
+    }
+}
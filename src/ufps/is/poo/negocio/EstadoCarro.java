@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Copia de solo lectura de un carro con sus premios y propietarios, para las
+ * consultas de una competencia concurrente que leen sin cerrojo. A diferencia
+ * de FotoCarro no se deriva de la anterior en cada cambio: cuando el carro
+ * cambia la copia se descarta y la siguiente consulta arma otra, asi que se
+ * guarda en arreglos planos que se leen con pocos saltos en memoria.
+ * @author Emanuel Martinez Pinzon
+ */
+final class EstadoCarro{
+    private final String placa;
+    private final String marca;
+    private final int modelo;
+    private final Premio[] premios;
+    //Años con propietarios de menor a mayor, con sus propietarios en orden de
+    //registro en las mismas posiciones. Por año, los NIT normalizados van
+    //ordenados para buscarlos con binarySearch, con su propietario al lado
+    private final int[] años;
+    private final Propietario[][] propietarios;
+    private final String[][] llaves;
+    private final Propietario[][] porLlave;
+
+    private EstadoCarro(Carro c, List<Premio> premios){
+        this.placa = c.getPlaca();
+        this.marca = c.getMarca();
+        this.modelo = c.getModelo();
+
+        //Los premios y propietarios de la competencia se modifican, se copian
+        this.premios = new Premio[premios.size()];
+        for(int i = 0; i < this.premios.length; i++){
+            Premio x = premios.get(i);
+            this.premios[i] = new Premio(x.getAnio(), x.getPuesto(), x.getEvento());
+        }
+
+        ArrayList<Integer> conPropietarios = new ArrayList<>();
+        for(Integer año: c.obtenerAñosPropietarios())
+            if(!c.obtenerPropietarios(año).isEmpty())
+                conPropietarios.add(año);
+        Collections.sort(conPropietarios);
+
+        this.años = new int[conPropietarios.size()];
+        this.propietarios = new Propietario[años.length][];
+        this.llaves = new String[años.length][];
+        this.porLlave = new Propietario[años.length][];
+        for(int i = 0; i < años.length; i++){
+            años[i] = conPropietarios.get(i);
+            Collection<Propietario> prop = c.obtenerPropietarios(años[i]);
+            propietarios[i] = new Propietario[prop.size()];
+            final String[] nit = new String[prop.size()];
+            Integer[] orden = new Integer[prop.size()];
+            int k = 0;
+            for(Propietario x: prop){
+                propietarios[i][k] = new Propietario(x.getNombre(), x.getCc(), x.getDireccion(),
+                        x.getCiudad(), x.getTelefono());
+                nit[k] = Competencia.normalizar(x.getCc());
+                orden[k] = k++;
+            }
+
+            Arrays.sort(orden, new Comparator<Integer>(){
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return nit[a].compareTo(nit[b]);
+                }
+            });
+            llaves[i] = new String[orden.length];
+            porLlave[i] = new Propietario[orden.length];
+            for(k = 0; k < orden.length; k++){
+                llaves[i][k] = nit[orden[k]];
+                porLlave[i][k] = propietarios[i][orden[k]];
+            }
+        }
+    }
+
+    /**
+     * Copia un carro de la competencia con sus premios y propietarios. Se
+     * llama con el cerrojo de lectura de su franja.
+     */
+    static EstadoCarro de(Carro c, List<Premio> premios){
+        return new EstadoCarro(c, premios);
+    }
+
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * @return Retorna los premios en el orden en que se registraron, en una
+     * lista de solo lectura
+     */
+    List<Premio> getPremios(){
+        return Collections.unmodifiableList(Arrays.asList(premios));
+    }
+
+    /**
+     * @param año Año de compra
+     * @return Retorna los propietarios de ese año en orden de registro, vacia
+     * si no hay
+     */
+    List<Propietario> getPropietarios(int año){
+        int i = Arrays.binarySearch(años, año);
+        return i >= 0 ? Collections.unmodifiableList(Arrays.asList(propietarios[i]))
+                : Collections.<Propietario>emptyList();
+    }
+
+    /**
+     * @param año Año de compra
+     * @param cc NIT del propietario, no importan mayusculas o minusculas
+     * @return Retorna el propietario o null si no esta en ese año
+     */
+    Propietario getPropietario(int año, String cc){
+        int i = Arrays.binarySearch(años, año);
+        if(i < 0 || cc == null)
+            return null;
+
+        int k = Arrays.binarySearch(llaves[i], Competencia.normalizar(cc));
+        return k >= 0 ? porLlave[i][k] : null;
+    }
+
+    String getPlaca() {
+        return placa;
+    }
+
+    String getMarca() {
+        return marca;
+    }
+
+    int getModelo() {
+        return modelo;
+    }
+
+    //------------------------------METODOS MODIFICADOS------------------------//
+    /**
+     * Mismo formato que Carro.toString().
+     * @return Retorna la informacion del carro
+     */
+    @Override
+    public String toString(){
+        return "Placa: "+getPlaca()
+            +"\nMarca: "+getMarca()
+            +"\nModelo: "+getModelo()+"\n";
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Objects;
+
+/**
+ * Cambio hecho en una Competencia. Los eventos solo dicen que carro cambio y
+ * en que, quien los recibe vuelve a leer lo que necesite de la Competencia.
+ * @author Emanuel Martinez Pinzon
+ */
+public class EventoCompetencia {
+    
+    public enum Tipo {
+        CARRO_AGREGADO,
+        CARRO_MODIFICADO,
+        CARRO_BORRADO,
+        PREMIOS_CAMBIADOS,
+        PROPIETARIOS_CAMBIADOS,
+        TODO_BORRADO
+    }
+    
+    /**
+     * Año de un PROPIETARIOS_CAMBIADOS que afecta todos los años del carro
+     */
+    public static final int TODOS_LOS_AÑOS = 0;
+    
+    private final Tipo tipo;
+    private final String placaAnterior;
+    private final String placa;
+    private final int año;
+    
+    private EventoCompetencia(Tipo tipo, String placaAnterior, String placa, int año){
+        this.tipo = tipo;
+        this.placaAnterior = placaAnterior;
+        this.placa = placa;
+        this.año = año;
+    }
+    
+    static EventoCompetencia carroAgregado(String placa){
+        return new EventoCompetencia(Tipo.CARRO_AGREGADO, null, placa, TODOS_LOS_AÑOS);
+    }
+    
+    static EventoCompetencia carroModificado(String placaAnterior, String placa){
+        return new EventoCompetencia(Tipo.CARRO_MODIFICADO, placaAnterior, placa, TODOS_LOS_AÑOS);
+    }
+    
+    static EventoCompetencia carroBorrado(String placa){
+        return new EventoCompetencia(Tipo.CARRO_BORRADO, null, placa, TODOS_LOS_AÑOS);
+    }
+    
+    static EventoCompetencia premiosCambiados(String placa){
+        return new EventoCompetencia(Tipo.PREMIOS_CAMBIADOS, null, placa, TODOS_LOS_AÑOS);
+    }
+    
+    static EventoCompetencia propietariosCambiados(String placa, int año){
+        return new EventoCompetencia(Tipo.PROPIETARIOS_CAMBIADOS, null, placa, año);
+    }
+    
+    static EventoCompetencia todoBorrado(){
+        return new EventoCompetencia(Tipo.TODO_BORRADO, null, null, TODOS_LOS_AÑOS);
+    }
+    
+    public Tipo getTipo() {
+        return tipo;
+    }
+    
+    /**
+     * @return Placa que tenia el carro antes de un CARRO_MODIFICADO, null en
+     * los demas eventos
+     */
+    public String getPlacaAnterior() {
+        return placaAnterior;
+    }
+    
+    /**
+     * @return Placa del carro, null en TODO_BORRADO
+     */
+    public String getPlaca() {
+        return placa;
+    }
+    
+    /**
+     * @return Año de un PROPIETARIOS_CAMBIADOS, o TODOS_LOS_AÑOS
+     */
+    public int getAño() {
+        return año;
+    }
+    
+    /**
+     * Revisa si el evento cambia que carros hay o con que placa, es decir si
+     * no es solo un cambio en los datos de un carro.
+     * @return Retorna true si agrega, borra o cambia de placa algun carro
+     */
+    public boolean cambiaPlacas(){
+        switch(tipo){
+            case CARRO_AGREGADO:
+            case CARRO_BORRADO:
+            case TODO_BORRADO:
+                return true;
+            case CARRO_MODIFICADO:
+                return !placaAnterior.equals(placa);
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Revisa si el evento tiene que ver con una placa, como placa actual o
+     * anterior. TODO_BORRADO tiene que ver con todas.
+     * @param placa Placa a revisar
+     * @return Retorna true si el evento afecta esa placa
+     */
+    public boolean afecta(String placa){
+        return tipo == Tipo.TODO_BORRADO || placa.equals(this.placa)
+                || placa.equals(placaAnterior);
+    }
+    
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 61 * hash + Objects.hashCode(this.tipo);
+        hash = 61 * hash + Objects.hashCode(this.placaAnterior);
+        hash = 61 * hash + Objects.hashCode(this.placa);
+        hash = 61 * hash + this.año;
+        return hash;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if(!(obj instanceof EventoCompetencia))
+            return false;
+        
+        EventoCompetencia e = (EventoCompetencia) obj;
+        return e.tipo == tipo && e.año == año && Objects.equals(e.placa, placa)
+                && Objects.equals(e.placaAnterior, placaAnterior);
+    }
+    
+    @Override
+    public String toString() {
+        if(tipo == Tipo.CARRO_MODIFICADO)
+            return tipo+" "+placaAnterior+" -> "+placa;
+        if(tipo == Tipo.PROPIETARIOS_CAMBIADOS && año != TODOS_LOS_AÑOS)
+            return tipo+" "+placa+" "+año;
+        if(tipo == Tipo.TODO_BORRADO)
+            return tipo.toString();
+        
+        return tipo+" "+placa;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.io.IOException;
+
+/**
+ * Estado de una Competencia en un momento dado. No cambia: la competencia
+ * publica una Foto nueva con cada cambio, que comparte con la anterior todo
+ * lo que no se toco, y los hilos que leen una foto vieja la siguen viendo
+ * completa y sin cerrojos mientras otros escriben.
+ * @author Emanuel Martinez Pinzon
+ */
+public final class Foto{
+    static final Foto VACIA = new Foto(MapaPersistente.<FotoCarro>vacio(),
+            MapaPersistente.<long[]>vacio());
+    
+    //Carros por numero de registro, asi se recorren en orden de registro
+    private final MapaPersistente<FotoCarro> carros;
+    //Registros de los carros por el hash de su placa normalizada
+    private final MapaPersistente<long[]> placas;
+    
+    private Foto(MapaPersistente<FotoCarro> carros, MapaPersistente<long[]> placas){
+        this.carros = carros;
+        this.placas = placas;
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * @return Retorna la cantidad de carros
+     */
+    public int cantidad(){
+        return carros.tamaño();
+    }
+    
+    /**
+     * @return Retorna los carros en orden de registro
+     */
+    public Iterable<FotoCarro> carros(){
+        return carros;
+    }
+    
+    /**
+     * Busca un carro por su placa.
+     * @param placa Placa del carro, no importan mayusculas o minusculas
+     * @return Retorna el carro o null si no estaba registrado
+     */
+    public FotoCarro carro(String placa){
+        String llave = Competencia.normalizar(placa);
+        if(llave == null)
+            return null;
+        
+        long[] registros = placas.obtener(hash(llave));
+        if(registros != null)
+            for(long x: registros){
+                FotoCarro c = carros.obtener(x);
+                if(llave.equals(Competencia.normalizar(c.getPlaca())))
+                    return c;
+            }
+        
+        return null;
+    }
+    
+    /**
+     * Mismo reporte que Competencia.recorrerPremios(), sobre esta foto.
+     * @return Retorna los carros con sus premios
+     */
+    public String recorrerPremios(){
+        StringBuilder mensaje = new StringBuilder();
+        try{
+            escribirPremios(mensaje);
+        }catch(IOException ex){
+            throw new IllegalStateException(ex);
+        }
+        
+        return mensaje.toString();
+    }
+    
+    /**
+     * Mismo reporte que Competencia.escribirPremios(), sobre esta foto.
+     * @param salida Destino del reporte
+     * @throws IOException Si la salida falla al escribir
+     */
+    public void escribirPremios(Appendable salida) throws IOException{
+        for(FotoCarro c: carros)
+            Competencia.escribirCarro(salida, c, c.getPremios());
+    }
+    
+    /**
+     * @return Retorna una foto con el carro puesto, reemplazando el que tenga
+     * su mismo numero de registro
+     */
+    Foto con(FotoCarro c){
+        FotoCarro anterior = carros.obtener(c.getRegistro());
+        MapaPersistente<long[]> nuevas = placas;
+        boolean mismaPlaca = anterior != null && Competencia.normalizar(anterior.getPlaca())
+                .equals(Competencia.normalizar(c.getPlaca()));
+        if(!mismaPlaca){
+            if(anterior != null)
+                nuevas = sinPlaca(nuevas, anterior);
+            nuevas = conPlaca(nuevas, c);
+        }
+        
+        return new Foto(carros.con(c.getRegistro(), c), nuevas);
+    }
+    
+    /**
+     * @return Retorna una foto sin el carro
+     */
+    Foto sin(FotoCarro c){
+        return new Foto(carros.sin(c.getRegistro()), sinPlaca(placas, c));
+    }
+    
+    /**
+     * @return Retorna el carro con ese numero de registro o null
+     */
+    FotoCarro carro(long registro){
+        return carros.obtener(registro);
+    }
+    
+    //-----------------------REQUERIMIENTOS OPERACIONALES----------------------//
+    private static long hash(String llave){
+        return llave.hashCode() & 0xffffffffL;
+    }
+    
+    private static MapaPersistente<long[]> conPlaca(MapaPersistente<long[]> placas, FotoCarro c){
+        long h = hash(Competencia.normalizar(c.getPlaca()));
+        long[] registros = placas.obtener(h);
+        if(registros == null)
+            return placas.con(h, new long[]{c.getRegistro()});
+        
+        //Placas distintas con el mismo hash comparten la entrada
+        long[] nuevos = new long[registros.length + 1];
+        System.arraycopy(registros, 0, nuevos, 0, registros.length);
+        nuevos[registros.length] = c.getRegistro();
+        return placas.con(h, nuevos);
+    }
+    
+    private static MapaPersistente<long[]> sinPlaca(MapaPersistente<long[]> placas, FotoCarro c){
+        long h = hash(Competencia.normalizar(c.getPlaca()));
+        long[] registros = placas.obtener(h);
+        if(registros == null)
+            return placas;
+        if(registros.length == 1)
+            return registros[0] == c.getRegistro() ? placas.sin(h) : placas;
+        
+        long[] nuevos = new long[registros.length - 1];
+        int i = 0;
+        for(long x: registros)
+            if(x != c.getRegistro()){
+                if(i == nuevos.length)
+                    return placas;
+                nuevos[i++] = x;
+            }
+        return placas.con(h, nuevos);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Un carro dentro de una Foto: sus datos, premios y propietarios como
+ * estaban cuando se tomo la foto. No cambia, cada cambio del carro en la
+ * competencia crea otro FotoCarro que comparte con este lo que no cambio.
+ * @author Emanuel Martinez Pinzon
+ */
+public final class FotoCarro{
+    private final long registro;
+    private final String placa;
+    private final String marca;
+    private final int modelo;
+    //Premios por orden de llegada, la llave solo crece
+    private final MapaPersistente<Premio> premios;
+    private final long siguientePremio;
+    //Propietarios por año, la llave es el año corrido para que no sea negativa
+    private final MapaPersistente<List<Propietario>> propietarios;
+    
+    private FotoCarro(long registro, String placa, String marca, int modelo,
+            MapaPersistente<Premio> premios, long siguientePremio,
+            MapaPersistente<List<Propietario>> propietarios){
+        this.registro = registro;
+        this.placa = placa;
+        this.marca = marca;
+        this.modelo = modelo;
+        this.premios = premios;
+        this.siguientePremio = siguientePremio;
+        this.propietarios = propietarios;
+    }
+    
+    /**
+     * Copia un carro de la competencia con sus premios y propietarios.
+     */
+    static FotoCarro de(Carro c, List<Premio> premios){
+        MapaPersistente<List<Propietario>> propietarios = MapaPersistente.vacio();
+        for(Integer año: c.obtenerAñosPropietarios()){
+            Collection<Propietario> prop = c.obtenerPropietarios(año);
+            if(!prop.isEmpty())
+                propietarios = propietarios.con(llave(año), copiarPropietarios(prop));
+        }
+        
+        //Los premios de la competencia se modifican, se guardan copias
+        MapaPersistente<Premio> copia = MapaPersistente.vacio();
+        for(int i = 0; i < premios.size(); i++)
+            copia = copia.con(i, copiar(premios.get(i)));
+        
+        return new FotoCarro(c.getRegistro(), c.getPlaca(), c.getMarca(), c.getModelo(),
+                copia, premios.size(), propietarios);
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    FotoCarro conDatos(String placa, String marca, int modelo){
+        return new FotoCarro(registro, placa, marca, modelo, premios, siguientePremio, propietarios);
+    }
+    
+    /**
+     * Agrega un premio al final. Los demas premios se comparten con este
+     * FotoCarro, no se copian.
+     */
+    FotoCarro conPremio(Premio premio){
+        return new FotoCarro(registro, placa, marca, modelo,
+                premios.con(siguientePremio, copiar(premio)), siguientePremio + 1, propietarios);
+    }
+    
+    /**
+     * Cambia el premio de un evento y año, en el mismo lugar.
+     * @param premio Datos nuevos, null para borrarlo
+     */
+    FotoCarro conPremio(String evento, int anio, Premio premio){
+        long llave = buscarPremio(evento, anio);
+        if(llave == -1)
+            return this;
+        
+        MapaPersistente<Premio> nuevos = premio == null
+                ? premios.sin(llave) : premios.con(llave, copiar(premio));
+        return new FotoCarro(registro, placa, marca, modelo, nuevos, siguientePremio, propietarios);
+    }
+    
+    FotoCarro sinPremios(){
+        return new FotoCarro(registro, placa, marca, modelo, MapaPersistente.<Premio>vacio(),
+                0, propietarios);
+    }
+    
+    FotoCarro conPropietarios(int año, Collection<Propietario> prop){
+        MapaPersistente<List<Propietario>> nuevos = prop.isEmpty()
+                ? propietarios.sin(llave(año)) : propietarios.con(llave(año), copiarPropietarios(prop));
+        return new FotoCarro(registro, placa, marca, modelo, premios, siguientePremio, nuevos);
+    }
+    
+    FotoCarro sinPropietarios(){
+        return new FotoCarro(registro, placa, marca, modelo, premios, siguientePremio,
+                MapaPersistente.<List<Propietario>>vacio());
+    }
+    
+    /**
+     * @return Retorna los premios en el orden en que se registraron, en una
+     * coleccion de solo lectura
+     */
+    public Collection<Premio> getPremios(){
+        return new AbstractCollection<Premio>(){
+            @Override
+            public Iterator<Premio> iterator() {
+                return premios.iterator();
+            }
+
+            @Override
+            public int size() {
+                return premios.tamaño();
+            }
+        };
+    }
+    
+    /**
+     * @param año Año de compra
+     * @return Retorna los propietarios de ese año en orden de registro, vacia
+     * si no hay
+     */
+    public List<Propietario> getPropietarios(int año){
+        List<Propietario> prop = propietarios.obtener(llave(año));
+        return prop != null ? prop : Collections.<Propietario>emptyList();
+    }
+    
+    /**
+     * @return Retorna los años que tienen propietarios, de menor a mayor
+     */
+    public List<Integer> getAñosPropietarios(){
+        ArrayList<Integer> años = new ArrayList<>();
+        for(long x: propietarios.llaves())
+            años.add((int) (x + Integer.MIN_VALUE));
+        return años;
+    }
+    
+    //-----------------------REQUERIMIENTOS OPERACIONALES----------------------//
+    private static long llave(int año){
+        return (long) año - Integer.MIN_VALUE;
+    }
+    
+    /**
+     * Busca la llave del premio de un evento y año, que en un carro es unico.
+     * @return Retorna la llave o -1 si no esta
+     */
+    private long buscarPremio(String evento, int anio){
+        long[] llaves = premios.llaves();
+        for(long x: llaves){
+            Premio p = premios.obtener(x);
+            if(p.getAnio() == anio && p.getEvento().equalsIgnoreCase(evento))
+                return x;
+        }
+        return -1;
+    }
+    
+    private static Premio copiar(Premio x){
+        return new Premio(x.getAnio(), x.getPuesto(), x.getEvento());
+    }
+    
+    private static List<Propietario> copiarPropietarios(Collection<Propietario> prop){
+        ArrayList<Propietario> copia = new ArrayList<>(prop.size());
+        for(Propietario x: prop)
+            copia.add(new Propietario(x.getNombre(), x.getCc(), x.getDireccion(),
+                    x.getCiudad(), x.getTelefono()));
+        return Collections.unmodifiableList(copia);
+    }
+    
+    long getRegistro() {
+        return registro;
+    }
+    
+    public String getPlaca() {
+        return placa;
+    }
+    
+    public String getMarca() {
+        return marca;
+    }
+    
+    public int getModelo() {
+        return modelo;
+    }
+    
+    //------------------------------METODOS MODIFICADOS------------------------//
+    /**
+     * Mismo formato que Carro.toString().
+     * @return Retorna la informacion del carro
+     */
+    @Override
+    public String toString(){
+        return "Placa: "+getPlaca()
+            +"\nMarca: "+getMarca()
+            +"\nModelo: "+getModelo()+"\n";
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Indice ordenado de los carros por modelo. Con el se responden las consultas
+ * por rango de modelos visitando solo los carros que estan dentro del rango.
+ * Dentro de un modelo los carros van en orden de registro, asi el orden no
+ * cambia al modificar un carro ni al volver a ponerlo en una transaccion.
+ * 
+ * Lo cambian carros de franjas distintas al mismo tiempo, por eso usa mapas
+ * concurrentes. Los modelos que se quedan sin carros no se quitan, son pocos
+ * y quitarlos obligaria a bloquear el indice completo.
+ * @author Emanuel Martinez Pinzon
+ */
+class IndiceModelos{
+    private ConcurrentSkipListMap<Integer, Modelo> modelos;
+    
+    IndiceModelos(){
+        this.modelos = new ConcurrentSkipListMap<>();
+    }
+    
+    void registrar(Carro carro){
+        Modelo grupo = modelos.get(carro.getModelo());
+        if(grupo == null){
+            grupo = new Modelo();
+            Modelo otro = modelos.putIfAbsent(carro.getModelo(), grupo);
+            if(otro != null)
+                grupo = otro;
+        }
+        
+        if(grupo.carros.put(carro.getRegistro(), carro) == null)
+            grupo.cantidad.incrementAndGet();
+    }
+    
+    /**
+     * Quita un carro del indice, se debe llamar antes de cambiarle la placa o
+     * el modelo.
+     * @param carro Carro a quitar
+     */
+    void liberar(Carro carro){
+        Modelo grupo = modelos.get(carro.getModelo());
+        if(grupo != null && grupo.carros.remove(carro.getRegistro()) != null)
+            grupo.cantidad.decrementAndGet();
+    }
+    
+    /**
+     * Obtiene los carros de un rango agrupados por modelo, de mayor a menor
+     * como se muestran en la GUI.
+     * @param rango Rango de modelos
+     * @return Retorna una vista de los grupos de carros dentro del rango
+     */
+    Collection<Modelo> carros(RangoModelos rango){
+        return subMapa(rango).descendingMap().values();
+    }
+    
+    /**
+     * Cuenta los carros de un rango sin recorrerlos uno por uno.
+     * @param rango Rango de modelos
+     * @return Retorna la cantidad de carros
+     */
+    int contar(RangoModelos rango){
+        int cantidad = 0;
+        for(Modelo x: subMapa(rango).values())
+            cantidad += x.cantidad.get();
+        
+        return cantidad;
+    }
+    
+    void limpiar(){
+        modelos.clear();
+    }
+    
+    private ConcurrentNavigableMap<Integer, Modelo> subMapa(RangoModelos rango){
+        return modelos.subMap(rango.getDesde(), true, rango.getHasta(), true);
+    }
+    
+    /**
+     * Carros de un modelo en orden de registro, con su cantidad aparte porque
+     * contar un mapa concurrente lo recorre completo.
+     */
+    static class Modelo{
+        private final ConcurrentSkipListMap<Long, Carro> carros = new ConcurrentSkipListMap<>();
+        private final AtomicInteger cantidad = new AtomicInteger();
+        
+        Collection<Carro> getCarros(){
+            return carros.values();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Indice global de los premios entregados en cada evento. Por cada evento y año
+ * guarda los puestos ocupados ordenados, con el carro que gano cada uno. Asi
+ * saber si un premio ya fue entregado, o quienes ganaron en un evento, no
+ * requiere recorrer los premios de todos los carros.
+ * @author Emanuel Martinez Pinzon
+ */
+class IndicePremios{
+    private HashMap<Llave, TreeMap<Integer, Carro>> eventos;
+    
+    IndicePremios(){
+        this.eventos = new HashMap<>();
+    }
+    
+    /**
+     * Revisa si ya hay un carro con ese puesto en el evento y año.
+     * @param evento Evento del premio
+     * @param anio Año del evento
+     * @param puesto Puesto a revisar
+     * @return Retorna true si el puesto ya esta ocupado
+     */
+    boolean ocupado(String evento, int anio, int puesto){
+        TreeMap<Integer, Carro> puestos = eventos.get(new Llave(evento, anio));
+        return puestos != null && puestos.containsKey(puesto);
+    }
+    
+    /**
+     * Guarda el puesto que ocupa un premio.
+     * @param premio Premio registrado
+     * @param carro Carro que gano el premio
+     */
+    void registrar(Premio premio, Carro carro){
+        Llave llave = new Llave(premio.getEvento(), premio.getAnio());
+        TreeMap<Integer, Carro> puestos = eventos.get(llave);
+        if(puestos == null){
+            puestos = new TreeMap<>();
+            eventos.put(llave, puestos);
+        }
+        
+        puestos.put(premio.getPuesto(), carro);
+    }
+    
+    /**
+     * Libera el puesto que ocupaba un premio.
+     * @param premio Premio que se va a borrar o modificar
+     */
+    void liberar(Premio premio){
+        Llave llave = new Llave(premio.getEvento(), premio.getAnio());
+        TreeMap<Integer, Carro> puestos = eventos.get(llave);
+        if(puestos != null){
+            puestos.remove(premio.getPuesto());
+            if(puestos.isEmpty())
+                eventos.remove(llave);
+        }
+    }
+    
+    /**
+     * Libera los puestos de varios premios, normalmente todos los de un carro.
+     * @param premios Premios a liberar
+     */
+    void liberar(Collection<Premio> premios){
+        for(Premio x: premios)
+            liberar(x);
+    }
+    
+    /**
+     * Obtiene los carros que ganaron algun puesto en un evento y un año.
+     * @param evento Evento a consultar
+     * @param anio Año del evento
+     * @return Retorna una vista de solo lectura puesto-carro ordenada por puesto
+     */
+    SortedMap<Integer, Carro> ganadores(String evento, int anio){
+        TreeMap<Integer, Carro> puestos = eventos.get(new Llave(evento, anio));
+        if(puestos == null)
+            return Collections.unmodifiableSortedMap(new TreeMap<Integer, Carro>());
+        
+        return Collections.unmodifiableSortedMap(puestos);
+    }
+    
+    void limpiar(){
+        eventos.clear();
+    }
+    
+    /**
+     * Llave del indice, el evento se guarda normalizado para que la comparacion
+     * no dependa de mayusculas o minusculas.
+     */
+    private static class Llave{
+        private final String evento;
+        private final int anio;
+        
+        Llave(String evento, int anio){
+            this.evento = Competencia.normalizar(evento);
+            this.anio = anio;
+        }
+        
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 61 * hash + Objects.hashCode(this.evento);
+            hash = 61 * hash + this.anio;
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Llave))
+                return false;
+            
+            Llave l = (Llave) obj;
+            return l.anio == anio && Objects.equals(l.evento, evento);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indice invertido de propietarios. Por cada NIT guarda los carros que ha
+ * tenido esa persona y el año en que fue dueño de cada uno, asi consultar la
+ * historia de un propietario solo cuesta la cantidad de carros que ha tenido.
+ * 
+ * Lo cambian carros de franjas distintas al mismo tiempo, asi que cada NIT se
+ * bloquea por separado y dos propietarios distintos no se esperan.
+ * @author Emanuel Martinez Pinzon
+ */
+class IndicePropietarios{
+    private ConcurrentHashMap<String, LinkedHashSet<Tenencia>> tenencias;
+    
+    IndicePropietarios(){
+        this.tenencias = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Registra que un propietario fue dueño de un carro en un año.
+     * @param cc NIT del propietario
+     * @param carro Carro del que fue dueño
+     * @param año Año en que fue dueño
+     */
+    void registrar(String cc, Carro carro, int año){
+        String llave = llave(cc);
+        while(true){
+            LinkedHashSet<Tenencia> t = tenencias.get(llave);
+            if(t == null){
+                t = new LinkedHashSet<>();
+                LinkedHashSet<Tenencia> otro = tenencias.putIfAbsent(llave, t);
+                if(otro != null)
+                    t = otro;
+            }
+            
+            synchronized(t){
+                //Si otro hilo la quito por quedar vacia se vuelve a intentar
+                if(tenencias.get(llave) != t)
+                    continue;
+                
+                t.add(new Tenencia(carro, año));
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Quita el registro de un propietario para un carro y un año.
+     * @param cc NIT del propietario
+     * @param carro Carro del que fue dueño
+     * @param año Año en que fue dueño
+     */
+    void liberar(String cc, Carro carro, int año){
+        String llave = llave(cc);
+        LinkedHashSet<Tenencia> t = tenencias.get(llave);
+        if(t != null)
+            synchronized(t){
+                t.remove(new Tenencia(carro, año));
+                if(t.isEmpty())
+                    tenencias.remove(llave, t);
+            }
+    }
+    
+    /**
+     * Obtiene los carros y años de un propietario en el orden en que se
+     * registraron.
+     * @param cc NIT del propietario
+     * @return Retorna una copia, vacia si no existe el propietario
+     */
+    Collection<Tenencia> tenencias(String cc){
+        LinkedHashSet<Tenencia> t = tenencias.get(llave(cc));
+        if(t == null)
+            return Collections.emptySet();
+        
+        synchronized(t){
+            return new ArrayList<>(t);
+        }
+    }
+    
+    void limpiar(){
+        tenencias.clear();
+    }
+    
+    /**
+     * El mapa no acepta null, un NIT null se guarda como vacio.
+     */
+    private static String llave(String cc){
+        String llave = Competencia.normalizar(cc);
+        return llave != null ? llave : "";
+    }
+    
+    /**
+     * Par carro-año de un propietario. El carro se compara por identidad porque
+     * su placa puede cambiar sin que deje de ser el mismo carro.
+     */
+    static class Tenencia{
+        private final Carro carro;
+        private final int año;
+        
+        Tenencia(Carro carro, int año){
+            this.carro = carro;
+            this.año = año;
+        }
+        
+        Carro getCarro(){
+            return carro;
+        }
+        
+        int getAño(){
+            return año;
+        }
+        
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 61 * hash + System.identityHashCode(this.carro);
+            hash = 61 * hash + this.año;
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Tenencia))
+                return false;
+            
+            Tenencia t = (Tenencia) obj;
+            return t.carro == carro && t.año == año;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Eventos pendientes de un lote de cambios en una Competencia. Al agregar un
+ * evento lo combina con los anteriores: los avisos repetidos de un mismo carro
+ * se guardan una sola vez, un carro agregado y borrado dentro del lote no deja
+ * rastro, y TODO_BORRADO descarta todo lo anterior.
+ * 
+ * Los eventos quitados se dejan en null hasta tomar el lote, asi las posiciones
+ * no cambian y los indices por placa y por evento siguen sirviendo. Con ellos
+ * un lote grande, como el que se arma al recuperar una bitacora, no recorre
+ * la lista por cada evento.
+ * @author Emanuel Martinez Pinzon
+ */
+class LoteEventos {
+    private ArrayList<EventoCompetencia> eventos;
+    private int vivos;
+    //Ultima posicion de cada evento
+    private HashMap<EventoCompetencia, Integer> ultimos;
+    //Ultima posicion de un evento que cambio las placas, por placa
+    private HashMap<String, Integer> barreras;
+    //Posiciones de los eventos de cada placa, en orden
+    private HashMap<String, ArrayList<Integer>> porPlaca;
+    
+    LoteEventos(){
+        this.eventos = new ArrayList<>();
+        this.ultimos = new HashMap<>();
+        this.barreras = new HashMap<>();
+        this.porPlaca = new HashMap<>();
+    }
+    
+    /**
+     * Agrega un evento al lote, combinandolo con los que ya estan
+     * @param evento Evento a agregar
+     */
+    void agregar(EventoCompetencia evento){
+        switch(evento.getTipo()){
+            case TODO_BORRADO:
+                limpiar();
+                guardar(evento);
+                break;
+            case CARRO_BORRADO:
+                borrar(evento.getPlaca());
+                break;
+            default:
+                if(!repetido(evento))
+                    guardar(evento);
+        }
+    }
+    
+    /**
+     * Saca los eventos del lote y lo deja vacio
+     * @return Lista de solo lectura con los eventos
+     */
+    List<EventoCompetencia> tomar(){
+        ArrayList<EventoCompetencia> lote = new ArrayList<>(vivos);
+        for(EventoCompetencia x: eventos)
+            if(x != null)
+                lote.add(x);
+        
+        limpiar();
+        return Collections.unmodifiableList(lote);
+    }
+    
+    boolean estaVacio(){
+        return vivos == 0;
+    }
+    
+    private void limpiar(){
+        eventos = new ArrayList<>();
+        vivos = 0;
+        ultimos.clear();
+        barreras.clear();
+        porPlaca.clear();
+    }
+    
+    private void guardar(EventoCompetencia evento){
+        int posicion = eventos.size();
+        eventos.add(evento);
+        vivos++;
+        ultimos.put(evento, posicion);
+        if(evento.cambiaPlacas()){
+            barreras.put(evento.getPlaca(), posicion);
+            if(evento.getPlacaAnterior() != null)
+                barreras.put(evento.getPlacaAnterior(), posicion);
+        }
+        
+        ArrayList<Integer> posiciones = porPlaca.get(evento.getPlaca());
+        if(posiciones == null){
+            posiciones = new ArrayList<>();
+            porPlaca.put(evento.getPlaca(), posiciones);
+        }
+        posiciones.add(posicion);
+    }
+    
+    /**
+     * Dice si ya hay un evento igual despues del ultimo que cambio la placa
+     * del carro; desde ahi el aviso ya no seria el mismo. Si el evento igual
+     * fue quitado se agrega de nuevo, repetir un aviso no hace daño.
+     */
+    private boolean repetido(EventoCompetencia evento){
+        Integer ultimo = ultimos.get(evento);
+        if(ultimo == null || eventos.get(ultimo) == null)
+            return false;
+        
+        return ultimo >= Math.max(barrera(evento.getPlaca()), barrera(evento.getPlacaAnterior()));
+    }
+    
+    private int barrera(String placa){
+        Integer posicion = placa == null ? null : barreras.get(placa);
+        return posicion == null ? -1 : posicion;
+    }
+    
+    /**
+     * Quita los eventos del carro que se borra, siguiendo sus cambios de placa
+     * hacia atras. Si el carro fue agregado dentro del lote no queda nada; si
+     * no, queda un CARRO_BORRADO con la placa que tenia antes del lote.
+     */
+    private void borrar(String placa){
+        int limite = eventos.size();
+        ArrayList<Integer> posiciones = porPlaca.get(placa);
+        int i = posiciones == null ? -1 : posiciones.size() - 1;
+        while(i >= 0){
+            int posicion = posiciones.get(i--);
+            EventoCompetencia x = eventos.get(posicion);
+            if(x == null || posicion >= limite)
+                continue;
+            
+            eventos.set(posicion, null);
+            vivos--;
+            if(x.getTipo() == EventoCompetencia.Tipo.CARRO_AGREGADO)
+                return;
+            if(x.getTipo() == EventoCompetencia.Tipo.CARRO_MODIFICADO
+                    && !x.getPlacaAnterior().equals(placa)){
+                //Sigue con los eventos de la placa anterior, antes de este
+                placa = x.getPlacaAnterior();
+                limite = posicion;
+                posiciones = porPlaca.get(placa);
+                i = posiciones == null ? -1 : posiciones.size() - 1;
+            }
+        }
+        
+        guardar(EventoCompetencia.carroBorrado(placa));
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Mapa inmutable de llaves long no negativas, ordenado por llave. Es un trie
+ * de 32 ramas por nivel donde cada nodo solo guarda las ramas ocupadas:
+ * con() y sin() retornan un mapa nuevo que copia solo el camino hasta la
+ * llave y comparte todo lo demas con el anterior, asi guardar muchas
+ * versiones cuesta poco y cualquier hilo puede recorrer una sin cerrojos.
+ * @author Emanuel Martinez Pinzon
+ */
+final class MapaPersistente<V> implements Iterable<V>{
+    private static final int BITS = 5;
+    private static final int MASCARA = (1 << BITS) - 1;
+    private static final MapaPersistente<?> VACIO = new MapaPersistente<>(null, 0, 0);
+    
+    private final Nodo raiz;
+    private final int nivel;
+    private final int tamaño;
+    
+    private MapaPersistente(Nodo raiz, int nivel, int tamaño){
+        this.raiz = raiz;
+        this.nivel = nivel;
+        this.tamaño = tamaño;
+    }
+    
+    @SuppressWarnings("unchecked")
+    static <V> MapaPersistente<V> vacio(){
+        return (MapaPersistente<V>) VACIO;
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * @param llave Llave a buscar
+     * @return Retorna el valor de la llave o null si no esta
+     */
+    @SuppressWarnings("unchecked")
+    V obtener(long llave){
+        if(llave < 0 || (llave >>> nivel) > MASCARA)
+            return null;
+        
+        Nodo n = raiz;
+        for(int s = nivel; n != null; s -= BITS){
+            int bit = 1 << ((int) (llave >>> s) & MASCARA);
+            if((n.mapa & bit) == 0)
+                return null;
+            
+            Object hijo = n.hijos[Integer.bitCount(n.mapa & (bit - 1))];
+            if(s == 0)
+                return (V) hijo;
+            n = (Nodo) hijo;
+        }
+        
+        return null;
+    }
+    
+    /**
+     * @param llave Llave no negativa
+     * @param valor Valor, no puede ser null
+     * @return Retorna un mapa con la llave puesta en ese valor
+     */
+    MapaPersistente<V> con(long llave, V valor){
+        if(llave < 0 || valor == null)
+            throw new IllegalArgumentException("Llave o valor invalido: "+llave);
+        
+        Nodo r = raiz;
+        int s = nivel;
+        while((llave >>> s) > MASCARA){
+            //La llave no cabe, se agrega un nivel arriba con la raiz como rama 0
+            if(r != null)
+                r = new Nodo(1, new Object[]{r});
+            s += BITS;
+        }
+        
+        int nuevo = obtener(llave) == null ? 1 : 0;
+        return new MapaPersistente<>(poner(r, s, llave, valor), s, tamaño + nuevo);
+    }
+    
+    /**
+     * @param llave Llave a quitar
+     * @return Retorna un mapa sin la llave, o este mismo si no estaba
+     */
+    MapaPersistente<V> sin(long llave){
+        if(obtener(llave) == null)
+            return this;
+        
+        return new MapaPersistente<>(quitar(raiz, nivel, llave), nivel, tamaño - 1);
+    }
+    
+    int tamaño(){
+        return tamaño;
+    }
+    
+    /**
+     * @return Retorna las llaves en orden
+     */
+    long[] llaves(){
+        long[] llaves = new long[tamaño];
+        if(raiz != null)
+            llaves(raiz, nivel, 0, llaves, 0);
+        return llaves;
+    }
+    
+    /**
+     * Recorre los valores en orden de llave.
+     */
+    @Override
+    public Iterator<V> iterator(){
+        return new Recorrido();
+    }
+    
+    //-----------------------REQUERIMIENTOS OPERACIONALES----------------------//
+    private static Nodo poner(Nodo n, int s, long llave, Object valor){
+        int bit = 1 << ((int) (llave >>> s) & MASCARA);
+        if(n == null)
+            return new Nodo(bit, new Object[]{s == 0 ? valor : poner(null, s - BITS, llave, valor)});
+        
+        int i = Integer.bitCount(n.mapa & (bit - 1));
+        if((n.mapa & bit) == 0){
+            Object[] hijos = new Object[n.hijos.length + 1];
+            System.arraycopy(n.hijos, 0, hijos, 0, i);
+            System.arraycopy(n.hijos, i, hijos, i + 1, n.hijos.length - i);
+            hijos[i] = s == 0 ? valor : poner(null, s - BITS, llave, valor);
+            return new Nodo(n.mapa | bit, hijos);
+        }
+        
+        Object[] hijos = n.hijos.clone();
+        hijos[i] = s == 0 ? valor : poner((Nodo) hijos[i], s - BITS, llave, valor);
+        return new Nodo(n.mapa, hijos);
+    }
+    
+    /**
+     * Quita una llave que si esta. Los nodos que quedan vacios se quitan.
+     */
+    private static Nodo quitar(Nodo n, int s, long llave){
+        int bit = 1 << ((int) (llave >>> s) & MASCARA);
+        int i = Integer.bitCount(n.mapa & (bit - 1));
+        Nodo hijo = s == 0 ? null : quitar((Nodo) n.hijos[i], s - BITS, llave);
+        if(hijo != null){
+            Object[] hijos = n.hijos.clone();
+            hijos[i] = hijo;
+            return new Nodo(n.mapa, hijos);
+        }
+        if(n.hijos.length == 1)
+            return null;
+        
+        Object[] hijos = new Object[n.hijos.length - 1];
+        System.arraycopy(n.hijos, 0, hijos, 0, i);
+        System.arraycopy(n.hijos, i + 1, hijos, i, hijos.length - i);
+        return new Nodo(n.mapa & ~bit, hijos);
+    }
+    
+    private static int llaves(Nodo n, int s, long prefijo, long[] llaves, int i){
+        int mapa = n.mapa;
+        for(int k = 0; mapa != 0; k++){
+            int rama = Integer.numberOfTrailingZeros(mapa);
+            mapa &= mapa - 1;
+            long llave = prefijo | ((long) rama << s);
+            if(s == 0)
+                llaves[i++] = llave;
+            else
+                i = llaves((Nodo) n.hijos[k], s - BITS, llave, llaves, i);
+        }
+        return i;
+    }
+    
+    /**
+     * Nodo del trie: mapa tiene un bit por cada rama ocupada y hijos guarda
+     * solo esas ramas, en orden. En el ultimo nivel los hijos son los valores.
+     */
+    private static final class Nodo{
+        final int mapa;
+        final Object[] hijos;
+        
+        Nodo(int mapa, Object[] hijos){
+            this.mapa = mapa;
+            this.hijos = hijos;
+        }
+    }
+    
+    /**
+     * Recorrido en profundidad con una pila de nodos, uno por nivel.
+     */
+    private final class Recorrido implements Iterator<V>{
+        private final Object[][] pila = new Object[nivel / BITS + 1][];
+        private final int[] posiciones = new int[pila.length];
+        private int tope = -1;
+        
+        Recorrido(){
+            if(raiz != null){
+                pila[0] = raiz.hijos;
+                tope = 0;
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while(tope >= 0){
+                if(posiciones[tope] == pila[tope].length)
+                    tope--;
+                else if(tope == pila.length - 1)
+                    return true;
+                else{
+                    Nodo hijo = (Nodo) pila[tope][posiciones[tope]++];
+                    pila[++tope] = hijo.hijos;
+                    posiciones[tope] = 0;
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if(!hasNext())
+                throw new NoSuchElementException();
+            
+            return (V) pila[tope][posiciones[tope]++];
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
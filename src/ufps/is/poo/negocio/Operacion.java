@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Arrays;
+
+/**
+ * Cambio en una Competencia, con los datos necesarios para hacerlo. Es lo que
+ * se guarda en la bitacora y lo que recibe aplicarLote, asi que cada tipo dice
+ * cuantos textos y numeros lleva y en que orden, y su codigo no debe cambiar.
+ * @author Emanuel Martinez Pinzon
+ */
+public class Operacion {
+    
+    public enum Tipo {
+        //textos: placa, marca. numeros: modelo
+        AGREGAR_CARRO(1, 2, 1),
+        //textos: placa, evento. numeros: año, puesto
+        REGISTRAR_PREMIO(2, 2, 2),
+        //textos: placa, nombre, cc, direccion, ciudad, telefono. numeros: año
+        AGREGAR_PROPIETARIO(3, 6, 1),
+        //textos: placa
+        BORRAR_CARRO(4, 1, 0),
+        //textos: placa, evento. numeros: año
+        BORRAR_PREMIO(5, 2, 1),
+        //textos: placa
+        BORRAR_TODOS_PREMIOS(6, 1, 0),
+        //textos: placa, cc. numeros: año
+        BORRAR_PROPIETARIO(7, 2, 1),
+        //textos: placa. numeros: año
+        BORRAR_PROPIETARIOS_AÑO(8, 1, 1),
+        //textos: placa
+        BORRAR_PROPIETARIOS(9, 1, 0),
+        BORRAR_TODO(10, 0, 0),
+        //textos: placa anterior, placa, marca. numeros: modelo
+        MODIFICAR_CARRO(11, 3, 1),
+        //textos: placa, evento, nuevo evento. numeros: año, nuevo año, nuevo puesto
+        MODIFICAR_PREMIO(12, 3, 3),
+        //textos: placa, cc, nombre, nueva cc, direccion, ciudad, telefono. numeros: año
+        MODIFICAR_PROPIETARIO(13, 7, 1);
+        
+        private final int codigo;
+        private final int textos;
+        private final int numeros;
+        
+        private Tipo(int codigo, int textos, int numeros){
+            this.codigo = codigo;
+            this.textos = textos;
+            this.numeros = numeros;
+        }
+        
+        public int getCodigo() {
+            return codigo;
+        }
+
+        public int getTextos() {
+            return textos;
+        }
+
+        public int getNumeros() {
+            return numeros;
+        }
+        
+        /**
+         * Busca el tipo que tiene un codigo
+         * @param codigo Codigo guardado
+         * @return Retorna el tipo o null si el codigo no existe
+         */
+        public static Tipo porCodigo(int codigo){
+            for(Tipo x: values())
+                if(x.codigo == codigo)
+                    return x;
+            
+            return null;
+        }
+    }
+    
+    private final Tipo tipo;
+    private final String[] textos;
+    private final int[] numeros;
+    
+    /**
+     * Crea una operacion a partir de sus datos, como los lee la bitacora.
+     * @param tipo Tipo de la operacion
+     * @param textos Textos en el orden del tipo
+     * @param numeros Numeros en el orden del tipo
+     */
+    public Operacion(Tipo tipo, String[] textos, int[] numeros){
+        if(tipo == null || textos.length != tipo.textos || numeros.length != tipo.numeros)
+            throw new IllegalArgumentException("Datos invalidos para "+tipo);
+        
+        this.tipo = tipo;
+        this.textos = textos.clone();
+        this.numeros = numeros.clone();
+    }
+    
+    private static Operacion de(Tipo tipo, int[] numeros, String... textos){
+        return new Operacion(tipo, textos, numeros);
+    }
+    
+    private static int[] numeros(int... numeros){
+        return numeros;
+    }
+    
+    public static Operacion agregarCarro(String placa, String marca, int modelo){
+        return de(Tipo.AGREGAR_CARRO, numeros(modelo), placa, marca);
+    }
+    
+    public static Operacion registrarPremio(String placa, int anio, int puesto, String evento){
+        return de(Tipo.REGISTRAR_PREMIO, numeros(anio, puesto), placa, evento);
+    }
+    
+    public static Operacion agregarPropietario(String placa, int año, String nombre, String cc,
+            String direccion, String ciudad, String telefono){
+        return de(Tipo.AGREGAR_PROPIETARIO, numeros(año), placa, nombre, cc, direccion,
+                ciudad, telefono);
+    }
+    
+    public static Operacion borrarCarro(String placa){
+        return de(Tipo.BORRAR_CARRO, numeros(), placa);
+    }
+    
+    public static Operacion borrarPremio(String placa, String evento, int anio){
+        return de(Tipo.BORRAR_PREMIO, numeros(anio), placa, evento);
+    }
+    
+    public static Operacion borrarTodosPremios(String placa){
+        return de(Tipo.BORRAR_TODOS_PREMIOS, numeros(), placa);
+    }
+    
+    public static Operacion borrarPropietario(String placa, int año, String cc){
+        return de(Tipo.BORRAR_PROPIETARIO, numeros(año), placa, cc);
+    }
+    
+    public static Operacion borrarTodosPropietario(String placa, int año){
+        return de(Tipo.BORRAR_PROPIETARIOS_AÑO, numeros(año), placa);
+    }
+    
+    public static Operacion borrarTodosPropietario(String placa){
+        return de(Tipo.BORRAR_PROPIETARIOS, numeros(), placa);
+    }
+    
+    public static Operacion borrarTodo(){
+        return de(Tipo.BORRAR_TODO, numeros());
+    }
+    
+    public static Operacion modificarCarro(String ID, String placa, String marca, int modelo){
+        return de(Tipo.MODIFICAR_CARRO, numeros(modelo), ID, placa, marca);
+    }
+    
+    public static Operacion modificarPremio(String placa, String evento, int año,
+            int nuevoAño, int nuevoPuesto, String nuevoEvento){
+        return de(Tipo.MODIFICAR_PREMIO, numeros(año, nuevoAño, nuevoPuesto), placa,
+                evento, nuevoEvento);
+    }
+    
+    public static Operacion modificarPropietario(String placa, int año, String propietario,
+            String nuevoNombre, String nuevaCC, String nuevaDireccion, String nuevaCiudad,
+            String nuevoTelefono){
+        return de(Tipo.MODIFICAR_PROPIETARIO, numeros(año), placa, propietario, nuevoNombre,
+                nuevaCC, nuevaDireccion, nuevaCiudad, nuevoTelefono);
+    }
+    
+    /**
+     * Vuelve a hacer la operacion en una competencia, llamando el mismo metodo
+     * que la genero.
+     * @param c Competencia donde se aplica
+     * @return Retorna lo que retorna el metodo de la competencia
+     * @throws Exception Si el metodo genera una excepcion
+     */
+    public boolean aplicar(Competencia c) throws Exception{
+        String[] t = textos;
+        int[] n = numeros;
+        switch(tipo){
+            case AGREGAR_CARRO:
+                return c.agregarCarro(t[0], t[1], n[0]);
+            case REGISTRAR_PREMIO:
+                return c.registrarPremioACarro(t[0], n[0], n[1], t[1]);
+            case AGREGAR_PROPIETARIO:
+                return c.agregarPropietario(t[0], n[0], t[1], t[2], t[3], t[4], t[5]);
+            case BORRAR_CARRO:
+                return c.borrarCarro(t[0]);
+            case BORRAR_PREMIO:
+                return c.borrarPremio(t[0], t[1], n[0]);
+            case BORRAR_TODOS_PREMIOS:
+                return c.borrarTodosPremios(t[0]);
+            case BORRAR_PROPIETARIO:
+                return c.borrarPropietario(t[0], n[0], t[1]);
+            case BORRAR_PROPIETARIOS_AÑO:
+                return c.borrarTodosPropietario(t[0], n[0]);
+            case BORRAR_PROPIETARIOS:
+                return c.borrarTodosPropietario(t[0]);
+            case BORRAR_TODO:
+                return c.borrarTodo();
+            case MODIFICAR_CARRO:
+                return c.modificarCarro(t[0], t[1], t[2], n[0]);
+            case MODIFICAR_PREMIO:
+                return c.modificarPremio(t[0], t[1], n[0], n[1], n[2], t[2]);
+            case MODIFICAR_PROPIETARIO:
+                return c.modificarPropietario(t[0], n[0], t[1], t[2], t[3], t[4], t[5], t[6]);
+            default:
+                throw new IllegalStateException("Operacion desconocida "+tipo);
+        }
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+    
+    public String getTexto(int i) {
+        return textos[i];
+    }
+    
+    public int getNumero(int i) {
+        return numeros[i];
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(this == obj)
+            return true;
+        if(obj == null || getClass() != obj.getClass())
+            return false;
+        
+        final Operacion other = (Operacion) obj;
+        return tipo == other.tipo && Arrays.equals(textos, other.textos)
+                && Arrays.equals(numeros, other.numeros);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 61 * hash + tipo.hashCode();
+        hash = 61 * hash + Arrays.hashCode(textos);
+        hash = 61 * hash + Arrays.hashCode(numeros);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return tipo+" "+Arrays.toString(textos)+" "+Arrays.toString(numeros);
+    }
+}
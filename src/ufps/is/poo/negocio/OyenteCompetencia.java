@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.List;
+
+/**
+ * Recibe los cambios hechos en una Competencia. Los eventos llegan en el hilo
+ * que hizo el cambio, despues de que quedo hecho; dentro de un lote llegan
+ * todos juntos al terminarlo.
+ * @author Emanuel Martinez Pinzon
+ */
+public interface OyenteCompetencia {
+    
+    /**
+     * Se llama con los cambios hechos, en el orden en que ocurrieron
+     * @param eventos Lista de solo lectura con los eventos, ya combinados
+     */
+    void cambios(List<EventoCompetencia> eventos);
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+/**
+ * Una pagina del recorrido de todos los carros con sus premios. Ademas del
+ * texto de la pagina trae el cursor para pedir la siguiente.
+ * @author Emanuel Martinez Pinzon
+ */
+public class PaginaPremios{
+    private final String contenido;
+    private final String siguiente;
+
+    PaginaPremios(String contenido, String siguiente) {
+        this.contenido = contenido;
+        this.siguiente = siguiente;
+    }
+
+    /**
+     * @return Retorna el texto de la pagina con el formato de recorrerPremios()
+     */
+    public String getContenido() {
+        return contenido;
+    }
+
+    /**
+     * @return Retorna el cursor de la siguiente pagina o null si es la ultima
+     */
+    public String getSiguiente() {
+        return siguiente;
+    }
+    
+    public boolean haySiguiente(){
+        return siguiente != null;
+    }
+}
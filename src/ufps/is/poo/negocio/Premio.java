@@ -39,7 +39,7 @@ public class Premio{
         return anio;
     }
 
-    public void setAnio(int anio) {
+    protected void setAnio(int anio) {
         this.anio = anio;
     }
 
@@ -47,7 +47,7 @@ public class Premio{
         return puesto;
     }
 
-    public void setPuesto(int puesto) {
+    protected void setPuesto(int puesto) {
         this.puesto = puesto;
     }
 
@@ -55,7 +55,7 @@ public class Premio{
         return evento;
     }
 
-    public void setEvento(String evento) {
+    protected void setEvento(String evento) {
         this.evento = evento;
     }
     
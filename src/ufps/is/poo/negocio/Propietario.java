@@ -40,7 +40,7 @@ public class Propietario{
         return nombre;
     }
 
-    public void setNombre(String nombre) {
+    protected void setNombre(String nombre) {
         this.nombre = nombre;
     }
 
@@ -48,7 +48,7 @@ public class Propietario{
         return cc;
     }
 
-    public void setCc(String cc) {
+    protected void setCc(String cc) {
         this.cc = cc;
     }
 
@@ -56,7 +56,7 @@ public class Propietario{
         return direccion;
     }
 
-    public void setDireccion(String direccion) {
+    protected void setDireccion(String direccion) {
         this.direccion = direccion;
     }
 
@@ -64,7 +64,7 @@ public class Propietario{
         return ciudad;
     }
 
-    public void setCiudad(String ciudad) {
+    protected void setCiudad(String ciudad) {
         this.ciudad = ciudad;
     }
 
@@ -72,7 +72,7 @@ public class Propietario{
         return telefono;
     }
 
-    public void setTelefono(String telefono) {
+    protected void setTelefono(String telefono) {
         this.telefono = telefono;
     }
     
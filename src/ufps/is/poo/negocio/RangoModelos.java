@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+/**
+ * Rango cerrado de modelos (años de fabricacion) para consultar carros. Los
+ * rangos abiertos se representan con Integer.MIN_VALUE o Integer.MAX_VALUE en
+ * el extremo que no tiene limite.
+ * @author Emanuel Martinez Pinzon
+ */
+public class RangoModelos{
+    private final int desde;
+    private final int hasta;
+    
+    private RangoModelos(int desde, int hasta){
+        this.desde = desde;
+        this.hasta = hasta;
+    }
+    
+    /**
+     * Crea un rango con ambos extremos incluidos, sin importar el orden.
+     * @param a Un extremo del rango
+     * @param b El otro extremo del rango
+     * @return Retorna el rango
+     */
+    public static RangoModelos entre(int a, int b){
+        return new RangoModelos(Math.min(a, b), Math.max(a, b));
+    }
+    
+    /**
+     * Crea un rango con los modelos desde un año en adelante.
+     * @param desde Primer modelo incluido
+     * @return Retorna el rango
+     */
+    public static RangoModelos desde(int desde){
+        return new RangoModelos(desde, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Crea un rango con los modelos hasta un año, incluyendolo.
+     * @param hasta Ultimo modelo incluido
+     * @return Retorna el rango
+     */
+    public static RangoModelos hasta(int hasta){
+        return new RangoModelos(Integer.MIN_VALUE, hasta);
+    }
+    
+    /**
+     * Interpreta los rangos con el formato que usa la GUI: "2014-2012" para un
+     * rango cerrado, "2005-Menor" para los modelos hasta 2005 y "2015-Mayor"
+     * para los modelos desde 2015.
+     * @param rango Texto del rango
+     * @return Retorna el rango
+     * @throws NumberFormatException Si el texto no tiene el formato esperado
+     */
+    public static RangoModelos parse(String rango){
+        String[] extremos = rango.split("-");
+        if(extremos.length != 2)
+            throw new NumberFormatException("Rango invalido: "+rango);
+        
+        int inicio = Integer.parseInt(extremos[0].trim());
+        String fin = extremos[1].trim();
+        if(fin.equalsIgnoreCase("Menor"))
+            return hasta(inicio);
+        if(fin.equalsIgnoreCase("Mayor"))
+            return desde(inicio);
+        
+        return entre(inicio, Integer.parseInt(fin));
+    }
+    
+    /**
+     * Rangos que ofrece la GUI para consultar carros por modelo.
+     * @return Retorna un arreglo nuevo con los rangos
+     */
+    public static RangoModelos[] predeterminados(){
+        return new RangoModelos[]{entre(2014, 2012), entre(2011, 2009),
+            entre(2008, 2006), hasta(2005)};
+    }
+
+    public int getDesde() {
+        return desde;
+    }
+
+    public int getHasta() {
+        return hasta;
+    }
+    
+    /**
+     * Revisa si un modelo esta dentro del rango.
+     * @param modelo Modelo a revisar
+     * @return Retorna true si el modelo esta dentro del rango
+     */
+    public boolean contiene(int modelo){
+        return modelo >= desde && modelo <= hasta;
+    }
+    
+    /**
+     * Se reescribe para que el rango se muestre en los combos con el mismo
+     * formato que recibe el metodo parse().
+     * @return Retorna el rango como texto
+     */
+    @Override
+    public String toString(){
+        if(desde == Integer.MIN_VALUE)
+            return hasta+"-Menor";
+        if(hasta == Integer.MAX_VALUE)
+            return desde+"-Mayor";
+        
+        return hasta+"-"+desde;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+/**
+ * Estado de cada operacion de un lote aplicado con Competencia.aplicarLote:
+ * si se guardo o el motivo por el que se rechazo.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ResultadoLote {
+    
+    private final String[] motivos;
+    private final int rechazadas;
+    
+    ResultadoLote(String[] motivos){
+        this.motivos = motivos;
+        int n = 0;
+        for(String x: motivos)
+            if(x != null)
+                n++;
+        this.rechazadas = n;
+    }
+    
+    /**
+     * @return Retorna la cantidad de operaciones del lote
+     */
+    public int cantidad(){
+        return motivos.length;
+    }
+    
+    public int getAplicadas(){
+        return motivos.length - rechazadas;
+    }
+    
+    public int getRechazadas(){
+        return rechazadas;
+    }
+    
+    /**
+     * @param i Posicion de la operacion en el lote
+     * @return Retorna true si la operacion se guardo
+     */
+    public boolean fueAplicada(int i){
+        return motivos[i] == null;
+    }
+    
+    /**
+     * @param i Posicion de la operacion en el lote
+     * @return Retorna el motivo del rechazo, o null si se guardo
+     */
+    public String getMotivo(int i){
+        return motivos[i];
+    }
+    
+    @Override
+    public String toString(){
+        return getAplicadas()+" aplicadas, "+rechazadas+" rechazadas";
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grupo de cambios sobre una Competencia que se aplican todos o ninguno. Cada
+ * metodo de la competencia que se llama mientras la transaccion esta abierta
+ * guarda una nota pequeña de como deshacerse, en vez de copiar los datos, y si
+ * algo falla las notas se aplican al reves hasta dejar todo como estaba.
+ * 
+ * Se usa con try, para que se deshaga sola si no se confirma:
+ * <pre>
+ * try(Transaccion t = competencia.iniciarTransaccion()){
+ *     t.exigir(competencia.modificarCarro(placa, nuevaPlaca, marca, modelo), "No existe el carro");
+ *     t.exigir(competencia.modificarPremio(nuevaPlaca, evento, año, año, 1, evento), "Puesto ocupado");
+ *     t.confirmar();
+ * }
+ * </pre>
+ * Los oyentes reciben los cambios juntos al confirmar y la bitacora los guarda
+ * como un solo registro. Si se deshace no reciben nada, porque los datos
+ * quedan iguales a como estaban.
+ * @author Emanuel Martinez Pinzon
+ */
+public class Transaccion implements AutoCloseable{
+    
+    /**
+     * Nota que deshace un cambio ya aplicado.
+     */
+    interface Cambio{
+        void revertir();
+    }
+    
+    private final Competencia competencia;
+    private final ArrayList<Operacion> operaciones;
+    private final ArrayList<Cambio> cambios;
+    private boolean abierta;
+    private boolean confirmada;
+    
+    Transaccion(Competencia competencia){
+        this.competencia = competencia;
+        this.operaciones = new ArrayList<>();
+        this.cambios = new ArrayList<>();
+        this.abierta = true;
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * Deja los cambios aplicados, los guarda en la bitacora y los avisa a los
+     * oyentes.
+     * @throws IllegalStateException Si la transaccion ya termino o si la
+     * bitacora no acepta los cambios, en ese caso se deshacen
+     */
+    public void confirmar(){
+        revisar();
+        try{
+            competencia.confirmar(this);
+        }finally{
+            abierta = competencia.getTransaccion() == this;
+        }
+    }
+    
+    /**
+     * Deshace todos los cambios hechos desde que se inicio la transaccion.
+     * @throws IllegalStateException Si la transaccion ya termino
+     */
+    public void deshacer(){
+        revisar();
+        try{
+            competencia.revertir(this);
+        }finally{
+            abierta = competencia.getTransaccion() == this;
+        }
+    }
+    
+    /**
+     * Revisa el resultado de un metodo de la competencia. Los metodos que
+     * retornan false no cambian nada, pero la transaccion no deberia seguir.
+     * @param aplicado Lo que retorno el metodo
+     * @param motivo Mensaje de la excepcion
+     * @throws Exception Si el cambio no se aplico
+     */
+    public void exigir(boolean aplicado, String motivo) throws Exception{
+        if(!aplicado)
+            throw new Exception(motivo);
+    }
+    
+    /**
+     * Deshace la transaccion si no se confirmo. No hace nada si ya termino.
+     */
+    @Override
+    public void close(){
+        if(abierta)
+            deshacer();
+    }
+    
+    //-----------------------REQUERIMIENTOS OPERACIONALES----------------------//
+    public boolean estaAbierta(){
+        return abierta;
+    }
+    
+    /**
+     * @return Retorna true si la bitacora ya guardo los cambios. Sigue siendo
+     * true aunque despues falle un oyente al recibirlos
+     */
+    public boolean estaConfirmada(){
+        return confirmada;
+    }
+    
+    /**
+     * @return Retorna la cantidad de cambios aplicados hasta ahora
+     */
+    public int cantidad(){
+        return operaciones.size();
+    }
+    
+    void anotar(Operacion operacion, Cambio cambio){
+        operaciones.add(operacion);
+        cambios.add(cambio);
+    }
+    
+    void marcarConfirmada(){
+        confirmada = true;
+    }
+    
+    List<Operacion> getOperaciones(){
+        return operaciones;
+    }
+    
+    /**
+     * Aplica las notas de la ultima a la primera.
+     */
+    void revertirCambios(){
+        for(int i = cambios.size() - 1; i >= 0; i--)
+            cambios.get(i).revertir();
+        cambios.clear();
+        operaciones.clear();
+    }
+    
+    private void revisar(){
+        if(!abierta)
+            throw new IllegalStateException("La transaccion ya termino");
+    }
+}
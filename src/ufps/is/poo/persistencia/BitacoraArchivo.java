@@ -0,0 +1,631 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.persistencia;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import ufps.is.poo.negocio.Bitacora;
+import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.Operacion;
+
+/**
+ * Bitacora guardada en archivos de solo agregar dentro de una carpeta. Los
+ * cambios se dividen en segmentos bitacora-000001.log, bitacora-000002.log...
+ * y cada registro lleva su longitud, la operacion y un CRC32, asi al abrir se
+ * sabe donde quedo cortado el ultimo registro si la aplicacion se cerro a la
+ * mitad de una escritura.
+ * 
+ * registrar() no espera al disco, solo deja el registro en memoria. Un hilo
+ * aparte escribe todo lo acumulado de una vez y hace un solo force() por
+ * grupo, asi muchos cambios seguidos cuestan una sola sincronizacion. Un grupo
+ * que no cabe en el segmento se reparte entre ese y los siguientes.
+ * @author Emanuel Martinez Pinzon
+ */
+public class BitacoraArchivo implements Bitacora, Closeable {
+    
+    /**
+     * Tamaño desde el que se empieza un segmento nuevo, si no se indica otro
+     */
+    public static final long TAMAÑO_SEGMENTO = 16L << 20;
+    
+    static final int MAGICO = 0x43434231;
+    static final int VERSION = 2;
+    static final int CABECERA = 8;
+    static final int MAXIMO_REGISTRO = 16 << 20;
+    private static final String PREFIJO = "bitacora-";
+    private static final String SUFIJO = ".log";
+    private static final String ARCHIVO_BLOQUEO = "bitacora.lock";
+    static final String ARCHIVO_INSTANTANEA = "instantanea.bin";
+    private static final int TAMAÑO_LECTURA = 1 << 16;
+    
+    private final File directorio;
+    private final long tamañoSegmento;
+    private final FileChannel canalBloqueo;
+    private final FileLock bloqueo;
+    private final Object cerrojo = new Object();
+    private final Buffer registro = new Buffer();
+    private final DataOutputStream salidaRegistro = new DataOutputStream(registro);
+    private final CRC32 crc = new CRC32();
+    private final Thread escritor;
+    private Buffer pendiente = new Buffer();
+    private Buffer enEscritura = new Buffer();
+    private long registrados;
+    private long durables;
+    private long rotacionesPedidas;
+    private long rotacionesHechas;
+    private int ultimoCerrado;
+    private IOException error;
+    private boolean cerrada;
+    //Solo los usa el hilo escritor
+    private FileChannel canal;
+    private int segmento;
+    private long tamaño;
+    
+    private BitacoraArchivo(File directorio, long tamañoSegmento, FileChannel canalBloqueo,
+            FileLock bloqueo, int segmento, boolean continuar) throws IOException{
+        this.directorio = directorio;
+        this.tamañoSegmento = tamañoSegmento;
+        this.canalBloqueo = canalBloqueo;
+        this.bloqueo = bloqueo;
+        
+        File ultimo = archivoSegmento(directorio, segmento);
+        if(continuar && ultimo.length() < tamañoSegmento){
+            this.segmento = segmento;
+            this.canal = FileChannel.open(ultimo.toPath(), StandardOpenOption.WRITE);
+            this.tamaño = canal.size();
+            canal.position(tamaño);
+        }else
+            crearSegmento(segmento + 1);
+        this.ultimoCerrado = this.segmento - 1;
+        
+        this.escritor = new Thread(new Runnable(){
+            @Override
+            public void run() {
+                escribirGrupos();
+            }
+        }, "bitacora");
+        this.escritor.setDaemon(true);
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * Abre la bitacora de una carpeta, carga la instantanea si hay una, repite
+     * en la competencia los cambios guardados despues de ella y deja la
+     * competencia guardando los nuevos cambios.
+     * @param directorio Carpeta de la bitacora, se crea si no existe
+     * @param competencia Competencia vacia donde se recuperan los datos
+     * @return Retorna la bitacora abierta
+     * @throws IOException Si la carpeta esta en uso, no se puede leer o la
+     * bitacora esta dañada antes del ultimo registro
+     */
+    public static BitacoraArchivo abrir(File directorio, Competencia competencia) throws IOException{
+        return abrir(directorio, competencia, TAMAÑO_SEGMENTO);
+    }
+    
+    /**
+     * Abre la bitacora de una carpeta como abrir(directorio, competencia),
+     * empezando un segmento nuevo antes de que uno pase de tamañoSegmento. Solo
+     * un registro que ya es mas grande que eso queda en un segmento mayor.
+     * @param directorio Carpeta de la bitacora, se crea si no existe
+     * @param competencia Competencia vacia donde se recuperan los datos
+     * @param tamañoSegmento Tamaño en bytes de cada segmento
+     * @return Retorna la bitacora abierta
+     * @throws IOException Si la carpeta esta en uso, no se puede leer o la
+     * bitacora esta dañada antes del ultimo registro
+     */
+    public static BitacoraArchivo abrir(File directorio, Competencia competencia,
+            long tamañoSegmento) throws IOException{
+        if(!directorio.isDirectory() && !directorio.mkdirs())
+            throw new IOException("No se pudo crear la carpeta "+directorio);
+        
+        FileChannel canalBloqueo = new RandomAccessFile(new File(directorio, ARCHIVO_BLOQUEO),
+                "rw").getChannel();
+        try{
+            FileLock bloqueo = null;
+            try{
+                bloqueo = canalBloqueo.tryLock();
+            }catch(OverlappingFileLockException ex){
+                //Ya esta abierta en esta misma aplicacion
+            }
+            if(bloqueo == null)
+                throw new IOException("La carpeta "+directorio+" ya esta en uso");
+            
+            int cubierto = 0;
+            competencia.iniciarLote();
+            try{
+                File instantanea = new File(directorio, ARCHIVO_INSTANTANEA);
+                if(instantanea.isFile())
+                    cubierto = (int) Instantanea.cargar(instantanea, competencia);
+                reproducir(segmentos(directorio, cubierto), competencia, true);
+            }finally{
+                competencia.terminarLote();
+            }
+            
+            //Se borran los segmentos que ya estan en la instantanea, quedan si se
+            //cerro la aplicacion a la mitad de una compactacion
+            for(File x: segmentos(directorio, 0))
+                if(numeroSegmento(x) <= cubierto && !x.delete())
+                    throw new IOException("No se pudo borrar "+x);
+            
+            //Se vuelven a buscar porque un ultimo segmento sin cabecera se borra
+            List<File> segmentos = segmentos(directorio, cubierto);
+            int ultimo = segmentos.isEmpty() ? cubierto : numeroSegmento(segmentos.get(segmentos.size() - 1));
+            
+            BitacoraArchivo bitacora = new BitacoraArchivo(directorio, tamañoSegmento,
+                    canalBloqueo, bloqueo, ultimo, !segmentos.isEmpty());
+            bitacora.escritor.start();
+            competencia.setBitacora(bitacora);
+            return bitacora;
+        }catch(IOException | RuntimeException ex){
+            canalBloqueo.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Deja la operacion para escribirla en el siguiente grupo, sin esperar al
+     * disco. Para esperar a que quede guardada se usa sincronizar().
+     * @param operacion Operacion aplicada
+     * @throws IllegalStateException Si la bitacora esta cerrada o ya fallo al
+     * escribir
+     */
+    @Override
+    public void registrar(Operacion operacion){
+        agregar(operacion, null);
+    }
+    
+    /**
+     * Deja las operaciones de una transaccion en un solo registro, asi un
+     * corte a la mitad de la escritura las pierde todas y no solo una parte.
+     * @param operaciones Operaciones aplicadas
+     * @throws IllegalStateException Si la bitacora esta cerrada o ya fallo al
+     * escribir
+     * @throws IllegalArgumentException Si el grupo pasa de MAXIMO_REGISTRO
+     */
+    @Override
+    public void registrarGrupo(List<Operacion> operaciones){
+        agregar(null, operaciones);
+    }
+    
+    private void agregar(Operacion operacion, List<Operacion> grupo){
+        synchronized(cerrojo){
+            if(error != null)
+                throw new IllegalStateException("No se pudo escribir la bitacora", error);
+            if(cerrada)
+                throw new IllegalStateException("La bitacora esta cerrada");
+            
+            registro.reset();
+            try{
+                if(grupo == null)
+                    CodificadorOperaciones.escribir(salidaRegistro, operacion);
+                else
+                    CodificadorOperaciones.escribirGrupo(salidaRegistro, grupo);
+            }catch(IOException ex){
+                throw new IllegalStateException(ex);
+            }
+            if(registro.size() > MAXIMO_REGISTRO)
+                throw new IllegalArgumentException(grupo == null
+                        ? "Operacion demasiado grande: "+operacion.getTipo()
+                        : "Grupo demasiado grande: "+grupo.size()+" operaciones");
+            
+            crc.reset();
+            crc.update(registro.arreglo(), 0, registro.size());
+            pendiente.escribirEntero(registro.size());
+            pendiente.write(registro.arreglo(), 0, registro.size());
+            pendiente.escribirEntero((int) crc.getValue());
+            registrados++;
+            cerrojo.notifyAll();
+        }
+    }
+    
+    /**
+     * Espera a que todas las operaciones registradas hasta ahora esten
+     * guardadas en el disco.
+     * @throws IOException Si la escritura fallo
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera
+     */
+    public void sincronizar() throws IOException, InterruptedException{
+        synchronized(cerrojo){
+            long objetivo = registrados;
+            while(durables < objetivo && error == null && escritor.isAlive())
+                cerrojo.wait();
+            if(error != null)
+                throw error;
+        }
+    }
+    
+    /**
+     * Escribe lo pendiente, lo sincroniza con el disco y cierra los archivos.
+     * Despues de cerrarla la competencia ya no puede registrar cambios.
+     * @throws IOException Si la escritura o el cierre fallan
+     */
+    @Override
+    public void close() throws IOException{
+        synchronized(cerrojo){
+            if(cerrada)
+                return;
+            cerrada = true;
+            cerrojo.notifyAll();
+        }
+        
+        boolean interrumpido = false;
+        while(escritor.isAlive())
+            try{
+                escritor.join();
+            }catch(InterruptedException ex){
+                interrumpido = true;
+            }
+        if(interrumpido)
+            Thread.currentThread().interrupt();
+        
+        try{
+            canal.close();
+        }finally{
+            canalBloqueo.close();
+        }
+        synchronized(cerrojo){
+            if(error != null)
+                throw error;
+        }
+    }
+    
+    /**
+     * Cierra el segmento que se esta escribiendo, si tiene registros, para que
+     * no cambie mas. Quien escribe no espera: el hilo escritor lo cierra entre
+     * dos grupos.
+     * @return Retorna el numero del ultimo segmento cerrado, 0 si no hay ninguno
+     * @throws IOException Si la escritura fallo
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera
+     */
+    public int cerrarSegmento() throws IOException, InterruptedException{
+        synchronized(cerrojo){
+            if(cerrada)
+                throw new IOException("La bitacora esta cerrada");
+            
+            long pedido = ++rotacionesPedidas;
+            cerrojo.notifyAll();
+            while(rotacionesHechas < pedido && error == null && escritor.isAlive())
+                cerrojo.wait();
+            if(error != null)
+                throw error;
+            if(rotacionesHechas < pedido)
+                throw new IOException("La bitacora esta cerrada");
+            
+            return ultimoCerrado;
+        }
+    }
+    
+    /**
+     * Suma el tamaño de los segmentos que hay en la carpeta.
+     * @return Retorna el tamaño de la bitacora en bytes
+     */
+    public long tamañoBitacora(){
+        long total = 0;
+        for(File x: segmentos(directorio, 0))
+            total += x.length();
+        
+        return total;
+    }
+    
+    public File getDirectorio() {
+        return directorio;
+    }
+    
+    //-------------------------REQUERIMIENTOS OPERACIONALES---------------------//
+    /**
+     * Ciclo del hilo escritor. Toma todo lo pendiente, lo escribe y hace un solo
+     * force() por grupo, mientras tanto registrar() sigue llenando el otro buffer.
+     */
+    private void escribirGrupos(){
+        try{
+            while(true){
+                long hasta, rotacion;
+                synchronized(cerrojo){
+                    while(pendiente.size() == 0 && !cerrada && rotacionesHechas == rotacionesPedidas)
+                        cerrojo.wait();
+                    if(pendiente.size() == 0 && rotacionesHechas == rotacionesPedidas)
+                        return;
+                    
+                    Buffer lleno = pendiente;
+                    pendiente = enEscritura;
+                    enEscritura = lleno;
+                    hasta = registrados;
+                    rotacion = rotacionesPedidas;
+                }
+                
+                if(enEscritura.size() > 0){
+                    escribirRepartido(enEscritura);
+                    enEscritura.reset();
+                }
+                //Un segmento sin registros no se cierra, no hay nada que compactar
+                if(rotacion != rotacionesHechas && tamaño > CABECERA)
+                    rotar(segmento + 1);
+                
+                synchronized(cerrojo){
+                    durables = hasta;
+                    rotacionesHechas = rotacion;
+                    cerrojo.notifyAll();
+                }
+            }
+        }catch(IOException ex){
+            synchronized(cerrojo){
+                error = ex;
+                cerrojo.notifyAll();
+            }
+        }catch(InterruptedException ex){
+            synchronized(cerrojo){
+                error = new IOException("Se interrumpio la escritura de la bitacora", ex);
+                cerrojo.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Escribe los registros de un grupo repartidos en segmentos que no pasan de
+     * tamañoSegmento. Un registro nunca se parte: si no cabe en lo que queda del
+     * segmento se empieza otro, y si no cabe ni en uno vacio queda solo en el
+     * suyo. Se hace un force() por cada segmento que toca el grupo.
+     */
+    private void escribirRepartido(Buffer datos) throws IOException{
+        int inicio = 0;
+        while(inicio < datos.size()){
+            int fin = inicio;
+            while(fin < datos.size()){
+                int largo = 8 + datos.leerEntero(fin);
+                boolean vacio = fin == inicio && tamaño == CABECERA;
+                if(!vacio && tamaño + (fin - inicio) + largo > tamañoSegmento)
+                    break;
+                fin += largo;
+            }
+            
+            if(fin > inicio){
+                ByteBuffer parte = ByteBuffer.wrap(datos.arreglo(), inicio, fin - inicio);
+                while(parte.hasRemaining())
+                    canal.write(parte);
+                canal.force(false);
+                tamaño += fin - inicio;
+                inicio = fin;
+            }
+            if(inicio < datos.size())
+                rotar(segmento + 1);
+        }
+    }
+    
+    /**
+     * Cierra el segmento actual, ya sincronizado, y empieza el siguiente.
+     */
+    private void rotar(int siguiente) throws IOException{
+        canal.close();
+        int cerrado = segmento;
+        crearSegmento(siguiente);
+        synchronized(cerrojo){
+            ultimoCerrado = cerrado;
+        }
+    }
+    
+    private void crearSegmento(int numero) throws IOException{
+        File archivo = archivoSegmento(directorio, numero);
+        canal = FileChannel.open(archivo.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE_NEW);
+        ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+        cabecera.putInt(MAGICO).putInt(VERSION).flip();
+        while(cabecera.hasRemaining())
+            canal.write(cabecera);
+        canal.force(true);
+        segmento = numero;
+        tamaño = CABECERA;
+    }
+    
+    /**
+     * Repite en la competencia las operaciones de todos los segmentos, dentro
+     * de un lote para que los oyentes reciban un solo aviso.
+     * @param cortarFinal true si el ultimo segmento puede estar cortado porque
+     * se estaba escribiendo, false si todos deben estar completos
+     */
+    static void reproducir(List<File> segmentos, Competencia competencia,
+            boolean cortarFinal) throws IOException{
+        competencia.iniciarLote();
+        try{
+            for(int i = 0; i < segmentos.size(); i++){
+                File archivo = segmentos.get(i);
+                boolean ultimo = cortarFinal && i == segmentos.size() - 1;
+                long valido = reproducirSegmento(archivo, competencia, ultimo);
+                
+                //Solo el ultimo segmento puede quedar cortado, se deja hasta el
+                //ultimo registro completo.
+                if(valido < CABECERA){
+                    if(!archivo.delete())
+                        throw new IOException("No se pudo borrar "+archivo);
+                }else if(valido < archivo.length())
+                    try(RandomAccessFile x = new RandomAccessFile(archivo, "rw")){
+                        x.setLength(valido);
+                    }
+            }
+        }finally{
+            competencia.terminarLote();
+        }
+    }
+    
+    /**
+     * Lee un segmento y aplica sus operaciones.
+     * @return Retorna hasta donde llegan los registros completos
+     */
+    private static long reproducirSegmento(File archivo, Competencia competencia,
+            boolean ultimo) throws IOException{
+        try(DataInputStream entrada = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(archivo), TAMAÑO_LECTURA))){
+            try{
+                if(entrada.readInt() != MAGICO)
+                    throw new IOException(archivo+" no es un segmento de bitacora");
+                int version = entrada.readInt();
+                if(version > VERSION)
+                    throw new IOException(archivo+" tiene una version no soportada: "+version);
+            }catch(EOFException ex){
+                return cortado(archivo, ultimo, 0);
+            }
+            
+            Lectura lectura = new Lectura();
+            CRC32 suma = new CRC32();
+            long posicion = CABECERA;
+            while(true){
+                int longitud;
+                try{
+                    longitud = entrada.readInt();
+                }catch(EOFException ex){
+                    //Puede ser el final exacto o una longitud a medio escribir
+                    if(posicion == archivo.length())
+                        return posicion;
+                    return cortado(archivo, ultimo, posicion);
+                }
+                if(longitud <= 0 || longitud > MAXIMO_REGISTRO)
+                    return cortado(archivo, ultimo, posicion);
+                
+                byte[] datos = lectura.preparar(longitud);
+                int esperado;
+                try{
+                    entrada.readFully(datos, 0, longitud);
+                    esperado = entrada.readInt();
+                }catch(EOFException ex){
+                    return cortado(archivo, ultimo, posicion);
+                }
+                suma.reset();
+                suma.update(datos, 0, longitud);
+                if((int) suma.getValue() != esperado)
+                    return cortado(archivo, ultimo, posicion);
+                
+                for(Operacion operacion: CodificadorOperaciones.leerRegistro(lectura.datos))
+                    try{
+                        if(!operacion.aplicar(competencia))
+                            throw new IOException("No se pudo repetir "+operacion);
+                    }catch(IOException ex){
+                        throw ex;
+                    }catch(Exception ex){
+                        throw new IOException("No se pudo repetir "+operacion, ex);
+                    }
+                posicion += 8 + longitud;
+            }
+        }
+    }
+    
+    /**
+     * Decide que hacer con un registro incompleto o dañado. En el ultimo
+     * segmento es una escritura que no termino, en los demas es un error.
+     */
+    private static long cortado(File archivo, boolean ultimo, long posicion) throws IOException{
+        if(!ultimo)
+            throw new IOException("Bitacora dañada en "+archivo+", posicion "+posicion);
+        
+        return posicion;
+    }
+    
+    /**
+     * Busca en orden los segmentos de una carpeta que vienen despues de uno.
+     */
+    static List<File> segmentos(File directorio, int despuesDe){
+        File[] archivos = directorio.listFiles();
+        List<File> segmentos = new ArrayList<>();
+        if(archivos == null)
+            return segmentos;
+        
+        Arrays.sort(archivos);
+        for(File x: archivos)
+            if(numeroSegmento(x) > despuesDe)
+                segmentos.add(x);
+        return segmentos;
+    }
+    
+    static File archivoSegmento(File directorio, int numero){
+        return new File(directorio, String.format("%s%06d%s", PREFIJO, numero, SUFIJO));
+    }
+    
+    /**
+     * @return Retorna el numero del segmento o 0 si el archivo no es un segmento
+     */
+    static int numeroSegmento(File archivo){
+        String nombre = archivo.getName();
+        if(!nombre.startsWith(PREFIJO) || !nombre.endsWith(SUFIJO))
+            return 0;
+        
+        try{
+            return Integer.parseInt(nombre.substring(PREFIJO.length(),
+                    nombre.length() - SUFIJO.length()));
+        }catch(NumberFormatException ex){
+            return 0;
+        }
+    }
+    
+    /**
+     * Buffer que deja ver sus bytes sin copiarlos.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+        
+        byte[] arreglo(){
+            return buf;
+        }
+        
+        void escribirEntero(int valor){
+            write(valor >>> 24);
+            write(valor >>> 16);
+            write(valor >>> 8);
+            write(valor);
+        }
+        
+        int leerEntero(int posicion){
+            return (buf[posicion] & 0xff) << 24 | (buf[posicion + 1] & 0xff) << 16
+                    | (buf[posicion + 2] & 0xff) << 8 | buf[posicion + 3] & 0xff;
+        }
+    }
+    
+    /**
+     * Lee cada registro desde el mismo arreglo, que crece cuando hace falta.
+     */
+    private static class Lectura extends ByteArrayInputStream {
+        
+        private final DataInputStream datos = new DataInputStream(this);
+        
+        Lectura(){
+            super(new byte[256]);
+        }
+        
+        byte[] preparar(int longitud){
+            if(buf.length < longitud)
+                buf = new byte[Math.max(longitud, buf.length * 2)];
+            pos = 0;
+            mark = 0;
+            count = longitud;
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.persistencia;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import ufps.is.poo.negocio.Operacion;
+
+/**
+ * Convierte operaciones a bytes y de vuelta. Cada operacion se guarda como el
+ * codigo de su tipo seguido de sus textos y sus numeros, en el orden que dice
+ * el tipo. Un grupo de operaciones de una transaccion se guarda con el codigo
+ * GRUPO, la cantidad y cada operacion.
+ * @author Emanuel Martinez Pinzon
+ */
+class CodificadorOperaciones {
+    
+    /**
+     * Codigo que no usa ningun tipo de operacion, marca un grupo
+     */
+    static final int GRUPO = 0;
+    
+    private CodificadorOperaciones(){
+    }
+    
+    static void escribirGrupo(DataOutput salida, List<Operacion> operaciones) throws IOException{
+        salida.writeByte(GRUPO);
+        salida.writeInt(operaciones.size());
+        for(Operacion x: operaciones)
+            escribir(salida, x);
+    }
+    
+    /**
+     * Lee un registro completo, que puede ser una operacion o un grupo.
+     * @return Retorna las operaciones del registro en orden
+     */
+    static List<Operacion> leerRegistro(DataInput entrada) throws IOException{
+        int codigo = entrada.readUnsignedByte();
+        if(codigo != GRUPO)
+            return Collections.singletonList(leer(entrada, codigo));
+        
+        int cantidad = entrada.readInt();
+        if(cantidad < 0)
+            throw new IOException("Grupo de operaciones invalido: "+cantidad);
+        List<Operacion> operaciones = new ArrayList<>(Math.min(cantidad, 1024));
+        for(int i = 0; i < cantidad; i++)
+            operaciones.add(leer(entrada));
+        return operaciones;
+    }
+    
+    static void escribir(DataOutput salida, Operacion operacion) throws IOException{
+        Operacion.Tipo tipo = operacion.getTipo();
+        salida.writeByte(tipo.getCodigo());
+        for(int i = 0; i < tipo.getTextos(); i++)
+            escribirTexto(salida, operacion.getTexto(i));
+        for(int i = 0; i < tipo.getNumeros(); i++)
+            salida.writeInt(operacion.getNumero(i));
+    }
+    
+    static Operacion leer(DataInput entrada) throws IOException{
+        return leer(entrada, entrada.readUnsignedByte());
+    }
+    
+    private static Operacion leer(DataInput entrada, int codigo) throws IOException{
+        Operacion.Tipo tipo = Operacion.Tipo.porCodigo(codigo);
+        if(tipo == null)
+            throw new IOException("Tipo de operacion desconocido: "+codigo);
+        
+        String[] textos = new String[tipo.getTextos()];
+        for(int i = 0; i < textos.length; i++)
+            textos[i] = leerTexto(entrada);
+        int[] numeros = new int[tipo.getNumeros()];
+        for(int i = 0; i < numeros.length; i++)
+            numeros[i] = entrada.readInt();
+        return new Operacion(tipo, textos, numeros);
+    }
+    
+    /**
+     * Escribe un texto que puede ser null, con un byte antes que lo indica.
+     */
+    static void escribirTexto(DataOutput salida, String texto) throws IOException{
+        salida.writeBoolean(texto != null);
+        if(texto != null)
+            salida.writeUTF(texto);
+    }
+    
+    static String leerTexto(DataInput entrada) throws IOException{
+        if(entrada.readBoolean())
+            return entrada.readUTF();
+        
+        return null;
+    }
+}
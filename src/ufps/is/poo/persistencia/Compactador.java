@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.persistencia;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import ufps.is.poo.negocio.Competencia;
+
+/**
+ * Mantiene acotada una BitacoraArchivo. Cada cierto tiempo cierra el segmento
+ * que se esta escribiendo y, en un hilo aparte, arma una copia de la
+ * competencia con la instantanea anterior y los segmentos cerrados, escribe
+ * una instantanea nueva y borra esos segmentos.
+ * 
+ * La competencia en uso nunca se lee ni se bloquea: los cambios siguen
+ * llegando a la bitacora mientras se compacta, y quien escribe solo comparte
+ * con el compactador el instante en que se cierra el segmento.
+ * @author Emanuel Martinez Pinzon
+ */
+public class Compactador implements Closeable {
+    
+    /**
+     * Tiempo entre compactaciones, si no se indica otro
+     */
+    public static final long INTERVALO = TimeUnit.MINUTES.toMillis(10);
+    
+    /**
+     * Tamaño de la bitacora por debajo del cual no se compacta, si no se indica otro
+     */
+    public static final long TAMAÑO_MINIMO = 1L << 20;
+    
+    /**
+     * Tamaño de la bitacora desde el cual se compacta sin esperar el intervalo,
+     * si no se indica otro
+     */
+    public static final long TAMAÑO_MAXIMO = 64L << 20;
+    
+    private static final long REVISION = TimeUnit.SECONDS.toMillis(5);
+    
+    private final BitacoraArchivo bitacora;
+    private final long intervalo;
+    private final long tamañoMinimo;
+    private final long tamañoMaximo;
+    private final ScheduledExecutorService hilo;
+    private long ultimaCompactacion;
+    //Metricas, se leen desde otros hilos
+    private volatile int compactaciones;
+    private volatile long ultimaDuracion;
+    private volatile long duracionMaxima;
+    private volatile long tamañoInstantanea;
+    private volatile IOException ultimoError;
+    
+    /**
+     * Crea un compactador con el intervalo y los tamaños por defecto.
+     * @param bitacora Bitacora abierta a compactar
+     */
+    public Compactador(BitacoraArchivo bitacora){
+        this(bitacora, INTERVALO, TAMAÑO_MINIMO, TAMAÑO_MAXIMO);
+    }
+    
+    /**
+     * Crea un compactador. No empieza a trabajar hasta llamar iniciar().
+     * @param bitacora Bitacora abierta a compactar
+     * @param intervalo Milisegundos entre compactaciones
+     * @param tamañoMinimo Bytes de bitacora por debajo de los cuales no se
+     * compacta aunque se cumpla el intervalo
+     * @param tamañoMaximo Bytes de bitacora desde los cuales se compacta sin
+     * esperar el intervalo
+     */
+    public Compactador(BitacoraArchivo bitacora, long intervalo, long tamañoMinimo,
+            long tamañoMaximo){
+        if(intervalo <= 0 || tamañoMinimo < 0 || tamañoMaximo < tamañoMinimo)
+            throw new IllegalArgumentException("Configuracion invalida del compactador");
+        
+        this.bitacora = bitacora;
+        this.intervalo = intervalo;
+        this.tamañoMinimo = tamañoMinimo;
+        this.tamañoMaximo = tamañoMaximo;
+        this.hilo = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread hilo = new Thread(r, "compactador");
+                hilo.setDaemon(true);
+                hilo.setPriority(Thread.MIN_PRIORITY);
+                return hilo;
+            }
+        });
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * Empieza a revisar la bitacora cada pocos segundos en segundo plano.
+     */
+    public void iniciar(){
+        ultimaCompactacion = System.currentTimeMillis();
+        long revision = Math.min(intervalo, REVISION);
+        hilo.scheduleWithFixedDelay(new Runnable(){
+            @Override
+            public void run() {
+                revisar();
+            }
+        }, revision, revision, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Compacta la bitacora en el hilo que llama, sin mirar el intervalo ni los
+     * tamaños.
+     * @return Retorna true si habia segmentos para compactar
+     * @throws IOException Si no se pudo leer la bitacora o escribir la instantanea
+     * @throws InterruptedException Si el hilo es interrumpido
+     */
+    public synchronized boolean compactar() throws IOException, InterruptedException{
+        long inicio = System.nanoTime();
+        int hasta = bitacora.cerrarSegmento();
+        
+        File directorio = bitacora.getDirectorio();
+        File instantanea = new File(directorio, BitacoraArchivo.ARCHIVO_INSTANTANEA);
+        Competencia copia = new Competencia();
+        int cubierto = 0;
+        if(instantanea.isFile())
+            cubierto = (int) Instantanea.cargar(instantanea, copia);
+        
+        List<File> segmentos = new ArrayList<>();
+        for(File x: BitacoraArchivo.segmentos(directorio, cubierto))
+            if(BitacoraArchivo.numeroSegmento(x) <= hasta)
+                segmentos.add(x);
+        if(segmentos.isEmpty())
+            return false;
+        
+        BitacoraArchivo.reproducir(segmentos, copia, false);
+        Instantanea.escribir(copia, instantanea, hasta);
+        //La instantanea ya los incluye, si alguno no se borra se ignora al abrir
+        for(File x: segmentos)
+            x.delete();
+        
+        long duracion = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        ultimaDuracion = duracion;
+        duracionMaxima = Math.max(duracionMaxima, duracion);
+        tamañoInstantanea = instantanea.length();
+        compactaciones++;
+        return true;
+    }
+    
+    /**
+     * Deja de compactar, esperando a que termine la compactacion en curso.
+     * La bitacora queda abierta.
+     */
+    @Override
+    public void close(){
+        hilo.shutdown();
+        try{
+            hilo.awaitTermination(1, TimeUnit.MINUTES);
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    //---------------------------------METRICAS--------------------------------//
+    /**
+     * @return Retorna cuantas compactaciones se han terminado
+     */
+    public int getCompactaciones() {
+        return compactaciones;
+    }
+    
+    /**
+     * @return Retorna los milisegundos que tardo la ultima compactacion
+     */
+    public long getUltimaDuracion() {
+        return ultimaDuracion;
+    }
+    
+    /**
+     * @return Retorna los milisegundos que tardo la compactacion mas lenta
+     */
+    public long getDuracionMaxima() {
+        return duracionMaxima;
+    }
+    
+    /**
+     * @return Retorna el tamaño actual de la bitacora en bytes
+     */
+    public long getTamañoBitacora() {
+        return bitacora.tamañoBitacora();
+    }
+    
+    /**
+     * @return Retorna el tamaño en bytes de la ultima instantanea escrita
+     */
+    public long getTamañoInstantanea() {
+        return tamañoInstantanea;
+    }
+    
+    /**
+     * @return Retorna el error de la ultima compactacion fallida, o null si la
+     * ultima termino bien
+     */
+    public IOException getUltimoError() {
+        return ultimoError;
+    }
+    
+    //-------------------------REQUERIMIENTOS OPERACIONALES---------------------//
+    /**
+     * Compacta si la bitacora paso del tamaño maximo, o si ya se cumplio el
+     * intervalo y paso del tamaño minimo.
+     */
+    private void revisar(){
+        long tamaño = bitacora.tamañoBitacora();
+        boolean vencido = System.currentTimeMillis() - ultimaCompactacion >= intervalo;
+        if(tamaño < tamañoMaximo && (!vencido || tamaño < tamañoMinimo))
+            return;
+        
+        try{
+            compactar();
+            ultimoError = null;
+        }catch(IOException ex){
+            ultimoError = ex;
+            Logger.getLogger(Compactador.class.getName()).log(Level.WARNING,
+                    "No se pudo compactar la bitacora", ex);
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }finally{
+            ultimaCompactacion = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.persistencia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import ufps.is.poo.negocio.Carga;
+import ufps.is.poo.negocio.Carro;
+import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.Premio;
+import ufps.is.poo.negocio.Propietario;
+
+/**
+ * Copia binaria de todos los carros, premios y propietarios de una Competencia
+ * en un solo archivo. Los textos se guardan una sola vez en un diccionario y
+ * los registros los nombran por su posicion, asi una marca, un evento o una
+ * ciudad que se repite miles de veces ocupa 4 bytes en cada uso.
+ * 
+ * El archivo se carga mapeado en memoria y termina con un CRC32 de todo su
+ * contenido, que se revisa antes de aplicar cualquier dato.
+ * @author Emanuel Martinez Pinzon
+ */
+public class Instantanea {
+    
+    static final int MAGICO = 0x43435331;
+    static final int VERSION = 1;
+    private static final int NULO = -1;
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+    
+    private Instantanea(){
+    }
+    
+    //-------------------------REQUERIMIENTOS FUNCIONALES----------------------//
+    /**
+     * Escribe la instantanea de una competencia. Se escribe en un archivo
+     * temporal que reemplaza al anterior solo cuando esta completo.
+     * @param competencia Competencia a guardar, no debe cambiar mientras se escribe
+     * @param archivo Archivo destino
+     * @param segmento Ultimo segmento de la bitacora incluido en la instantanea,
+     * 0 si no hay bitacora
+     * @throws IOException Si no se puede escribir
+     */
+    public static void escribir(Competencia competencia, File archivo, long segmento) throws IOException{
+        //Primera pasada: el diccionario de textos
+        HashMap<String, Integer> indices = new HashMap<>();
+        List<String> textos = new ArrayList<>();
+        for(String placa: competencia.listarPlacas()){
+            Carro c = competencia.obtenerCarro(placa);
+            registrar(indices, textos, c.getPlaca());
+            registrar(indices, textos, c.getMarca());
+            for(Premio x: competencia.listarPremios(placa))
+                registrar(indices, textos, x.getEvento());
+            for(Integer año: competencia.listarAñosPropietarios(placa))
+                for(Propietario x: competencia.listarPropietarios(placa, año)){
+                    registrar(indices, textos, x.getNombre());
+                    registrar(indices, textos, x.getCc());
+                    registrar(indices, textos, x.getDireccion());
+                    registrar(indices, textos, x.getCiudad());
+                    registrar(indices, textos, x.getTelefono());
+                }
+        }
+        
+        File temporal = new File(archivo.getPath()+".tmp");
+        try(Escritor salida = new Escritor(FileChannel.open(temporal.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING))){
+            salida.entero(MAGICO);
+            salida.entero(VERSION);
+            salida.largo(segmento);
+            
+            salida.entero(textos.size());
+            for(String x: textos)
+                salida.texto(x);
+            
+            //Segunda pasada: los carros en orden de registro
+            salida.entero(competencia.listarPlacas().size());
+            for(String placa: competencia.listarPlacas()){
+                Carro c = competencia.obtenerCarro(placa);
+                salida.entero(indice(indices, c.getPlaca()));
+                salida.entero(indice(indices, c.getMarca()));
+                salida.entero(c.getModelo());
+                
+                List<Premio> premios = competencia.listarPremios(placa);
+                salida.entero(premios.size());
+                for(Premio x: premios){
+                    salida.entero(indice(indices, x.getEvento()));
+                    salida.entero(x.getAnio());
+                    salida.entero(x.getPuesto());
+                }
+                
+                //Los años vacios no se guardan, no se ven en ninguna consulta
+                List<Integer> años = new ArrayList<>();
+                for(Integer año: competencia.listarAñosPropietarios(placa))
+                    if(!competencia.listarPropietarios(placa, año).isEmpty())
+                        años.add(año);
+                salida.entero(años.size());
+                for(Integer año: años){
+                    Collection<Propietario> propietarios = competencia.listarPropietarios(placa, año);
+                    salida.entero(año);
+                    salida.entero(propietarios.size());
+                    for(Propietario x: propietarios){
+                        salida.entero(indice(indices, x.getNombre()));
+                        salida.entero(indice(indices, x.getCc()));
+                        salida.entero(indice(indices, x.getDireccion()));
+                        salida.entero(indice(indices, x.getCiudad()));
+                        salida.entero(indice(indices, x.getTelefono()));
+                    }
+                }
+            }
+            salida.terminar();
+        }catch(IOException | RuntimeException ex){
+            temporal.delete();
+            throw ex;
+        }
+        
+        Files.move(temporal.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Carga una instantanea en una competencia vacia con una Carga: los
+     * carros se arman directo en los indices, sin revisar premios ni tomar un
+     * cerrojo por cambio, y los oyentes reciben un solo aviso.
+     * @param archivo Archivo de la instantanea
+     * @param competencia Competencia vacia donde se cargan los datos
+     * @return Retorna el ultimo segmento de la bitacora incluido en la instantanea
+     * @throws IOException Si no se puede leer, la version no es soportada o el
+     * archivo esta dañado
+     * @throws IllegalStateException Si la competencia no esta vacia
+     */
+    public static long cargar(File archivo, Competencia competencia) throws IOException{
+        MappedByteBuffer datos;
+        try(FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)){
+            if(canal.size() > Integer.MAX_VALUE)
+                throw new IOException(archivo+" es demasiado grande para mapearlo");
+            datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        
+        try{
+            revisar(datos, archivo);
+            if(datos.getInt() != MAGICO)
+                throw new IOException(archivo+" no es una instantanea");
+            int version = datos.getInt();
+            if(version > VERSION)
+                throw new IOException(archivo+" tiene una version no soportada: "+version);
+            long segmento = datos.getLong();
+            
+            String[] textos = new String[datos.getInt()];
+            byte[] bytes = new byte[256];
+            for(int i = 0; i < textos.length; i++){
+                int longitud = datos.getInt();
+                if(longitud == NULO)
+                    continue;
+                if(bytes.length < longitud)
+                    bytes = new byte[Math.max(longitud, bytes.length * 2)];
+                datos.get(bytes, 0, longitud);
+                textos[i] = new String(bytes, 0, longitud, StandardCharsets.UTF_8);
+            }
+            
+            int carros = datos.getInt();
+            try(Carga carga = competencia.iniciarCarga(carros)){
+                for(int i = 0; i < carros; i++){
+                    String placa = texto(textos, datos.getInt());
+                    String marca = texto(textos, datos.getInt());
+                    if(!carga.carro(placa, marca, datos.getInt()))
+                        throw new IOException("Placa repetida en "+archivo+": "+placa);
+                    
+                    int premios = datos.getInt();
+                    for(int j = 0; j < premios; j++){
+                        String evento = texto(textos, datos.getInt());
+                        int anio = datos.getInt();
+                        carga.premio(anio, datos.getInt(), evento);
+                    }
+                    
+                    int años = datos.getInt();
+                    for(int j = 0; j < años; j++){
+                        int año = datos.getInt();
+                        int propietarios = datos.getInt();
+                        for(int k = 0; k < propietarios; k++)
+                            if(!carga.propietario(año,
+                                    texto(textos, datos.getInt()), texto(textos, datos.getInt()),
+                                    texto(textos, datos.getInt()), texto(textos, datos.getInt()),
+                                    texto(textos, datos.getInt())))
+                                throw new IOException("Propietario repetido en "+archivo+": "+placa);
+                    }
+                }
+            }
+            return segmento;
+        }catch(BufferUnderflowException ex){
+            throw new IOException(archivo+" esta incompleto", ex);
+        }
+    }
+    
+    //-------------------------REQUERIMIENTOS OPERACIONALES---------------------//
+    /**
+     * Revisa el CRC32 del final del archivo contra su contenido y deja el
+     * buffer al inicio.
+     */
+    private static void revisar(MappedByteBuffer datos, File archivo) throws IOException{
+        if(datos.limit() < 4)
+            throw new IOException(archivo+" esta incompleto");
+        
+        int contenido = datos.limit() - 4;
+        CRC32 crc = new CRC32();
+        byte[] bloque = new byte[TAMAÑO_BUFFER];
+        datos.position(0);
+        while(datos.position() < contenido){
+            int n = Math.min(bloque.length, contenido - datos.position());
+            datos.get(bloque, 0, n);
+            crc.update(bloque, 0, n);
+        }
+        if(datos.getInt() != (int) crc.getValue())
+            throw new IOException(archivo+" esta dañado");
+        
+        datos.position(0);
+        datos.limit(contenido);
+    }
+    
+    private static String texto(String[] textos, int indice) throws IOException{
+        if(indice == NULO)
+            return null;
+        if(indice < 0 || indice >= textos.length)
+            throw new IOException("Texto inexistente: "+indice);
+        
+        return textos[indice];
+    }
+    
+    private static void registrar(HashMap<String, Integer> indices, List<String> textos, String texto){
+        if(texto != null && !indices.containsKey(texto)){
+            indices.put(texto, textos.size());
+            textos.add(texto);
+        }
+    }
+    
+    private static int indice(HashMap<String, Integer> indices, String texto){
+        return texto == null ? NULO : indices.get(texto);
+    }
+    
+    /**
+     * Escribe en un canal por bloques y calcula el CRC32 de lo escrito.
+     */
+    private static class Escritor implements AutoCloseable {
+        
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocate(TAMAÑO_BUFFER);
+        private final CRC32 crc = new CRC32();
+        
+        Escritor(FileChannel canal){
+            this.canal = canal;
+        }
+        
+        void entero(int valor) throws IOException{
+            if(buffer.remaining() < 4)
+                vaciar();
+            buffer.putInt(valor);
+        }
+        
+        void largo(long valor) throws IOException{
+            if(buffer.remaining() < 8)
+                vaciar();
+            buffer.putLong(valor);
+        }
+        
+        void texto(String texto) throws IOException{
+            if(texto == null){
+                entero(NULO);
+                return;
+            }
+            
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            entero(bytes.length);
+            int escritos = 0;
+            while(escritos < bytes.length){
+                if(!buffer.hasRemaining())
+                    vaciar();
+                int n = Math.min(buffer.remaining(), bytes.length - escritos);
+                buffer.put(bytes, escritos, n);
+                escritos += n;
+            }
+        }
+        
+        /**
+         * Agrega el CRC32 al final y sincroniza el archivo con el disco.
+         */
+        void terminar() throws IOException{
+            vaciar();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while(buffer.hasRemaining())
+                canal.write(buffer);
+            buffer.clear();
+            canal.force(true);
+        }
+        
+        private void vaciar() throws IOException{
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.flip();
+            while(buffer.hasRemaining())
+                canal.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.presentacion;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.JProgressBar;
+import javax.swing.JTextArea;
+import javax.swing.SwingWorker;
+import javax.swing.text.DefaultCaret;
+import ufps.is.poo.util.Notificacion;
+
+/**
+ * Ejecuta las consultas de Competencia fuera del hilo de eventos de Swing.
+ * El resultado se va agregando al area de texto por partes mientras la
+ * consulta avanza, y al lanzar una consulta nueva la anterior se cancela.
+ * Las consultas se ejecutan una tras otra en un solo hilo de fondo, asi que
+ * deben leer de una competencia creada con Competencia.concurrente(), que se
+ * puede cambiar desde el hilo de eventos al mismo tiempo.
+ * Se debe usar desde el hilo de eventos de Swing.
+ * @author Emanuel Martinez Pinzon
+ */
+public class EjecutorConsultas {
+    private static final int TAMAÑO_TROZO = 4096;
+    
+    private static final ExecutorService HILO = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread hilo = new Thread(r, "consultas");
+                    hilo.setDaemon(true);
+                    return hilo;
+                }
+            });
+    
+    private final JTextArea area;
+    private final JProgressBar progreso;
+    private Tarea actual;
+    
+    public EjecutorConsultas(JTextArea area, JProgressBar progreso){
+        this.area = area;
+        this.progreso = progreso;
+        
+        if(area.getCaret() instanceof DefaultCaret)
+            ((DefaultCaret) area.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+    }
+    
+    /**
+     * Cancela la consulta en curso, si la hay, y lanza una nueva
+     * @param encabezado Texto que se muestra antes del resultado
+     * @param consulta Consulta a ejecutar
+     */
+    public void ejecutar(String encabezado, Consulta consulta){
+        cancelar();
+        area.setText(encabezado);
+        progreso.setIndeterminate(true);
+        
+        actual = new Tarea(consulta);
+        HILO.execute(actual);
+    }
+    
+    /**
+     * Cancela la consulta en curso. Lo que alcanzo a mostrar se conserva.
+     */
+    public void cancelar(){
+        if(actual != null && !actual.isDone()){
+            actual.cancel(false);
+            progreso.setIndeterminate(false);
+        }
+    }
+    
+    /**
+     * Consulta que escribe su resultado en una salida. consultar se ejecuta en
+     * el hilo de fondo y terminar en el hilo de eventos de Swing.
+     */
+    public abstract static class Consulta {
+        /**
+         * Escribe el resultado de la consulta
+         * @param salida Donde se escribe el resultado
+         * @return Valor que se entrega a terminar, puede ser null
+         * @throws IOException 
+         */
+        protected abstract String consultar(Appendable salida) throws IOException;
+        
+        /**
+         * Se llama cuando la consulta termina sin ser cancelada
+         * @param resultado Valor devuelto por consultar
+         */
+        protected void terminar(String resultado){
+        }
+    }
+    
+    private class Tarea extends SwingWorker<String, String> {
+        private final Consulta consulta;
+        
+        Tarea(Consulta consulta){
+            this.consulta = consulta;
+        }
+        
+        @Override
+        protected String doInBackground() throws Exception {
+            Writer salida = new Escritor();
+            String resultado = consulta.consultar(salida);
+            salida.flush();
+            return resultado;
+        }
+        
+        @Override
+        protected void process(List<String> trozos) {
+            if(this != actual || isCancelled())
+                return;
+            
+            for(String trozo: trozos)
+                area.append(trozo);
+        }
+        
+        @Override
+        protected void done() {
+            if(this != actual || isCancelled())
+                return;
+            
+            progreso.setIndeterminate(false);
+            try{
+                consulta.terminar(get());
+            }catch(InterruptedException ex){
+                Thread.currentThread().interrupt();
+            }catch(ExecutionException ex){
+                Notificacion.alertaError("Error", "No se pudo mostrar la informacion");
+            }
+        }
+        
+        /**
+         * Junta el texto en trozos y los publica al hilo de eventos. Si la
+         * tarea fue cancelada corta la consulta en la siguiente escritura.
+         */
+        private class Escritor extends Writer {
+            private final StringBuilder trozo = new StringBuilder();
+            
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                revisar();
+                trozo.append(cbuf, off, len);
+                if(trozo.length() >= TAMAÑO_TROZO)
+                    flush();
+            }
+            
+            @Override
+            public void write(String str, int off, int len) throws IOException {
+                revisar();
+                trozo.append(str, off, off + len);
+                if(trozo.length() >= TAMAÑO_TROZO)
+                    flush();
+            }
+            
+            @Override
+            public void flush() throws IOException {
+                if(trozo.length() > 0){
+                    publish(trozo.toString());
+                    trozo.setLength(0);
+                }
+            }
+            
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+            
+            private void revisar() throws IOException {
+                if(isCancelled())
+                    throw new InterruptedIOException("Consulta cancelada");
+            }
+        }
+    }
+}
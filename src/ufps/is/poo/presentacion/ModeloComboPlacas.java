@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.presentacion;
+
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+
+/**
+ * Modelo de un combo de placas. Los elementos son los del ModeloPlacas
+ * compartido y solo la seleccion es propia de cada combo. Se comporta como
+ * DefaultComboBoxModel: selecciona la primera placa que llega y, si se borra
+ * la placa seleccionada, pasa a la anterior.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ModeloComboPlacas extends AbstractListModel<String> implements ComboBoxModel<String> {
+    private static final long serialVersionUID = 1L;
+    private final ModeloPlacas placas;
+    private Object seleccion;
+    
+    ModeloComboPlacas(ModeloPlacas placas){
+        this.placas = placas;
+        if(placas.getSize() > 0)
+            this.seleccion = placas.getElementAt(0);
+    }
+    
+    @Override
+    public int getSize() {
+        return placas.getSize();
+    }
+    
+    @Override
+    public String getElementAt(int index) {
+        return placas.getElementAt(index);
+    }
+    
+    @Override
+    public Object getSelectedItem() {
+        return seleccion;
+    }
+    
+    @Override
+    public void setSelectedItem(Object anItem) {
+        if(seleccion == null ? anItem != null : !seleccion.equals(anItem)){
+            seleccion = anItem;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+    
+    //------------------------CAMBIOS DEL MODELO COMPARTIDO-------------------//
+    // La seleccion siempre cambia con setSelectedItem, que avisa con (-1,-1)
+    // para que el JComboBox lance su ActionEvent. Al quitar placas se avisa
+    // primero la remocion, asi el combo no lanza el evento dos veces.
+    void agregada(int index){
+        fireIntervalAdded(this, index, index);
+        if(seleccion == null)
+            setSelectedItem(getElementAt(index));
+    }
+    
+    void cambiada(int index, String anterior, String placa){
+        if(anterior.equals(seleccion))
+            setSelectedItem(placa);
+        fireContentsChanged(this, index, index);
+    }
+    
+    void quitada(int index, String placa){
+        fireIntervalRemoved(this, index, index);
+        if(placa.equals(seleccion)){
+            if(getSize() == 0)
+                setSelectedItem(null);
+            else
+                setSelectedItem(getElementAt(index == 0 ? 0 : index - 1));
+        }
+    }
+    
+    void vaciada(int cantidad){
+        fireIntervalRemoved(this, 0, cantidad - 1);
+        setSelectedItem(null);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.presentacion;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.EventoCompetencia;
+
+/**
+ * Lista de placas de una Competencia compartida por todos los combos de la
+ * interfaz. Se llena una vez y despues se actualiza solo con el carro que se
+ * agrega, modifica o borra. Cada combo usa su propio ModeloComboPlacas para
+ * tener una seleccion independiente. Los cambios que llegan desde otro hilo
+ * se aplican en el hilo de eventos de Swing.
+ * 
+ * Cada placa ocupa una ranura en orden de registro y un arbol de Fenwick
+ * cuenta las ranuras ocupadas, asi la fila de una placa y la placa de una fila
+ * se encuentran en O(log n) sin recorrer la lista en cada cambio.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ModeloPlacas extends OyenteSwing {
+    //Placa de cada ranura, null si se borro
+    private final ArrayList<String> ranuras;
+    private final HashMap<String, Integer> ranuraDePlaca;
+    //Arbol de Fenwick con base 1 sobre las ranuras ocupadas
+    private int[] ocupadas;
+    private int tamaño;
+    private final ArrayList<WeakReference<ModeloComboPlacas>> combos;
+    
+    public ModeloPlacas(Competencia competencia){
+        this.ranuras = new ArrayList<>();
+        this.ranuraDePlaca = new HashMap<>();
+        this.combos = new ArrayList<>();
+        for(String x: competencia.listarPlacas()){
+            ranuraDePlaca.put(x, ranuras.size());
+            ranuras.add(x);
+        }
+        reconstruir();
+        competencia.agregarOyente(this);
+    }
+    
+    /**
+     * Crea un modelo para un combo que muestra estas placas. El combo no
+     * necesita quitarse de la lista, se olvida cuando ya no se usa.
+     * @return Modelo nuevo con la primera placa seleccionada
+     */
+    public ModeloComboPlacas nuevoCombo(){
+        ModeloComboPlacas combo = new ModeloComboPlacas(this);
+        combos.add(new WeakReference<>(combo));
+        return combo;
+    }
+    
+    public int getSize(){
+        return tamaño;
+    }
+    
+    public String getElementAt(int index){
+        if(index < 0 || index >= tamaño)
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+tamaño);
+        
+        //Se baja por el arbol buscando la ranura con index ocupadas antes
+        int ranura = 0;
+        int faltan = index + 1;
+        for(int paso = Integer.highestOneBit(ocupadas.length - 1); paso > 0; paso >>= 1){
+            int siguiente = ranura + paso;
+            if(siguiente < ocupadas.length && ocupadas[siguiente] < faltan){
+                ranura = siguiente;
+                faltan -= ocupadas[siguiente];
+            }
+        }
+        return ranuras.get(ranura);
+    }
+    
+    //-------------------------------OYENTE-----------------------------------//
+    /**
+     * Aplica solo los eventos que cambian las placas, los de premios y
+     * propietarios no afectan la lista
+     */
+    @Override
+    protected void aplicar(List<EventoCompetencia> eventos){
+        for(EventoCompetencia x: eventos)
+            switch(x.getTipo()){
+                case CARRO_AGREGADO:
+                    agregada(x.getPlaca());
+                    break;
+                case CARRO_MODIFICADO:
+                    cambiada(x.getPlacaAnterior(), x.getPlaca());
+                    break;
+                case CARRO_BORRADO:
+                    quitada(x.getPlaca());
+                    break;
+                case TODO_BORRADO:
+                    vaciada();
+                    break;
+                default:
+                    break;
+            }
+    }
+    
+    private void agregada(String placa) {
+        int ranura = ranuras.size();
+        if(ranura + 1 >= ocupadas.length)
+            reconstruir();
+        ranuraDePlaca.put(placa, ranura);
+        ranuras.add(placa);
+        sumar(ranura, 1);
+        int i = tamaño++;
+        for(ModeloComboPlacas x: combos())
+            x.agregada(i);
+    }
+    
+    private void cambiada(String placaAnterior, String placa) {
+        Integer ranura = ranuraDePlaca.get(placaAnterior);
+        if(ranura == null || placaAnterior.equals(placa))
+            return;
+        
+        ranuraDePlaca.remove(placaAnterior);
+        ranuraDePlaca.put(placa, ranura);
+        ranuras.set(ranura, placa);
+        int i = antes(ranura);
+        for(ModeloComboPlacas x: combos())
+            x.cambiada(i, placaAnterior, placa);
+    }
+    
+    private void quitada(String placa) {
+        Integer ranura = ranuraDePlaca.remove(placa);
+        if(ranura == null)
+            return;
+        
+        int i = antes(ranura);
+        ranuras.set(ranura, null);
+        sumar(ranura, -1);
+        tamaño--;
+        //Las ranuras vacias se quitan cuando ya son la mitad
+        if(ranuras.size() > 2 * tamaño + 16)
+            compactar();
+        for(ModeloComboPlacas x: combos())
+            x.quitada(i, placa);
+    }
+    
+    private void vaciada() {
+        int n = tamaño;
+        if(n == 0)
+            return;
+        
+        ranuras.clear();
+        ranuraDePlaca.clear();
+        reconstruir();
+        for(ModeloComboPlacas x: combos())
+            x.vaciada(n);
+    }
+    
+    //-------------------------------RANURAS----------------------------------//
+    /**
+     * @return Retorna cuantas placas hay en las ranuras anteriores, es decir la
+     * fila de la placa de esa ranura
+     */
+    private int antes(int ranura){
+        int cantidad = 0;
+        for(int i = ranura; i > 0; i -= i & -i)
+            cantidad += ocupadas[i];
+        return cantidad;
+    }
+    
+    private void sumar(int ranura, int valor){
+        for(int i = ranura + 1; i < ocupadas.length; i += i & -i)
+            ocupadas[i] += valor;
+    }
+    
+    /**
+     * Quita las ranuras vacias, las placas conservan su orden
+     */
+    private void compactar(){
+        int libre = 0;
+        for(int i = 0; i < ranuras.size(); i++){
+            String x = ranuras.get(i);
+            if(x != null){
+                ranuras.set(libre, x);
+                ranuraDePlaca.put(x, libre++);
+            }
+        }
+        ranuras.subList(libre, ranuras.size()).clear();
+        reconstruir();
+    }
+    
+    /**
+     * Arma el arbol de nuevo con espacio para el doble de ranuras
+     */
+    private void reconstruir(){
+        ocupadas = new int[Math.max(16, ranuras.size() * 2) + 1];
+        tamaño = 0;
+        for(int i = 0; i < ranuras.size(); i++)
+            if(ranuras.get(i) != null){
+                ocupadas[i + 1] = 1;
+                tamaño++;
+            }
+        //Cada nodo le pasa su suma al siguiente que lo cubre
+        for(int i = 1; i < ocupadas.length; i++){
+            int padre = i + (i & -i);
+            if(padre < ocupadas.length)
+                ocupadas[padre] += ocupadas[i];
+        }
+    }
+    
+    /**
+     * Devuelve los combos que siguen en uso y olvida los demas
+     */
+    private ArrayList<ModeloComboPlacas> combos(){
+        ArrayList<ModeloComboPlacas> vivos = new ArrayList<>(combos.size());
+        Iterator<WeakReference<ModeloComboPlacas>> it = combos.iterator();
+        while(it.hasNext()){
+            ModeloComboPlacas x = it.next().get();
+            if(x == null)
+                it.remove();
+            else
+                vivos.add(x);
+        }
+        return vivos;
+    }
+}
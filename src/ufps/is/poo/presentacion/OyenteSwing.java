@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.presentacion;
+
+import java.util.List;
+import javax.swing.SwingUtilities;
+import ufps.is.poo.negocio.EventoCompetencia;
+import ufps.is.poo.negocio.OyenteCompetencia;
+
+/**
+ * Oyente de una Competencia que aplica los eventos en el hilo de eventos de
+ * Swing, sin importar desde que hilo se hizo el cambio. Los eventos se aplican
+ * siempre despues, aunque lleguen desde el hilo de eventos: una competencia
+ * concurrente avisa con el carro bloqueado y los oyentes vuelven a consultarla.
+ * @author Emanuel Martinez Pinzon
+ */
+public abstract class OyenteSwing implements OyenteCompetencia {
+    
+    @Override
+    public final void cambios(final List<EventoCompetencia> eventos) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                aplicar(eventos);
+            }
+        });
+    }
+    
+    /**
+     * Aplica los eventos, siempre en el hilo de eventos de Swing
+     * @param eventos Lista de solo lectura con los eventos
+     */
+    protected abstract void aplicar(List<EventoCompetencia> eventos);
+    
+    /**
+     * Revisa si entre los eventos hay uno del tipo dado para una placa
+     * @param eventos Eventos recibidos
+     * @param tipo Tipo de evento buscado
+     * @param placa Placa del carro, puede ser null
+     * @return Retorna true si algun evento de ese tipo es de esa placa
+     */
+    protected static boolean hay(List<EventoCompetencia> eventos,
+            EventoCompetencia.Tipo tipo, Object placa){
+        if(placa == null)
+            return false;
+        
+        for(EventoCompetencia x: eventos)
+            if(x.getTipo() == tipo && placa.toString().equals(x.getPlaca()))
+                return true;
+        
+        return false;
+    }
+    
+    /**
+     * Revisa si entre los eventos cambiaron los propietarios de un carro en un
+     * año, o en todos sus años
+     * @param eventos Eventos recibidos
+     * @param placa Placa del carro, puede ser null
+     * @param año Año de los propietarios
+     * @return Retorna true si hay que volver a leer esos propietarios
+     */
+    protected static boolean cambiaronPropietarios(List<EventoCompetencia> eventos,
+            Object placa, int año){
+        if(placa == null)
+            return false;
+        
+        for(EventoCompetencia x: eventos)
+            if(x.getTipo() == EventoCompetencia.Tipo.PROPIETARIOS_CAMBIADOS
+                    && placa.toString().equals(x.getPlaca())
+                    && (x.getAño() == año || x.getAño() == EventoCompetencia.TODOS_LOS_AÑOS))
+                return true;
+        
+        return false;
+    }
+}
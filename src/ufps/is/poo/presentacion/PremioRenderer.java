@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.presentacion;
+
+import java.awt.Component;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+import ufps.is.poo.negocio.Premio;
+
+/**
+ * Muestra los premios de un combo con el formato evento-año, asi el combo puede
+ * guardar los objetos Premio directamente sin armar cadenas para cada uno.
+ * @author Emanuel Martinez Pinzon
+ */
+public class PremioRenderer extends DefaultListCellRenderer{
+    private static final long serialVersionUID = 1L;
+    
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value,
+            int index, boolean isSelected, boolean cellHasFocus) {
+        if(value instanceof Premio){
+            Premio p = (Premio) value;
+            value = p.getEvento()+"-"+p.getAnio();
+        }
+        
+        return super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+    }
+}
@@ -1,7 +1,11 @@
 package ufps.is.poo.presentacion;
 
+import java.io.IOException;
 import ufps.is.poo.util.Notificacion;
 import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.Premio;
+import ufps.is.poo.negocio.Propietario;
+import ufps.is.poo.negocio.RangoModelos;
 
 /**
  * Esta clase es la interfaz grafica principal del proyecto, aquí se encuentran
@@ -12,10 +16,15 @@ import ufps.is.poo.negocio.Competencia;
 public class competenciaCarroForm extends javax.swing.JFrame {
 
     private final Competencia competencia;
+    private final EjecutorConsultas consultas;
     public competenciaCarroForm() {
         initComponents();
+        consultas = new EjecutorConsultas(txtAInfo, prgConsulta);
+        cmbPremioBorrarPremio.setRenderer(new PremioRenderer());
         setLocationRelativeTo(null);
-        this.competencia = new Competencia();
+        //Las consultas se leen desde el hilo de EjecutorConsultas
+        this.competencia = Competencia.concurrente();
+        asignarModelosPlaca(new ModeloPlacas(competencia));
         cmdAñadirPremio.setEnabled(false);
         cmdAñadirPropietario.setEnabled(false);
         cmdConnsultarPropietario.setEnabled(false);
@@ -70,6 +79,7 @@ public class competenciaCarroForm extends javax.swing.JFrame {
         cmbAñoAñadirPropietario = new javax.swing.JComboBox();
         jScrollPane1 = new javax.swing.JScrollPane();
         txtAInfo = new javax.swing.JTextArea();
+        prgConsulta = new javax.swing.JProgressBar();
         jTabbedPane2 = new javax.swing.JTabbedPane();
         jPanel4 = new javax.swing.JPanel();
         jLabel17 = new javax.swing.JLabel();
@@ -371,7 +381,7 @@ public class competenciaCarroForm extends javax.swing.JFrame {
 
         jLabel8.setText("Modelo: ");
 
-        cmbModeloMostrarCarro.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "2014-2012", "2011-2009", "2008-2006", "2005-Menor" }));
+        cmbModeloMostrarCarro.setModel(new javax.swing.DefaultComboBoxModel(ufps.is.poo.negocio.RangoModelos.predeterminados()));
 
         cmdMostrar.setText("Mostrar");
         cmdMostrar.addActionListener(new java.awt.event.ActionListener() {
@@ -840,7 +850,9 @@ public class competenciaCarroForm extends javax.swing.JFrame {
                     .addComponent(jTabbedPane2, javax.swing.GroupLayout.PREFERRED_SIZE, 347, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(jTabbedPane1))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
-                .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 340, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING, false)
+                    .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 340, Short.MAX_VALUE)
+                    .addComponent(prgConsulta, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addContainerGap())
             .addGroup(layout.createSequentialGroup()
                 .addGap(12, 12, 12)
@@ -852,7 +864,10 @@ public class competenciaCarroForm extends javax.swing.JFrame {
             .addGroup(layout.createSequentialGroup()
                 .addContainerGap()
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-                    .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 555, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 531, javax.swing.GroupLayout.PREFERRED_SIZE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(prgConsulta, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(jTabbedPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 314, javax.swing.GroupLayout.PREFERRED_SIZE)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -878,7 +893,6 @@ public class competenciaCarroForm extends javax.swing.JFrame {
         boolean val = competencia.agregarCarro(placa, marca, Integer.parseInt(modelo));
         if(val){
             Notificacion.alertaInformativo("Sistema", "Registro exitoso");
-            llenarComboPlaca();
             habilitarBotones();
         }else
             Notificacion.alertaError("Error", "No se ha podido realizar el registro");
@@ -922,17 +936,27 @@ public class competenciaCarroForm extends javax.swing.JFrame {
     }//GEN-LAST:event_cmdAñadirPremioActionPerformed
 
     private void cmdMostrarActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdMostrarActionPerformed
-        String rango = cmbModeloMostrarCarro.getSelectedItem().toString();
+        final RangoModelos rango = (RangoModelos) cmbModeloMostrarCarro.getSelectedItem();
         
-        txtAInfo.setText("Carros de modelo entre "+rango+"\n"
-                +competencia.imprimirCarrosParaUnRango(rango));
+        consultas.ejecutar("Carros de modelo entre "+rango+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirCarrosParaUnRango(salida, rango);
+                return null;
+            }
+        });
     }//GEN-LAST:event_cmdMostrarActionPerformed
 
     private void cmdMostrarPremiosActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdMostrarPremiosActionPerformed
-        String placa = cmbPlacaMostrarPremio.getSelectedItem().toString();
+        final String placa = cmbPlacaMostrarPremio.getSelectedItem().toString();
         
-        txtAInfo.setText("Premios obtenidos por el carro - Placa: "+placa+"\n"
-                +competencia.imprimirPremiosCarro(placa));
+        consultas.ejecutar("Premios obtenidos por el carro - Placa: "+placa+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirPremiosCarro(salida, placa);
+                return null;
+            }
+        });
     }//GEN-LAST:event_cmdMostrarPremiosActionPerformed
 
     private void cmdAñadirPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdAñadirPropietarioActionPerformed
@@ -977,42 +1001,63 @@ public class competenciaCarroForm extends javax.swing.JFrame {
     }//GEN-LAST:event_cmdAñadirPropietarioActionPerformed
 
     private void cmdConnsultarPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdConnsultarPropietarioActionPerformed
-        String placa = cmbPlacaMostrarPropietario.getSelectedItem().toString();
-        String año = cmbAñoMostrarPropietario.getSelectedItem().toString();
+        final String placa = cmbPlacaMostrarPropietario.getSelectedItem().toString();
+        final String año = cmbAñoMostrarPropietario.getSelectedItem().toString();
                 
-        txtAInfo.setText("Propietarios del año "+año+"\n"
-                +competencia.imprimirPropietarios(placa, Integer.parseInt(año)));
+        consultas.ejecutar("Propietarios del año "+año+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirPropietarios(salida, placa, Integer.parseInt(año));
+                return null;
+            }
+        });
     }//GEN-LAST:event_cmdConnsultarPropietarioActionPerformed
 
     private void cmdMostrarPropietariosParaunEventoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdMostrarPropietariosParaunEventoActionPerformed
-        String evento = txtEvento.getText();
-        String año = cmbAñoPropietariosGanadoresdeEvento.getSelectedItem().toString();
+        final String evento = txtEvento.getText();
+        final String año = cmbAñoPropietariosGanadoresdeEvento.getSelectedItem().toString();
         
         if(evento.isEmpty()){
             Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
             return;
         }
         
-        txtAInfo.setText("Propietarios para el evento "+evento+"\n"
-                +competencia.propietarioParaUnaVictoria(evento, Integer.parseInt(año)));
+        consultas.ejecutar("Propietarios para el evento "+evento+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirPropietarioParaUnaVictoria(salida, evento, Integer.parseInt(año));
+                return null;
+            }
+        });
         
         txtEvento.setText("");
     }//GEN-LAST:event_cmdMostrarPropietariosParaunEventoActionPerformed
 
     private void cmdMostrarTodoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdMostrarTodoActionPerformed
-        txtAInfo.setText(competencia.recorrerPremios());
+        consultas.ejecutar("", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirPremios(salida);
+                return null;
+            }
+        });
     }//GEN-LAST:event_cmdMostrarTodoActionPerformed
 
     private void cmdPremiosPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdPremiosPropietarioActionPerformed
-        String cc = txtPropietario.getText();
+        final String cc = txtPropietario.getText();
         
         if(cc.isEmpty()){
             Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
             return;
         }
         
-        txtAInfo.setText("Premios del propietario con CC "+cc+"\n"
-                +competencia.premiosdePropietario(cc));
+        consultas.ejecutar("Premios del propietario con CC "+cc+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirPremiosdePropietario(salida, cc);
+                return null;
+            }
+        });
         
         txtPropietario.setText("");
     }//GEN-LAST:event_cmdPremiosPropietarioActionPerformed
@@ -1027,16 +1072,13 @@ public class competenciaCarroForm extends javax.swing.JFrame {
             Notificacion.alertaInformativo("Sistema", "Carro eliminado con exito");
         else
             Notificacion.alertaAtencion("Sistema", "Algo no se ha hecho bien y no se han efectuado cambios");
-        
-        llenarComboPlaca();
     }//GEN-LAST:event_cmdBorrarCarroActionPerformed
 
     private void cmbPlacaBorrarPremioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmbPlacaBorrarPremioActionPerformed
         try{
             String placa = cmbPlacaBorrarPremio.getSelectedItem().toString();
-            String[] premios = competencia.concatenarPremios(placa).split("~");
             cmbPremioBorrarPremio.removeAllItems();
-            for(String x: premios)
+            for(Premio x: competencia.listarPremios(placa))
                 cmbPremioBorrarPremio.addItem(x);
         }catch(NullPointerException npe){
         }finally{
@@ -1052,9 +1094,12 @@ public class competenciaCarroForm extends javax.swing.JFrame {
     }//GEN-LAST:event_cmbPlacaBorrarPremioActionPerformed
 
     private void cmdBorrarPremioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdBorrarPremioActionPerformed
+        if(cmbPremioBorrarPremio.getSelectedItem() == null)
+            return;
+        
         String placa = cmbPlacaBorrarPremio.getSelectedItem().toString();
-        String premio = cmbPremioBorrarPremio.getSelectedItem().toString();
-        if(competencia.borrarPremio(placa, premio)){
+        Premio premio = (Premio) cmbPremioBorrarPremio.getSelectedItem();
+        if(competencia.borrarPremio(placa, premio.getEvento(), premio.getAnio())){
             Notificacion.alertaInformativo("Sistema", "Premio eliminado con exito");
             cmbPlacaBorrarPremio.setSelectedIndex(0);
         }else
@@ -1078,10 +1123,9 @@ public class competenciaCarroForm extends javax.swing.JFrame {
             String placa = cmbPlacaBorrarPropietario.getSelectedItem().toString();
             String anio = cmbAñoBorrarPropietario.getSelectedItem().toString();
             
-            String[] propietarios = competencia.concatenarPropietarios(placa, Integer.parseInt(anio)).split("~");
             cmbPropietarioBorrarPropietario.removeAllItems();
-            for(String x: propietarios)
-                cmbPropietarioBorrarPropietario.addItem(x);
+            for(Propietario x: competencia.listarPropietarios(placa, Integer.parseInt(anio)))
+                cmbPropietarioBorrarPropietario.addItem(x.getCc());
             
             cmdBorrarPropietario.setEnabled(true);
         }catch(NullPointerException npe){
@@ -1118,8 +1162,6 @@ public class competenciaCarroForm extends javax.swing.JFrame {
     private void cmdBorrarTodoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdBorrarTodoActionPerformed
         if(competencia.borrarTodo())
             Notificacion.alertaInformativo("Sistema", "Sistema formateado, todo ha sido borrado.");
-        
-        llenarComboPlaca();
     }//GEN-LAST:event_cmdBorrarTodoActionPerformed
 
     private void jButton2ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton2ActionPerformed
@@ -1174,26 +1216,18 @@ public class competenciaCarroForm extends javax.swing.JFrame {
     }
     
     /**
-     * Llena con las placas de los carros los combos necesarios en la interfaz
+     * Pone en los combos de placas de la interfaz un modelo de la lista
+     * compartida, que se actualiza sola al agregar o borrar carros
+     * @param placas Placas de la competencia
      */
-    public void llenarComboPlaca(){
-        String placa[] = competencia.concatenarplacas().split("~");
-        cmbCarroAñadirPremio.removeAllItems();
-        cmbPlacaMostrarPremio.removeAllItems();
-        cmbPlacaAñadirPropietario.removeAllItems();
-        cmbPlacaMostrarPropietario.removeAllItems();
-        cmbPlacaBorrarCarro.removeAllItems();
-        cmbPlacaBorrarPremio.removeAllItems();
-        cmbPlacaBorrarPropietario.removeAllItems();
-        for(String x: placa){
-            cmbCarroAñadirPremio.addItem(x);
-            cmbPlacaMostrarPremio.addItem(x);
-            cmbPlacaAñadirPropietario.addItem(x);
-            cmbPlacaMostrarPropietario.addItem(x);
-            cmbPlacaBorrarCarro.addItem(x);
-            cmbPlacaBorrarPremio.addItem(x);
-            cmbPlacaBorrarPropietario.addItem(x);
-        }
+    private void asignarModelosPlaca(ModeloPlacas placas){
+        cmbCarroAñadirPremio.setModel(placas.nuevoCombo());
+        cmbPlacaMostrarPremio.setModel(placas.nuevoCombo());
+        cmbPlacaAñadirPropietario.setModel(placas.nuevoCombo());
+        cmbPlacaMostrarPropietario.setModel(placas.nuevoCombo());
+        cmbPlacaBorrarCarro.setModel(placas.nuevoCombo());
+        cmbPlacaBorrarPremio.setModel(placas.nuevoCombo());
+        cmbPlacaBorrarPropietario.setModel(placas.nuevoCombo());
     }
     
     public static void main(String args[]) {
@@ -1307,6 +1341,7 @@ public class competenciaCarroForm extends javax.swing.JFrame {
     private javax.swing.JPanel jPanel8;
     private javax.swing.JPanel jPanel9;
     private javax.swing.JScrollPane jScrollPane1;
+    private javax.swing.JProgressBar prgConsulta;
     private javax.swing.JTabbedPane jTabbedPane1;
     private javax.swing.JTabbedPane jTabbedPane2;
     private javax.swing.JTabbedPane tbpBorrarOpciones;
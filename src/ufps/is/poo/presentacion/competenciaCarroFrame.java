@@ -16,8 +16,21 @@
  */
 package ufps.is.poo.presentacion;
 
+import java.awt.CardLayout;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import javax.swing.JFileChooser;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import ufps.is.poo.intercambio.ImportadorCsv;
+import ufps.is.poo.intercambio.ResultadoImportacion;
 import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.persistencia.BitacoraArchivo;
+import ufps.is.poo.persistencia.Compactador;
 import ufps.is.poo.util.Notificacion;
 
 /**
@@ -27,6 +40,9 @@ import ufps.is.poo.util.Notificacion;
 public class competenciaCarroFrame extends javax.swing.JFrame {
 
     private Competencia competenciaCarro;
+    private ModeloPlacas placas;
+    private BitacoraArchivo bitacora;
+    private Compactador compactador;
     private JPanel bienvenida,
             registrarCarro, registrarPremio, registrarPropietario,
             modificarCarro, modificarPremio, modificarPropietario,
@@ -35,7 +51,11 @@ public class competenciaCarroFrame extends javax.swing.JFrame {
     
     public competenciaCarroFrame() {
         initComponents();
-        competenciaCarro = new Competencia();
+        //Las consultas se leen desde el hilo de EjecutorConsultas mientras los
+        //paneles cambian la competencia en el hilo de eventos
+        competenciaCarro = Competencia.concurrente();
+        abrirBitacora();
+        placas = new ModeloPlacas(competenciaCarro);
         jmAñadirCarroActionPerformed(null);
         setLocationRelativeTo(null);
     }
@@ -50,6 +70,7 @@ public class competenciaCarroFrame extends javax.swing.JFrame {
         jMenuBar1 = new javax.swing.JMenuBar();
         jMenu2 = new javax.swing.JMenu();
         jmBienvenida = new javax.swing.JMenuItem();
+        jmImportar = new javax.swing.JMenuItem();
         jmSalir = new javax.swing.JMenuItem();
         jMenu1 = new javax.swing.JMenu();
         jMenu5 = new javax.swing.JMenu();
@@ -74,6 +95,7 @@ public class competenciaCarroFrame extends javax.swing.JFrame {
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setTitle("Competencia Carro");
         setResizable(false);
+        getContentPane().setLayout(new java.awt.CardLayout());
 
         jMenu2.setText("Inicio");
 
@@ -85,6 +107,14 @@ public class competenciaCarroFrame extends javax.swing.JFrame {
         });
         jMenu2.add(jmBienvenida);
 
+        jmImportar.setText("Importar CSV");
+        jmImportar.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jmImportarActionPerformed(evt);
+            }
+        });
+        jMenu2.add(jmImportar);
+
         jmSalir.setText("Salir");
         jmSalir.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -217,77 +247,104 @@ public class competenciaCarroFrame extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     private void jmAñadirCarroActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmAñadirCarroActionPerformed
-        remover();
-        registrarCarro = new registrarCarroPanel(competenciaCarro);
-        getContentPane().add(registrarCarro);
-        montar();
+        if(registrarCarro == null)
+            registrarCarro = agregar(new registrarCarroPanel(competenciaCarro));
+        mostrar(registrarCarro);
     }//GEN-LAST:event_jmAñadirCarroActionPerformed
 
     private void jmSalirActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmSalirActionPerformed
         System.exit(0);
     }//GEN-LAST:event_jmSalirActionPerformed
 
+    private void jmImportarActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmImportarActionPerformed
+        JFileChooser selector = new JFileChooser();
+        selector.setFileFilter(new FileNameExtensionFilter("Archivos CSV", "csv"));
+        if(selector.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+        
+        final File archivo = selector.getSelectedFile();
+        jmImportar.setEnabled(false);
+        //Los bloques se aplican en el hilo de la interfaz, como los cambios
+        //hechos desde los paneles
+        final ImportadorCsv importador = new ImportadorCsv(competenciaCarro, new Executor(){
+            @Override
+            public void execute(Runnable r) {
+                SwingUtilities.invokeLater(r);
+            }
+        }, Runtime.getRuntime().availableProcessors());
+        new SwingWorker<ResultadoImportacion, Void>(){
+            @Override
+            protected ResultadoImportacion doInBackground() throws Exception {
+                return importador.importar(archivo);
+            }
+
+            @Override
+            protected void done() {
+                jmImportar.setEnabled(true);
+                try{
+                    Notificacion.alertaInformativo("Importar CSV", get().toString());
+                }catch(ExecutionException ex){
+                    Notificacion.alertaError("Error", "No se pudo importar el archivo: "
+                            +ex.getCause().getMessage());
+                }catch(InterruptedException ex){
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }//GEN-LAST:event_jmImportarActionPerformed
+
     private void jmAñadirPremioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmAñadirPremioActionPerformed
-        remover();
-        registrarPremio = new registrarPremioPanel(competenciaCarro);
-        getContentPane().add(registrarPremio);
-        montar();
+        if(registrarPremio == null)
+            registrarPremio = agregar(new registrarPremioPanel(competenciaCarro, placas));
+        mostrar(registrarPremio);
     }//GEN-LAST:event_jmAñadirPremioActionPerformed
 
     private void jmAñadirPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmAñadirPropietarioActionPerformed
-        remover();
-        registrarPropietario = new registrarPropietarioPanel(competenciaCarro);
-        getContentPane().add(registrarPropietario);
-        montar();
+        if(registrarPropietario == null)
+            registrarPropietario = agregar(new registrarPropietarioPanel(competenciaCarro, placas));
+        mostrar(registrarPropietario);
     }//GEN-LAST:event_jmAñadirPropietarioActionPerformed
 
     private void jmModificarCarroActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmModificarCarroActionPerformed
-        remover();
-        modificarCarro = new modificarCarroPanel(competenciaCarro);
-        getContentPane().add(modificarCarro);
-        montar();
+        if(modificarCarro == null)
+            modificarCarro = agregar(new modificarCarroPanel(competenciaCarro, placas));
+        mostrar(modificarCarro);
     }//GEN-LAST:event_jmModificarCarroActionPerformed
 
     private void jmModificarPremioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmModificarPremioActionPerformed
-        remover();
-        modificarPremio = new modificarPremioPanel(competenciaCarro);
-        getContentPane().add(modificarPremio);
-        montar();
+        if(modificarPremio == null)
+            modificarPremio = agregar(new modificarPremioPanel(competenciaCarro, placas));
+        mostrar(modificarPremio);
     }//GEN-LAST:event_jmModificarPremioActionPerformed
 
     private void jmModificarPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmModificarPropietarioActionPerformed
-        remover();
-        modificarPropietario = new modificarPropietarioPanel(competenciaCarro);
-        getContentPane().add(modificarPropietario);
-        montar();
+        if(modificarPropietario == null)
+            modificarPropietario = agregar(new modificarPropietarioPanel(competenciaCarro, placas));
+        mostrar(modificarPropietario);
     }//GEN-LAST:event_jmModificarPropietarioActionPerformed
 
     private void jmBienvenidaActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmBienvenidaActionPerformed
-        remover();
-        bienvenida = new bienvenidaPanel();
-        getContentPane().add(bienvenida);
-        montar();
+        if(bienvenida == null)
+            bienvenida = agregar(new bienvenidaPanel());
+        mostrar(bienvenida);
     }//GEN-LAST:event_jmBienvenidaActionPerformed
 
     private void jmEliminarCarroActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmEliminarCarroActionPerformed
-        remover();
-        eliminarCarro = new eliminarCarroPanel(competenciaCarro);
-        getContentPane().add(eliminarCarro);
-        montar();
+        if(eliminarCarro == null)
+            eliminarCarro = agregar(new eliminarCarroPanel(competenciaCarro, placas));
+        mostrar(eliminarCarro);
     }//GEN-LAST:event_jmEliminarCarroActionPerformed
 
     private void jmEliminarPremioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmEliminarPremioActionPerformed
-        remover();
-        eliminarPremio = new eliminarPremioPanel(competenciaCarro);
-        getContentPane().add(eliminarPremio);
-        montar();
+        if(eliminarPremio == null)
+            eliminarPremio = agregar(new eliminarPremioPanel(competenciaCarro, placas));
+        mostrar(eliminarPremio);
     }//GEN-LAST:event_jmEliminarPremioActionPerformed
 
     private void jmEliminarPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmEliminarPropietarioActionPerformed
-        remover();
-        eliminarPropietario = new eliminarPropietarioPanel(competenciaCarro);
-        getContentPane().add(eliminarPropietario);
-        montar();
+        if(eliminarPropietario == null)
+            eliminarPropietario = agregar(new eliminarPropietarioPanel(competenciaCarro, placas));
+        mostrar(eliminarPropietario);
     }//GEN-LAST:event_jmEliminarPropietarioActionPerformed
 
     private void jMenuItem1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jMenuItem1ActionPerformed
@@ -300,42 +357,76 @@ public class competenciaCarroFrame extends javax.swing.JFrame {
     }//GEN-LAST:event_jmConsultasActionPerformed
 
     private void jmConsultarSistemaActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmConsultarSistemaActionPerformed
-        remover();
-        consultasPanel = new consultasPanel(competenciaCarro);
-        getContentPane().add(consultasPanel);
-        montar();
+        if(consultasPanel == null)
+            consultasPanel = agregar(new consultasPanel(competenciaCarro, placas));
+        mostrar(consultasPanel);
     }//GEN-LAST:event_jmConsultarSistemaActionPerformed
 
     /**
-     * Si el panel esta lo quita.
+     * Recupera los datos guardados en la carpeta .competenciaCarro del usuario
+     * y deja la competencia guardando cada cambio alli. La carpeta se puede
+     * cambiar con la propiedad competenciaCarro.datos. Si la bitacora no se
+     * puede abrir la aplicacion sigue funcionando sin guardar.
+     * 
+     * La bitacora se compacta en segundo plano; el intervalo en milisegundos y
+     * los tamaños en bytes se pueden cambiar con las propiedades
+     * competenciaCarro.compactar.intervalo, .minimo y .maximo.
      */
-    private void remover(){
-        if(bienvenida != null)
-            remove(bienvenida);
-        
-        if(registrarCarro != null)
-            remove(registrarCarro);
-        if(registrarPremio != null)
-            remove(registrarPremio);
-        if(registrarPropietario != null)
-            remove(registrarPropietario);
-        
-        if(modificarCarro != null)
-            remove(modificarCarro);
-        if(modificarPremio != null)
-            remove(modificarPremio);
-        if(modificarPropietario != null)
-            remove(modificarPropietario);
+    private void abrirBitacora(){
+        File directorio = new File(System.getProperty("competenciaCarro.datos",
+                new File(System.getProperty("user.home"), ".competenciaCarro").getPath()));
+        try{
+            bitacora = BitacoraArchivo.abrir(directorio, competenciaCarro);
+        }catch(IOException ex){
+            competenciaCarro.borrarTodo();
+            Notificacion.alertaError("Error", "No se pudieron recuperar los datos guardados, "
+                    + "los cambios no se guardaran.\n"+ex.getMessage());
+            return;
+        }
         
-        if(eliminarCarro != null)
-            remove(eliminarCarro);
-        if(eliminarPremio != null)
-            remove(eliminarPremio);
-        if(eliminarPropietario != null)
-            remove(eliminarPropietario);
+        compactador = new Compactador(bitacora,
+                Long.getLong("competenciaCarro.compactar.intervalo", Compactador.INTERVALO),
+                Long.getLong("competenciaCarro.compactar.minimo", Compactador.TAMAÑO_MINIMO),
+                Long.getLong("competenciaCarro.compactar.maximo", Compactador.TAMAÑO_MAXIMO));
+        compactador.iniciar();
         
-        if(consultasPanel != null)
-            remove(consultasPanel);
+        final BitacoraArchivo abierta = bitacora;
+        final Compactador activo = compactador;
+        Runtime.getRuntime().addShutdownHook(new Thread("cerrar bitacora"){
+            @Override
+            public void run() {
+                activo.close();
+                try{
+                    abierta.close();
+                }catch(IOException ex){
+                    java.util.logging.Logger.getLogger(competenciaCarroFrame.class.getName())
+                            .log(java.util.logging.Level.SEVERE, null, ex);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Agrega un panel como tarjeta del formulario. Cada panel se crea la
+     * primera vez que se pide y despues se reutiliza; sus combos se mantienen
+     * al dia con los eventos de la competencia.
+     * @param panel Panel nuevo
+     * @return El mismo panel
+     */
+    private JPanel agregar(JPanel panel){
+        getContentPane().add(panel, panel.getClass().getName());
+        return panel;
+    }
+    
+    /**
+     * Muestra la tarjeta de un panel y ajusta el formulario a su tamaño.
+     * @param panel Panel agregado con agregar()
+     */
+    private void mostrar(JPanel panel){
+        CardLayout tarjetas = (CardLayout) getContentPane().getLayout();
+        tarjetas.show(getContentPane(), panel.getClass().getName());
+        getContentPane().setPreferredSize(panel.getPreferredSize());
+        montar();
     }
     
     /**
@@ -411,6 +502,7 @@ public class competenciaCarroFrame extends javax.swing.JFrame {
     private javax.swing.JMenuItem jmEliminarCarro;
     private javax.swing.JMenuItem jmEliminarPremio;
     private javax.swing.JMenuItem jmEliminarPropietario;
+    private javax.swing.JMenuItem jmImportar;
     private javax.swing.JMenuItem jmModificarCarro;
     private javax.swing.JMenuItem jmModificarPremio;
     private javax.swing.JMenuItem jmModificarPropietario;
@@ -16,7 +16,9 @@
  */
 package ufps.is.poo.presentacion;
 
+import java.io.IOException;
 import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.RangoModelos;
 import ufps.is.poo.util.Notificacion;
 
 /**
@@ -25,17 +27,25 @@ import ufps.is.poo.util.Notificacion;
  */
 public class consultasPanel extends javax.swing.JPanel {
 
+    private static final int TAMAÑO_PAGINA = 50;
+    
     private Competencia competencia;
+    private EjecutorConsultas consultas;
+    private String siguientePagina;
+    private int numeroPagina;
     
     /**
      * Creates new form consultasPanel
      * @param competencia
+     * @param placas Placas compartidas por los combos
      */
-    public consultasPanel(Competencia competencia) {
+    public consultasPanel(Competencia competencia, ModeloPlacas placas) {
         this.competencia = competencia;
         
         initComponents();
-        llenarcombos();
+        consultas = new EjecutorConsultas(txtAInfo, prgConsulta);
+        cmbPlacaMostrarPremios.setModel(placas.nuevoCombo());
+        cmbPlacaMostrarPropietario.setModel(placas.nuevoCombo());
     }
 
     @SuppressWarnings("unchecked")
@@ -47,6 +57,7 @@ public class consultasPanel extends javax.swing.JPanel {
         jLabel3 = new javax.swing.JLabel();
         jScrollPane1 = new javax.swing.JScrollPane();
         txtAInfo = new javax.swing.JTextArea();
+        prgConsulta = new javax.swing.JProgressBar();
         jLabel4 = new javax.swing.JLabel();
         cmbRangoModelos = new javax.swing.JComboBox();
         jLabel5 = new javax.swing.JLabel();
@@ -71,6 +82,7 @@ public class consultasPanel extends javax.swing.JPanel {
         txtPropietarioMostrarsusPremios = new javax.swing.JTextField();
         cmdMostrarPremiosPropietario = new javax.swing.JButton();
         cmdMostrarTodo = new javax.swing.JButton();
+        cmdSiguientePagina = new javax.swing.JButton();
 
         setBackground(new java.awt.Color(255, 204, 255));
 
@@ -91,7 +103,7 @@ public class consultasPanel extends javax.swing.JPanel {
 
         jLabel4.setText("Modelo: ");
 
-        cmbRangoModelos.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "2014-2012", "2011-2009", "2008-2006", "2005-Menor" }));
+        cmbRangoModelos.setModel(new javax.swing.DefaultComboBoxModel(ufps.is.poo.negocio.RangoModelos.predeterminados()));
 
         jLabel5.setHorizontalAlignment(javax.swing.SwingConstants.CENTER);
         jLabel5.setText("Mostrar premios del carro");
@@ -163,6 +175,14 @@ public class consultasPanel extends javax.swing.JPanel {
             }
         });
 
+        cmdSiguientePagina.setText("Siguiente");
+        cmdSiguientePagina.setEnabled(false);
+        cmdSiguientePagina.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cmdSiguientePaginaActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -184,6 +204,8 @@ public class consultasPanel extends javax.swing.JPanel {
                                                 .addGroup(layout.createSequentialGroup()
                                                     .addGap(6, 6, 6)
                                                     .addComponent(cmdMostrarTodo)
+                                                    .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                    .addComponent(cmdSiguientePagina)
                                                     .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                                     .addComponent(cmdMostrarPremiosPropietario))
                                                 .addGroup(layout.createSequentialGroup()
@@ -233,7 +255,9 @@ public class consultasPanel extends javax.swing.JPanel {
                                         .addGap(6, 6, 6))))
                             .addComponent(jLabel13, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
-                        .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 317, javax.swing.GroupLayout.PREFERRED_SIZE))
+                        .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING, false)
+                            .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 317, Short.MAX_VALUE)
+                            .addComponent(prgConsulta, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)))
                     .addComponent(jLabel1, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addComponent(jLabel2, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addContainerGap())
@@ -292,76 +316,131 @@ public class consultasPanel extends javax.swing.JPanel {
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                             .addComponent(cmdMostrarPremiosPropietario)
-                            .addComponent(cmdMostrarTodo))
+                            .addComponent(cmdMostrarTodo)
+                            .addComponent(cmdSiguientePagina))
                         .addGap(0, 0, Short.MAX_VALUE))
-                    .addComponent(jScrollPane1))
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(jScrollPane1)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(prgConsulta, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)))
                 .addContainerGap())
         );
     }// </editor-fold>//GEN-END:initComponents
 
     private void cmdMostrarCarrosporModelosActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdMostrarCarrosporModelosActionPerformed
-        String rango = cmbRangoModelos.getSelectedItem().toString();
+        final RangoModelos rango = (RangoModelos) cmbRangoModelos.getSelectedItem();
         
-        txtAInfo.setText("Carros de modelo entre "+rango+"\n"
-                +competencia.imprimirCarrosParaUnRango(rango));
+        consultas.ejecutar("Carros de modelo entre "+rango+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirCarrosParaUnRango(salida, rango);
+                return null;
+            }
+        });
     }//GEN-LAST:event_cmdMostrarCarrosporModelosActionPerformed
 
     private void cmdMostrarPremiosActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdMostrarPremiosActionPerformed
-        String placa = cmbPlacaMostrarPremios.getSelectedItem().toString();
+        if(cmbPlacaMostrarPremios.getSelectedItem() == null){
+            Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
+            return;
+        }
+        
+        final String placa = cmbPlacaMostrarPremios.getSelectedItem().toString();
         
-        txtAInfo.setText("Premios obtenidos por el carro - Placa: "+placa+"\n"
-                +competencia.imprimirPremiosCarro(placa));
+        consultas.ejecutar("Premios obtenidos por el carro - Placa: "+placa+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirPremiosCarro(salida, placa);
+                return null;
+            }
+        });
     }//GEN-LAST:event_cmdMostrarPremiosActionPerformed
 
     private void cmdConsultarPropietariosActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdConsultarPropietariosActionPerformed
-        String placa = cmbPlacaMostrarPropietario.getSelectedItem().toString();
-        String año = cmbAñoMostrarPropietario.getSelectedItem().toString();
+        if(cmbPlacaMostrarPropietario.getSelectedItem() == null){
+            Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
+            return;
+        }
+        
+        final String placa = cmbPlacaMostrarPropietario.getSelectedItem().toString();
+        final String año = cmbAñoMostrarPropietario.getSelectedItem().toString();
                 
-        txtAInfo.setText("Propietarios del año "+año+"\n"
-                +competencia.imprimirPropietarios(placa, Integer.parseInt(año)));
+        consultas.ejecutar("Propietarios del año "+año+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirPropietarios(salida, placa, Integer.parseInt(año));
+                return null;
+            }
+        });
     }//GEN-LAST:event_cmdConsultarPropietariosActionPerformed
 
     private void cmdMostrarPropietariosGanadoresActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdMostrarPropietariosGanadoresActionPerformed
-        String evento = txtEventoPropietariosGanadores.getText();
-        String año = cmbAñoPropietariosGanadores.getSelectedItem().toString();
+        final String evento = txtEventoPropietariosGanadores.getText();
+        final String año = cmbAñoPropietariosGanadores.getSelectedItem().toString();
         
         if(evento.isEmpty()){
             Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
             return;
         }
         
-        txtAInfo.setText("Propietarios para el evento "+evento+"\n"
-                +competencia.propietarioParaUnaVictoria(evento, Integer.parseInt(año)));
+        consultas.ejecutar("Propietarios para el evento "+evento+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirPropietarioParaUnaVictoria(salida, evento, Integer.parseInt(año));
+                return null;
+            }
+        });
         
         txtEventoPropietariosGanadores.setText("");
     }//GEN-LAST:event_cmdMostrarPropietariosGanadoresActionPerformed
 
     private void cmdMostrarPremiosPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdMostrarPremiosPropietarioActionPerformed
-        String cc = txtPropietarioMostrarsusPremios.getText();
+        final String cc = txtPropietarioMostrarsusPremios.getText();
         
         if(cc.isEmpty()){
             Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
             return;
         }
         
-        txtAInfo.setText("Premios del propietario con CC "+cc+"\n"
-                +competencia.premiosdePropietario(cc));
+        consultas.ejecutar("Premios del propietario con CC "+cc+"\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                competencia.escribirPremiosdePropietario(salida, cc);
+                return null;
+            }
+        });
         
         txtPropietarioMostrarsusPremios.setText("");
     }//GEN-LAST:event_cmdMostrarPremiosPropietarioActionPerformed
 
     private void cmdMostrarTodoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdMostrarTodoActionPerformed
-        txtAInfo.setText(competencia.recorrerPremios());
+        numeroPagina = 0;
+        mostrarPagina(null);
     }//GEN-LAST:event_cmdMostrarTodoActionPerformed
 
-    private void llenarcombos(){
-        String []nombres = competencia.concatenarplacas().split("~");
-        cmbPlacaMostrarPremios.removeAllItems();
-        cmbPlacaMostrarPropietario.removeAllItems();
-        for(String x: nombres){
-            cmbPlacaMostrarPremios.addItem(x);
-            cmbPlacaMostrarPropietario.addItem(x);
-        }
+    private void cmdSiguientePaginaActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdSiguientePaginaActionPerformed
+        mostrarPagina(siguientePagina);
+    }//GEN-LAST:event_cmdSiguientePaginaActionPerformed
+
+    /**
+     * Muestra una pagina de todos los carros con sus premios, asi un registro
+     * grande no se pasa completo al area de texto de una sola vez.
+     * @param cursor Cursor de la pagina, null para la primera
+     */
+    private void mostrarPagina(final String cursor){
+        cmdSiguientePagina.setEnabled(false);
+        consultas.ejecutar("Pagina "+(++numeroPagina)+"\n\n", new EjecutorConsultas.Consulta() {
+            @Override
+            protected String consultar(Appendable salida) throws IOException {
+                return competencia.escribirPaginaDePremios(salida, cursor, TAMAÑO_PAGINA);
+            }
+            
+            @Override
+            protected void terminar(String siguiente) {
+                siguientePagina = siguiente;
+                cmdSiguientePagina.setEnabled(siguiente != null);
+            }
+        });
     }
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
@@ -376,6 +455,7 @@ public class consultasPanel extends javax.swing.JPanel {
     private javax.swing.JButton cmdMostrarPremiosPropietario;
     private javax.swing.JButton cmdMostrarPropietariosGanadores;
     private javax.swing.JButton cmdMostrarTodo;
+    private javax.swing.JButton cmdSiguientePagina;
     private javax.swing.JLabel jLabel1;
     private javax.swing.JLabel jLabel10;
     private javax.swing.JLabel jLabel11;
@@ -391,6 +471,7 @@ public class consultasPanel extends javax.swing.JPanel {
     private javax.swing.JLabel jLabel8;
     private javax.swing.JLabel jLabel9;
     private javax.swing.JScrollPane jScrollPane1;
+    private javax.swing.JProgressBar prgConsulta;
     private javax.swing.JTextArea txtAInfo;
     private javax.swing.JTextField txtEventoPropietariosGanadores;
     private javax.swing.JTextField txtPropietarioMostrarsusPremios;
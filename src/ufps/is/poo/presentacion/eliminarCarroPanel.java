@@ -27,10 +27,10 @@ public class eliminarCarroPanel extends javax.swing.JPanel {
 
     private Competencia competencia;
     
-    public eliminarCarroPanel(Competencia competencia) {
+    public eliminarCarroPanel(Competencia competencia, ModeloPlacas placas) {
         this.competencia = competencia;
         initComponents();
-        llenarCombos();
+        cmbPlacaEliminarCarro.setModel(placas.nuevoCombo());
     }
 
     /**
@@ -103,6 +103,11 @@ public class eliminarCarroPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void cmdEliminarCarroActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdEliminarCarroActionPerformed
+        if(cmbPlacaEliminarCarro.getSelectedItem() == null){
+            Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
+            return;
+        }
+        
         String placa = cmbPlacaEliminarCarro.getSelectedItem().toString();
         if(competencia.borrarCarro(placa))
             Notificacion.alertaInformativo("Sistema", "Carro eliminado con exito");
@@ -110,13 +115,6 @@ public class eliminarCarroPanel extends javax.swing.JPanel {
             Notificacion.alertaAtencion("Sistema", "Algo no se ha hecho bien y no se han efectuado cambios");
     }//GEN-LAST:event_cmdEliminarCarroActionPerformed
 
-    private void llenarCombos(){
-        String []nombres = competencia.concatenarplacas().split("~");
-        cmbPlacaEliminarCarro.removeAllItems();
-        for(String x: nombres)
-            cmbPlacaEliminarCarro.addItem(x);
-    }
-
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JComboBox cmbPlacaEliminarCarro;
     private javax.swing.JButton cmdEliminarCarro;
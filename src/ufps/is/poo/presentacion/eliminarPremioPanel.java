@@ -16,7 +16,10 @@
  */
 package ufps.is.poo.presentacion;
 
+import java.util.List;
 import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.EventoCompetencia;
+import ufps.is.poo.negocio.Premio;
 import ufps.is.poo.util.Notificacion;
 
 /**
@@ -27,10 +30,21 @@ public class eliminarPremioPanel extends javax.swing.JPanel {
 
     private Competencia competencia;
     
-    public eliminarPremioPanel(Competencia competencia) {
+    public eliminarPremioPanel(Competencia competencia, ModeloPlacas placas) {
         this.competencia = competencia;
         initComponents();
-        llenarCombos();
+        cmbPremioEliminarPremio.setRenderer(new PremioRenderer());
+        cmbPlacaEliminarPremio.setModel(placas.nuevoCombo());
+        cmbPlacaEliminarPremioActionPerformed(null);
+        
+        competencia.agregarOyente(new OyenteSwing() {
+            @Override
+            protected void aplicar(List<EventoCompetencia> eventos) {
+                if(hay(eventos, EventoCompetencia.Tipo.PREMIOS_CAMBIADOS,
+                        cmbPlacaEliminarPremio.getSelectedItem()))
+                    cmbPlacaEliminarPremioActionPerformed(null);
+            }
+        });
     }
 
     @SuppressWarnings("unchecked")
@@ -127,38 +141,39 @@ public class eliminarPremioPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void cmdEliminarPremiosActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdEliminarPremiosActionPerformed
+        if(cmbPlacaEliminarPremio.getSelectedItem() == null
+                || cmbPremioEliminarPremio.getSelectedItem() == null){
+            Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
+            return;
+        }
+        
         String placa = cmbPlacaEliminarPremio.getSelectedItem().toString();
-        String premio = cmbPremioEliminarPremio.getSelectedItem().toString();
-        if(competencia.borrarPremio(placa, premio)){
+        Premio premio = (Premio) cmbPremioEliminarPremio.getSelectedItem();
+        if(competencia.borrarPremio(placa, premio.getEvento(), premio.getAnio()))
             Notificacion.alertaInformativo("Sistema", "Premio eliminado con exito");
-            cmbPlacaEliminarPremio.setSelectedIndex(0);
-        }else
+        else
             Notificacion.alertaAtencion("Sistema", "Algo no se ha hecho bien y no se han efectuado cambios");
     }//GEN-LAST:event_cmdEliminarPremiosActionPerformed
 
     private void cmbPlacaEliminarPremioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmbPlacaEliminarPremioActionPerformed
-        String placa = cmbPlacaEliminarPremio.getSelectedItem().toString();
-        String[] premios = competencia.concatenarPremios(placa).split("~");
         cmbPremioEliminarPremio.removeAllItems();
-        for(String x: premios)
+        if(cmbPlacaEliminarPremio.getSelectedItem() == null)
+            return;
+        
+        String placa = cmbPlacaEliminarPremio.getSelectedItem().toString();
+        for(Premio x: competencia.listarPremios(placa))
             cmbPremioEliminarPremio.addItem(x);
     }//GEN-LAST:event_cmbPlacaEliminarPremioActionPerformed
 
     private void cmdEliminarTodosPremiosActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdEliminarTodosPremiosActionPerformed
+        if(cmbPlacaEliminarPremio.getSelectedItem() == null)
+            return;
+        
         String placa = cmbPlacaEliminarPremio.getSelectedItem().toString();
-        if(competencia.borrarTodosPremios(placa)){
+        if(competencia.borrarTodosPremios(placa))
             Notificacion.alertaInformativo("Sistema", "Se han borrado todos los premios de este carro.");
-            cmbPlacaEliminarPremio.setSelectedIndex(0);
-        }
     }//GEN-LAST:event_cmdEliminarTodosPremiosActionPerformed
 
-    private void llenarCombos(){
-        String []nombres = competencia.concatenarplacas().split("~");
-        cmbPlacaEliminarPremio.removeAllItems();
-        for(String x: nombres)
-                cmbPlacaEliminarPremio.addItem(x);
-    }
-
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JComboBox cmbPlacaEliminarPremio;
     private javax.swing.JComboBox cmbPremioEliminarPremio;
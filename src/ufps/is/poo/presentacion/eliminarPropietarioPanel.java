@@ -16,7 +16,10 @@
  */
 package ufps.is.poo.presentacion;
 
+import java.util.List;
 import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.EventoCompetencia;
+import ufps.is.poo.negocio.Propietario;
 import ufps.is.poo.util.Notificacion;
 
 /**
@@ -27,10 +30,20 @@ public final class eliminarPropietarioPanel extends javax.swing.JPanel {
 
     private Competencia competencia;
     
-   public eliminarPropietarioPanel(Competencia competencia) {
+   public eliminarPropietarioPanel(Competencia competencia, ModeloPlacas placas) {
         this.competencia = competencia;
         initComponents();
-        llenarCombo();
+        cmbPlacaEliminarPropietario.setModel(placas.nuevoCombo());
+        cmbPlacaEliminarPropietarioActionPerformed(null);
+        
+        competencia.agregarOyente(new OyenteSwing() {
+            @Override
+            protected void aplicar(List<EventoCompetencia> eventos) {
+                int año = Integer.parseInt(cmbAñoEliminarPropietario.getSelectedItem().toString());
+                if(cambiaronPropietarios(eventos, cmbPlacaEliminarPropietario.getSelectedItem(), año))
+                    cmbPlacaEliminarPropietarioActionPerformed(null);
+            }
+        });
     }
 
     /**
@@ -155,6 +168,12 @@ public final class eliminarPropietarioPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void cmdEliminarPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdEliminarPropietarioActionPerformed
+        if(cmbPlacaEliminarPropietario.getSelectedItem() == null
+                || cmbPropietarioEliminarPropietario.getSelectedItem() == null){
+            Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
+            return;
+        }
+        
         String placa = cmbPlacaEliminarPropietario.getSelectedItem().toString();
         String anio = cmbAñoEliminarPropietario.getSelectedItem().toString();
         String propietario = cmbPropietarioEliminarPropietario.getSelectedItem().toString();
@@ -166,6 +185,9 @@ public final class eliminarPropietarioPanel extends javax.swing.JPanel {
     }//GEN-LAST:event_cmdEliminarPropietarioActionPerformed
 
     private void cmdEliminarTodosPropietariosActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdEliminarTodosPropietariosActionPerformed
+        if(cmbPlacaEliminarPropietario.getSelectedItem() == null)
+            return;
+        
         String placa = cmbPlacaEliminarPropietario.getSelectedItem().toString();
         
         if(competencia.borrarTodosPropietario(placa))
@@ -175,6 +197,9 @@ public final class eliminarPropietarioPanel extends javax.swing.JPanel {
     }//GEN-LAST:event_cmdEliminarTodosPropietariosActionPerformed
 
     private void cmdEliminarTodosPropietarioAñoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdEliminarTodosPropietarioAñoActionPerformed
+        if(cmbPlacaEliminarPropietario.getSelectedItem() == null)
+            return;
+        
         String placa = cmbPlacaEliminarPropietario.getSelectedItem().toString();
         String anio = cmbAñoEliminarPropietario.getSelectedItem().toString();
 
@@ -185,21 +210,16 @@ public final class eliminarPropietarioPanel extends javax.swing.JPanel {
     }//GEN-LAST:event_cmdEliminarTodosPropietarioAñoActionPerformed
 
     private void cmbPlacaEliminarPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmbPlacaEliminarPropietarioActionPerformed
+        cmbPropietarioEliminarPropietario.removeAllItems();
+        if(cmbPlacaEliminarPropietario.getSelectedItem() == null)
+            return;
+        
         String placa = cmbPlacaEliminarPropietario.getSelectedItem().toString();
         String anio = cmbAñoEliminarPropietario.getSelectedItem().toString();
-        String []propietario = competencia.concatenarPropietarios(placa, Integer.parseInt(anio)).split("~");
-        cmbPropietarioEliminarPropietario.removeAllItems();
-        for(String x: propietario)
-            cmbPropietarioEliminarPropietario.addItem(x);
+        for(Propietario x: competencia.listarPropietarios(placa, Integer.parseInt(anio)))
+            cmbPropietarioEliminarPropietario.addItem(x.getCc());
     }//GEN-LAST:event_cmbPlacaEliminarPropietarioActionPerformed
 
-    public void llenarCombo(){
-        String []nombres = competencia.concatenarplacas().split("~");
-        cmbPlacaEliminarPropietario.removeAllItems();
-        for(String x: nombres)
-            cmbPlacaEliminarPropietario.addItem(x);
-    }
-
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JComboBox cmbAñoEliminarPropietario;
     private javax.swing.JComboBox cmbPlacaEliminarPropietario;
@@ -16,6 +16,7 @@
  */
 package ufps.is.poo.presentacion;
 
+import ufps.is.poo.negocio.Carro;
 import ufps.is.poo.negocio.Competencia;
 import ufps.is.poo.util.Notificacion;
 
@@ -27,10 +28,11 @@ public class modificarCarroPanel extends javax.swing.JPanel {
 
     private Competencia competencia;
     
-    public modificarCarroPanel(Competencia competencia) {
+    public modificarCarroPanel(Competencia competencia, ModeloPlacas placas) {
         this.competencia = competencia;
         initComponents();
-        llenarCombo();
+        cmbPlaca.setModel(placas.nuevoCombo());
+        cmbPlacaActionPerformed(null);
     }
 
     @SuppressWarnings("unchecked")
@@ -152,16 +154,23 @@ public class modificarCarroPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void cmbPlacaActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmbPlacaActionPerformed
-        try{
-            String placa = cmbPlaca.getSelectedItem().toString();
-            String []info = competencia.obtenerInfoCarro(placa).split("~");
-
-            txtPlaca.setText(info[0]);
-            txtMarca.setText(info[1]);
-        }catch(Exception ex){}
+        if(cmbPlaca.getSelectedItem() == null)
+            return;
+        
+        Carro carro = competencia.obtenerCarro(cmbPlaca.getSelectedItem().toString());
+        if(carro != null){
+            txtPlaca.setText(carro.getPlaca());
+            txtMarca.setText(carro.getMarca());
+            cmbModelo.setSelectedItem(String.valueOf(carro.getModelo()));
+        }
     }//GEN-LAST:event_cmbPlacaActionPerformed
 
     private void cmdGuardarActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdGuardarActionPerformed
+        if(cmbPlaca.getSelectedItem() == null){
+            Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
+            return;
+        }
+        
         String id = cmbPlaca.getSelectedItem().toString();
         String placa = txtPlaca.getText();
         String marca = txtMarca.getText();
@@ -170,18 +179,10 @@ public class modificarCarroPanel extends javax.swing.JPanel {
         if(competencia.modificarCarro(id, placa, marca, modelo))
             Notificacion.alertaInformativo("Sistema", "Cambios guardados con exito");
         
-        llenarCombo();
         txtPlaca.setText("");
         txtMarca.setText("");
     }//GEN-LAST:event_cmdGuardarActionPerformed
 
-    private void llenarCombo(){
-        String []nombres = competencia.concatenarplacas().split("~");
-        cmbPlaca.removeAllItems();
-        for(String x: nombres)
-            cmbPlaca.addItem(x);
-    }
-
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JComboBox cmbModelo;
     private javax.swing.JComboBox cmbModeloRegistrarCarro;
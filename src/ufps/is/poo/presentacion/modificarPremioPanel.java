@@ -16,7 +16,10 @@
  */
 package ufps.is.poo.presentacion;
 
+import java.util.List;
 import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.EventoCompetencia;
+import ufps.is.poo.negocio.Premio;
 import ufps.is.poo.util.Notificacion;
 /**
  * Este es el panel para modificar premios de la interfaz grafica de la aplicacion.
@@ -26,10 +29,19 @@ public class modificarPremioPanel extends javax.swing.JPanel {
 
     private Competencia competencia;
     
-    public modificarPremioPanel(Competencia competencia) {
+    public modificarPremioPanel(Competencia competencia, ModeloPlacas placas) {
         this.competencia = competencia;
         initComponents();
-        llenarComboPlacas();
+        cmbPlaca.setModel(placas.nuevoCombo());
+        cmbPlacaActionPerformed(null);
+        
+        competencia.agregarOyente(new OyenteSwing() {
+            @Override
+            protected void aplicar(List<EventoCompetencia> eventos) {
+                if(hay(eventos, EventoCompetencia.Tipo.PREMIOS_CAMBIADOS, cmbPlaca.getSelectedItem()))
+                    cmbPlacaActionPerformed(null);
+            }
+        });
     }
 
     @SuppressWarnings("unchecked")
@@ -170,48 +182,44 @@ public class modificarPremioPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void cmbPlacaActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmbPlacaActionPerformed
-        try{
-            String placa = cmbPlaca.getSelectedItem().toString();
-            String[] premios = competencia.concatenarPremios(placa).split("~");
-            cmbPremio.removeAllItems();
-            for(String x: premios)
-                cmbPremio.addItem(x);
-        }catch(Exception ex){}
+        cmbPremio.removeAllItems();
+        if(cmbPlaca.getSelectedItem() == null)
+            return;
+        
+        for(Premio x: competencia.listarPremios(cmbPlaca.getSelectedItem().toString()))
+            cmbPremio.addItem(x);
     }//GEN-LAST:event_cmbPlacaActionPerformed
 
     private void cmbPremioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmbPremioActionPerformed
-        String placa = cmbPlaca.getSelectedItem().toString();
-        String []premio = cmbPremio.getSelectedItem().toString().split("-");
-        String []info = competencia.obtenerInfoPremios(placa, premio[0]).split("~");
-        System.out.println(info[0]+info[1]);
-        txtPuesto.setText(info[0]);
-        txtEvento.setText(info[1]);
+        if(cmbPremio.getSelectedItem() == null)
+            return;
+        
+        Premio premio = (Premio) cmbPremio.getSelectedItem();
+        txtPuesto.setText(String.valueOf(premio.getPuesto()));
+        txtEvento.setText(premio.getEvento());
     }//GEN-LAST:event_cmbPremioActionPerformed
 
     private void cmdGuardarActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdGuardarActionPerformed
+        if(cmbPlaca.getSelectedItem() == null || cmbPremio.getSelectedItem() == null){
+            Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
+            return;
+        }
+        
         String placa = cmbPlaca.getSelectedItem().toString();
-        String []premio = cmbPremio.getSelectedItem().toString().split("-"); //EVENTO-AÑO
+        Premio premio = (Premio) cmbPremio.getSelectedItem();
         
         String anioNuevo = cmbAñoPremio.getSelectedItem().toString();
         String puestoNuevo = txtPuesto.getText();
         String eventoNuevo = txtEvento.getText();
         
-        if(competencia.modificarPremio(placa, premio[0], Integer.parseInt(premio[1]),
+        if(competencia.modificarPremio(placa, premio.getEvento(), premio.getAnio(),
                 Integer.parseInt(anioNuevo), Integer.parseInt(puestoNuevo), eventoNuevo))
             Notificacion.alertaInformativo("Sistema", "Cambios guardados con exito");
                 
-        llenarComboPlacas();
         txtPuesto.setText("");
         txtEvento.setText("");
     }//GEN-LAST:event_cmdGuardarActionPerformed
 
-    private void llenarComboPlacas(){
-        String []placas = competencia.concatenarplacas().split("~");
-        cmbPlaca.removeAllItems();
-        for(String x: placas)
-            cmbPlaca.addItem(x);
-    }
-    
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JComboBox cmbAñoPremio;
     private javax.swing.JComboBox cmbPlaca;
@@ -16,7 +16,10 @@
  */
 package ufps.is.poo.presentacion;
 
+import java.util.List;
 import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.EventoCompetencia;
+import ufps.is.poo.negocio.Propietario;
 import ufps.is.poo.util.Notificacion;
 
 /**
@@ -27,11 +30,21 @@ public class modificarPropietarioPanel extends javax.swing.JPanel {
 
     private Competencia competencia;
     
-    public modificarPropietarioPanel(Competencia competencia) {
+    public modificarPropietarioPanel(Competencia competencia, ModeloPlacas placas) {
         initComponents();
         
         this.competencia = competencia;
-        llenarCombo();
+        cmbPlacaCarro.setModel(placas.nuevoCombo());
+        
+        competencia.agregarOyente(new OyenteSwing() {
+            @Override
+            protected void aplicar(List<EventoCompetencia> eventos) {
+                Object placa = cmbPlacaCarro.getSelectedItem();
+                int año = Integer.parseInt(cmbAñoBuscar.getSelectedItem().toString());
+                if(cambiaronPropietarios(eventos, placa, año))
+                    llenarComboPropietarios(placa.toString(), año);
+            }
+        });
     }
 
     @SuppressWarnings("unchecked")
@@ -210,6 +223,9 @@ public class modificarPropietarioPanel extends javax.swing.JPanel {
     }//GEN-LAST:event_cmbPlacaCarroActionPerformed
 
     private void cmbAñoBuscarActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmbAñoBuscarActionPerformed
+        if(cmbPlacaCarro.getSelectedItem() == null)
+            return;
+        
         String placa = cmbPlacaCarro.getSelectedItem().toString();
         String año = cmbAñoBuscar.getSelectedItem().toString();
         
@@ -217,21 +233,30 @@ public class modificarPropietarioPanel extends javax.swing.JPanel {
     }//GEN-LAST:event_cmbAñoBuscarActionPerformed
 
     private void cmbPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmbPropietarioActionPerformed
+        if(cmbPlacaCarro.getSelectedItem() == null || cmbPropietario.getSelectedItem() == null)
+            return;
+        
         String placa = cmbPlacaCarro.getSelectedItem().toString();
         String año = cmbAñoBuscar.getSelectedItem().toString();
         String propietario = cmbPropietario.getSelectedItem().toString();
         
-        String []info = competencia.obtenerInfoPropietario(placa, Integer.parseInt(año),
-                propietario).split("~");
+        Propietario info = competencia.obtenerPropietario(placa, Integer.parseInt(año), propietario);
+        if(info == null)
+            return;
         
-        txtNombre.setText(info[0]);
-        txtCC.setText(info[1]);
-        txtDireccion.setText(info[2]);
-        txtCiudad.setText(info[3]);
-        txtTelefono.setText(info[4]);
+        txtNombre.setText(info.getNombre());
+        txtCC.setText(info.getCc());
+        txtDireccion.setText(info.getDireccion());
+        txtCiudad.setText(info.getCiudad());
+        txtTelefono.setText(info.getTelefono());
     }//GEN-LAST:event_cmbPropietarioActionPerformed
 
     private void cmdGuardarActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdGuardarActionPerformed
+        if(cmbPlacaCarro.getSelectedItem() == null || cmbPropietario.getSelectedItem() == null){
+            Notificacion.alertaError("Sistema", "Debe ingresar todos los datos");
+            return;
+        }
+        
         String placa = cmbPlacaCarro.getSelectedItem().toString();
         String año = cmbAñoBuscar.getSelectedItem().toString();
         String propietario = cmbPropietario.getSelectedItem().toString();
@@ -246,8 +271,6 @@ public class modificarPropietarioPanel extends javax.swing.JPanel {
                 nuevoNombre, nuevoCC, nuevaDireccion, nuevaCiudad, nuevoTelefono))
             Notificacion.alertaInformativo("Sistema", "Cambios guardados con exito");
         
-        llenarCombo();
-        llenarComboPropietarios(placa, Integer.parseInt(año));
         txtNombre.setText("");
         txtCC.setText("");
         txtDireccion.setText("");
@@ -255,20 +278,10 @@ public class modificarPropietarioPanel extends javax.swing.JPanel {
         txtTelefono.setText("");
     }//GEN-LAST:event_cmdGuardarActionPerformed
 
-    private void llenarCombo(){        
-        String []placas = competencia.concatenarplacas().split("~");
-        cmbPlacaCarro.removeAllItems();
-        for(String x: placas)
-            cmbPlacaCarro.addItem(x);
-    }
-    
     private void llenarComboPropietarios(String placa, int año){
-        try{
-            String []propietarios = competencia.concatenarPropietarios(placa, año).split("~");
-            cmbPropietario.removeAllItems();
-            for(String x: propietarios)
-                cmbPropietario.addItem(x);
-        }catch(Exception ex){}
+        cmbPropietario.removeAllItems();
+        for(Propietario x: competencia.listarPropietarios(placa, año))
+            cmbPropietario.addItem(x.getCc());
     }
     
     // Variables declaration - do not modify//GEN-BEGIN:variables
@@ -28,10 +28,10 @@ public class registrarPremioPanel extends javax.swing.JPanel {
     
     private Competencia competencia;
 
-    public registrarPremioPanel(Competencia competencia) {
+    public registrarPremioPanel(Competencia competencia, ModeloPlacas placas) {
         this.competencia = competencia;
         initComponents();
-        llenarCombos();
+        cmbPlacaAñadirPremio.setModel(placas.nuevoCombo());
     }
 
     @SuppressWarnings("unchecked")
@@ -133,6 +133,11 @@ public class registrarPremioPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void cmdRegistrarPremioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdRegistrarPremioActionPerformed
+        if(cmbPlacaAñadirPremio.getSelectedItem() == null){
+            Notificacion.alertaAtencion("Alerta!!!", "Debe ingresar los datos");
+            return;
+        }
+        
         String placa = cmbPlacaAñadirPremio.getSelectedItem().toString();
         String anio = cmbAñoPremio.getSelectedItem().toString();
         String puesto = txtPuestoPremio.getText();
@@ -166,13 +171,6 @@ public class registrarPremioPanel extends javax.swing.JPanel {
         txtPuestoPremio.setText("");
     }//GEN-LAST:event_cmdRegistrarPremioActionPerformed
 
-    private void llenarCombos(){
-        String []carros = competencia.concatenarplacas().split("~");
-        cmbPlacaAñadirPremio.removeAllItems();
-        for(String x: carros)
-            cmbPlacaAñadirPremio.addItem(x);
-    }
-
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JComboBox cmbAñoPremio;
     private javax.swing.JComboBox cmbPlacaAñadirPremio;
@@ -28,10 +28,10 @@ public class registrarPropietarioPanel extends javax.swing.JPanel {
 
     private Competencia competencia;
     
-    public registrarPropietarioPanel(Competencia competencia) {
+    public registrarPropietarioPanel(Competencia competencia, ModeloPlacas placas) {
         this.competencia = competencia;
         initComponents();
-        llenarCombos();
+        cmbCarrodePropietario.setModel(placas.nuevoCombo());
     }
 
     @SuppressWarnings("unchecked")
@@ -163,6 +163,11 @@ public class registrarPropietarioPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void cmdRegistrarPropietarioActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdRegistrarPropietarioActionPerformed
+        if(cmbCarrodePropietario.getSelectedItem() == null){
+            Notificacion.alertaAtencion("Atención", "Debe ingresar los datos");
+            return;
+        }
+        
         String placa = cmbCarrodePropietario.getSelectedItem().toString();
         String nombre = txtNombrePropietario.getText();
         String cc = txtCCPropietario.getText();
@@ -203,13 +208,6 @@ public class registrarPropietarioPanel extends javax.swing.JPanel {
         txtTelefonoPropietario.setText("");
     }//GEN-LAST:event_cmdRegistrarPropietarioActionPerformed
 
-    private void llenarCombos(){
-        String []nombres = competencia.concatenarplacas().split("~");
-        cmbCarrodePropietario.removeAllItems();
-        for(String x: nombres)
-            cmbCarrodePropietario.addItem(x);
-    }
-    
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JComboBox cmbAñoPropietario;
     private javax.swing.JComboBox cmbCarrodePropietario;
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.consola;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ufps.is.poo.negocio.Competencia;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la consola: una linea JSON por comando con el resultado armado
+ * desde las vistas de la competencia, los cambios rechazados y los comandos
+ * desconocidos con "ok":false, el modo -q y el estado de salida.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ConsolaTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    private final Competencia competencia = new Competencia();
+    private final StringWriter salida = new StringWriter();
+
+    @Test
+    public void escribeUnaLineaJsonPorComando() throws Exception {
+        ejecutar(false,
+                "\uFEFFcarro,A1,Mazda,2012",
+                "",
+                "# comentario",
+                "premio,A1,2014,1,\"Rally \"\"Norte\"\"\"",
+                "propietario,A1,2014,Ana,10,\"Calle 1, #2\",Cucuta,555",
+                "carros,2000,2020",
+                "premios,a1,2014",
+                "premios,A1,2015",
+                "propietarios,A1,2014",
+                "ganadores,\"rally \"\"norte\"\"\",2014",
+                "premiospropietario,10",
+                "todo",
+                "contar");
+        assertEquals("{\"linea\":1,\"comando\":\"carro\",\"ok\":true,\"resultado\":true}\n"
+                + "{\"linea\":4,\"comando\":\"premio\",\"ok\":true,\"resultado\":true}\n"
+                + "{\"linea\":5,\"comando\":\"propietario\",\"ok\":true,\"resultado\":true}\n"
+                + "{\"linea\":6,\"comando\":\"carros\",\"ok\":true,\"resultado\":[{\"placa\":\"A1\",\"marca\":\"Mazda\","
+                + "\"modelo\":2012,\"premios\":[{\"anio\":2014,\"puesto\":1,\"evento\":\"Rally \\\"Norte\\\"\"}]}]}\n"
+                + "{\"linea\":7,\"comando\":\"premios\",\"ok\":true,\"resultado\":"
+                + "[{\"anio\":2014,\"puesto\":1,\"evento\":\"Rally \\\"Norte\\\"\"}]}\n"
+                + "{\"linea\":8,\"comando\":\"premios\",\"ok\":true,\"resultado\":[]}\n"
+                + "{\"linea\":9,\"comando\":\"propietarios\",\"ok\":true,\"resultado\":[{\"nombre\":\"Ana\",\"cc\":\"10\","
+                + "\"direccion\":\"Calle 1, #2\",\"ciudad\":\"Cucuta\",\"telefono\":\"555\"}]}\n"
+                + "{\"linea\":10,\"comando\":\"ganadores\",\"ok\":true,\"resultado\":[{\"nombre\":\"Ana\",\"cc\":\"10\","
+                + "\"direccion\":\"Calle 1, #2\",\"ciudad\":\"Cucuta\",\"telefono\":\"555\"}]}\n"
+                + "{\"linea\":11,\"comando\":\"premiospropietario\",\"ok\":true,\"resultado\":"
+                + "[{\"anio\":2014,\"puesto\":1,\"evento\":\"Rally \\\"Norte\\\"\"}]}\n"
+                + "{\"linea\":12,\"comando\":\"todo\",\"ok\":true,\"resultado\":[{\"placa\":\"A1\",\"marca\":\"Mazda\","
+                + "\"modelo\":2012,\"premios\":[{\"anio\":2014,\"puesto\":1,\"evento\":\"Rally \\\"Norte\\\"\"}]}]}\n"
+                + "{\"linea\":13,\"comando\":\"contar\",\"ok\":true,\"resultado\":1}\n", salida.toString());
+    }
+
+    @Test
+    public void unCambioRechazadoSaleConOkFalse() throws Exception {
+        Consola consola = ejecutar(false,
+                "carro,A1,Mazda,2012",
+                "carro,a1,Ford,2006",
+                "premio,A1,2014,1,Rally",
+                "premio,A1,2014,2,rally");
+        String[] lineas = salida.toString().split("\n");
+        assertEquals(4, lineas.length);
+        assertEquals("{\"linea\":2,\"comando\":\"carro\",\"ok\":false,\"error\":\"No se aplico el cambio\"}", lineas[1]);
+        assertEquals("{\"linea\":4,\"comando\":\"premio\",\"ok\":false,\"error\":\"Doble premio\"}", lineas[3]);
+        assertEquals(4, consola.getComandos());
+        assertEquals(2, consola.getErrores());
+        assertEquals("Mazda", competencia.obtenerCarro("A1").getMarca());
+    }
+
+    @Test
+    public void unComandoDesconocidoFalla() throws Exception {
+        Consola consola = ejecutar(false, "borrar,A1", "carros,2000", "premios,A1,dos");
+        assertEquals("{\"linea\":1,\"comando\":\"borrar\",\"ok\":false,\"error\":\"Comando desconocido: borrar\"}\n"
+                + "{\"linea\":2,\"comando\":\"carros\",\"ok\":false,\"error\":\"Cantidad de campos invalida: 2\"}\n"
+                + "{\"linea\":3,\"comando\":\"premios\",\"ok\":false,\"error\":\"Numero invalido: dos\"}\n",
+                salida.toString());
+        assertEquals(3, consola.getErrores());
+    }
+
+    @Test
+    public void conQSoloEscribeLosQueFallan() throws Exception {
+        Consola consola = ejecutar(true,
+                "carro,A1,Mazda,2012",
+                "todo",
+                "carro,A1,Ford,2006",
+                "contar");
+        assertEquals("{\"linea\":3,\"comando\":\"carro\",\"ok\":false,\"error\":\"No se aplico el cambio\"}\n",
+                salida.toString());
+        assertEquals(4, consola.getComandos());
+        assertEquals(1, consola.getErrores());
+    }
+
+    @Test
+    public void terminaConCeroSiTodoSeCumplio() throws Exception {
+        ByteArrayOutputStream errores = new ByteArrayOutputStream();
+        ByteArrayOutputStream respuestas = new ByteArrayOutputStream();
+        assertEquals(0, Consola.ejecutar(new String[]{"-q"}, entrada("carro,A1,Mazda,2012", "contar"),
+                respuestas, new PrintStream(errores, true, "UTF-8")));
+        assertEquals(0, respuestas.size());
+        assertTrue(errores.toString("UTF-8"), errores.toString("UTF-8").startsWith("{\"comandos\":2,\"errores\":0,"));
+    }
+
+    @Test
+    public void terminaConUnoSiAlgunComandoFallo() throws Exception {
+        File script = carpeta.newFile("script.csv");
+        Files.write(script.toPath(), "carro,A1,Mazda,2012\nnada\n".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream respuestas = new ByteArrayOutputStream();
+        assertEquals(1, Consola.ejecutar(new String[]{script.getPath()}, entrada(), respuestas,
+                new PrintStream(new ByteArrayOutputStream())));
+        assertEquals(2, respuestas.toString("UTF-8").split("\n").length);
+    }
+
+    @Test
+    public void terminaConDosSiNoPuedeLeerONoEntiendeLosArgumentos() throws Exception {
+        PrintStream errores = new PrintStream(new ByteArrayOutputStream());
+        assertEquals(2, Consola.ejecutar(new String[]{"-x"}, entrada(), new ByteArrayOutputStream(), errores));
+        assertEquals(2, Consola.ejecutar(new String[]{"a.csv", "b.csv"}, entrada(), new ByteArrayOutputStream(),
+                errores));
+        File falta = new File(carpeta.getRoot(), "no-existe.csv");
+        assertEquals(2, Consola.ejecutar(new String[]{falta.getPath()}, entrada(), new ByteArrayOutputStream(),
+                errores));
+    }
+
+    private Consola ejecutar(boolean soloErrores, String... lineas) throws IOException {
+        Consola consola = new Consola(competencia, salida, soloErrores);
+        consola.ejecutar(new BufferedReader(new StringReader(unir(lineas))));
+        return consola;
+    }
+
+    private static ByteArrayInputStream entrada(String... lineas) {
+        return new ByteArrayInputStream(unir(lineas).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String unir(String... lineas) {
+        StringBuilder texto = new StringBuilder();
+        for(String x: lineas)
+            texto.append(x).append('\n');
+        return texto.toString();
+    }
+
+}
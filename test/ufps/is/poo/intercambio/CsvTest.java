@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.intercambio;
+
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la lectura y escritura de campos CSV.
+ * @author Emanuel Martinez Pinzon
+ */
+public class CsvTest {
+
+    @Test
+    public void separaCamposConComillas() {
+        assertEquals(Arrays.asList("propietario", "A1", "Calle 1, #2", "di \"hola\"", ""),
+                Csv.campos("propietario,A1,\"Calle 1, #2\",\"di \"\"hola\"\"\","));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rechazaComillasSinCerrar() {
+        Csv.campos("carro,\"A1,Mazda");
+    }
+
+    @Test
+    public void escribeLoQueDespuesSeLee() {
+        String[] campos = {"simple", "con, coma", "con \"comillas\"", "", null};
+        StringBuilder linea = new StringBuilder();
+        for(int i = 0; i < campos.length; i++){
+            if(i > 0)
+                linea.append(',');
+            Csv.campo(linea, campos[i]);
+        }
+        assertEquals(Arrays.asList("simple", "con, coma", "con \"comillas\"", "", ""),
+                Csv.campos(linea.toString()));
+    }
+
+    @Test
+    public void rechazaSaltosDeLinea() {
+        for(String campo: new String[]{"linea\nsiguiente", "linea\rsiguiente"})
+            try{
+                Csv.campo(new StringBuilder(), campo);
+                fail("Debio rechazar el salto de linea");
+            }catch(IllegalArgumentException ex){
+                //Esperado
+            }
+    }
+
+}
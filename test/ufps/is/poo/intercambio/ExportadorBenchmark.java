@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.intercambio;
+
+import java.io.File;
+import java.nio.file.Files;
+import ufps.is.poo.negocio.Competencia;
+
+/**
+ * Mide cuantas filas por segundo escribe el Exportador en CSV y NDJSON, con y
+ * sin gzip, para una competencia de 350.000 carros con un premio y un
+ * propietario cada uno (1.050.000 filas). Son los datos de la tabla del
+ * README del paquete.
+ *
+ * Se ejecuta con: java -Xmx2g -cp build/classes:build/test/classes
+ * ufps.is.poo.intercambio.ExportadorBenchmark [carros]
+ * @author Emanuel Martinez Pinzon
+ */
+public class ExportadorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int carros = args.length > 0 ? Integer.parseInt(args[0]) : 350000;
+        Competencia competencia = llenar(carros);
+        File directorio = Files.createTempDirectory("exportador").toFile();
+        File archivo = new File(directorio, "competencia");
+        try{
+            //Calentamiento
+            for(Exportador.Formato formato : Exportador.Formato.values())
+                new Exportador(competencia, formato, false).exportar(archivo);
+
+            System.out.println("formato\tfilas\tKB\tms\tfilas/s");
+            for(Exportador.Formato formato : Exportador.Formato.values())
+                for(boolean comprimir : new boolean[]{false, true}){
+                    long comienzo = System.nanoTime();
+                    long filas = new Exportador(competencia, formato, comprimir).exportar(archivo);
+                    long tiempo = System.nanoTime() - comienzo;
+                    System.out.println(formato + (comprimir ? " gzip" : "") + "\t" + filas
+                            + "\t" + archivo.length() / 1024 + "\t" + tiempo / 1000000
+                            + "\t" + filas * 1000000000L / tiempo);
+                }
+        }finally{
+            archivo.delete();
+            directorio.delete();
+        }
+        System.out.println("procesadores: " + Runtime.getRuntime().availableProcessors());
+    }
+
+    private static Competencia llenar(int carros) throws Exception {
+        Competencia c = new Competencia();
+        for(int i = 0; i < carros; i++){
+            String placa = "P" + i;
+            c.agregarCarro(placa, "Marca " + i % 50, 2000 + i % 20);
+            c.registrarPremioACarro(placa, 2000 + i % 20, i / 20 + 1, "Rally");
+            c.agregarPropietario(placa, 2010 + i % 5, "Propietario " + i, String.valueOf(100000 + i),
+                    "Calle " + i % 100 + ", #" + i % 7, "Cucuta", "555" + i % 10000);
+        }
+        return c;
+    }
+
+}
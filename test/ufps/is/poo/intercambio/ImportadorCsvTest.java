@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.intercambio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ufps.is.poo.negocio.Competencia;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la importacion de CSV y de la ida y vuelta con el Exportador.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ImportadorCsvTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    @Test
+    public void importaLoExportado() throws Exception {
+        Competencia origen = new Competencia();
+        origen.agregarCarro("ABC1", "Mazda", 2012);
+        origen.agregarCarro("XYZ2", "Ford \"GT\"", 2006);
+        origen.registrarPremioACarro("ABC1", 2014, 1, "Rally, Norte");
+        origen.registrarPremioACarro("XYZ2", 2014, 2, "Rally, Norte");
+        origen.agregarPropietario("ABC1", 2013, "Ana Perez", "1090", "Calle 1, #2", "Cucuta", "5551234");
+        origen.agregarPropietario("XYZ2", 2010, "Bo", "11", "", "", "");
+        File archivo = carpeta.newFile("competencia.csv");
+        long filas = new Exportador(origen, Exportador.Formato.CSV, false).exportar(archivo);
+
+        Competencia destino = new Competencia();
+        ResultadoImportacion resultado = new ImportadorCsv(destino).importar(archivo);
+        assertEquals(0, resultado.getRechazados());
+        assertEquals(filas, resultado.getCarros() + resultado.getPremios() + resultado.getPropietarios());
+        assertEquals(estado(origen), estado(destino));
+        assertEquals("", destino.obtenerPropietario("XYZ2", 2010, "11").getTelefono());
+    }
+
+    @Test
+    public void rechazaCamposObligatoriosVacios() throws Exception {
+        File archivo = escribir("carro,A1,Mazda,2012",
+                "propietario,A1,2013,,1090,d,c,t",
+                "propietario,A1,2013,Ana,,d,c,t",
+                "premio,A1,2014,1, ",
+                "carro,,Ford,2006",
+                "propietario,A1,2013,Ana,1090,,,");
+        Competencia c = new Competencia();
+        ResultadoImportacion resultado = new ImportadorCsv(c).importar(archivo);
+        assertEquals(4, resultado.getRechazados());
+        assertEquals(1, resultado.getCarros());
+        assertEquals(1, resultado.getPropietarios());
+        assertNotNull(c.obtenerPropietario("A1", 2013, "1090"));
+    }
+
+    @Test
+    public void rechazaExportarSaltosDeLinea() throws Exception {
+        Competencia c = new Competencia();
+        c.agregarCarro("A1", "Mazda", 2012);
+        c.agregarPropietario("A1", 2013, "Ana", "1090", "Calle 1\nApto 2", "c", "t");
+        File archivo = carpeta.newFile("competencia.csv");
+        try{
+            new Exportador(c, Exportador.Formato.CSV, false).exportar(archivo);
+            fail("Debio rechazar el salto de linea");
+        }catch(IllegalArgumentException ex){
+            //El archivo anterior queda sin cambios
+            assertEquals(0, archivo.length());
+        }
+    }
+
+    @Test
+    public void unRetornoSoloTerminaLaLinea() throws Exception {
+        //Como guarda Excel para Mac, con un \r suelto dentro de una fila
+        File archivo = carpeta.newFile();
+        Files.write(archivo.toPath(), ("carro,A1,Mazda,2012\rcarro,B2,Fo\rrd,2006\r\n"
+                + "premio,A1,2014,1,Rally\r").getBytes(StandardCharsets.UTF_8));
+        File rechazos = carpeta.newFile();
+        Competencia c = new Competencia();
+        ResultadoImportacion resultado = new ImportadorCsv(c).importar(archivo, rechazos);
+        assertEquals(4, resultado.getLineas());
+        assertEquals(1, resultado.getCarros());
+        assertEquals(1, resultado.getPremios());
+        assertEquals(2, resultado.getRechazados());
+        List<String> filas = Files.readAllLines(rechazos.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, filas.size());
+        assertTrue(filas.get(1), filas.get(1).startsWith("2,") && filas.get(1).endsWith(",\"carro,B2,Fo\""));
+        assertTrue(filas.get(2), filas.get(2).startsWith("3,") && filas.get(2).endsWith(",\"rd,2006\""));
+    }
+
+    @Test
+    public void cortaLosBloquesEnRetornosSolos() throws Exception {
+        StringBuilder texto = new StringBuilder();
+        for(int i = 0; i < 60000; i++)
+            texto.append("carro,P").append(i).append(",Marca,2000").append(i % 3 == 0 ? "\r\n" : "\r");
+        File archivo = carpeta.newFile();
+        Files.write(archivo.toPath(), texto.toString().getBytes(StandardCharsets.UTF_8));
+        assertTrue("Debe pasar de un bloque", archivo.length() > 1 << 20);
+
+        Competencia c = new Competencia();
+        ResultadoImportacion resultado = new ImportadorCsv(c, new Executor(){
+            @Override
+            public void execute(Runnable r) {
+                r.run();
+            }
+        }, 2).importar(archivo);
+        assertEquals(60000, resultado.getLineas());
+        assertEquals(60000, resultado.getCarros());
+        assertEquals(0, resultado.getRechazados());
+    }
+
+    private File escribir(String... lineas) throws IOException {
+        File archivo = carpeta.newFile();
+        ArrayList<String> todas = new ArrayList<>();
+        for(String x: lineas)
+            todas.add(x);
+        Files.write(archivo.toPath(), todas, StandardCharsets.UTF_8);
+        return archivo;
+    }
+
+    private static String estado(Competencia c) {
+        StringBuilder estado = new StringBuilder();
+        for(String placa: c.listarPlacas()){
+            estado.append(c.obtenerInfoCarro(placa)).append('|').append(c.imprimirPremiosCarro(placa));
+            for(Integer año: c.listarAñosPropietarios(placa))
+                estado.append('|').append(año).append(':').append(c.imprimirPropietarios(placa, año));
+            estado.append('\n');
+        }
+        return estado.toString();
+    }
+
+}
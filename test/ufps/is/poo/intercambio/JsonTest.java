@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.intercambio;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la escritura de cadenas JSON.
+ * @author Emanuel Martinez Pinzon
+ */
+public class JsonTest {
+
+    @Test
+    public void escapaComillasBarrasYControles() {
+        StringBuilder salida = new StringBuilder();
+        Json.texto(salida, "di \"hola\"\\ \n\r\t\u0001\u001f ñ");
+        assertEquals("\"di \\\"hola\\\"\\\\ \\n\\r\\t\\u0001\\u001f ñ\"", salida.toString());
+    }
+
+    @Test
+    public void escribeNullSinComillas() {
+        StringBuilder salida = new StringBuilder("[");
+        Json.texto(salida, null);
+        Json.texto(salida.append(','), "");
+        assertEquals("[null,\"\"", salida.toString());
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de Competencia.agregarCarro: las placas vacias se rechazan igual que
+ * en modificarCarro y aplicarLote.
+ * @author Emanuel Martinez Pinzon
+ */
+public class AgregarCarroTest {
+
+    @Test
+    public void rechazaPlacasVacias() {
+        Competencia competencia = new Competencia();
+        assertFalse(competencia.agregarCarro(null, "Mazda", 2012));
+        assertFalse(competencia.agregarCarro("", "Mazda", 2012));
+        assertFalse(competencia.agregarCarro("   ", "Mazda", 2012));
+
+        assertTrue(competencia.listarPlacas().isEmpty());
+        assertEquals(0, competencia.contarCarrosParaUnRango(RangoModelos.parse("2012-2012")));
+    }
+
+    @Test
+    public void rechazaPlacasRepetidas() {
+        Competencia competencia = new Competencia();
+        assertTrue(competencia.agregarCarro("ABC1", "Mazda", 2012));
+        assertFalse(competencia.agregarCarro(" abc1 ", "Kia", 2013));
+        assertEquals("Mazda", competencia.obtenerCarro("ABC1").getMarca());
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de Competencia.aplicarLote: cada operacion rechazada trae su motivo
+ * y las aceptadas quedan guardadas como si se hubieran hecho una por una.
+ * @author Emanuel Martinez Pinzon
+ */
+public class AplicarLoteTest {
+
+    private Competencia competencia;
+
+    @Before
+    public void preparar() throws Exception {
+        competencia = new Competencia();
+        competencia.agregarCarro("ABC1", "Mazda", 2012);
+        competencia.registrarPremioACarro("ABC1", 2014, 1, "Rally");
+        competencia.agregarPropietario("ABC1", 2013, "Ana", "10", "d", "c", "t");
+    }
+
+    @Test
+    public void rechazaPlacasRepetidas() {
+        ResultadoLote r = aplicar(
+                Operacion.agregarCarro("abc1", "Ford", 2006),
+                Operacion.agregarCarro("NEW1", "Ford", 2006),
+                Operacion.agregarCarro(" new1 ", "Kia", 2010));
+        assertEquals("Placa repetida", r.getMotivo(0));
+        assertTrue(r.fueAplicada(1));
+        assertEquals("Placa repetida", r.getMotivo(2));
+        assertEquals("Ford", competencia.obtenerCarro("NEW1").getMarca());
+    }
+
+    @Test
+    public void rechazaPlacasVacias() {
+        ResultadoLote r = aplicar(
+                Operacion.agregarCarro(null, "Ford", 2006),
+                Operacion.agregarCarro("  ", "Ford", 2006),
+                Operacion.registrarPremio("", 2015, 1, "Copa"),
+                Operacion.agregarPropietario(null, 2013, "Bo", "11", "d", "c", "t"));
+        for(int i = 0; i < r.cantidad(); i++)
+            assertEquals("Placa vacia", r.getMotivo(i));
+        assertEquals(Arrays.asList("ABC1"), new ArrayList<>(competencia.listarPlacas()));
+    }
+
+    @Test
+    public void rechazaCarrosQueNoExisten() {
+        ResultadoLote r = aplicar(
+                Operacion.registrarPremio("NADA", 2015, 1, "Copa"),
+                Operacion.agregarPropietario("NADA", 2013, "Bo", "11", "d", "c", "t"),
+                Operacion.agregarCarro("NEW1", "Ford", 2006),
+                Operacion.registrarPremio("new1", 2015, 1, "Copa"));
+        assertEquals("No existe un carro con esa placa", r.getMotivo(0));
+        assertEquals("No existe un carro con esa placa", r.getMotivo(1));
+        assertTrue(r.fueAplicada(2));
+        assertTrue("El carro puede ser del mismo lote", r.fueAplicada(3));
+        assertEquals(1, competencia.listarPremios("NEW1").size());
+    }
+
+    @Test
+    public void rechazaPremiosDobles() {
+        ResultadoLote r = aplicar(
+                Operacion.registrarPremio("ABC1", 2014, 2, "rally"),
+                Operacion.registrarPremio("ABC1", 2015, 2, "Copa"),
+                Operacion.agregarCarro("NEW1", "Ford", 2006),
+                Operacion.registrarPremio("NEW1", 2014, 1, "RALLY"),
+                Operacion.registrarPremio("NEW1", 2015, 2, " copa "),
+                Operacion.registrarPremio("NEW1", 2016, 1, "Copa"),
+                Operacion.registrarPremio("NEW1", 2016, 3, " COPA"));
+        assertEquals("Mismo evento y año en el carro", "Doble premio", r.getMotivo(0));
+        assertTrue(r.fueAplicada(1));
+        assertEquals("Puesto ocupado en la competencia", "Doble premio", r.getMotivo(3));
+        assertEquals("Puesto ocupado en el lote", "Doble premio", r.getMotivo(4));
+        assertTrue(r.fueAplicada(5));
+        assertEquals("Mismo evento y año en el lote", "Doble premio", r.getMotivo(6));
+        assertEquals(4, r.getRechazadas());
+    }
+
+    @Test
+    public void rechazaPropietariosDobles() {
+        ResultadoLote r = aplicar(
+                Operacion.agregarPropietario("ABC1", 2013, "Otra", "10", "d", "c", "t"),
+                Operacion.agregarPropietario("ABC1", 2014, "Ana", "10", "d", "c", "t"),
+                Operacion.agregarPropietario("abc1", 2014, "Ana", " 10 ", "d", "c", "t"));
+        assertEquals("Doble propietario", r.getMotivo(0));
+        assertTrue(r.fueAplicada(1));
+        assertEquals("Doble propietario", r.getMotivo(2));
+    }
+
+    @Test
+    public void rechazaOperacionesQueNoSonAltas() {
+        ResultadoLote r = aplicar(
+                Operacion.borrarTodo(),
+                Operacion.borrarCarro("ABC1"),
+                Operacion.agregarCarro("NEW1", "Ford", 2006));
+        assertEquals("Operacion no permitida en un lote: BORRAR_TODO", r.getMotivo(0));
+        assertEquals("Operacion no permitida en un lote: BORRAR_CARRO", r.getMotivo(1));
+        assertTrue(r.fueAplicada(2));
+        assertNotNull(competencia.obtenerCarro("ABC1"));
+    }
+
+    @Test
+    public void avisaUnaSolaVez() {
+        final List<EventoCompetencia> avisos = new ArrayList<>();
+        final int[] llamadas = {0};
+        competencia.agregarOyente(new OyenteCompetencia() {
+            @Override
+            public void cambios(List<EventoCompetencia> eventos) {
+                llamadas[0]++;
+                avisos.addAll(eventos);
+            }
+        });
+        aplicar(Operacion.agregarCarro("NEW1", "Ford", 2006),
+                Operacion.registrarPremio("NEW1", 2015, 1, "Copa"),
+                Operacion.agregarCarro("ABC1", "Ford", 2006));
+        assertEquals(1, llamadas[0]);
+        assertEquals(2, avisos.size());
+    }
+
+    private ResultadoLote aplicar(Operacion... operaciones) {
+        return competencia.aplicarLote(Arrays.asList(operaciones));
+    }
+
+}
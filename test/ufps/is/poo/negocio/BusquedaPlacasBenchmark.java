@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Mide cuanto tarda buscar un carro por placa con 1.000, 10.000, 100.000 y
+ * 1.000.000 de carros registrados. Con el indice de placas el tiempo por
+ * busqueda debe quedar plano; como referencia tambien se mide el recorrido
+ * lineal que se hacia antes, solo hasta 100.000 carros.
+ *
+ * Se ejecuta con: java -Xmx2g -cp build/classes:build/test/classes
+ * ufps.is.poo.negocio.BusquedaPlacasBenchmark [busquedas]
+ * @author Emanuel Martinez Pinzon
+ */
+public class BusquedaPlacasBenchmark {
+
+    private static final int[] TAMAÑOS = {1000, 10000, 100000, 1000000};
+    private static final int RECORRIDO_MAXIMO = 100000;
+
+    public static void main(String[] args) {
+        int busquedas = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        Random azar = new Random(7);
+        System.out.println("carros\tindice ns/busqueda\trecorrido ns/busqueda");
+        for(int tamaño : TAMAÑOS){
+            Competencia competencia = new Competencia();
+            ArrayList<Carro> carros = new ArrayList<>(tamaño);
+            String[] placas = new String[tamaño];
+            for(int i = 0; i < tamaño; i++){
+                placas[i] = placa(i);
+                competencia.agregarCarro(placas[i], "Marca", 2000 + i % 20);
+                carros.add(competencia.obtenerCarro(placas[i]));
+            }
+            String[] pedidas = new String[busquedas];
+            for(int i = 0; i < busquedas; i++)
+                pedidas[i] = placas[azar.nextInt(tamaño)].toLowerCase();
+            medirIndice(competencia, pedidas);
+            double indice = medirIndice(competencia, pedidas);
+            String recorrido = "-";
+            if(tamaño <= RECORRIDO_MAXIMO){
+                int vueltas = Math.max(1, busquedas / (tamaño / 100));
+                recorrido = String.format("%.1f", medirRecorrido(carros, pedidas, vueltas));
+            }
+            System.out.println(tamaño + "\t" + String.format("%.1f", indice) + "\t" + recorrido);
+        }
+    }
+
+    /**
+     * Busca cada placa con obtenerCarro.
+     * @return Nanosegundos por busqueda
+     */
+    private static double medirIndice(Competencia competencia, String[] pedidas){
+        int encontrados = 0;
+        long inicio = System.nanoTime();
+        for(String placa : pedidas)
+            if(competencia.obtenerCarro(placa) != null)
+                encontrados++;
+        long fin = System.nanoTime();
+        if(encontrados != pedidas.length)
+            throw new IllegalStateException("Faltan carros: " + encontrados);
+        return (fin - inicio) / (double) pedidas.length;
+    }
+
+    /**
+     * Busca las primeras placas recorriendo la lista, como antes del indice.
+     * @return Nanosegundos por busqueda
+     */
+    private static double medirRecorrido(ArrayList<Carro> carros, String[] pedidas, int vueltas){
+        int encontrados = 0;
+        long inicio = System.nanoTime();
+        for(int i = 0; i < vueltas; i++)
+            for(Carro c : carros)
+                if(c.getPlaca().equalsIgnoreCase(pedidas[i])){
+                    encontrados++;
+                    break;
+                }
+        long fin = System.nanoTime();
+        if(encontrados != vueltas)
+            throw new IllegalStateException("Faltan carros: " + encontrados);
+        return (fin - inicio) / (double) vueltas;
+    }
+
+    private static String placa(int i){
+        return String.format("%c%c%c%04d", 'A' + i % 26, 'A' + i / 26 % 26,
+                'A' + i / 676 % 26, i / 17576);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las cargas de datos ya revisados: dejan la competencia igual que
+ * los metodos de cada cambio, rechazan placas y propietarios repetidos y solo
+ * se abren en una competencia vacia.
+ * @author Emanuel Martinez Pinzon
+ */
+public class CargaTest {
+
+    @Test
+    public void dejanLoMismoQueLosMetodos() throws Exception {
+        for(Competencia c : new Competencia[]{new Competencia(), Competencia.concurrente(4)}){
+            Competencia metodos = new Competencia();
+            metodos.agregarCarro("A1", "Mazda", 2012);
+            metodos.registrarPremioACarro("A1", 2014, 1, "Rally");
+            metodos.agregarPropietario("A1", 2013, "Ana", "10", "d", "c", "t");
+            metodos.agregarPropietario("A1", 2013, "Bo", "11", "d", "c", "t");
+            metodos.agregarCarro("B2", "Ford", 2006);
+            metodos.registrarPremioACarro("B2", 2014, 2, "Rally");
+            metodos.registrarPremioACarro("B2", 2015, 1, "Copa");
+            metodos.agregarPropietario("B2", 2015, "Ana", "10", "d", "c", "t");
+
+            try(Carga carga = c.iniciarCarga(2)){
+                assertTrue(carga.carro("A1", "Mazda", 2012));
+                carga.premio(2014, 1, "Rally");
+                assertTrue(carga.propietario(2013, "Ana", "10", "d", "c", "t"));
+                assertTrue(carga.propietario(2013, "Bo", "11", "d", "c", "t"));
+                assertTrue(carga.carro("B2", "Ford", 2006));
+                carga.premio(2014, 2, "Rally");
+                carga.premio(2015, 1, "Copa");
+                assertTrue(carga.propietario(2015, "Ana", "10", "d", "c", "t"));
+            }
+
+            assertEquals(metodos.recorrerPremios(), c.recorrerPremios());
+            assertEquals(metodos.imprimirCarrosParaUnRango("1900-2100"),
+                    c.imprimirCarrosParaUnRango("1900-2100"));
+            assertEquals(metodos.premiosdePropietario("10"), c.premiosdePropietario("10"));
+            assertEquals(metodos.propietarioParaUnaVictoria("Rally", 2014),
+                    c.propietarioParaUnaVictoria("Rally", 2014));
+            assertEquals(metodos.listarPlacas().toString(), c.listarPlacas().toString());
+            assertEquals("Ana~10~d~c~t", c.obtenerInfoPropietario("b2", 2015, "10"));
+
+            //Despues de la carga se cambia con las mismas reglas
+            assertFalse(c.agregarCarro("a1", "Kia", 2010));
+            assertTrue(c.agregarCarro("C3", "Kia", 2010));
+            try{
+                c.agregarPropietario("A1", 2013, "Ana", "10", "d", "c", "t");
+                fail("Debio rechazar el propietario repetido");
+            }catch(Exception ex){
+                assertEquals("Doble propietario", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void rechazanPlacasYPropietariosRepetidos() {
+        Competencia c = new Competencia();
+        try(Carga carga = c.iniciarCarga(0)){
+            assertTrue(carga.carro("A1", "Mazda", 2012));
+            assertFalse(carga.carro(" a1 ", "Ford", 2006));
+            assertFalse(carga.carro(" ", "Ford", 2006));
+            assertTrue(carga.propietario(2013, "Ana", "10", "d", "c", "t"));
+            assertFalse(carga.propietario(2013, "Otra", " 10", "x", "y", "z"));
+        }
+        assertEquals("Mazda", c.obtenerCarro("A1").getMarca());
+        assertEquals("Ana~10~d~c~t", c.obtenerInfoPropietario("A1", 2013, "10"));
+    }
+
+    @Test
+    public void soloSeAbrenEnUnaCompetenciaVacia() {
+        Competencia c = Competencia.concurrente(4);
+        c.agregarCarro("A1", "Mazda", 2012);
+        try{
+            c.iniciarCarga(1);
+            fail("Debio rechazar la competencia con carros");
+        }catch(IllegalStateException ex){
+            //Las franjas quedan libres
+            assertTrue(c.agregarCarro("B2", "Ford", 2006));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void losPremiosVanDespuesDeUnCarro() {
+        try(Carga carga = new Competencia().iniciarCarga(1)){
+            carga.premio(2014, 1, "Rally");
+        }
+    }
+
+    @Test
+    public void avisanUnaSolaVezYPublicanLaFoto() {
+        Competencia c = new Competencia();
+        assertFalse(c.foto().carros().iterator().hasNext());
+        final int[] llamadas = {0};
+        c.agregarOyente(new OyenteCompetencia() {
+            @Override
+            public void cambios(List<EventoCompetencia> eventos) {
+                llamadas[0]++;
+            }
+        });
+        Carga carga = c.iniciarCarga(2);
+        carga.carro("A1", "Mazda", 2012);
+        carga.premio(2014, 1, "Rally");
+        carga.carro("B2", "Ford", 2006);
+        assertEquals(0, llamadas[0]);
+        carga.close();
+        carga.close();
+        assertFalse(carga.estaAbierta());
+        assertEquals(1, llamadas[0]);
+        assertNotNull(c.foto().carro("B2"));
+        assertEquals(1, c.foto().carro("A1").getPremios().size());
+    }
+
+}
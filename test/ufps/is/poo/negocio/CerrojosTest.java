@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del cerrojo total de una competencia concurrente, que toma varios
+ * cerrojos como si fueran uno.
+ * @author Emanuel Martinez Pinzon
+ */
+public class CerrojosTest {
+
+    private final Cerrojos cerrojos = new Cerrojos(4);
+
+    @Test
+    public void tomaTodoConPlazo() throws Exception {
+        Lock total = cerrojos.escrituraTotal();
+        assertTrue(total.tryLock(1, TimeUnit.SECONDS));
+        try{
+            assertFalse(enOtroHilo(cerrojos.lecturaPremios()));
+        }finally{
+            total.unlock();
+        }
+        assertTrue(enOtroHilo(cerrojos.escrituraPremios()));
+    }
+
+    @Test
+    public void sueltaLoTomadoSiSeVenceElPlazo() throws Exception {
+        final CountDownLatch tomado = new CountDownLatch(1);
+        final CountDownLatch soltar = new CountDownLatch(1);
+        Thread otro = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                //El de premios es el ultimo que toma el cerrojo total
+                Lock premios = cerrojos.escrituraPremios();
+                premios.lock();
+                tomado.countDown();
+                try{
+                    soltar.await();
+                }catch(InterruptedException ex){
+                    Thread.currentThread().interrupt();
+                }finally{
+                    premios.unlock();
+                }
+            }
+        });
+        otro.start();
+        tomado.await();
+        try{
+            long inicio = System.nanoTime();
+            assertFalse(cerrojos.escrituraTotal().tryLock(50, TimeUnit.MILLISECONDS));
+            long espera = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+            assertTrue("Espero " + espera + " ms", espera >= 40 && espera < 5000);
+            
+            //Las franjas que alcanzo a tomar quedaron libres
+            assertTrue(enOtroHilo(cerrojos.escritura("ABC1")));
+            assertTrue(enOtroHilo(cerrojos.escritura("XYZ2")));
+        }finally{
+            soltar.countDown();
+            otro.join();
+        }
+        assertTrue(cerrojos.escrituraTotal().tryLock(0, TimeUnit.SECONDS));
+        cerrojos.escrituraTotal().unlock();
+    }
+
+    @Test
+    public void sueltaLoTomadoSiLoInterrumpen() throws Exception {
+        Lock premios = cerrojos.escrituraPremios();
+        premios.lock();
+        try{
+            Thread.currentThread().interrupt();
+            try{
+                cerrojos.escrituraTotal().tryLock(1, TimeUnit.SECONDS);
+                fail("Debio lanzar InterruptedException");
+            }catch(InterruptedException ex){
+                assertTrue(enOtroHilo(cerrojos.escritura("ABC1")));
+            }
+        }finally{
+            premios.unlock();
+        }
+    }
+
+    @Test
+    public void elSelloSoloValidaSiNadieEscribio() {
+        int franja = cerrojos.franjaDe("ABC1");
+        long sello = cerrojos.sello(franja);
+        assertTrue(cerrojos.validar(franja, sello));
+
+        Lock escritura = cerrojos.escritura("ABC1");
+        escritura.lock();
+        escritura.lock();
+        try{
+            //Con el cerrojo tomado, aunque sea dos veces, el sello no sirve
+            assertFalse(cerrojos.validar(franja, cerrojos.sello(franja)));
+        }finally{
+            escritura.unlock();
+        }
+        assertFalse(cerrojos.validar(franja, cerrojos.sello(franja)));
+        escritura.unlock();
+
+        assertFalse(cerrojos.validar(franja, sello));
+        sello = cerrojos.sello(franja);
+        assertTrue(cerrojos.validar(franja, sello));
+        cerrojos.escrituraTotal().lock();
+        cerrojos.escrituraTotal().unlock();
+        assertFalse(cerrojos.validar(franja, sello));
+    }
+
+    /**
+     * Intenta tomar un cerrojo desde otro hilo y lo suelta.
+     * @return Retorna true si lo pudo tomar
+     */
+    private static boolean enOtroHilo(final Lock cerrojo) throws InterruptedException {
+        final boolean[] tomado = {false};
+        Thread otro = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if(cerrojo.tryLock()){
+                    tomado[0] = true;
+                    cerrojo.unlock();
+                }
+            }
+        });
+        otro.start();
+        otro.join();
+        return tomado[0];
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de lo que pasa cuando la bitacora de una Competencia falla: el
+ * cambio se deshace y la excepcion llega a quien lo pidio.
+ * @author Emanuel Martinez Pinzon
+ */
+public class CompetenciaBitacoraTest {
+
+    private Competencia competencia;
+    private BitacoraFallida bitacora;
+
+    @Before
+    public void preparar() throws Exception {
+        competencia = new Competencia();
+        competencia.agregarCarro("ABC1", "Mazda", 2012);
+        competencia.agregarCarro("XYZ2", "Ford", 2006);
+        competencia.registrarPremioACarro("ABC1", 2014, 1, "Rally");
+        competencia.agregarPropietario("ABC1", 2000, "Ana", "10", "d", "c", "t");
+        competencia.agregarPropietario("ABC1", 2000, "Bo", "11", "d", "c", "t");
+        bitacora = new BitacoraFallida();
+        competencia.setBitacora(bitacora);
+    }
+
+    @Test
+    public void guardaLosCambiosEnLaBitacora() {
+        assertTrue(competencia.agregarCarro("Q1", "Kia", 2010));
+        assertEquals(1, bitacora.operaciones.size());
+        assertEquals(Operacion.Tipo.AGREGAR_CARRO, bitacora.operaciones.get(0).getTipo());
+    }
+
+    @Test
+    public void deshaceAgregarCarro() {
+        String antes = estado();
+        bitacora.fallar = true;
+        try{
+            competencia.agregarCarro("Q1", "Kia", 2010);
+            fail("Debio fallar la bitacora");
+        }catch(IllegalStateException ex){
+            assertEquals("disco lleno", ex.getMessage());
+        }
+        assertNull(competencia.obtenerCarro("Q1"));
+        assertEquals(antes, estado());
+        
+        //El numero de registro se devuelve, el siguiente carro lo reutiliza
+        bitacora.fallar = false;
+        assertTrue(competencia.agregarCarro("Q1", "Kia", 2010));
+        assertEquals(competencia.obtenerCarro("XYZ2").getRegistro() + 1,
+                competencia.obtenerCarro("Q1").getRegistro());
+    }
+
+    @Test
+    public void deshaceLosBorrados() {
+        String antes = estado();
+        bitacora.fallar = true;
+        for(Runnable borrar: borrados()){
+            try{
+                borrar.run();
+                fail("Debio fallar la bitacora");
+            }catch(IllegalStateException ex){
+                assertEquals(antes, estado());
+            }
+        }
+    }
+
+    @Test
+    public void deshaceLasModificaciones() throws Exception {
+        String antes = estado();
+        bitacora.fallar = true;
+        try{
+            competencia.modificarCarro("ABC1", "NEW1", "Kia", 2013);
+            fail("Debio fallar la bitacora");
+        }catch(IllegalStateException ex){
+            assertNull(competencia.obtenerCarro("NEW1"));
+        }
+        try{
+            competencia.modificarPremio("ABC1", "Rally", 2014, 2015, 2, "Copa");
+            fail("Debio fallar la bitacora");
+        }catch(IllegalStateException ex){
+            assertEquals(1, competencia.obtenerPremio("ABC1", "Rally").getPuesto());
+        }
+        try{
+            competencia.modificarPropietario("ABC1", 2000, "10", "Eva", "12", "x", "y", "z");
+            fail("Debio fallar la bitacora");
+        }catch(IllegalStateException ex){
+            assertNull(competencia.obtenerPropietario("ABC1", 2000, "12"));
+        }
+        assertEquals(antes, estado());
+        
+        //El puesto del premio deshecho no quedo ocupado
+        bitacora.fallar = false;
+        assertTrue(competencia.registrarPremioACarro("XYZ2", 2015, 2, "Copa"));
+    }
+
+    @Test
+    public void noAvisaLosCambiosDeshechos() {
+        final List<EventoCompetencia> avisos = new ArrayList<>();
+        competencia.agregarOyente(new OyenteCompetencia() {
+            @Override
+            public void cambios(List<EventoCompetencia> eventos) {
+                avisos.addAll(eventos);
+            }
+        });
+        bitacora.fallar = true;
+        try{
+            competencia.borrarCarro("ABC1");
+            fail("Debio fallar la bitacora");
+        }catch(IllegalStateException ex){
+            assertTrue(avisos.isEmpty());
+        }
+    }
+
+    private Runnable[] borrados() {
+        return new Runnable[]{
+            new Runnable(){ @Override public void run(){ competencia.borrarCarro("ABC1"); }},
+            new Runnable(){ @Override public void run(){ competencia.borrarPremio("ABC1", "Rally", 2014); }},
+            new Runnable(){ @Override public void run(){ competencia.borrarTodosPremios("ABC1"); }},
+            new Runnable(){ @Override public void run(){ competencia.borrarPropietario("ABC1", 2000, "10"); }},
+            new Runnable(){ @Override public void run(){ competencia.borrarTodosPropietario("ABC1", 2000); }},
+            new Runnable(){ @Override public void run(){ competencia.borrarTodosPropietario("ABC1"); }},
+            new Runnable(){ @Override public void run(){ competencia.borrarTodo(); }}
+        };
+    }
+
+    private String estado() {
+        return competencia.listarPlacas() + "|" + competencia.recorrerPremios() + "|"
+                + competencia.imprimirPropietarios("ABC1", 2000) + "|"
+                + competencia.imprimirCarrosParaUnRango("1900-3000");
+    }
+
+    /**
+     * Bitacora en memoria que falla cuando se le pide.
+     */
+    private static class BitacoraFallida implements Bitacora {
+        private final List<Operacion> operaciones = new ArrayList<>();
+        private boolean fallar;
+
+        @Override
+        public void registrar(Operacion operacion) {
+            if(fallar)
+                throw new IllegalStateException("disco lleno");
+            operaciones.add(operacion);
+        }
+
+        @Override
+        public void registrarGrupo(List<Operacion> operaciones) {
+            if(fallar)
+                throw new IllegalStateException("disco lleno");
+            this.operaciones.addAll(operaciones);
+        }
+    }
+
+}
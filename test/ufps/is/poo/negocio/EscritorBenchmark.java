@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import ufps.is.poo.persistencia.BitacoraArchivo;
+
+/**
+ * Mide cuantos carros por segundo agregan 1, 2, 4 y 8 hilos llamando
+ * directamente a una competencia concurrente o enviandolos a un Escritor.
+ *
+ * Se mide en dos escenarios. "solo" es la competencia sin nada mas, donde el
+ * escritor solo agrega el paso por el anillo. "completo" tiene una foto
+ * activa, un oyente y una BitacoraArchivo: ahi cada llamada directa publica
+ * una foto, entrega un aviso y deja un registro en la bitacora, mientras el
+ * escritor hace cada una de esas cosas una vez por lote. Tambien se muestra
+ * cuantos avisos y registros de bitacora costo cada forma.
+ *
+ * Se ejecuta con: java -cp build/classes:build/test/classes
+ * ufps.is.poo.negocio.EscritorBenchmark [carros]
+ * @author Emanuel Martinez Pinzon
+ */
+public class EscritorBenchmark {
+
+    private static final int[] HILOS = {1, 2, 4, 8};
+
+    public static void main(String[] args) throws Exception {
+        int carros = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        System.out.println("carros: " + carros);
+        System.out.println("escenario\thilos\tdirecto ops/s\tescritor ops/s"
+                + "\tdirecto avisos\tescritor avisos\tdirecto bitacora KB\tescritor bitacora KB");
+        //Calentamiento
+        medir(false, false, carros / 4, 2);
+        medir(true, false, carros / 4, 2);
+        medir(false, true, carros / 4, 2);
+        medir(true, true, carros / 4, 2);
+        for(boolean completo : new boolean[]{false, true})
+            for(int hilos : HILOS){
+                Resultado directo = medir(false, completo, carros, hilos);
+                Resultado escritor = medir(true, completo, carros, hilos);
+                System.out.println((completo ? "completo" : "solo") + "\t" + hilos
+                        + "\t" + directo.porSegundo + "\t" + escritor.porSegundo
+                        + "\t" + directo.avisos + "\t" + escritor.avisos
+                        + "\t" + directo.bitacora / 1024 + "\t" + escritor.bitacora / 1024);
+            }
+        System.out.println("procesadores: " + Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Agrega los carros repartidos entre los hilos y espera a que todos
+     * queden aplicados; con bitacora, tambien a que queden en el disco.
+     */
+    private static Resultado medir(final boolean conEscritor, boolean completo, int carros,
+            int hilos) throws Exception {
+        Competencia competencia = conEscritor ? new Competencia() : Competencia.concurrente();
+        final AtomicLong avisos = new AtomicLong();
+        File directorio = null;
+        BitacoraArchivo bitacora = null;
+        if(completo){
+            competencia.foto();
+            competencia.agregarOyente(new OyenteCompetencia() {
+                @Override
+                public void cambios(List<EventoCompetencia> eventos) {
+                    avisos.incrementAndGet();
+                }
+            });
+            directorio = Files.createTempDirectory("escritor").toFile();
+            bitacora = BitacoraArchivo.abrir(directorio, competencia);
+        }
+
+        final Competencia destino = competencia;
+        final Escritor escritor = conEscritor ? Escritor.iniciar(competencia) : null;
+        final int porHilo = carros / hilos;
+        final CountDownLatch inicio = new CountDownLatch(1);
+        Thread[] trabajadores = new Thread[hilos];
+        for(int h = 0; h < hilos; h++){
+            final String prefijo = "H" + h + "-";
+            trabajadores[h] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        inicio.await();
+                        Future<Boolean> ultimo = null;
+                        for(int i = 0; i < porHilo; i++)
+                            if(conEscritor)
+                                ultimo = escritor.agregarCarro(prefijo + i, "Marca", 2000 + i % 20);
+                            else
+                                destino.agregarCarro(prefijo + i, "Marca", 2000 + i % 20);
+                        if(ultimo != null)
+                            ultimo.get();
+                    }catch(Exception ex){
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            });
+            trabajadores[h].start();
+        }
+        long comienzo = System.nanoTime();
+        inicio.countDown();
+        for(Thread x : trabajadores)
+            x.join();
+        if(escritor != null)
+            escritor.close();
+        if(bitacora != null)
+            bitacora.sincronizar();
+        long tiempo = System.nanoTime() - comienzo;
+
+        Resultado resultado = new Resultado();
+        resultado.porSegundo = (long) porHilo * hilos * 1000000000L / tiempo;
+        resultado.avisos = avisos.get();
+        if(bitacora != null){
+            resultado.bitacora = bitacora.tamañoBitacora();
+            bitacora.close();
+            borrar(directorio);
+        }
+        return resultado;
+    }
+
+    private static void borrar(File directorio) {
+        File[] archivos = directorio.listFiles();
+        if(archivos != null)
+            for(File x : archivos)
+                x.delete();
+        directorio.delete();
+    }
+
+    private static class Resultado {
+        long porSegundo;
+        long avisos;
+        long bitacora;
+    }
+
+}
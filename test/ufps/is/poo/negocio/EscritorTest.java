@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de como el Escritor completa los futuros cuando fallan la
+ * bitacora, un oyente o una operacion con un Error.
+ * @author Emanuel Martinez Pinzon
+ */
+public class EscritorTest {
+
+    private Competencia competencia;
+    private RuntimeException falloBitacora;
+    private Error errorBitacora;
+    private final List<Throwable> reportados = Collections.synchronizedList(new ArrayList<Throwable>());
+    private Thread.UncaughtExceptionHandler manejador;
+
+    @Before
+    public void preparar() {
+        competencia = new Competencia();
+        competencia.setBitacora(new Bitacora() {
+            @Override
+            public void registrar(Operacion operacion) {
+                registrarGrupo(Collections.singletonList(operacion));
+            }
+
+            @Override
+            public void registrarGrupo(List<Operacion> operaciones) {
+                if(errorBitacora != null)
+                    throw errorBitacora;
+                if(falloBitacora != null)
+                    throw falloBitacora;
+            }
+        });
+        manejador = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                reportados.add(e);
+            }
+        });
+    }
+
+    @After
+    public void restaurar() {
+        Thread.setDefaultUncaughtExceptionHandler(manejador);
+    }
+
+    @Test
+    public void unOyenteQueFallaNoHaceFallarElLote() throws Exception {
+        final RuntimeException fallo = new IllegalStateException("oyente roto");
+        competencia.agregarOyente(new OyenteCompetencia() {
+            @Override
+            public void cambios(List<EventoCompetencia> eventos) {
+                throw fallo;
+            }
+        });
+        try(Escritor escritor = Escritor.iniciar(competencia, 8)){
+            assertTrue(escritor.agregarCarro("ABC1", "Mazda", 2012).get(5, TimeUnit.SECONDS));
+            assertTrue(escritor.agregarCarro("XYZ2", "Ford", 2006).get(5, TimeUnit.SECONDS));
+        }
+        assertNotNull(competencia.obtenerCarro("ABC1"));
+        assertNotNull(competencia.obtenerCarro("XYZ2"));
+        assertEquals(2, competencia.foto().cantidad());
+        assertTrue(reportados.contains(fallo));
+    }
+
+    @Test
+    public void siLaBitacoraFallaElLoteFalla() throws Exception {
+        falloBitacora = new IllegalStateException("disco lleno");
+        try(Escritor escritor = Escritor.iniciar(competencia, 8)){
+            Future<Boolean> agregado = escritor.agregarCarro("ABC1", "Mazda", 2012);
+            assertSame(falloBitacora, causa(agregado));
+
+            falloBitacora = null;
+            assertTrue(escritor.agregarCarro("XYZ2", "Ford", 2006).get(5, TimeUnit.SECONDS));
+        }
+        assertNull(competencia.obtenerCarro("ABC1"));
+        assertNotNull(competencia.obtenerCarro("XYZ2"));
+        assertTrue(reportados.isEmpty());
+    }
+
+    @Test
+    public void unErrorCierraElEscritor() throws Exception {
+        errorBitacora = new Error("fallo grave");
+        Escritor escritor = Escritor.iniciar(competencia, 8);
+        try{
+            List<Future<Boolean>> futuros = new ArrayList<>();
+            for(int i = 0; i < 20; i++)
+                try{
+                    futuros.add(escritor.agregarCarro("P" + i, "Mazda", 2012));
+                }catch(IllegalStateException ex){
+                    //El escritor ya se cerro
+                    break;
+                }
+            for(Future<Boolean> x: futuros)
+                assertSame(errorBitacora, causa(x));
+
+            try{
+                escritor.agregarCarro("OTRO", "Ford", 2006);
+                fail("El escritor deberia estar cerrado");
+            }catch(IllegalStateException ex){
+                assertEquals("El escritor esta cerrado", ex.getMessage());
+            }
+        }finally{
+            escritor.close();
+        }
+        assertTrue(competencia.listarPlacas().isEmpty());
+        assertNull(competencia.getTransaccion());
+        assertTrue(reportados.contains(errorBitacora));
+    }
+
+    private static Throwable causa(Future<Boolean> futuro) throws Exception {
+        try{
+            futuro.get(5, TimeUnit.SECONDS);
+            fail("El futuro deberia fallar");
+            return null;
+        }catch(ExecutionException ex){
+            return ex.getCause();
+        }
+    }
+
+}
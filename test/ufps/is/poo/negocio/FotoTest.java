@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Collection;
+import java.util.Iterator;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las fotos de Competencia: cada cambio de premios se lleva a la
+ * foto sin tocar las anteriores, y ni tomarFoto ni listarCarros dejan
+ * publicando fotos.
+ * @author Emanuel Martinez Pinzon
+ */
+public class FotoTest {
+
+    private Competencia competencia;
+
+    @Before
+    public void preparar() throws Exception {
+        competencia = new Competencia();
+        competencia.agregarCarro("ABC1", "Mazda", 2012);
+        competencia.registrarPremioACarro("ABC1", 2014, 1, "Rally");
+        competencia.registrarPremioACarro("ABC1", 2015, 2, "Copa");
+        competencia.registrarPremioACarro("ABC1", 2016, 3, "Gran Premio");
+    }
+
+    @Test
+    public void losPremiosCambianEnSuLugar() throws Exception {
+        Foto inicial = competencia.foto();
+        String antes = inicial.carro("ABC1").getPremios().toString();
+
+        competencia.modificarPremio("ABC1", "copa", 2015, 2017, 4, "Copa Andina");
+        assertEquals(competencia.listarPremios("ABC1").toString(), premios().toString());
+
+        competencia.registrarPremioACarro("ABC1", 2018, 5, "Final");
+        competencia.borrarPremio("ABC1", "RALLY", 2014);
+        assertEquals(competencia.listarPremios("ABC1").toString(), premios().toString());
+        assertEquals(3, premios().size());
+
+        competencia.borrarTodosPremios("ABC1");
+        assertTrue(premios().isEmpty());
+        competencia.registrarPremioACarro("ABC1", 2019, 1, "Otra");
+        assertEquals(competencia.listarPremios("ABC1").toString(), premios().toString());
+
+        assertEquals(antes, inicial.carro("ABC1").getPremios().toString());
+    }
+
+    @Test
+    public void borrarUnPremioQueNoEstaNoCambiaLaFoto() {
+        competencia.foto();
+        String antes = premios().toString();
+        assertFalse(competencia.borrarPremio("ABC1", "Rally", 2000));
+        assertEquals(antes, premios().toString());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void losPremiosNoSePuedenCambiar() {
+        premios().clear();
+    }
+
+    @Test
+    public void tomarFotoNoPublicaFotos() throws Exception {
+        Foto primera = competencia.tomarFoto();
+        competencia.registrarPremioACarro("ABC1", 2018, 5, "Final");
+        Foto segunda = competencia.tomarFoto();
+
+        assertNotSame(primera, segunda);
+        assertEquals(3, primera.carro("ABC1").getPremios().size());
+        assertEquals(4, segunda.carro("ABC1").getPremios().size());
+
+        Foto publicada = competencia.foto();
+        assertSame(publicada, competencia.tomarFoto());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void tomarFotoFallaDentroDeUnaTransaccion() {
+        try(Transaccion t = competencia.iniciarTransaccion()){
+            assertTrue(t.estaAbierta());
+            competencia.tomarFoto();
+        }
+    }
+
+    @Test
+    public void listarCarrosCopiaCadaCarroAlLlegarAEl() throws Exception {
+        competencia.agregarCarro("B2", "Ford", 2006);
+        competencia.agregarCarro("C3", "Kia", 2010);
+        Iterator<FotoCarro> it = competencia.listarCarros().iterator();
+        assertEquals("ABC1", it.next().getPlaca());
+        competencia.borrarCarro("B2");
+        competencia.registrarPremioACarro("C3", 2014, 2, "Rally");
+
+        FotoCarro c3 = it.next();
+        assertEquals("C3", c3.getPlaca());
+        assertEquals(1, c3.getPremios().size());
+        assertFalse(it.hasNext());
+        //No deja publicando fotos
+        assertNotSame(competencia.tomarFoto(), competencia.tomarFoto());
+
+        //Con fotos publicadas se recorre la ultima
+        Foto publicada = competencia.foto();
+        it = competencia.listarCarros().iterator();
+        it.next();
+        assertSame(publicada.carro("C3"), it.next());
+    }
+
+    private Collection<Premio> premios(){
+        return competencia.foto().carro("ABC1").getPremios();
+    }
+
+}
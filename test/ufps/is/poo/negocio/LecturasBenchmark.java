@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mide cuantas consultas por segundo atiende una competencia concurrente con
+ * 1, 2, 4 y 8 hilos, donde el 1% de las operaciones son cambios. Las tres
+ * formas arman el mismo texto nombre~cc~... de un propietario:
+ * "cerrojo" lo busca con obtenerPropietario, que toma el cerrojo de lectura de
+ * la franja; "sello" usa obtenerInfoPropietario, que lee la copia del carro
+ * sin cerrojo y valida el sello de la franja; "foto" lo lee de la ultima Foto,
+ * lo que obliga a cada cambio a publicar una foto nueva.
+ *
+ * Se ejecuta con: java -cp build/classes:build/test/classes
+ * ufps.is.poo.negocio.LecturasBenchmark [carros] [milisegundos]
+ * @author Emanuel Martinez Pinzon
+ */
+public class LecturasBenchmark {
+
+    private static final int[] HILOS = {1, 2, 4, 8};
+    private static final int CAMBIOS_POR_MIL = 10;
+    private static final int AÑO = 2010;
+
+    private enum Forma { CERROJO, SELLO, FOTO }
+
+    public static void main(String[] args) throws Exception {
+        int carros = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long duracion = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        System.out.println("carros: " + carros + ", cambios: " + CAMBIOS_POR_MIL / 10.0 + "%");
+        System.out.println("hilos\tcerrojo ops/s\tsello ops/s\tfoto ops/s");
+        Competencia competencia = llenar(carros);
+        Competencia foto = llenar(carros);
+        foto.foto();
+        //Calentamiento
+        for(Forma forma : Forma.values())
+            medir(forma == Forma.FOTO ? foto : competencia, forma, carros, 2, duracion);
+        for(int hilos : HILOS){
+            long conCerrojo = medir(competencia, Forma.CERROJO, carros, hilos, duracion);
+            long conSello = medir(competencia, Forma.SELLO, carros, hilos, duracion);
+            long conFoto = medir(foto, Forma.FOTO, carros, hilos, duracion);
+            System.out.println(hilos + "\t" + conCerrojo + "\t" + conSello + "\t" + conFoto);
+        }
+        System.out.println("procesadores: " + Runtime.getRuntime().availableProcessors());
+    }
+
+    private static Competencia llenar(int carros) throws Exception {
+        Competencia c = Competencia.concurrente();
+        for(int i = 0; i < carros; i++){
+            c.agregarCarro(placa(i), "Marca", 2000 + i % 20);
+            c.agregarPropietario(placa(i), AÑO, "Propietario " + i, cc(i), "Calle " + i, "Cucuta", "555");
+        }
+        //La copia de cada carro se arma en su primera consulta; se arman
+        //todas antes para medir el estado estable
+        for(int i = 0; i < carros; i++)
+            c.obtenerInfoPropietario(placa(i), AÑO, cc(i));
+        return c;
+    }
+
+    /**
+     * Pone a trabajar los hilos durante el tiempo indicado.
+     * @return Operaciones por segundo entre todos los hilos
+     */
+    private static long medir(final Competencia competencia, final Forma forma, final int carros,
+            int hilos, final long duracion) throws InterruptedException {
+        final AtomicLong operaciones = new AtomicLong();
+        final CountDownLatch inicio = new CountDownLatch(1);
+        final long[] fin = new long[1];
+        Thread[] trabajadores = new Thread[hilos];
+        for(int h = 0; h < hilos; h++){
+            final long semilla = h;
+            trabajadores[h] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random azar = new Random(semilla);
+                    long hechas = 0;
+                    int leidos = 0;
+                    try{
+                        inicio.await();
+                    }catch(InterruptedException ex){
+                        return;
+                    }
+                    while(System.nanoTime() < fin[0]){
+                        int i = azar.nextInt(carros);
+                        String placa = placa(i);
+                        if(azar.nextInt(1000) < CAMBIOS_POR_MIL)
+                            competencia.modificarCarro(placa, placa, "Marca" + azar.nextInt(10),
+                                    2000 + azar.nextInt(20));
+                        else
+                            leidos += leer(competencia, forma, placa, cc(i)).length();
+                        hechas++;
+                    }
+                    operaciones.addAndGet(hechas + (leidos == 0 ? 1 : 0));
+                }
+            });
+            trabajadores[h].start();
+        }
+        long comienzo = System.nanoTime();
+        fin[0] = comienzo + duracion * 1000000L;
+        inicio.countDown();
+        for(Thread x : trabajadores)
+            x.join();
+        return operaciones.get() * 1000000000L / (System.nanoTime() - comienzo);
+    }
+
+    private static String leer(Competencia competencia, Forma forma, String placa, String cc) {
+        switch(forma){
+            case SELLO:
+                return competencia.obtenerInfoPropietario(placa, AÑO, cc);
+            case CERROJO:
+                return info(competencia.obtenerPropietario(placa, AÑO, cc));
+            default:
+                for(Propietario x : competencia.foto().carro(placa).getPropietarios(AÑO))
+                    if(x.getCc().equals(cc))
+                        return info(x);
+                return null;
+        }
+    }
+
+    private static String info(Propietario x) {
+        return x.getNombre() + "~" + x.getCc() + "~" + x.getDireccion() + "~"
+                + x.getCiudad() + "~" + x.getTelefono();
+    }
+
+    private static String cc(int i) {
+        return String.valueOf(100000 + i);
+    }
+
+    private static String placa(int i) {
+        return "P" + i;
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las consultas sin cerrojo de una competencia concurrente: dan lo
+ * mismo que en un solo hilo despues de cada cambio, tambien de los que se
+ * deshacen, no mezclan un carro con otro mientras se cambian placas y
+ * encuentran a cada propietario por su NIT.
+ * @author Emanuel Martinez Pinzon
+ */
+public class LecturasSinCerrojoTest {
+
+    private static final String[] PLACAS = {"A1", "B2", "C3", "NEW1"};
+
+    private final Competencia simple = new Competencia();
+    private final Competencia concurrente = Competencia.concurrente(4);
+
+    @Test
+    public void dicenLoMismoQueEnUnSoloHilo() throws Exception {
+        for(Competencia c : new Competencia[]{simple, concurrente}){
+            c.agregarCarro("A1", "Mazda", 2012);
+            c.agregarCarro("B2", "Ford", 2006);
+            c.agregarCarro("C3", "Kia", 2010);
+        }
+        comparar();
+        for(Competencia c : new Competencia[]{simple, concurrente}){
+            c.registrarPremioACarro("A1", 2014, 1, "Rally");
+            c.registrarPremioACarro("B2", 2014, 2, "Rally");
+            c.registrarPremioACarro("B2", 2015, 1, "Copa");
+            c.agregarPropietario("A1", 2014, "Ana", "10", "d", "c", "t");
+            c.agregarPropietario("B2", 2014, "Bo", "11", "d", "c", "t");
+            c.agregarPropietario("B2", 2014, "Cy", "12", "d", "c", "t");
+            c.agregarPropietario("B2", 2015, "Di", "13", "d", "c", "t");
+        }
+        comparar();
+        for(Competencia c : new Competencia[]{simple, concurrente})
+            c.modificarPremio("B2", "Copa", 2015, 2015, 3, "Copa2");
+        comparar();
+        for(Competencia c : new Competencia[]{simple, concurrente})
+            c.modificarPropietario("B2", 2014, "11", "Bob", "14", "x", "y", "z");
+        comparar();
+        for(Competencia c : new Competencia[]{simple, concurrente})
+            c.modificarCarro("A1", "NEW1", "Mazda", 2013);
+        comparar();
+        for(Competencia c : new Competencia[]{simple, concurrente}){
+            c.borrarPremio("B2", "Rally-2014");
+            c.borrarPropietario("B2", 2014, "12");
+        }
+        comparar();
+
+        //Lo que se deshace tambien cambia las copias de los carros
+        for(Competencia c : new Competencia[]{simple, concurrente})
+            try(Transaccion t = c.iniciarTransaccion()){
+                c.borrarTodosPremios("B2");
+                c.borrarTodosPropietario("B2", 2015);
+                c.borrarTodosPropietario("NEW1");
+                c.modificarCarro("C3", "C4", "Kia", 2011);
+                c.borrarCarro("NEW1");
+                assertFalse(t.estaConfirmada());
+            }
+        comparar();
+        for(Competencia c : new Competencia[]{simple, concurrente})
+            try(Transaccion t = c.iniciarTransaccion()){
+                c.borrarTodo();
+                assertTrue(t.estaAbierta());
+            }
+        comparar();
+
+        for(Competencia c : new Competencia[]{simple, concurrente})
+            c.aplicarLote(Arrays.asList(
+                    Operacion.registrarPremio("C3", 2016, 1, "Rally"),
+                    Operacion.agregarPropietario("C3", 2016, "Eva", "15", "d", "c", "t"),
+                    Operacion.borrarTodosPremios("B2")));
+        comparar();
+        for(Competencia c : new Competencia[]{simple, concurrente})
+            c.borrarTodosPropietario("B2");
+        comparar();
+        for(Competencia c : new Competencia[]{simple, concurrente})
+            c.borrarTodo();
+        comparar();
+    }
+
+    @Test
+    public void noMezclanCarrosMientrasCambianLasPlacas() throws Exception {
+        concurrente.agregarCarro("A1", "Marca A1", 2000);
+        concurrente.agregarPropietario("A1", 2000, "Ana", "10", "d", "c", "t");
+        final AtomicBoolean seguir = new AtomicBoolean(true);
+        final AtomicReference<String> error = new AtomicReference<>();
+        Thread escritor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                //La marca siempre va con la placa
+                String actual = "A1";
+                while(seguir.get()){
+                    String otra = actual.equals("A1") ? "B2" : "A1";
+                    concurrente.modificarCarro(actual, otra, "Marca " + otra, 2000);
+                    actual = otra;
+                }
+            }
+        });
+        escritor.start();
+        try{
+            long limite = System.currentTimeMillis() + 500;
+            while(System.currentTimeMillis() < limite && error.get() == null)
+                for(String placa : new String[]{"A1", "B2"}){
+                    String info = concurrente.obtenerInfoCarro(placa);
+                    if(info != null && !info.equals(placa + "~Marca " + placa))
+                        error.set(placa + ": " + info);
+                    //Mientras se cambia la placa el carro sale un momento del rango
+                    String carros = concurrente.imprimirCarrosParaUnRango("2000-2000");
+                    if(!carros.isEmpty()
+                            && !carros.equals("\nPlaca: A1\nMarca: Marca A1\nModelo: 2000\n")
+                            && !carros.equals("\nPlaca: B2\nMarca: Marca B2\nModelo: 2000\n"))
+                        error.set(carros);
+                    String dueño = concurrente.obtenerInfoPropietario(placa, 2000, "10");
+                    if(dueño != null && !dueño.equals("Ana~10~d~c~t"))
+                        error.set(placa + ": " + dueño);
+                }
+        }finally{
+            seguir.set(false);
+            escritor.join();
+        }
+        assertNull(error.get());
+    }
+
+    @Test
+    public void encuentranCadaCopropietarioPorSuNit() throws Exception {
+        concurrente.agregarCarro("A1", "Mazda", 2012);
+        //Se registran en un orden distinto al de sus NIT
+        for(int i = 0; i < 200; i++){
+            int k = (i * 37) % 200;
+            concurrente.agregarPropietario("A1", 2014, "P" + k, "nit" + k, "d", "c", "t");
+        }
+        for(int k = 0; k < 200; k++)
+            assertEquals("P" + k + "~nit" + k + "~d~c~t",
+                    concurrente.obtenerInfoPropietario("A1", 2014, "NIT" + k));
+        assertNull(concurrente.obtenerInfoPropietario("A1", 2014, "nit200"));
+        assertNull(concurrente.obtenerInfoPropietario("A1", 2015, "nit1"));
+        assertTrue(concurrente.concatenarPropietarios("A1", 2014).startsWith("nit0~nit37~nit74~"));
+    }
+
+    /**
+     * Revisa que las consultas de las dos competencias den lo mismo.
+     */
+    private void comparar() {
+        assertEquals(simple.recorrerPremios(), concurrente.recorrerPremios());
+        assertEquals(simple.imprimirCarrosParaUnRango("1900-2100"),
+                concurrente.imprimirCarrosParaUnRango("1900-2100"));
+        for(int año = 2014; año <= 2016; año++)
+            for(String evento : new String[]{"Rally", "Copa", "Copa2"})
+                assertEquals(simple.propietarioParaUnaVictoria(evento, año),
+                        concurrente.propietarioParaUnaVictoria(evento, año));
+        for(String cc : new String[]{"10", "11", "12", "13", "14", "15"})
+            assertEquals(simple.premiosdePropietario(cc), concurrente.premiosdePropietario(cc));
+        for(String placa : PLACAS){
+            assertEquals(simple.obtenerInfoCarro(placa), concurrente.obtenerInfoCarro(placa));
+            assertEquals(simple.imprimirPremiosCarro(placa), concurrente.imprimirPremiosCarro(placa));
+            assertEquals(simple.imprimirPremiosCarro(placa, 2015),
+                    concurrente.imprimirPremiosCarro(placa, 2015));
+            assertEquals(simple.concatenarPremios(placa), concurrente.concatenarPremios(placa));
+            for(String evento : new String[]{"Rally", "copa2"})
+                assertEquals(simple.obtenerInfoPremios(placa, evento),
+                        concurrente.obtenerInfoPremios(placa, evento));
+            for(int año = 2014; año <= 2016; año++){
+                assertEquals(simple.imprimirPropietarios(placa, año),
+                        concurrente.imprimirPropietarios(placa, año));
+                assertEquals(simple.concatenarPropietarios(placa, año),
+                        concurrente.concatenarPropietarios(placa, año));
+                for(String cc : new String[]{"10", "11", "13", "14"})
+                    assertEquals(simple.obtenerInfoPropietario(placa, año, cc),
+                            concurrente.obtenerInfoPropietario(placa, año, cc));
+            }
+        }
+    }
+
+}
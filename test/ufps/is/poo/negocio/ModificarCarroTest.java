@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de Competencia.modificarCarro: una placa nueva invalida no cambia
+ * nada.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ModificarCarroTest {
+
+    private Competencia competencia;
+
+    @Before
+    public void preparar() throws Exception {
+        competencia = Competencia.concurrente(4);
+        competencia.agregarCarro("ABC1", "Mazda", 2012);
+        competencia.registrarPremioACarro("ABC1", 2014, 1, "Rally");
+    }
+
+    @Test
+    public void rechazaPlacasVacias() {
+        assertFalse(competencia.modificarCarro("ABC1", null, "Kia", 2013));
+        assertFalse(competencia.modificarCarro("ABC1", "  ", "Kia", 2013));
+
+        Carro c = competencia.obtenerCarro("abc1");
+        assertNotNull(c);
+        assertEquals("Mazda", c.getMarca());
+        assertEquals(1, competencia.listarPremios("ABC1").size());
+        assertEquals(1, competencia.listarPlacas().size());
+    }
+
+    @Test
+    public void cambiaLaPlaca() {
+        assertTrue(competencia.modificarCarro("ABC1", "XYZ9", "Kia", 2013));
+        assertNull(competencia.obtenerCarro("ABC1"));
+        assertEquals("Kia", competencia.obtenerCarro("xyz9").getMarca());
+        assertEquals(1, competencia.listarPremios("XYZ9").size());
+    }
+
+}
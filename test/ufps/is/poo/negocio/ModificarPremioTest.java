@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de Competencia.modificarPremio: un cambio no puede dejar al carro
+ * con dos premios del mismo evento en un año.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ModificarPremioTest {
+
+    private Competencia competencia;
+
+    @Before
+    public void preparar() throws Exception {
+        competencia = new Competencia();
+        competencia.agregarCarro("ABC1", "Mazda", 2012);
+        competencia.registrarPremioACarro("ABC1", 2014, 1, "Rally");
+        competencia.registrarPremioACarro("ABC1", 2015, 2, "Rally");
+    }
+
+    @Test
+    public void rechazaDoblePremioDelCarro() {
+        assertFalse(competencia.modificarPremio("ABC1", "Rally", 2015, 2014, 3, "rally"));
+
+        assertEquals("Rally 2014 1, Rally 2015 2", premios());
+    }
+
+    @Test
+    public void permiteCambiarElPuestoDelMismoPremio() {
+        assertTrue(competencia.modificarPremio("ABC1", "Rally", 2015, 2015, 3, "Rally"));
+
+        assertEquals("Rally 2014 1, Rally 2015 3", premios());
+    }
+
+    private String premios(){
+        StringBuilder s = new StringBuilder();
+        for(Premio x: competencia.listarPremios("ABC1")){
+            if(s.length() > 0)
+                s.append(", ");
+            s.append(x.getEvento()).append(' ').append(x.getAnio()).append(' ').append(x.getPuesto());
+        }
+        return s.toString();
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las paginas de premios: los cursores siguen sirviendo aunque se
+ * agreguen o borren carros entre una pagina y otra.
+ * @author Emanuel Martinez Pinzon
+ */
+public class PaginaPremiosTest {
+
+    private static final Pattern PLACA = Pattern.compile("Placa: (\\S+)");
+
+    private Competencia competencia;
+
+    @Before
+    public void preparar() throws Exception {
+        competencia = new Competencia();
+        for(int i = 0; i < 25; i++){
+            competencia.agregarCarro("P" + i, "m", 2000);
+            competencia.registrarPremioACarro("P" + i, 2014, i + 1, "Rally");
+        }
+    }
+
+    @Test
+    public void lasPaginasJuntasSonElRecorrido() {
+        StringBuilder todo = new StringBuilder();
+        String cursor = null;
+        int paginas = 0;
+        do{
+            PaginaPremios pagina = competencia.paginaDePremios(cursor, 10);
+            todo.append(pagina.getContenido());
+            cursor = pagina.getSiguiente();
+            paginas++;
+        }while(cursor != null);
+
+        assertEquals(3, paginas);
+        assertEquals(competencia.recorrerPremios(), todo.toString());
+    }
+
+    @Test
+    public void nadaSeRepiteNiSeSaltaConCambiosEntrePaginas() {
+        PaginaPremios primera = competencia.paginaDePremios(null, 10);
+        List<String> vistas = placas(primera.getContenido());
+        competencia.borrarCarro("P3");
+        competencia.borrarCarro("P10");
+        competencia.borrarCarro("P11");
+        competencia.agregarCarro("N1", "m", 2000);
+
+        String cursor = primera.getSiguiente();
+        while(cursor != null){
+            PaginaPremios pagina = competencia.paginaDePremios(cursor, 10);
+            vistas.addAll(placas(pagina.getContenido()));
+            cursor = pagina.getSiguiente();
+        }
+
+        List<String> esperadas = new ArrayList<>();
+        for(int i = 0; i < 25; i++)
+            if(i != 10 && i != 11)
+                esperadas.add("P" + i);
+        esperadas.add("N1");
+        assertEquals(esperadas, vistas);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rechazaUnCursorInvalido() {
+        competencia.paginaDePremios("no es un cursor", 10);
+    }
+
+    @Test
+    public void unaPaginaExactaNoDejaOtraVacia() {
+        PaginaPremios pagina = competencia.paginaDePremios(null, 25);
+        assertEquals(25, placas(pagina.getContenido()).size());
+        assertFalse(pagina.haySiguiente());
+        assertEquals(Arrays.asList("P24"), placas(competencia.paginaDePremios(
+                competencia.paginaDePremios(null, 24).getSiguiente(), 10).getContenido()));
+    }
+
+    private static List<String> placas(String contenido) {
+        List<String> placas = new ArrayList<>();
+        Matcher m = PLACA.matcher(contenido);
+        while(m.find())
+            placas.add(m.group(1));
+        return placas;
+    }
+
+}
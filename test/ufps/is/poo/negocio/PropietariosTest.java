@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.Collection;
+import java.util.Iterator;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las vistas de propietarios que retorna listarPropietarios en una
+ * competencia normal: siguen los cambios del año sin perder el orden.
+ * @author Emanuel Martinez Pinzon
+ */
+public class PropietariosTest {
+
+    private Competencia competencia;
+
+    @Before
+    public void preparar() throws Exception {
+        competencia = new Competencia();
+        competencia.agregarCarro("ABC1", "Mazda", 2012);
+        competencia.agregarPropietario("ABC1", 2000, "Ana", "10", "d", "c", "t");
+        competencia.agregarPropietario("ABC1", 2000, "Bo", "11", "d", "c", "t");
+        competencia.agregarPropietario("ABC1", 2000, "Cy", "12", "d", "c", "t");
+    }
+
+    @Test
+    public void laVistaSigueUnCambioDeNit() {
+        Collection<Propietario> vista = competencia.listarPropietarios("ABC1", 2000);
+        assertTrue(competencia.modificarPropietario("ABC1", 2000, "11", "Bo", "99", "d", "c", "t"));
+
+        assertEquals("10 99 12", nits(vista));
+        assertNotNull(competencia.obtenerCarro("ABC1").obtenerPropietario(2000, "99"));
+        assertNull(competencia.obtenerCarro("ABC1").obtenerPropietario(2000, "11"));
+    }
+
+    @Test
+    public void laVistaSigueAlDeshacerUnBorrado() throws Exception {
+        Collection<Propietario> vista = competencia.listarPropietarios("ABC1", 2000);
+        try(Transaccion t = competencia.iniciarTransaccion()){
+            assertTrue(competencia.borrarPropietario("ABC1", 2000, "11"));
+            assertEquals("10 12", nits(vista));
+            t.deshacer();
+        }
+        assertEquals("10 11 12", nits(vista));
+    }
+
+    @Test
+    public void laVistaQuedaVaciaAlBorrarTodos() throws Exception {
+        Collection<Propietario> vista = competencia.listarPropietarios("ABC1", 2000);
+        assertTrue(competencia.borrarTodosPropietario("ABC1"));
+        assertTrue(vista.isEmpty());
+
+        competencia.agregarPropietario("ABC1", 2000, "Di", "13", "d", "c", "t");
+        assertEquals("13", nits(vista));
+    }
+
+    private static String nits(Collection<Propietario> propietarios){
+        StringBuilder s = new StringBuilder();
+        for(Iterator<Propietario> it = propietarios.iterator(); it.hasNext();){
+            s.append(it.next().getCc());
+            if(it.hasNext())
+                s.append(' ');
+        }
+        return s.toString();
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.negocio;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las transacciones de Competencia: confirmar deja todos los
+ * cambios y deshacer, o cerrar sin confirmar, los quita todos.
+ * @author Emanuel Martinez Pinzon
+ */
+public class TransaccionTest {
+
+    private Competencia competencia;
+    private final List<List<Operacion>> grupos = new ArrayList<>();
+    private final List<List<EventoCompetencia>> avisos = new ArrayList<>();
+    private boolean fallar;
+
+    @Before
+    public void preparar() throws Exception {
+        competencia = new Competencia();
+        competencia.agregarCarro("ABC1", "Mazda", 2012);
+        competencia.agregarCarro("XYZ2", "Ford", 2006);
+        competencia.registrarPremioACarro("ABC1", 2014, 1, "Rally");
+        competencia.registrarPremioACarro("XYZ2", 2015, 1, "Copa");
+        competencia.agregarPropietario("ABC1", 2000, "Ana", "10", "d", "c", "t");
+        competencia.agregarPropietario("ABC1", 2000, "Bo", "11", "d", "c", "t");
+        competencia.agregarPropietario("XYZ2", 2001, "Cy", "12", "d", "c", "t");
+        competencia.setBitacora(new Bitacora() {
+            @Override
+            public void registrar(Operacion operacion) {
+                registrarGrupo(java.util.Collections.singletonList(operacion));
+            }
+
+            @Override
+            public void registrarGrupo(List<Operacion> operaciones) {
+                if(fallar)
+                    throw new IllegalStateException("disco lleno");
+                grupos.add(new ArrayList<>(operaciones));
+            }
+        });
+        competencia.agregarOyente(new OyenteCompetencia() {
+            @Override
+            public void cambios(List<EventoCompetencia> eventos) {
+                avisos.add(eventos);
+            }
+        });
+    }
+
+    @Test
+    public void deshacerQuitaTodosLosCambios() throws Exception {
+        String antes = estado();
+        Transaccion t = competencia.iniciarTransaccion();
+        cambiarTodo();
+        assertNotEquals(antes, estado());
+        t.deshacer();
+
+        assertEquals(antes, estado());
+        assertFalse(t.estaAbierta());
+        assertNull(competencia.getTransaccion());
+        assertTrue(grupos.isEmpty());
+        assertTrue(avisos.isEmpty());
+        
+        //Los indices tambien volvieron: las placas y los puestos siguen ocupados
+        assertFalse(competencia.agregarCarro("abc1", "Kia", 2010));
+        assertTrue(competencia.agregarCarro("NEW1", "Kia", 2010));
+        try{
+            competencia.registrarPremioACarro("NEW1", 2014, 1, "Rally");
+            fail("El puesto sigue siendo de ABC1");
+        }catch(Exception ex){
+            assertEquals("Doble premio", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void cerrarSinConfirmarDeshace() throws Exception {
+        String antes = estado();
+        try(Transaccion t = competencia.iniciarTransaccion()){
+            cambiarTodo();
+            assertFalse(t.estaConfirmada());
+        }
+        assertEquals(antes, estado());
+        assertNull(competencia.getTransaccion());
+    }
+
+    @Test
+    public void unaExcepcionDentroDeshace() throws Exception {
+        String antes = estado();
+        try(Transaccion t = competencia.iniciarTransaccion()){
+            competencia.borrarCarro("ABC1");
+            t.exigir(competencia.agregarCarro("XYZ2", "Kia", 2010), "Placa repetida");
+            t.confirmar();
+            fail("Debio fallar exigir");
+        }catch(Exception ex){
+            assertEquals("Placa repetida", ex.getMessage());
+        }
+        assertEquals(antes, estado());
+    }
+
+    @Test
+    public void confirmarGuardaUnSoloGrupoYUnSoloAviso() throws Exception {
+        Transaccion t = competencia.iniciarTransaccion();
+        competencia.agregarCarro("NEW1", "Kia", 2010);
+        competencia.registrarPremioACarro("NEW1", 2016, 1, "Copa");
+        competencia.borrarCarro("XYZ2");
+        assertEquals(3, t.cantidad());
+        assertTrue(grupos.isEmpty());
+        t.confirmar();
+
+        assertFalse(t.estaAbierta());
+        assertEquals(1, grupos.size());
+        assertEquals(3, grupos.get(0).size());
+        assertEquals(1, avisos.size());
+        assertNotNull(competencia.obtenerCarro("NEW1"));
+        assertNull(competencia.obtenerCarro("XYZ2"));
+    }
+
+    @Test
+    public void siLaBitacoraFallaAlConfirmarSeDeshace() throws Exception {
+        String antes = estado();
+        Transaccion t = competencia.iniciarTransaccion();
+        cambiarTodo();
+        fallar = true;
+        try{
+            t.confirmar();
+            fail("Debio fallar la bitacora");
+        }catch(IllegalStateException ex){
+            assertEquals("disco lleno", ex.getMessage());
+        }
+        assertFalse(t.estaAbierta());
+        assertEquals(antes, estado());
+        assertTrue(avisos.isEmpty());
+    }
+
+    @Test
+    public void laFotoNoVeLosCambiosDeshechos() throws Exception {
+        Foto antes = competencia.foto();
+        try(Transaccion t = competencia.iniciarTransaccion()){
+            cambiarTodo();
+            assertFalse(t.estaConfirmada());
+        }
+        assertSame(antes, competencia.foto());
+        
+        try(Transaccion t = competencia.iniciarTransaccion()){
+            competencia.agregarCarro("NEW1", "Kia", 2010);
+            assertSame("La foto sale al confirmar", antes, competencia.foto());
+            t.confirmar();
+        }
+        assertEquals(3, competencia.foto().cantidad());
+    }
+
+    @Test
+    public void noSeAnidan() {
+        try(Transaccion t = competencia.iniciarTransaccion()){
+            try{
+                competencia.iniciarTransaccion();
+                fail("No se puede abrir otra transaccion");
+            }catch(IllegalStateException ex){
+                assertSame(t, competencia.getTransaccion());
+            }
+        }
+        competencia.iniciarLote();
+        try{
+            competencia.iniciarTransaccion();
+            fail("No se puede abrir una transaccion dentro de un lote");
+        }catch(IllegalStateException ex){
+            assertNull(competencia.getTransaccion());
+        }finally{
+            competencia.terminarLote();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noSeConfirmaDosVeces() {
+        Transaccion t = competencia.iniciarTransaccion();
+        t.confirmar();
+        t.confirmar();
+    }
+
+    /**
+     * Hace un cambio de cada tipo.
+     */
+    private void cambiarTodo() throws Exception {
+        assertTrue(competencia.agregarCarro("NEW1", "Kia", 2010));
+        assertTrue(competencia.registrarPremioACarro("NEW1", 2016, 1, "Copa"));
+        assertTrue(competencia.agregarPropietario("NEW1", 2016, "Di", "13", "d", "c", "t"));
+        assertTrue(competencia.modificarCarro("ABC1", "ABC9", "Mazda", 2013));
+        assertTrue(competencia.modificarPremio("ABC9", "Rally", 2014, 2014, 2, "Rally"));
+        assertTrue(competencia.modificarPropietario("ABC9", 2000, "10", "Eva", "14", "x", "y", "z"));
+        assertTrue(competencia.borrarPropietario("ABC9", 2000, "11"));
+        assertTrue(competencia.borrarPremio("XYZ2", "Copa", 2015));
+        assertTrue(competencia.borrarTodosPropietario("XYZ2"));
+        assertTrue(competencia.borrarCarro("XYZ2"));
+        assertTrue(competencia.borrarTodosPremios("ABC9"));
+        assertTrue(competencia.borrarTodosPropietario("ABC9", 2000));
+        assertTrue(competencia.borrarTodo());
+        assertTrue(competencia.agregarCarro("ZZZ9", "Kia", 2010));
+    }
+
+    private String estado() {
+        StringBuilder estado = new StringBuilder();
+        for(String placa: competencia.listarPlacas()){
+            estado.append(competencia.obtenerInfoCarro(placa)).append('|')
+                    .append(competencia.imprimirPremiosCarro(placa));
+            for(Integer año: competencia.listarAñosPropietarios(placa))
+                estado.append('|').append(año).append(':')
+                        .append(competencia.imprimirPropietarios(placa, año));
+            estado.append('\n');
+        }
+        return estado.append(competencia.recorrerPremios()).append('\n')
+                .append(competencia.imprimirCarrosParaUnRango("1900-3000")).append('\n')
+                .append(competencia.premiosdePropietario("10")).toString();
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.persistencia;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.EventoCompetencia;
+import ufps.is.poo.negocio.OyenteCompetencia;
+import ufps.is.poo.negocio.Transaccion;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la recuperacion de una Competencia desde su bitacora.
+ * @author Emanuel Martinez Pinzon
+ */
+public class BitacoraArchivoTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    @Test
+    public void repiteTodosLosCambios() throws Exception {
+        File directorio = carpeta.newFolder();
+        Competencia c = new Competencia();
+        BitacoraArchivo bitacora = BitacoraArchivo.abrir(directorio, c, 4096);
+        for(int i = 0; i < 300; i++)
+            c.agregarCarro("P" + i, "m", 2000 + i % 20);
+        c.agregarCarro("A1", "Mazda", 2012);
+        c.agregarCarro("B2", "Ford", 2006);
+        c.registrarPremioACarro("A1", 2014, 1, "Rally");
+        c.registrarPremioACarro("B2", 2014, 2, "Rally");
+        c.registrarPremioACarro("B2", 2015, 2, "Copa");
+        c.agregarPropietario("A1", 2000, "Ana", "10", "d", "c", "t");
+        c.agregarPropietario("B2", 2001, "Bo", "11", "d", "c", "t");
+        c.agregarPropietario("B2", 2001, "Cy", "12", "d", "c", "t");
+        c.modificarCarro("A1", "NEW1", "Mazda", 2013);
+        c.modificarPremio("NEW1", "Rally", 2014, 2014, 3, "Rally2");
+        c.modificarPropietario("B2", 2001, "11", "Bob", "13", "x", "y", "z");
+        c.borrarPropietario("B2", 2001, "12");
+        c.borrarPremio("B2", "Copa-2015");
+        for(int i = 0; i < 100; i++)
+            c.borrarCarro("P" + i);
+        c.borrarTodosPremios("P150");
+        c.borrarTodosPropietario("P152");
+        String esperado = estado(c);
+        bitacora.close();
+        assertTrue("Debio rotar segmentos", BitacoraArchivo.segmentos(directorio, 0).size() > 1);
+        for(File x: BitacoraArchivo.segmentos(directorio, 0))
+            assertTrue(x + " pasa del tamaño del segmento", x.length() <= 4096);
+
+        Competencia recuperada = new Competencia();
+        final int[] avisos = {0};
+        recuperada.agregarOyente(new OyenteCompetencia() {
+            @Override
+            public void cambios(List<EventoCompetencia> eventos) {
+                avisos[0]++;
+            }
+        });
+        BitacoraArchivo.abrir(directorio, recuperada, 4096).close();
+        assertEquals(esperado, estado(recuperada));
+        assertEquals("La recuperacion se avisa en un solo lote", 1, avisos[0]);
+    }
+
+    @Test
+    public void unRegistroGrandeQuedaSoloEnSuSegmento() throws Exception {
+        File directorio = carpeta.newFolder();
+        Competencia c = new Competencia();
+        BitacoraArchivo bitacora = BitacoraArchivo.abrir(directorio, c, 4096);
+        c.agregarCarro("A1", "Mazda", 2012);
+        //La transaccion es un solo registro, mas grande que un segmento
+        try(Transaccion t = c.iniciarTransaccion()){
+            for(int i = 0; i < 500; i++)
+                c.agregarCarro("P" + i, "m", 2000);
+            t.confirmar();
+        }
+        c.agregarCarro("B2", "Ford", 2006);
+        bitacora.close();
+        
+        List<File> segmentos = BitacoraArchivo.segmentos(directorio, 0);
+        assertEquals(3, segmentos.size());
+        assertTrue(segmentos.get(0).length() <= 4096);
+        assertTrue(segmentos.get(1).length() > 4096);
+        assertTrue(segmentos.get(2).length() <= 4096);
+        Competencia recuperada = new Competencia();
+        BitacoraArchivo.abrir(directorio, recuperada, 4096).close();
+        assertEquals(502, recuperada.listarPlacas().size());
+    }
+
+    @Test
+    public void repiteLasTransaccionesCompletas() throws Exception {
+        File directorio = carpeta.newFolder();
+        Competencia c = new Competencia();
+        BitacoraArchivo bitacora = BitacoraArchivo.abrir(directorio, c);
+        try(Transaccion t = c.iniciarTransaccion()){
+            c.agregarCarro("A1", "Mazda", 2012);
+            c.registrarPremioACarro("A1", 2014, 1, "Rally");
+            t.confirmar();
+        }
+        try(Transaccion t = c.iniciarTransaccion()){
+            c.agregarCarro("B2", "Ford", 2006);
+            assertFalse(t.estaConfirmada());
+        }
+        bitacora.close();
+
+        Competencia recuperada = new Competencia();
+        BitacoraArchivo.abrir(directorio, recuperada).close();
+        assertEquals(Arrays.asList("A1"), new ArrayList<>(recuperada.listarPlacas()));
+        assertEquals(c.recorrerPremios(), recuperada.recorrerPremios());
+    }
+
+    @Test
+    public void descartaElUltimoRegistroCortado() throws Exception {
+        File directorio = carpeta.newFolder();
+        Competencia c = new Competencia();
+        BitacoraArchivo bitacora = BitacoraArchivo.abrir(directorio, c);
+        c.agregarCarro("A1", "Mazda", 2012);
+        c.agregarCarro("B2", "Ford", 2006);
+        bitacora.close();
+        cortar(ultimoSegmento(directorio), 3);
+
+        Competencia recuperada = new Competencia();
+        bitacora = BitacoraArchivo.abrir(directorio, recuperada);
+        assertEquals(Arrays.asList("A1"), new ArrayList<>(recuperada.listarPlacas()));
+        
+        //El resto cortado se quita del archivo, asi lo nuevo se puede leer
+        recuperada.agregarCarro("C3", "Kia", 2010);
+        bitacora.close();
+        Competencia otra = new Competencia();
+        BitacoraArchivo.abrir(directorio, otra).close();
+        assertEquals(Arrays.asList("A1", "C3"), new ArrayList<>(otra.listarPlacas()));
+    }
+
+    @Test
+    public void fallaSiElDañoNoEstaAlFinal() throws Exception {
+        File directorio = carpeta.newFolder();
+        Competencia c = new Competencia();
+        BitacoraArchivo bitacora = BitacoraArchivo.abrir(directorio, c, 4096);
+        for(int i = 0; i < 300; i++)
+            c.agregarCarro("P" + i, "m", 2000);
+        bitacora.close();
+        assertTrue("Debio rotar segmentos", BitacoraArchivo.segmentos(directorio, 0).size() > 1);
+        File primero = BitacoraArchivo.segmentos(directorio, 0).get(0);
+        try(RandomAccessFile archivo = new RandomAccessFile(primero, "rw")){
+            archivo.seek(20);
+            archivo.write(0x7f);
+        }
+
+        try{
+            BitacoraArchivo.abrir(directorio, new Competencia());
+            fail("Debio fallar por el segmento dañado");
+        }catch(IOException ex){
+            //Esperado
+        }
+    }
+
+    private static File ultimoSegmento(File directorio) {
+        List<File> segmentos = BitacoraArchivo.segmentos(directorio, 0);
+        return segmentos.get(segmentos.size() - 1);
+    }
+
+    private static void cortar(File archivo, int bytes) throws IOException {
+        try(RandomAccessFile f = new RandomAccessFile(archivo, "rw")){
+            f.setLength(f.length() - bytes);
+        }
+    }
+
+    private static String estado(Competencia c) {
+        return c.recorrerPremios() + "|" + new ArrayList<>(c.listarPlacas()) + "|"
+                + c.imprimirPropietarios("NEW1", 2000) + c.imprimirPropietarios("B2", 2001) + "|"
+                + c.imprimirCarrosParaUnRango("1900-3000");
+    }
+
+}
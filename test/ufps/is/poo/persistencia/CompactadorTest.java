@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.persistencia;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ufps.is.poo.negocio.Competencia;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del Compactador: despues de compactar, la bitacora se recupera igual
+ * desde la instantanea y los segmentos que quedan.
+ * @author Emanuel Martinez Pinzon
+ */
+public class CompactadorTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    @Test
+    public void recuperaDesdeLaInstantanea() throws Exception {
+        File directorio = carpeta.newFolder();
+        Competencia c = new Competencia();
+        BitacoraArchivo bitacora = BitacoraArchivo.abrir(directorio, c, 4096);
+        Compactador compactador = new Compactador(bitacora);
+        cambiar(c, 0, 200);
+
+        assertTrue(compactador.compactar());
+        assertTrue(new File(directorio, BitacoraArchivo.ARCHIVO_INSTANTANEA).isFile());
+        assertEquals("Solo queda el segmento abierto", 1, BitacoraArchivo.segmentos(directorio, 0).size());
+        assertEquals(1, compactador.getCompactaciones());
+        assertTrue(compactador.getTamañoInstantanea() > 0);
+
+        //Lo que llega despues va a los segmentos nuevos y se compacta encima
+        cambiar(c, 200, 300);
+        c.borrarCarro("P10");
+        assertTrue(compactador.compactar());
+        cambiar(c, 300, 320);
+        String esperado = estado(c);
+        compactador.close();
+        bitacora.close();
+
+        Competencia recuperada = new Competencia();
+        BitacoraArchivo.abrir(directorio, recuperada, 4096).close();
+        assertEquals(esperado, estado(recuperada));
+    }
+
+    @Test
+    public void sinCambiosNoCompacta() throws Exception {
+        File directorio = carpeta.newFolder();
+        Competencia c = new Competencia();
+        BitacoraArchivo bitacora = BitacoraArchivo.abrir(directorio, c);
+        Compactador compactador = new Compactador(bitacora);
+        assertFalse(compactador.compactar());
+
+        cambiar(c, 0, 10);
+        assertTrue(compactador.compactar());
+        assertFalse(compactador.compactar());
+        assertEquals(1, compactador.getCompactaciones());
+        bitacora.close();
+    }
+
+    @Test
+    public void borraLosSegmentosQueYaEstanEnLaInstantanea() throws Exception {
+        File directorio = carpeta.newFolder();
+        Competencia c = new Competencia();
+        BitacoraArchivo bitacora = BitacoraArchivo.abrir(directorio, c, 4096);
+        cambiar(c, 0, 100);
+        bitacora.sincronizar();
+        File primero = BitacoraArchivo.segmentos(directorio, 0).get(0);
+        File copia = carpeta.newFile();
+        Files.copy(primero.toPath(), copia.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(new Compactador(bitacora).compactar());
+        String esperado = estado(c);
+        bitacora.close();
+
+        //Como si la aplicacion se hubiera cerrado antes de borrarlo
+        Files.copy(copia.toPath(), primero.toPath());
+        Competencia recuperada = new Competencia();
+        BitacoraArchivo.abrir(directorio, recuperada, 4096).close();
+        assertEquals(esperado, estado(recuperada));
+        assertFalse(primero.exists());
+    }
+
+    @Test
+    public void compactaEnSegundoPlanoMientrasSeEscribe() throws Exception {
+        File directorio = carpeta.newFolder();
+        Competencia c = new Competencia();
+        BitacoraArchivo bitacora = BitacoraArchivo.abrir(directorio, c, 4096);
+        Compactador compactador = new Compactador(bitacora, 20, 0, 0);
+        compactador.iniciar();
+        int i = 0;
+        long limite = System.currentTimeMillis() + 10000;
+        while(compactador.getCompactaciones() < 2 && System.currentTimeMillis() < limite){
+            cambiar(c, i, i + 20);
+            i += 20;
+            Thread.sleep(5);
+        }
+        compactador.close();
+        assertTrue("Debio compactar", compactador.getCompactaciones() >= 2);
+        assertNull(compactador.getUltimoError());
+        String esperado = estado(c);
+        bitacora.close();
+
+        Competencia recuperada = new Competencia();
+        BitacoraArchivo.abrir(directorio, recuperada, 4096).close();
+        assertEquals(esperado, estado(recuperada));
+    }
+
+    private static void cambiar(Competencia c, int desde, int hasta) throws Exception {
+        for(int i = desde; i < hasta; i++){
+            c.agregarCarro("P" + i, "m", 2000 + i % 20);
+            c.registrarPremioACarro("P" + i, 2000 + i % 20, i, "Rally");
+            c.agregarPropietario("P" + i, 2010, "Ana", String.valueOf(i), "d", "c", "t");
+        }
+    }
+
+    private static String estado(Competencia c) {
+        List<String> propietarios = new ArrayList<>();
+        for(String placa: c.listarPlacas())
+            propietarios.add(c.imprimirPropietarios(placa, 2010));
+        return c.recorrerPremios() + "|" + new ArrayList<>(c.listarPlacas()) + "|" + propietarios;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.persistencia;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import ufps.is.poo.negocio.Carro;
+import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.Premio;
+import ufps.is.poo.negocio.Propietario;
+
+/**
+ * Compara la instantanea binaria con la serializacion de Java: tiempo para
+ * guardar, tiempo para cargar en una Competencia nueva y tamaño del archivo.
+ *
+ * Las clases del negocio no son Serializable, asi que la serializacion
+ * guarda un grafo equivalente de colecciones del JDK, y al cargar se vuelve a
+ * llenar la competencia con sus metodos publicos.
+ *
+ * Se ejecuta con: java -Xmx2g -cp build/classes:build/test/classes
+ * ufps.is.poo.persistencia.InstantaneaBenchmark [carros] [vueltas]
+ * @author Emanuel Martinez Pinzon
+ */
+public class InstantaneaBenchmark {
+
+    private static final String[] MARCAS = {"Mazda", "Ford", "Chevrolet", "Renault", "Kia"};
+
+    public static void main(String[] args) throws Exception {
+        int carros = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int vueltas = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Competencia competencia = llenar(carros);
+        File instantanea = File.createTempFile("instantanea", ".bin");
+        File serializada = File.createTempFile("serializada", ".ser");
+        instantanea.deleteOnExit();
+        serializada.deleteOnExit();
+
+        System.out.println("carros: " + carros);
+        System.out.println("vuelta\tbinaria guardar ms\tbinaria cargar ms\tjava guardar ms\tjava cargar ms");
+        for(int v = 1; v <= vueltas; v++){
+            long inicio = System.nanoTime();
+            Instantanea.escribir(competencia, instantanea, 0);
+            long guardarBinaria = System.nanoTime() - inicio;
+
+            inicio = System.nanoTime();
+            Competencia binaria = new Competencia();
+            Instantanea.cargar(instantanea, binaria);
+            long cargarBinaria = System.nanoTime() - inicio;
+
+            inicio = System.nanoTime();
+            serializar(competencia, serializada);
+            long guardarJava = System.nanoTime() - inicio;
+
+            inicio = System.nanoTime();
+            Competencia java = deserializar(serializada);
+            long cargarJava = System.nanoTime() - inicio;
+
+            if(binaria.listarPlacas().size() != carros || java.listarPlacas().size() != carros)
+                throw new IllegalStateException("No se cargaron todos los carros");
+            System.out.println(v + "\t" + guardarBinaria / 1000000 + "\t" + cargarBinaria / 1000000
+                    + "\t" + guardarJava / 1000000 + "\t" + cargarJava / 1000000);
+        }
+        System.out.println("tamaño binaria: " + instantanea.length() / 1024 + " KB");
+        System.out.println("tamaño java: " + serializada.length() / 1024 + " KB");
+    }
+
+    private static Competencia llenar(int carros) throws Exception {
+        Competencia c = new Competencia();
+        for(int i = 0; i < carros; i++){
+            String placa = "P" + i;
+            c.agregarCarro(placa, MARCAS[i % MARCAS.length], 1990 + i % 30);
+            c.registrarPremioACarro(placa, 2000 + i % 20, i / 20, "Evento" + i % 50);
+            c.agregarPropietario(placa, 2000 + i % 10, "Nombre" + i % 1000, "CC" + i,
+                    "Calle " + i % 500, "Ciudad" + i % 40, "555" + i % 9000);
+        }
+        return c;
+    }
+
+    /**
+     * Guarda cada carro como un arreglo con sus datos, sus premios y sus
+     * propietarios por año.
+     */
+    private static void serializar(Competencia competencia, File archivo) throws IOException {
+        ArrayList<Object[]> grafo = new ArrayList<>();
+        for(String placa: competencia.listarPlacas()){
+            Carro c = competencia.obtenerCarro(placa);
+            ArrayList<Object[]> premios = new ArrayList<>();
+            for(Premio p: competencia.listarPremios(placa))
+                premios.add(new Object[]{p.getAnio(), p.getPuesto(), p.getEvento()});
+            LinkedHashMap<Integer, ArrayList<String[]>> propietarios = new LinkedHashMap<>();
+            for(Integer año: competencia.listarAñosPropietarios(placa)){
+                ArrayList<String[]> dueños = new ArrayList<>();
+                for(Propietario p: competencia.listarPropietarios(placa, año))
+                    dueños.add(new String[]{p.getNombre(), p.getCc(), p.getDireccion(),
+                        p.getCiudad(), p.getTelefono()});
+                propietarios.put(año, dueños);
+            }
+            grafo.add(new Object[]{c.getPlaca(), c.getMarca(), c.getModelo(), premios, propietarios});
+        }
+        try(ObjectOutputStream salida = new ObjectOutputStream(new BufferedOutputStream(
+                new FileOutputStream(archivo), 1 << 16))){
+            salida.writeObject(grafo);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Competencia deserializar(File archivo) throws Exception {
+        ArrayList<Object[]> grafo;
+        try(ObjectInputStream entrada = new ObjectInputStream(new BufferedInputStream(
+                new FileInputStream(archivo), 1 << 16))){
+            grafo = (ArrayList<Object[]>) entrada.readObject();
+        }
+        Competencia c = new Competencia();
+        c.iniciarLote();
+        try{
+            for(Object[] x: grafo){
+                String placa = (String) x[0];
+                c.agregarCarro(placa, (String) x[1], (Integer) x[2]);
+                for(Object[] p: (ArrayList<Object[]>) x[3])
+                    c.registrarPremioACarro(placa, (Integer) p[0], (Integer) p[1], (String) p[2]);
+                for(Map.Entry<Integer, ArrayList<String[]>> e:
+                        ((LinkedHashMap<Integer, ArrayList<String[]>>) x[4]).entrySet())
+                    for(String[] p: e.getValue())
+                        c.agregarPropietario(placa, e.getKey(), p[0], p[1], p[2], p[3], p[4]);
+            }
+        }finally{
+            c.terminarLote();
+        }
+        return c;
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.presentacion;
+
+import java.awt.CardLayout;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import ufps.is.poo.negocio.Competencia;
+
+/**
+ * Mide el arranque y el cambio entre los paneles del formulario principal.
+ * Compara la forma anterior, que creaba el panel de nuevo en cada cambio, con
+ * las tarjetas de un CardLayout que se crean una vez y se reutilizan.
+ *
+ * Un JFrame necesita pantalla, asi que el contenedor es un JPanel con el
+ * mismo CardLayout y validate() hace las veces de pack(). Se puede ejecutar
+ * sin pantalla: java -Djava.awt.headless=true -cp build/classes:build/test/classes
+ * ufps.is.poo.presentacion.CambioPanelesBenchmark [carros] [vueltas]
+ * @author Emanuel Martinez Pinzon
+ */
+public class CambioPanelesBenchmark {
+
+    private static final int PANELES = 11;
+
+    private final Competencia competencia = new Competencia();
+    private ModeloPlacas placas;
+    private JPanel contenedor;
+    private JPanel[] tarjetas;
+
+    public static void main(String[] args) throws Exception {
+        final int carros = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int vueltas = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final CambioPanelesBenchmark b = new CambioPanelesBenchmark();
+        for(int i = 0; i < carros; i++){
+            String placa = "P" + i;
+            b.competencia.agregarCarro(placa, "Marca", 2000 + i % 20);
+            b.competencia.registrarPremioACarro(placa, 2010, 1, "Rally" + i);
+            b.competencia.agregarPropietario(placa, 2010, "Nombre", "" + i, "d", "c", "t");
+        }
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                b.medir(carros, vueltas);
+            }
+        });
+    }
+
+    private void medir(int carros, int vueltas){
+        long inicio = System.nanoTime();
+        placas = new ModeloPlacas(competencia);
+        contenedor = new JPanel(new CardLayout());
+        tarjetas = new JPanel[PANELES];
+        tarjetas[0] = new registrarCarroPanel(competencia);
+        contenedor.add(tarjetas[0], "0");
+        mostrar(0);
+        long arranque = System.nanoTime() - inicio;
+
+        inicio = System.nanoTime();
+        for(int i = 1; i < PANELES; i++){
+            tarjetas[i] = crear(i);
+            contenedor.add(tarjetas[i], "" + i);
+            mostrar(i);
+        }
+        long primeraVez = (System.nanoTime() - inicio) / (PANELES - 1);
+
+        // Calentamiento de las dos formas antes de medir
+        reconstruir(2);
+        tarjetas(200);
+        double reconstruir = reconstruir(vueltas);
+        double tarjetas = tarjetas(vueltas * 100);
+
+        System.out.println("carros: " + carros);
+        System.out.println("arranque con el primer panel: " + arranque / 1000 + " us");
+        System.out.println("primer cambio a cada panel: " + primeraVez / 1000 + " us");
+        System.out.println(String.format("cambio creando el panel: %.1f us", reconstruir));
+        System.out.println(String.format("cambio entre tarjetas: %.1f us", tarjetas));
+    }
+
+    /**
+     * Cambia de panel como antes: quita el actual y crea uno nuevo. Los
+     * oyentes de los paneles creados se acumulan, como pasaba antes.
+     * @return Microsegundos por cambio
+     */
+    private double reconstruir(int vueltas){
+        JPanel solo = new JPanel(new CardLayout());
+        long inicio = System.nanoTime();
+        for(int v = 0; v < vueltas; v++)
+            for(int i = 0; i < PANELES; i++){
+                solo.removeAll();
+                JPanel panel = crear(i);
+                solo.add(panel, "" + i);
+                solo.setPreferredSize(panel.getPreferredSize());
+                solo.validate();
+            }
+        return (System.nanoTime() - inicio) / 1000.0 / (vueltas * PANELES);
+    }
+
+    /**
+     * Cambia de panel mostrando la tarjeta ya creada.
+     * @return Microsegundos por cambio
+     */
+    private double tarjetas(int vueltas){
+        long inicio = System.nanoTime();
+        for(int v = 0; v < vueltas; v++)
+            for(int i = 0; i < PANELES; i++)
+                mostrar(i);
+        return (System.nanoTime() - inicio) / 1000.0 / (vueltas * PANELES);
+    }
+
+    private void mostrar(int i){
+        ((CardLayout) contenedor.getLayout()).show(contenedor, "" + i);
+        contenedor.setPreferredSize(tarjetas[i].getPreferredSize());
+        contenedor.validate();
+    }
+
+    private JPanel crear(int i){
+        switch(i){
+            case 0: return new registrarCarroPanel(competencia);
+            case 1: return new registrarPremioPanel(competencia, placas);
+            case 2: return new registrarPropietarioPanel(competencia, placas);
+            case 3: return new modificarCarroPanel(competencia, placas);
+            case 4: return new modificarPremioPanel(competencia, placas);
+            case 5: return new modificarPropietarioPanel(competencia, placas);
+            case 6: return new eliminarCarroPanel(competencia, placas);
+            case 7: return new eliminarPremioPanel(competencia, placas);
+            case 8: return new eliminarPropietarioPanel(competencia, placas);
+            case 9: return new consultasPanel(competencia, placas);
+            default: return new bienvenidaPanel();
+        }
+    }
+
+}
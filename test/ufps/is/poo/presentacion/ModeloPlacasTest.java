@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.presentacion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.swing.SwingUtilities;
+import org.junit.Test;
+import ufps.is.poo.negocio.Competencia;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de ModeloPlacas: despues de cualquier serie de cambios tiene las
+ * mismas placas y en el mismo orden que la competencia.
+ * @author Emanuel Martinez Pinzon
+ */
+public class ModeloPlacasTest {
+
+    @Test
+    public void sigueLosCambiosDeLaCompetencia() throws Exception {
+        Competencia competencia = new Competencia();
+        for(int i = 0; i < 50; i++)
+            competencia.agregarCarro("I" + i, "m", 2000);
+        ModeloPlacas modelo = new ModeloPlacas(competencia);
+        ModeloComboPlacas combo = modelo.nuevoCombo();
+        Random azar = new Random(7);
+        
+        for(int paso = 0; paso < 2000; paso++){
+            List<String> placas = new ArrayList<>(competencia.listarPlacas());
+            int opcion = azar.nextInt(10);
+            if(placas.isEmpty() || opcion < 4)
+                competencia.agregarCarro("P" + paso, "m", 2000);
+            else{
+                String placa = placas.get(azar.nextInt(placas.size()));
+                if(opcion < 7)
+                    competencia.borrarCarro(placa);
+                else
+                    competencia.modificarCarro(placa, "M" + paso, "m", 2000);
+            }
+            if(paso == 1000)
+                competencia.borrarTodo();
+            
+            if(paso % 50 == 0)
+                assertIguales(competencia, modelo);
+        }
+        assertIguales(competencia, modelo);
+        assertEquals(modelo.getSize(), combo.getSize());
+    }
+
+    private static void assertIguales(Competencia competencia, final ModeloPlacas modelo) throws Exception {
+        //Los cambios llegan al modelo en el hilo de eventos
+        final List<String> vistas = new ArrayList<>();
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < modelo.getSize(); i++)
+                    vistas.add(modelo.getElementAt(i));
+            }
+        });
+        assertEquals(new ArrayList<>(competencia.listarPlacas()), vistas);
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 Emanuel Martinez Pinzon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ufps.is.poo.presentacion;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingUtilities;
+import org.junit.Test;
+import ufps.is.poo.negocio.Competencia;
+import ufps.is.poo.negocio.EventoCompetencia;
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de OyenteSwing con una competencia concurrente: los eventos se
+ * aplican en el hilo de eventos, despues de que el cambio suelta sus cerrojos.
+ * @author Emanuel Martinez Pinzon
+ */
+public class OyenteSwingTest {
+
+    @Test
+    public void aplicaDespuesDelCambio() throws Exception {
+        final Competencia competencia = Competencia.concurrente(4);
+        final List<String> orden = new ArrayList<>();
+        competencia.agregarOyente(new OyenteSwing() {
+            @Override
+            protected void aplicar(List<EventoCompetencia> eventos) {
+                assertTrue(SwingUtilities.isEventDispatchThread());
+                //Leer otra placa desde el oyente no espera al cambio
+                orden.add("aplicar " + competencia.listarPremios("XYZ9").size());
+            }
+        });
+        
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                competencia.agregarCarro("ABC1", "Mazda", 2012);
+                orden.add("agregado");
+            }
+        });
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        assertEquals("[agregado, aplicar 0]", orden.toString());
+    }
+
+}